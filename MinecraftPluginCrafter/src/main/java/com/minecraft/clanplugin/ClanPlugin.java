@@ -6,24 +6,35 @@ import com.minecraft.clanplugin.bounty.BountyManager;
 import com.minecraft.clanplugin.commands.*;
 import com.minecraft.clanplugin.economy.ClanEconomy;
 import com.minecraft.clanplugin.economy.PlaytimeRewardManager;
+import com.minecraft.clanplugin.economy.TerritoryUpkeepManager;
 import com.minecraft.clanplugin.hologram.BannerManager;
 import com.minecraft.clanplugin.shop.ClanShop;
 import com.minecraft.clanplugin.listeners.*;
 import com.minecraft.clanplugin.mapping.TerritoryMap;
+import com.minecraft.clanplugin.models.Territory;
 import com.minecraft.clanplugin.progression.ProgressionManager;
 import com.minecraft.clanplugin.recruitment.RecruitmentMiniGame;
 import com.minecraft.clanplugin.reputation.ReputationManager;
 import com.minecraft.clanplugin.skills.SkillManager;
+import com.minecraft.clanplugin.storage.BackupManager;
+import com.minecraft.clanplugin.storage.ParallelDataStage;
+import com.minecraft.clanplugin.storage.PersistenceService;
 import com.minecraft.clanplugin.storage.StorageManager;
+import com.minecraft.clanplugin.storage.TerritoryConnectivityBenchmark;
+import com.minecraft.clanplugin.storage.TerritoryHeapBenchmark;
+import com.minecraft.clanplugin.storage.TerritoryIndexBenchmark;
 import com.minecraft.clanplugin.utils.AnimationUtils;
 import com.minecraft.clanplugin.utils.EmoteUtils;
 import com.minecraft.clanplugin.utils.NametagManager;
 import com.minecraft.clanplugin.utils.SidebarManager;
+import com.minecraft.clanplugin.utils.TerritoryEffectUtils;
 import com.minecraft.clanplugin.visualization.TerritoryConquestVisualizer;
+import com.minecraft.clanplugin.wars.RaidManager;
 import com.minecraft.clanplugin.wars.WarManager;
 import com.minecraft.clanplugin.webhook.WebhookManager;
 import net.milkbowl.vault.economy.Economy;
 import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
 import org.bukkit.plugin.RegisteredServiceProvider;
 import org.bukkit.plugin.java.JavaPlugin;
 
@@ -35,6 +46,7 @@ public class ClanPlugin extends JavaPlugin {
     private StorageManager storageManager;
     private ClanEconomy economy;
     private WarManager warManager;
+    private RaidManager raidManager;
     private ProgressionManager progressionManager;
     private AchievementManager achievementManager;
     private TerritoryMap territoryMap;
@@ -44,6 +56,7 @@ public class ClanPlugin extends JavaPlugin {
     private SidebarManager sidebarManager;
     private ArmorListener armorListener;
     private PlaytimeRewardManager playtimeRewardManager;
+    private TerritoryUpkeepManager territoryUpkeepManager;
     private Economy vaultEconomy; // Vault economy integration
     
     // New features
@@ -54,36 +67,99 @@ public class ClanPlugin extends JavaPlugin {
     private BannerManager bannerManager;
     private ClanShop clanShop;
     private BountyManager bountyManager;
+    private PersistenceService persistenceService;
+    private BackupManager backupManager;
 
     @Override
     public void onEnable() {
+        // Apply a restore staged by /clan admin backup before any data file is read
+        BackupManager.applyPendingRestore(getDataFolder(), getLogger());
+        
         // Save default config
         saveDefaultConfig();
         
         // Setup Vault economy integration
         setupEconomy();
         
-        // Initialize managers
+        // Load the config before any loader threads read it
+        getConfig();
+        
+        // Managers register their data files with the shared background writer
+        persistenceService = new PersistenceService(this);
+        
+        // Create the managers on the main thread, so their files are registered in a fixed order
         storageManager = new StorageManager(this);
         economy = new ClanEconomy(this);
         warManager = new WarManager(this);
         progressionManager = new ProgressionManager(this);
         achievementManager = new AchievementManager(this);
-        territoryMap = new TerritoryMap(this);
         reputationManager = new ReputationManager(this);
         skillManager = new SkillManager(this);
+        badgeManager = new BadgeManager(this);
+        bannerManager = new BannerManager(this);
+        bountyManager = new BountyManager(this);
+        
+        // Only parsing the data files runs in parallel; the loaders do not touch the Bukkit API
+        ParallelDataStage loadStage = new ParallelDataStage(this, "DataLoad", ParallelDataStage.getConfiguredThreads(this));
+        loadStage.submit("StorageManager", storageManager::load);
+        loadStage.submit("ClanEconomy", economy::load);
+        loadStage.submit("WarManager", warManager::loadWars);
+        loadStage.submit("AchievementManager", achievementManager::load);
+        loadStage.submit("ReputationManager", reputationManager::load);
+        loadStage.submit("SkillManager", skillManager::load);
+        loadStage.submit("BadgeManager", badgeManager::load);
+        loadStage.submit("BannerManager", bannerManager::load);
+        loadStage.submit("BountyManager", bountyManager::loadBounties);
+        
+        if (!loadStage.await(getConfig().getLong("storage.parallel_io.load_timeout_seconds", 120))) {
+            getLogger().severe("Could not load clan data, disabling plugin!");
+            getServer().getPluginManager().disablePlugin(this);
+            return;
+        }
+        
+        // Scheduled tasks are started on the main thread once everything is loaded
+        storageManager.start();
+        skillManager.start();
+        badgeManager.start();
+        bountyManager.start();
+        persistenceService.start();
+        
+        backupManager = new BackupManager(this);
+        backupManager.start();
+        
+        // Compare main-thread save costs once the server has finished starting
+        if (getConfig().getBoolean("storage.persistence.benchmark_on_start", false)) {
+            getServer().getScheduler().runTask(this, persistenceService::benchmark);
+        }
+        if (getConfig().getBoolean("storage.territory_index.benchmark_on_start", false)) {
+            getServer().getScheduler().runTask(this, () -> new TerritoryIndexBenchmark(getLogger()).run());
+        }
+        if (getConfig().getBoolean("storage.territory_index.connectivity_benchmark_on_start", false)) {
+            getServer().getScheduler().runTask(this, () -> new TerritoryConnectivityBenchmark(getLogger()).run());
+        }
+        if (getConfig().getBoolean("storage.territory_index.heap_benchmark_on_start", false)) {
+            getServer().getScheduler().runTask(this, () -> new TerritoryHeapBenchmark(getLogger()).run());
+        }
+        
+        // Keep per-player data resident for players who are already online (plugin reload)
+        for (Player player : getServer().getOnlinePlayers()) {
+            skillManager.markMemberOnline(player.getUniqueId());
+            badgeManager.markPlayerOnline(player.getUniqueId());
+        }
+        
+        // Initialize managers
+        territoryMap = new TerritoryMap(this);
         nametagManager = new NametagManager(this);
         sidebarManager = new SidebarManager(this);
         playtimeRewardManager = new PlaytimeRewardManager(this);
+        territoryUpkeepManager = new TerritoryUpkeepManager(this);
+        raidManager = new RaidManager(this);
         
         // Initialize new features
-        badgeManager = new BadgeManager(this);
         recruitmentMiniGame = new RecruitmentMiniGame(this);
         territoryConquestVisualizer = new TerritoryConquestVisualizer(this);
         webhookManager = new WebhookManager(this);
-        bannerManager = new BannerManager(this);
-        clanShop = new ClanShop(this);
-        bountyManager = new BountyManager(this);
+        clanShop = new ClanShop(this); // Writes default items into config.yml, so not loaded in parallel
         
         // Create command handlers
         ClanCommand clanCommand = new ClanCommand(this);
@@ -172,91 +248,112 @@ public class ClanPlugin extends JavaPlugin {
             playtimeRewardManager.processRewards();
         }, 20 * 60, 20 * 60); // Run every minute (20 ticks * 60)
         
+        // Schedule territory upkeep billing
+        territoryUpkeepManager.start();
+        
         getLogger().info("Clan Plugin has been enabled!");
     }
 
     @Override
     public void onDisable() {
-        // Save all clan data
-        if (storageManager != null) {
-            getLogger().info("Saving all clan data...");
-            storageManager.saveAllData();
+        // Clean up webhook connections
+        if (webhookManager != null) {
+            getLogger().info("Shutting down webhook connections...");
+            webhookManager.shutdown();
         }
         
-        // Save skill data
-        if (skillManager != null) {
-            getLogger().info("Saving all member skills...");
-            skillManager.saveMemberSkills();
+        // Clean up banner manager (despawns holograms, so stays on the main thread)
+        if (bannerManager != null) {
+            getLogger().info("Saving banner data and despawning holograms...");
+            bannerManager.shutdown();
         }
         
-        // Save territory data
+        // Cancel all pending tasks
+        getServer().getScheduler().cancelTasks(this);
+        
+        // End running raids so the territories they weakened are saved with the rest
+        if (raidManager != null) {
+            raidManager.shutdown();
+        }
+        
+        // Mark the clan and territory files as changed so the flush below snapshots them
+        if (storageManager != null) {
+            storageManager.prepareShutdown();
+        }
         if (territoryMap != null) {
-            getLogger().info("Saving territory data...");
             territoryMap.saveAllTerritories();
         }
         
-        // Save reputation data
-        if (reputationManager != null) {
-            getLogger().info("Saving reputation data...");
-            reputationManager.saveReputationData();
+        // Snapshot changed manager files on the main thread before they are written
+        if (persistenceService != null) {
+            persistenceService.flush();
         }
         
-        // Save achievement data
-        if (achievementManager != null) {
-            getLogger().info("Saving achievement data...");
-            achievementManager.saveAchievements();
+        // Every manager writes its own file, so they are flushed in parallel
+        ParallelDataStage saveStage = new ParallelDataStage(this, "DataSave", ParallelDataStage.getConfiguredThreads(this));
+        
+        // Save all clan data
+        if (storageManager != null) {
+            saveStage.submit("StorageManager", storageManager::shutdown);
+        }
+        
+        // Save skill data
+        if (skillManager != null) {
+            saveStage.submit("SkillManager", skillManager::shutdown);
         }
         
         // Save badge data
         if (badgeManager != null) {
-            getLogger().info("Saving badge data...");
-            badgeManager.saveOnDisable();
+            saveStage.submit("BadgeManager", badgeManager::saveOnDisable);
         }
         
         // Save mini-game data
         if (recruitmentMiniGame != null) {
-            getLogger().info("Saving recruitment mini-game data...");
-            recruitmentMiniGame.saveData();
-        }
-        
-        // Clean up webhook connections
-        if (webhookManager != null) {
-            getLogger().info("Shutting down webhook connections...");
-            webhookManager.shutdown();
+            saveStage.submit("RecruitmentMiniGame", recruitmentMiniGame::saveData);
         }
         
-        // Clean up banner manager
-        if (bannerManager != null) {
-            getLogger().info("Saving banner data and despawning holograms...");
-            bannerManager.shutdown();
-        }
-        
-        // Cancel all pending tasks
-        getServer().getScheduler().cancelTasks(this);
-        
         // Save clan shop data
         if (clanShop != null) {
-            getLogger().info("Saving clan shop data...");
-            clanShop.saveShopData();
+            saveStage.submit("ClanShop", clanShop::saveShopData);
         }
         
-        // Save bounty data
-        if (bountyManager != null) {
-            getLogger().info("Saving bounty data...");
-            bountyManager.saveBounties();
+        // Write clan, territory, war, economy, reputation, achievement, badge pool, banner, bounty and shop purchase data
+        if (persistenceService != null) {
+            saveStage.submit("PersistenceService", persistenceService::awaitWrites);
         }
         
         // Save emotes data (static utility class)
-        getLogger().info("Saving emotes data...");
-        try {
-            EmoteUtils.saveEmotes();
-        } catch (Exception e) {
-            getLogger().warning("Error saving emotes: " + e.getMessage());
+        saveStage.submit("Emotes", EmoteUtils::saveEmotes);
+        
+        if (!saveStage.await(getConfig().getLong("storage.parallel_io.shutdown_timeout_seconds", 30))) {
+            getLogger().severe("Some clan data could not be saved before the shutdown timeout!");
         }
         
+        // Drop the shared names and cached outlines so a reload starts from the clans that still exist
+        Territory.clearNames();
+        TerritoryEffectUtils.clearCache();
+        
         getLogger().info("Clan Plugin has been disabled!");
     }
     
+    /**
+     * Get the shared background writer for manager data files.
+     * 
+     * @return The persistence service instance
+     */
+    public PersistenceService getPersistenceService() {
+        return persistenceService;
+    }
+    
+    /**
+     * Get the incremental backup manager.
+     * 
+     * @return The backup manager instance
+     */
+    public BackupManager getBackupManager() {
+        return backupManager;
+    }
+    
     /**
      * Get the storage manager for clans.
      * 
@@ -284,6 +381,15 @@ public class ClanPlugin extends JavaPlugin {
         return warManager;
     }
     
+    /**
+     * Get the raid manager for clan raids.
+     * 
+     * @return The raid manager instance
+     */
+    public RaidManager getRaidManager() {
+        return raidManager;
+    }
+    
     /**
      * Get the progression manager for clan leveling.
      * 
@@ -374,6 +480,15 @@ public class ClanPlugin extends JavaPlugin {
         return playtimeRewardManager;
     }
     
+    /**
+     * Get the territory upkeep manager.
+     * 
+     * @return The territory upkeep manager instance
+     */
+    public TerritoryUpkeepManager getTerritoryUpkeepManager() {
+        return territoryUpkeepManager;
+    }
+    
     /**
      * Get the badge manager for clan member badges.
      *
@@ -2,6 +2,7 @@ package com.minecraft.clanplugin.achievements;
 
 import com.minecraft.clanplugin.ClanPlugin;
 import com.minecraft.clanplugin.models.Clan;
+import com.minecraft.clanplugin.storage.PersistenceService;
 import com.minecraft.clanplugin.utils.AnimationUtils;
 import com.minecraft.clanplugin.utils.MessageUtils;
 import org.bukkit.ChatColor;
@@ -26,6 +27,7 @@ public class AchievementManager {
     private Map<String, Achievement> achievements;
     private File achievementsFile;
     private FileConfiguration achievementsConfig;
+    private PersistenceService.Registration persistence;
     
     /**
      * Creates a new achievement manager.
@@ -71,9 +73,16 @@ public class AchievementManager {
             }
         }
         
+        this.persistence = plugin.getPersistenceService().register("Achievements", achievementsFile, 
+                () -> PersistenceService.copyOf(achievementsConfig));
+    }
+    
+    /**
+     * Reads achievements.yml. Runs on a loader thread while the plugin is enabled,
+     * after the constructor registered the file on the main thread.
+     */
+    public void load() {
         this.achievementsConfig = YamlConfiguration.loadConfiguration(achievementsFile);
-        
-        // Load achievements
         loadAchievements();
     }
     
@@ -453,14 +462,9 @@ public class AchievementManager {
     }
     
     /**
-     * Saves the achievements configuration.
+     * Marks the achievements configuration as changed so it is saved in the background.
      */
     public void saveAchievements() {
-        try {
-            achievementsConfig.save(achievementsFile);
-        } catch (IOException e) {
-            plugin.getLogger().severe("Could not save achievements data!");
-            e.printStackTrace();
-        }
+        persistence.markDirty();
     }
 }
\ No newline at end of file
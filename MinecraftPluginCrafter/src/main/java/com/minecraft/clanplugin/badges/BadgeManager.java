@@ -4,6 +4,8 @@ import com.minecraft.clanplugin.ClanPlugin;
 import com.minecraft.clanplugin.models.Clan;
 import com.minecraft.clanplugin.models.ClanMember;
 import com.minecraft.clanplugin.models.ClanRole;
+import com.minecraft.clanplugin.storage.PersistenceService;
+import com.minecraft.clanplugin.storage.PlayerDataStore;
 import com.minecraft.clanplugin.utils.ItemUtils;
 import com.minecraft.clanplugin.utils.MessageUtils;
 import org.bukkit.Bukkit;
@@ -30,11 +32,11 @@ import java.util.stream.Collectors;
 public class BadgeManager {
 
     private final ClanPlugin plugin;
-    private final Map<UUID, Set<MemberBadge>> playerBadges;
-    private final Map<UUID, MemberBadge> activeBadges;
+    private final PlayerDataStore<PlayerBadges> playerBadges;
     private final Map<String, Set<MemberBadge>> clanBadgePools;
     private final File badgesFile;
     private FileConfiguration badgesConfig;
+    private final PersistenceService.Registration persistence;
     
     /**
      * Creates a new badge manager.
@@ -43,15 +45,46 @@ public class BadgeManager {
      */
     public BadgeManager(ClanPlugin plugin) {
         this.plugin = plugin;
-        this.playerBadges = new HashMap<>();
-        this.activeBadges = new HashMap<>();
+        this.playerBadges = new PlayerDataStore<>(plugin, "Badges", 
+                new File(plugin.getDataFolder(), "playerdata" + File.separator + "badges"),
+                new PlayerDataStore.Codec<PlayerBadges>() {
+                    @Override
+                    public PlayerBadges create(UUID playerUuid) {
+                        return new PlayerBadges(playerUuid);
+                    }
+                    
+                    @Override
+                    public PlayerBadges read(UUID playerUuid, ConfigurationSection section) {
+                        return readPlayerBadges(playerUuid, section);
+                    }
+                    
+                    @Override
+                    public void write(PlayerBadges badges, ConfigurationSection section) {
+                        writePlayerBadges(badges, section);
+                    }
+                });
         this.clanBadgePools = new HashMap<>();
         this.badgesFile = new File(plugin.getDataFolder(), "badges.yml");
-        
-        // Load badges from file
+        this.persistence = plugin.getPersistenceService().register("Badges", badgesFile, 
+                () -> PersistenceService.copyOf(badgesConfig));
+    }
+    
+    /**
+     * Reads badges.yml. Runs on a loader thread while the plugin is enabled,
+     * after the constructor registered the file on the main thread.
+     */
+    public void load() {
         loadBadges();
     }
     
+    /**
+     * Starts writing changed player badges in the background. Must be called
+     * on the main thread, once the badges are loaded.
+     */
+    public void start() {
+        playerBadges.start();
+    }
+    
     /**
      * Load badges from configuration.
      */
@@ -71,52 +104,23 @@ public class BadgeManager {
             badgesConfig = YamlConfiguration.loadConfiguration(badgesFile);
         }
         
-        // Load player badges
+        // Move player badges stored in badges.yml by older versions into per-player files
         ConfigurationSection playerSection = badgesConfig.getConfigurationSection("players");
         if (playerSection != null) {
             for (String playerUuidStr : playerSection.getKeys(false)) {
                 try {
                     UUID playerUuid = UUID.fromString(playerUuidStr);
-                    ConfigurationSection badgesSection = playerSection.getConfigurationSection(playerUuidStr + ".badges");
-                    
-                    if (badgesSection != null) {
-                        Set<MemberBadge> badges = new HashSet<>();
-                        
-                        for (String badgeIdStr : badgesSection.getKeys(false)) {
-                            ConfigurationSection badgeSection = badgesSection.getConfigurationSection(badgeIdStr);
-                            if (badgeSection != null) {
-                                String name = badgeSection.getString("name", "Badge");
-                                String description = badgeSection.getString("description", "A clan badge");
-                                MemberBadge.BadgeType type = 
-                                    MemberBadge.BadgeType.valueOf(badgeSection.getString("type", "CUSTOM"));
-                                int tier = badgeSection.getInt("tier", 1);
-                                ChatColor color = ChatColor.valueOf(badgeSection.getString("color", "WHITE"));
-                                Material iconMaterial = 
-                                    Material.valueOf(badgeSection.getString("material", "EMERALD"));
-                                boolean hidden = badgeSection.getBoolean("hidden", false);
-                                
-                                MemberBadge badge = new MemberBadge(name, description, type, tier, color, iconMaterial, hidden);
-                                badges.add(badge);
-                            }
-                        }
-                        
-                        playerBadges.put(playerUuid, badges);
-                    }
-                    
-                    // Load active badge if exists
-                    String activeBadgeId = playerSection.getString(playerUuidStr + ".activeBadge");
-                    if (activeBadgeId != null && !activeBadgeId.isEmpty()) {
-                        for (MemberBadge badge : playerBadges.get(playerUuid)) {
-                            if (badge.getBadgeId().toString().equals(activeBadgeId)) {
-                                activeBadges.put(playerUuid, badge);
-                                break;
-                            }
-                        }
+                    ConfigurationSection section = playerSection.getConfigurationSection(playerUuidStr);
+                    if (section != null) {
+                        playerBadges.writeNow(playerUuid, readPlayerBadges(playerUuid, section));
                     }
                 } catch (IllegalArgumentException e) {
                     plugin.getLogger().warning("Invalid UUID or badge data for player: " + playerUuidStr);
                 }
             }
+            
+            badgesConfig.set("players", null);
+            saveBadges();
         }
         
         // Load clan badge pools
@@ -131,18 +135,7 @@ public class BadgeManager {
                     for (String badgeIdStr : badgesSection.getKeys(false)) {
                         ConfigurationSection badgeSection = badgesSection.getConfigurationSection(badgeIdStr);
                         if (badgeSection != null) {
-                            String name = badgeSection.getString("name", "Badge");
-                            String description = badgeSection.getString("description", "A clan badge");
-                            MemberBadge.BadgeType type = 
-                                MemberBadge.BadgeType.valueOf(badgeSection.getString("type", "CUSTOM"));
-                            int tier = badgeSection.getInt("tier", 1);
-                            ChatColor color = ChatColor.valueOf(badgeSection.getString("color", "WHITE"));
-                            Material iconMaterial = 
-                                Material.valueOf(badgeSection.getString("material", "EMERALD"));
-                            boolean hidden = badgeSection.getBoolean("hidden", false);
-                            
-                            MemberBadge badge = new MemberBadge(name, description, type, tier, color, iconMaterial, hidden);
-                            badges.add(badge);
+                            badges.add(readBadge(badgeSection));
                         }
                     }
                     
@@ -182,9 +175,106 @@ public class BadgeManager {
         
         MemberBadge contributorBadge = new MemberBadge(MemberBadge.BadgeType.TOP_CONTRIBUTOR, 1, null);
         saveBadgeToSection(defaultClanSection, contributorBadge);
+    }
+    
+    /**
+     * Read a badge from a configuration section.
+     * 
+     * @param badgeSection The section holding the badge
+     * @return The badge
+     */
+    private MemberBadge readBadge(ConfigurationSection badgeSection) {
+        String name = badgeSection.getString("name", "Badge");
+        String description = badgeSection.getString("description", "A clan badge");
+        MemberBadge.BadgeType type = 
+            MemberBadge.BadgeType.valueOf(badgeSection.getString("type", "CUSTOM"));
+        int tier = badgeSection.getInt("tier", 1);
+        ChatColor color = ChatColor.valueOf(badgeSection.getString("color", "WHITE"));
+        Material iconMaterial = 
+            Material.valueOf(badgeSection.getString("material", "EMERALD"));
+        boolean hidden = badgeSection.getBoolean("hidden", false);
+        
+        return new MemberBadge(name, description, type, tier, color, iconMaterial, hidden);
+    }
+    
+    /**
+     * Read a player's badges from a configuration section.
+     * 
+     * @param playerUuid The player's UUID
+     * @param section The section holding the player's badges
+     * @return The player's badges
+     */
+    private PlayerBadges readPlayerBadges(UUID playerUuid, ConfigurationSection section) {
+        PlayerBadges data = new PlayerBadges(playerUuid);
+        String activeBadgeId = section.getString("activeBadge");
+        
+        ConfigurationSection badgesSection = section.getConfigurationSection("badges");
+        if (badgesSection != null) {
+            for (String badgeIdStr : badgesSection.getKeys(false)) {
+                ConfigurationSection badgeSection = badgesSection.getConfigurationSection(badgeIdStr);
+                if (badgeSection == null) {
+                    continue;
+                }
+                
+                try {
+                    MemberBadge badge = readBadge(badgeSection);
+                    data.getBadges().add(badge);
+                    
+                    // Loaded badges get a new ID, so match the active badge by its stored key
+                    if (badgeIdStr.equals(activeBadgeId)) {
+                        data.setActiveBadge(badge);
+                    }
+                } catch (IllegalArgumentException e) {
+                    plugin.getLogger().warning("Invalid badge data for player " + playerUuid + ": " + badgeIdStr);
+                }
+            }
+        }
+        
+        return data;
+    }
+    
+    /**
+     * Write a player's badges to a configuration section.
+     * 
+     * @param data The player's badges
+     * @param section The section to write to
+     */
+    private void writePlayerBadges(PlayerBadges data, ConfigurationSection section) {
+        ConfigurationSection badgesSection = section.createSection("badges");
+        for (MemberBadge badge : data.getBadges()) {
+            saveBadgeToSection(badgesSection, badge);
+        }
         
-        // Create players section (will be populated as players earn badges)
-        badgesConfig.createSection("players");
+        if (data.getActiveBadge() != null) {
+            section.set("activeBadge", data.getActiveBadge().getBadgeId().toString());
+        }
+    }
+    
+    /**
+     * Load a connecting player's badges. Called off the main thread.
+     * 
+     * @param playerUuid The player's UUID
+     */
+    public void preloadPlayer(UUID playerUuid) {
+        playerBadges.preload(playerUuid);
+    }
+    
+    /**
+     * Mark an online player's badges as resident.
+     * 
+     * @param playerUuid The player's UUID
+     */
+    public void markPlayerOnline(UUID playerUuid) {
+        playerBadges.markOnline(playerUuid);
+    }
+    
+    /**
+     * Save a player's badges if they changed and remove them from memory.
+     * 
+     * @param playerUuid The player's UUID
+     */
+    public void unloadPlayer(UUID playerUuid) {
+        playerBadges.unload(playerUuid);
     }
     
     /**
@@ -205,14 +295,10 @@ public class BadgeManager {
     }
     
     /**
-     * Save badges to configuration.
+     * Mark the badge configuration as changed so it is saved in the background.
      */
     public void saveBadges() {
-        try {
-            badgesConfig.save(badgesFile);
-        } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "Could not save badges to " + badgesFile, e);
-        }
+        persistence.markDirty();
     }
     
     /**
@@ -222,7 +308,7 @@ public class BadgeManager {
      * @return Set of all badges owned
      */
     public Set<MemberBadge> getPlayerBadges(UUID playerUuid) {
-        return playerBadges.getOrDefault(playerUuid, new HashSet<>());
+        return playerBadges.get(playerUuid).getBadges();
     }
     
     /**
@@ -245,7 +331,7 @@ public class BadgeManager {
      * @return The active badge, or null if none is active
      */
     public MemberBadge getActiveBadge(UUID playerUuid) {
-        return activeBadges.get(playerUuid);
+        return playerBadges.get(playerUuid).getActiveBadge();
     }
     
     /**
@@ -263,14 +349,8 @@ public class BadgeManager {
             return false;
         }
         
-        activeBadges.put(playerUuid, badge);
-        
-        // Update configuration
-        ConfigurationSection playerSection = badgesConfig.getConfigurationSection("players");
-        if (playerSection != null) {
-            playerSection.set(playerUuid.toString() + ".activeBadge", badge.getBadgeId().toString());
-            saveBadges();
-        }
+        playerBadges.get(playerUuid).setActiveBadge(badge);
+        playerBadges.markDirty(playerUuid);
         
         return true;
     }
@@ -281,14 +361,8 @@ public class BadgeManager {
      * @param playerUuid The player's UUID
      */
     public void clearActiveBadge(UUID playerUuid) {
-        activeBadges.remove(playerUuid);
-        
-        // Update configuration
-        ConfigurationSection playerSection = badgesConfig.getConfigurationSection("players");
-        if (playerSection != null) {
-            playerSection.set(playerUuid.toString() + ".activeBadge", null);
-            saveBadges();
-        }
+        playerBadges.get(playerUuid).setActiveBadge(null);
+        playerBadges.markDirty(playerUuid);
     }
     
     /**
@@ -300,7 +374,7 @@ public class BadgeManager {
      * @return True if the badge was awarded successfully
      */
     public boolean awardBadge(UUID playerUuid, MemberBadge badge, boolean notifyPlayer) {
-        Set<MemberBadge> badges = playerBadges.getOrDefault(playerUuid, new HashSet<>());
+        Set<MemberBadge> badges = getPlayerBadges(playerUuid);
         
         // Don't award the same badge twice
         for (MemberBadge existing : badges) {
@@ -311,22 +385,7 @@ public class BadgeManager {
         
         // Add the badge
         badges.add(badge);
-        playerBadges.put(playerUuid, badges);
-        
-        // Update configuration
-        ConfigurationSection playerSection = badgesConfig.getConfigurationSection("players");
-        if (playerSection == null) {
-            playerSection = badgesConfig.createSection("players");
-        }
-        
-        String playerKey = playerUuid.toString();
-        ConfigurationSection playerBadgesSection = playerSection.getConfigurationSection(playerKey + ".badges");
-        if (playerBadgesSection == null) {
-            playerBadgesSection = playerSection.createSection(playerKey + ".badges");
-        }
-        
-        saveBadgeToSection(playerBadgesSection, badge);
-        saveBadges();
+        playerBadges.markDirty(playerUuid);
         
         // Notify the player if they're online
         if (notifyPlayer) {
@@ -800,6 +859,6 @@ public class BadgeManager {
      * Clean up resources when the plugin is disabled.
      */
     public void saveOnDisable() {
-        saveBadges();
+        playerBadges.drain();
     }
 }
\ No newline at end of file
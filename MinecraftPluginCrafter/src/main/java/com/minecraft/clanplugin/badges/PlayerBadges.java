@@ -0,0 +1,61 @@
+package com.minecraft.clanplugin.badges;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The badges owned by a single player and the badge they display.
+ */
+public class PlayerBadges {
+    
+    private final UUID playerUuid;
+    private final Set<MemberBadge> badges;
+    private MemberBadge activeBadge;
+    
+    /**
+     * Create an empty badge collection for a player.
+     *
+     * @param playerUuid The player's UUID
+     */
+    public PlayerBadges(UUID playerUuid) {
+        this.playerUuid = playerUuid;
+        this.badges = new HashSet<>();
+    }
+    
+    /**
+     * Get the player's UUID.
+     *
+     * @return The player's UUID
+     */
+    public UUID getPlayerUuid() {
+        return playerUuid;
+    }
+    
+    /**
+     * Get the badges owned by the player.
+     *
+     * @return The owned badges
+     */
+    public Set<MemberBadge> getBadges() {
+        return badges;
+    }
+    
+    /**
+     * Get the badge the player displays.
+     *
+     * @return The active badge, or null if none is active
+     */
+    public MemberBadge getActiveBadge() {
+        return activeBadge;
+    }
+    
+    /**
+     * Set the badge the player displays.
+     *
+     * @param activeBadge The active badge, or null to clear it
+     */
+    public void setActiveBadge(MemberBadge activeBadge) {
+        this.activeBadge = activeBadge;
+    }
+}
@@ -2,6 +2,7 @@ package com.minecraft.clanplugin.bounty;
 
 import com.minecraft.clanplugin.ClanPlugin;
 import com.minecraft.clanplugin.models.Bounty;
+import com.minecraft.clanplugin.storage.PersistenceService;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.OfflinePlayer;
@@ -25,6 +26,7 @@ public class BountyManager {
     private final Map<UUID, List<Bounty>> activeBounties; // Target UUID -> List of bounties
     private final List<Bounty> recentlyClaimedBounties; // For history
     private final File bountyFile;
+    private final PersistenceService.Registration persistence;
     
     // Configurable settings
     private double minimumBountyAmount;
@@ -48,12 +50,16 @@ public class BountyManager {
         this.bountyFile = new File(plugin.getDataFolder(), "bounties.yml");
         
         loadConfig();
-        loadBounties();
         
-        // Schedule regular save task
-        Bukkit.getScheduler().runTaskTimer(plugin, this::saveBounties, 6000L, 6000L); // Every 5 minutes
-        
-        // Schedule bounty expiry check
+        // Changes are written in the background
+        this.persistence = plugin.getPersistenceService().register("Bounties", bountyFile, this::snapshotBounties);
+    }
+    
+    /**
+     * Schedules the bounty expiry check. Must be called on the main thread,
+     * once the bounties are loaded.
+     */
+    public void start() {
         Bukkit.getScheduler().runTaskTimer(plugin, this::checkExpiredBounties, 12000L, 12000L); // Every 10 minutes
     }
     
@@ -455,52 +461,56 @@ public class BountyManager {
     }
     
     /**
-     * Saves all bounties to file.
+     * Marks bounties as changed so they are saved to file in the background.
      */
     public void saveBounties() {
-        try {
-            FileConfiguration config = new YamlConfiguration();
+        persistence.markDirty();
+    }
+    
+    /**
+     * Builds the bounty file contents for the background writer.
+     * 
+     * @return The bounty data to write
+     */
+    private YamlConfiguration snapshotBounties() {
+        YamlConfiguration config = new YamlConfiguration();
+        
+        // Save active bounties
+        ConfigurationSection activeBountiesSection = config.createSection("active_bounties");
+        for (Map.Entry<UUID, List<Bounty>> entry : activeBounties.entrySet()) {
+            UUID targetUUID = entry.getKey();
+            List<Bounty> bounties = entry.getValue();
             
-            // Save active bounties
-            ConfigurationSection activeBountiesSection = config.createSection("active_bounties");
-            for (Map.Entry<UUID, List<Bounty>> entry : activeBounties.entrySet()) {
-                UUID targetUUID = entry.getKey();
-                List<Bounty> bounties = entry.getValue();
-                
-                ConfigurationSection targetSection = activeBountiesSection.createSection(targetUUID.toString());
-                int index = 0;
-                
-                for (Bounty bounty : bounties) {
-                    if (bounty.isActive()) {
-                        ConfigurationSection bountySection = targetSection.createSection(String.valueOf(index++));
-                        
-                        bountySection.set("placer", bounty.getPlacerUUID().toString());
-                        bountySection.set("amount", bounty.getAmount());
-                        bountySection.set("timestamp", bounty.getTimestamp());
-                    }
+            ConfigurationSection targetSection = activeBountiesSection.createSection(targetUUID.toString());
+            int index = 0;
+            
+            for (Bounty bounty : bounties) {
+                if (bounty.isActive()) {
+                    ConfigurationSection bountySection = targetSection.createSection(String.valueOf(index++));
+                    
+                    bountySection.set("placer", bounty.getPlacerUUID().toString());
+                    bountySection.set("amount", bounty.getAmount());
+                    bountySection.set("timestamp", bounty.getTimestamp());
                 }
             }
+        }
+        
+        // Save recently claimed bounties
+        ConfigurationSection claimedBountiesSection = config.createSection("claimed_bounties");
+        for (int i = 0; i < Math.min(recentlyClaimedBounties.size(), 50); i++) {
+            Bounty bounty = recentlyClaimedBounties.get(i);
             
-            // Save recently claimed bounties
-            ConfigurationSection claimedBountiesSection = config.createSection("claimed_bounties");
-            for (int i = 0; i < Math.min(recentlyClaimedBounties.size(), 50); i++) {
-                Bounty bounty = recentlyClaimedBounties.get(i);
-                
-                ConfigurationSection bountySection = claimedBountiesSection.createSection(String.valueOf(i));
-                
-                bountySection.set("target", bounty.getTargetUUID().toString());
-                bountySection.set("placer", bounty.getPlacerUUID().toString());
-                bountySection.set("amount", bounty.getAmount());
-                bountySection.set("timestamp", bounty.getTimestamp());
-                bountySection.set("claimed_by", bounty.getClaimedBy().toString());
-                bountySection.set("claimed_timestamp", bounty.getClaimedTimestamp());
-            }
+            ConfigurationSection bountySection = claimedBountiesSection.createSection(String.valueOf(i));
             
-            // Save to file
-            config.save(bountyFile);
-        } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "Could not save bounty data", e);
+            bountySection.set("target", bounty.getTargetUUID().toString());
+            bountySection.set("placer", bounty.getPlacerUUID().toString());
+            bountySection.set("amount", bounty.getAmount());
+            bountySection.set("timestamp", bounty.getTimestamp());
+            bountySection.set("claimed_by", bounty.getClaimedBy().toString());
+            bountySection.set("claimed_timestamp", bounty.getClaimedTimestamp());
         }
+        
+        return config;
     }
     
     /**
@@ -7,6 +7,9 @@ import com.minecraft.clanplugin.models.ClanRole;
 import com.minecraft.clanplugin.skills.ClanSkill;
 import com.minecraft.clanplugin.skills.MemberSkills;
 import com.minecraft.clanplugin.skills.SkillTree;
+import com.minecraft.clanplugin.storage.BackupManager;
+import com.minecraft.clanplugin.storage.ClanOperations;
+import com.minecraft.clanplugin.storage.PersistenceService;
 import com.minecraft.clanplugin.wars.ClanWar;
 import com.minecraft.clanplugin.utils.ItemUtils;
 import com.minecraft.clanplugin.utils.MessageUtils;
@@ -22,6 +25,7 @@ import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -61,6 +65,8 @@ public class ClanCommand implements CommandExecutor {
                 return handleJoin(player, args);
             case "leave":
                 return handleLeave(player);
+            case "disband":
+                return handleDisband(player, args);
             case "info":
                 return handleInfo(player, args);
             case "invite":
@@ -127,6 +133,8 @@ public class ClanCommand implements CommandExecutor {
                 return handleLevelCommand(player, args);
             case "skills":
                 return handleSkills(player, args);
+            case "admin":
+                return handleAdmin(player, args);
             case "help":
             default:
                 sendHelpMessage(player);
@@ -200,6 +208,7 @@ public class ClanCommand implements CommandExecutor {
         ClanMember member = new ClanMember(player.getUniqueId(), player.getName(), ClanRole.MEMBER);
         clan.addMember(member);
         clan.removeInvite(player.getUniqueId());
+        plugin.getStorageManager().updatePlayerClan(player.getUniqueId(), clan);
         
         player.sendMessage(ChatColor.GREEN + "You have joined clan " + ChatColor.GOLD + clanName + ChatColor.GREEN + "!");
         
@@ -228,6 +237,7 @@ public class ClanCommand implements CommandExecutor {
         
         // Remove player from clan
         clan.removeMember(player.getUniqueId());
+        plugin.getStorageManager().updatePlayerClan(player.getUniqueId(), null);
         player.sendMessage(ChatColor.GREEN + "You have left clan " + ChatColor.GOLD + clan.getName() + ChatColor.GREEN + "!");
         
         // Notify online clan members
@@ -236,6 +246,42 @@ public class ClanCommand implements CommandExecutor {
         return true;
     }
 
+    /**
+     * Handles the disband command. The leader must confirm, as disbanding
+     * also removes the clan's territories, wars and bank balance.
+     * 
+     * @param player The player executing the command
+     * @param args The command arguments
+     * @return True if the command was handled
+     */
+    private boolean handleDisband(Player player, String[] args) {
+        Clan clan = plugin.getStorageManager().getPlayerClan(player.getUniqueId());
+        
+        if (clan == null) {
+            player.sendMessage(ChatColor.RED + "You are not in a clan!");
+            return true;
+        }
+        
+        if (!clan.isLeader(player.getUniqueId())) {
+            player.sendMessage(ChatColor.RED + "Only the clan leader can disband the clan!");
+            return true;
+        }
+        
+        if (args.length < 2 || !args[1].equalsIgnoreCase("confirm")) {
+            player.sendMessage(ChatColor.YELLOW + "This removes your clan, its territories and its bank balance for good.");
+            player.sendMessage(ChatColor.YELLOW + "Type " + ChatColor.GOLD + "/clan disband confirm" + ChatColor.YELLOW + " to continue.");
+            return true;
+        }
+        
+        if (!new ClanOperations(plugin).deleteClan(clan)) {
+            player.sendMessage(ChatColor.RED + "The clan could not be disbanded. Nothing was changed; check the server log.");
+            return true;
+        }
+        
+        MessageUtils.notifyClan(clan, ChatColor.RED + "Clan " + clan.getName() + " has been disbanded by " + player.getName() + ".");
+        return true;
+    }
+    
     private boolean handleInfo(Player player, String[] args) {
         Clan clan;
         
@@ -380,6 +426,7 @@ public class ClanCommand implements CommandExecutor {
         
         // Remove member from clan
         clan.removeMember(targetMember.getPlayerUUID());
+        plugin.getStorageManager().updatePlayerClan(targetMember.getPlayerUUID(), null);
         
         player.sendMessage(ChatColor.GREEN + "You have kicked " + targetMember.getPlayerName() + " from the clan.");
         
@@ -846,11 +893,251 @@ public class ClanCommand implements CommandExecutor {
         return true;
     }
 
+    /**
+     * Handles administrative storage commands.
+     * 
+     * @param player The player executing the command
+     * @param args The command arguments
+     * @return True if the command was handled
+     */
+    private boolean handleAdmin(Player player, String[] args) {
+        String usage = ChatColor.RED + "Usage: /clan admin <io|backup|delete|merge|bulk>";
+        if (args.length < 2) {
+            player.sendMessage(usage);
+            return true;
+        }
+        
+        String subCommand = args[1].toLowerCase();
+        String permission = subCommand.equals("io") || subCommand.equals("backup") ? "clan.admin.storage" : "clan.admin.manage";
+        if (!player.hasPermission(permission)) {
+            player.sendMessage(ChatColor.RED + "You don't have permission to use clan admin commands.");
+            return true;
+        }
+        
+        switch (subCommand) {
+            case "io":
+                return handleAdminIo(player);
+            case "backup":
+                return handleAdminBackup(player, args);
+            case "delete":
+                return handleAdminDelete(player, args);
+            case "merge":
+                return handleAdminMerge(player, args);
+            case "bulk":
+                return handleAdminBulk(player, args);
+            default:
+                player.sendMessage(usage);
+                return true;
+        }
+    }
+    
+    /**
+     * Deletes any clan, with its territories, wars and bank balance.
+     * 
+     * @param player The player executing the command
+     * @param args The command arguments
+     * @return True if the command was handled
+     */
+    private boolean handleAdminDelete(Player player, String[] args) {
+        if (args.length < 3) {
+            player.sendMessage(ChatColor.RED + "Usage: /clan admin delete <clan>");
+            return true;
+        }
+        
+        Clan clan = plugin.getStorageManager().getClan(args[2]);
+        if (clan == null) {
+            player.sendMessage(ChatColor.RED + "No clan found with name: " + args[2]);
+            return true;
+        }
+        
+        if (!new ClanOperations(plugin).deleteClan(clan)) {
+            player.sendMessage(ChatColor.RED + "Could not delete " + clan.getName() + ". Nothing was changed; check the server log.");
+            return true;
+        }
+        
+        player.sendMessage(ChatColor.GREEN + "Deleted clan " + ChatColor.GOLD + clan.getName() + ChatColor.GREEN + ".");
+        MessageUtils.notifyClan(clan, ChatColor.RED + "Your clan has been deleted by an administrator.");
+        return true;
+    }
+    
+    /**
+     * Merges one clan into another, moving members, territories and the bank
+     * balance.
+     * 
+     * @param player The player executing the command
+     * @param args The command arguments
+     * @return True if the command was handled
+     */
+    private boolean handleAdminMerge(Player player, String[] args) {
+        if (args.length < 4) {
+            player.sendMessage(ChatColor.RED + "Usage: /clan admin merge <from> <into>");
+            return true;
+        }
+        
+        Clan source = plugin.getStorageManager().getClan(args[2]);
+        Clan target = plugin.getStorageManager().getClan(args[3]);
+        if (source == null || target == null) {
+            player.sendMessage(ChatColor.RED + "No clan found with name: " + (source == null ? args[2] : args[3]));
+            return true;
+        }
+        if (source == target) {
+            player.sendMessage(ChatColor.RED + "A clan cannot be merged into itself.");
+            return true;
+        }
+        
+        int members = source.getMembers().size() + target.getMembers().size();
+        if (members > target.getMaxMembers()) {
+            player.sendMessage(ChatColor.RED + target.getName() + " only has room for " + target.getMaxMembers() + 
+                    " members, the merged clan would have " + members + ".");
+            return true;
+        }
+        
+        if (!new ClanOperations(plugin).mergeClans(source, target)) {
+            player.sendMessage(ChatColor.RED + "Could not merge the clans. Nothing was changed; check the server log.");
+            return true;
+        }
+        
+        player.sendMessage(ChatColor.GREEN + "Merged " + ChatColor.GOLD + source.getName() + ChatColor.GREEN + 
+                " into " + ChatColor.GOLD + target.getName() + ChatColor.GREEN + ".");
+        MessageUtils.notifyClan(target, ChatColor.GREEN + "Clan " + source.getName() + " has been merged into your clan.");
+        return true;
+    }
+    
+    /**
+     * Sets a numeric field on several clans, or on every clan with *.
+     * 
+     * @param player The player executing the command
+     * @param args The command arguments
+     * @return True if the command was handled
+     */
+    private boolean handleAdminBulk(Player player, String[] args) {
+        String usage = ChatColor.RED + "Usage: /clan admin bulk <" + String.join("|", ClanOperations.BULK_FIELDS) + 
+                "> <value> <clan...|*>";
+        if (args.length < 5 || !ClanOperations.BULK_FIELDS.contains(args[2].toLowerCase())) {
+            player.sendMessage(usage);
+            return true;
+        }
+        
+        int value;
+        try {
+            value = Integer.parseInt(args[3]);
+        } catch (NumberFormatException e) {
+            player.sendMessage(ChatColor.RED + "Invalid number: " + args[3]);
+            return true;
+        }
+        
+        Collection<Clan> clans;
+        if (args[4].equals("*")) {
+            clans = plugin.getStorageManager().getAllClans();
+        } else {
+            clans = new ArrayList<>();
+            for (int i = 4; i < args.length; i++) {
+                Clan clan = plugin.getStorageManager().getClan(args[i]);
+                if (clan == null) {
+                    player.sendMessage(ChatColor.RED + "No clan found with name: " + args[i]);
+                    return true;
+                }
+                clans.add(clan);
+            }
+        }
+        
+        if (!new ClanOperations(plugin).bulkSet(clans, args[2], value)) {
+            player.sendMessage(ChatColor.RED + "Could not update the clans. Nothing was changed; check the server log.");
+            return true;
+        }
+        
+        player.sendMessage(ChatColor.GREEN + "Set " + args[2].toLowerCase() + " to " + value + " for " + clans.size() + " clans.");
+        return true;
+    }
+    
+    /**
+     * Shows the background writer's queue depth, per-file write latency and
+     * the main-thread time spent publishing each file's snapshot.
+     * 
+     * @param player The player executing the command
+     * @return True if the command was handled
+     */
+    private boolean handleAdminIo(Player player) {
+        PersistenceService service = plugin.getPersistenceService();
+        
+        player.sendMessage(ChatColor.GOLD + "=== Background Data Writes ===");
+        player.sendMessage(ChatColor.YELLOW + "Queue depth: " + ChatColor.WHITE + service.getQueueDepth());
+        
+        for (PersistenceService.Registration registration : service.getRegistrations()) {
+            String line = ChatColor.YELLOW + registration.getName() + ": " + ChatColor.WHITE + 
+                    registration.getWrites() + " writes, " + 
+                    String.format("avg %.1fms, max %.1fms, last %.1fms, main thread %.2fms (max %.2fms)", 
+                            registration.getAverageWriteMillis(), 
+                            registration.getMaxWriteMillis(), 
+                            registration.getLastWriteMillis(), 
+                            registration.getLastSnapshotMillis(), 
+                            registration.getMaxSnapshotMillis());
+            
+            if (registration.getFailures() > 0) {
+                line += ChatColor.RED + ", " + registration.getFailures() + " failed";
+            }
+            if (registration.isDirty()) {
+                line += ChatColor.GRAY + " (changes pending)";
+            }
+            
+            player.sendMessage(line);
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Lists, takes or restores incremental backups of the plugin data folder.
+     * 
+     * @param player The player executing the command
+     * @param args The command arguments
+     * @return True if the command was handled
+     */
+    private boolean handleAdminBackup(Player player, String[] args) {
+        BackupManager backups = plugin.getBackupManager();
+        String usage = ChatColor.RED + "Usage: /clan admin backup <list|now|restore <id>>";
+        
+        if (args.length < 3) {
+            player.sendMessage(usage);
+            return true;
+        }
+        
+        switch (args[2].toLowerCase()) {
+            case "list":
+                List<BackupManager.BackupInfo> infos = backups.listBackups();
+                player.sendMessage(ChatColor.GOLD + "=== Clan Data Backups ===");
+                if (infos.isEmpty()) {
+                    player.sendMessage(ChatColor.GRAY + "No backups have been taken yet.");
+                }
+                for (BackupManager.BackupInfo info : infos) {
+                    player.sendMessage(ChatColor.YELLOW + info.getId() + ": " + ChatColor.WHITE + 
+                            info.getFileCount() + " files, " + (info.getTotalSize() / 1024) + "KB");
+                }
+                return true;
+            case "now":
+                player.sendMessage(ChatColor.YELLOW + "Taking a backup in the background...");
+                backups.backup(message -> player.sendMessage(ChatColor.GREEN + message));
+                return true;
+            case "restore":
+                if (args.length < 4) {
+                    player.sendMessage(usage);
+                    return true;
+                }
+                player.sendMessage(ChatColor.YELLOW + "Preparing backup " + args[3] + " for restore...");
+                backups.stageRestore(args[3], message -> player.sendMessage(ChatColor.GREEN + message));
+                return true;
+            default:
+                player.sendMessage(usage);
+                return true;
+        }
+    }
+    
     private void sendHelpMessage(Player player) {
         player.sendMessage(ChatColor.GOLD + "=== Clan Commands ===");
         player.sendMessage(ChatColor.YELLOW + "/clan create <name>" + ChatColor.WHITE + " - Create a new clan");
         player.sendMessage(ChatColor.YELLOW + "/clan join <name>" + ChatColor.WHITE + " - Join a clan (requires invitation)");
         player.sendMessage(ChatColor.YELLOW + "/clan leave" + ChatColor.WHITE + " - Leave your current clan");
+        player.sendMessage(ChatColor.YELLOW + "/clan disband" + ChatColor.WHITE + " - Disband your clan (leader only)");
         player.sendMessage(ChatColor.YELLOW + "/clan info [name]" + ChatColor.WHITE + " - View clan information");
         player.sendMessage(ChatColor.YELLOW + "/clan invite <player>" + ChatColor.WHITE + " - Invite a player to your clan");
         player.sendMessage(ChatColor.YELLOW + "/clan kick <player>" + ChatColor.WHITE + " - Kick a player from your clan");
@@ -4,8 +4,11 @@ import com.minecraft.clanplugin.ClanPlugin;
 import com.minecraft.clanplugin.models.Clan;
 import com.minecraft.clanplugin.models.ClanMember;
 import com.minecraft.clanplugin.models.ClanRole;
+import com.minecraft.clanplugin.models.Flag;
 import com.minecraft.clanplugin.models.Territory;
+import com.minecraft.clanplugin.models.TerritoryPermission;
 import com.minecraft.clanplugin.storage.TerritoryManager;
+import com.minecraft.clanplugin.storage.TerritoryPermissionManager;
 import org.bukkit.ChatColor;
 import org.bukkit.Chunk;
 import org.bukkit.command.Command;
@@ -13,7 +16,10 @@ import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -21,6 +27,15 @@ import java.util.UUID;
  */
 public class ClanTerritoryCommand implements CommandExecutor {
     
+    /** How far /territory info looks for the nearest claim, in chunks. */
+    private static final int NEAREST_CLAIM_RADIUS = 64;
+    
+    /** The most chunks a player may select for one bulk claim or unclaim, unless configured. */
+    private static final int DEFAULT_BULK_MAX_CHUNKS = 256;
+    
+    /** The most chunks an admin may select for one bulk claim or unclaim. */
+    private static final int ADMIN_BULK_MAX_CHUNKS = 100000;
+    
     private final ClanPlugin plugin;
     
     public ClanTerritoryCommand(ClanPlugin plugin) {
@@ -55,11 +70,20 @@ public class ClanTerritoryCommand implements CommandExecutor {
             case "info":
                 return handleInfo(player);
             case "claim":
-                return handleClaim(player);
+                return args.length > 1 ? handleBulkClaim(player, args) : handleClaim(player);
             case "unclaim":
-                return handleUnclaim(player);
+                return args.length > 1 ? handleBulkUnclaim(player, args) : handleUnclaim(player);
             case "list":
                 return handleList(player);
+            case "perm":
+            case "perms":
+                return handlePerm(player, args);
+            case "trust":
+                return handleTrust(player, args, true);
+            case "untrust":
+                return handleTrust(player, args, false);
+            case "trusted":
+                return handleTrusted(player);
             case "admin":
                 return handleAdmin(player, args);
             default:
@@ -112,9 +136,7 @@ public class ClanTerritoryCommand implements CommandExecutor {
         
         for (int z = centerZ - 4; z <= centerZ + 4; z++) {
             for (int x = centerX - 4; x <= centerX + 4; x++) {
-                // Get the chunk
-                Chunk chunk = player.getWorld().getChunkAt(x, z);
-                Territory territory = territoryManager.getTerritory(chunk);
+                Territory territory = territoryManager.getTerritory(player.getWorld(), x, z);
                 
                 if (x == centerX && z == centerZ) {
                     // Player's current position
@@ -246,6 +268,16 @@ public class ClanTerritoryCommand implements CommandExecutor {
         
         if (territory == null) {
             player.sendMessage(ChatColor.YELLOW + "This chunk is unclaimed.");
+            
+            // Point to the closest claim, if there is one nearby
+            Territory nearest = territoryManager.getNearestTerritory(chunk.getWorld().getName(),
+                    chunk.getX(), chunk.getZ(), NEAREST_CLAIM_RADIUS, null);
+            if (nearest != null) {
+                int dx = nearest.getChunkX() - chunk.getX();
+                int dz = nearest.getChunkZ() - chunk.getZ();
+                player.sendMessage(ChatColor.YELLOW + "Nearest claim: " + ChatColor.WHITE + nearest.getClanName() +
+                                  ChatColor.GRAY + " (" + Math.round(Math.sqrt(dx * dx + dz * dz)) + " chunks away)");
+            }
             return true;
         }
         
@@ -261,7 +293,7 @@ public class ClanTerritoryCommand implements CommandExecutor {
         player.sendMessage(ChatColor.YELLOW + "Clan: " + ChatColor.WHITE + clanName);
         player.sendMessage(ChatColor.YELLOW + "Protection: " + ChatColor.WHITE + territory.getProtectionLevel() + 
                           " (" + territory.getInfluenceLevel() + "% influence)");
-        player.sendMessage(ChatColor.YELLOW + "Flags: " + ChatColor.WHITE + territory.getFlags().size());
+        player.sendMessage(ChatColor.YELLOW + "Flags: " + ChatColor.WHITE + territory.getFlagCount());
         player.sendMessage(ChatColor.YELLOW + "Chunk: " + ChatColor.WHITE + 
                           chunk.getX() + ", " + chunk.getZ() + " in " + chunk.getWorld().getName());
         
@@ -389,6 +421,189 @@ public class ClanTerritoryCommand implements CommandExecutor {
         return true;
     }
     
+    /**
+     * Handles the bulk claim command: claims a radius, a rectangle or a fill
+     * of unclaimed land around the player in one operation.
+     * 
+     * @param player The player
+     * @param args The command arguments
+     * @return True if the command was handled
+     */
+    private boolean handleBulkClaim(Player player, String[] args) {
+        String clanName = plugin.getStorageManager().getClanStorage().getPlayerClanName(player.getUniqueId());
+        if (clanName == null) {
+            player.sendMessage(ChatColor.RED + "You must be in a clan to claim territory!");
+            return true;
+        }
+        
+        Clan clan = plugin.getStorageManager().getClanStorage().getClan(clanName);
+        ClanMember member = clan.getMember(player.getUniqueId());
+        if (member == null || member.getRole().getRoleLevel() < ClanRole.OFFICER.getRoleLevel()) {
+            player.sendMessage(ChatColor.RED + "You must be an officer or leader to claim territory!");
+            return true;
+        }
+        
+        int maxChunks = plugin.getConfig().getInt("territory.bulk_max_chunks", DEFAULT_BULK_MAX_CHUNKS);
+        long[] chunks = parseSelection(player, args, 1, null, maxChunks, "claim");
+        if (chunks == null) {
+            return true;
+        }
+        
+        TerritoryManager territoryManager = plugin.getStorageManager().getTerritoryManager();
+        Flag flag = new Flag(player.getLocation(), player.getUniqueId());
+        TerritoryManager.BulkResult result = territoryManager.claimTerritories(
+                player.getWorld().getName(), chunks, clanName, flag, false);
+        
+        if (result.getChanged() == 0) {
+            player.sendMessage(ChatColor.RED + "Could not claim any of these chunks. Make sure they are unclaimed, " +
+                              "touch your territory and your clan has claims left.");
+            return true;
+        }
+        
+        player.sendMessage(ChatColor.GREEN + "Claimed " + result.getChanged() + " chunks for clan " +
+                          ChatColor.GOLD + clanName + ChatColor.GREEN + "!" + skippedSuffix(result));
+        
+        // Broadcast to clan members
+        for (UUID memberId : clan.getMemberIds()) {
+            Player clanMember = plugin.getServer().getPlayer(memberId);
+            if (clanMember != null && !clanMember.equals(player)) {
+                clanMember.sendMessage(ChatColor.GREEN + player.getName() + " has claimed " + result.getChanged() +
+                                      " chunks of new territory for your clan!");
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Handles the bulk unclaim command: unclaims a radius, a rectangle or a
+     * fill of the clan's territory around the player in one operation.
+     * 
+     * @param player The player
+     * @param args The command arguments
+     * @return True if the command was handled
+     */
+    private boolean handleBulkUnclaim(Player player, String[] args) {
+        String clanName = plugin.getStorageManager().getClanStorage().getPlayerClanName(player.getUniqueId());
+        if (clanName == null) {
+            player.sendMessage(ChatColor.RED + "You must be in a clan to unclaim territory!");
+            return true;
+        }
+        
+        Clan clan = plugin.getStorageManager().getClanStorage().getClan(clanName);
+        ClanMember member = clan.getMember(player.getUniqueId());
+        if (member == null || member.getRole().getRoleLevel() < ClanRole.OFFICER.getRoleLevel()) {
+            player.sendMessage(ChatColor.RED + "You must be an officer or leader to unclaim territory!");
+            return true;
+        }
+        
+        int maxChunks = plugin.getConfig().getInt("territory.bulk_max_chunks", DEFAULT_BULK_MAX_CHUNKS);
+        long[] chunks = parseSelection(player, args, 1, clanName, maxChunks, "unclaim");
+        if (chunks == null) {
+            return true;
+        }
+        
+        TerritoryManager territoryManager = plugin.getStorageManager().getTerritoryManager();
+        TerritoryManager.BulkResult result = territoryManager.unclaimTerritories(
+                player.getWorld().getName(), chunks, clanName);
+        
+        if (result.isDisconnected()) {
+            player.sendMessage(ChatColor.RED + "Could not unclaim these chunks. It would disconnect other territories.");
+            return true;
+        }
+        if (result.getChanged() == 0) {
+            player.sendMessage(ChatColor.RED + "Your clan does not own any of these chunks!");
+            return true;
+        }
+        
+        player.sendMessage(ChatColor.GREEN + "Unclaimed " + result.getChanged() + " chunks!" + skippedSuffix(result));
+        
+        // Broadcast to clan members
+        for (UUID memberId : clan.getMemberIds()) {
+            Player clanMember = plugin.getServer().getPlayer(memberId);
+            if (clanMember != null && !clanMember.equals(player)) {
+                clanMember.sendMessage(ChatColor.YELLOW + player.getName() + " has unclaimed " + result.getChanged() +
+                                      " chunks of territory from your clan.");
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Parses a bulk selection around the player's chunk: radius &lt;r&gt;,
+     * rect &lt;x1&gt; &lt;z1&gt; &lt;x2&gt; &lt;z2&gt; in chunk coordinates, or
+     * fill &lt;limit&gt;. Tells the player what is wrong when it is invalid.
+     * 
+     * @param player The player
+     * @param args The command arguments
+     * @param start The index of the shape argument
+     * @param fillOwner The clan whose territory a fill selects, or null to fill unclaimed land
+     * @param maxChunks The most chunks that may be selected
+     * @param action The command the selection belongs to, for the usage message
+     * @return The packed chunk keys, or null if the selection is invalid
+     */
+    private long[] parseSelection(Player player, String[] args, int start, String fillOwner, int maxChunks, String action) {
+        String usage = "Usage: /clan territory " + action + " <radius <r> | rect <x1> <z1> <x2> <z2> | fill <limit>>";
+        String shape = args.length > start ? args[start].toLowerCase() : "";
+        int chunkX = player.getLocation().getBlockX() >> 4;
+        int chunkZ = player.getLocation().getBlockZ() >> 4;
+        
+        try {
+            if (shape.equals("radius") && args.length > start + 1) {
+                int radius = Integer.parseInt(args[start + 1]);
+                // The circle covers about 79% of its bounding square
+                long square = (2L * radius + 1) * (2L * radius + 1);
+                long[] chunks = radius >= 0 && square <= 2L * maxChunks
+                    ? TerritoryManager.selectRadius(chunkX, chunkZ, radius)
+                    : null;
+                if (chunks == null || chunks.length > maxChunks) {
+                    player.sendMessage(ChatColor.RED + "The radius must select between 1 and " + maxChunks + " chunks!");
+                    return null;
+                }
+                return chunks;
+            }
+            
+            if (shape.equals("rect") && args.length > start + 4) {
+                int x1 = Integer.parseInt(args[start + 1]);
+                int z1 = Integer.parseInt(args[start + 2]);
+                int x2 = Integer.parseInt(args[start + 3]);
+                int z2 = Integer.parseInt(args[start + 4]);
+                if ((Math.abs((long) x2 - x1) + 1) * (Math.abs((long) z2 - z1) + 1) > maxChunks) {
+                    player.sendMessage(ChatColor.RED + "The rectangle must select at most " + maxChunks + " chunks!");
+                    return null;
+                }
+                return TerritoryManager.selectRectangle(x1, z1, x2, z2);
+            }
+            
+            if (shape.equals("fill") && args.length > start + 1) {
+                int limit = Integer.parseInt(args[start + 1]);
+                if (limit <= 0 || limit > maxChunks) {
+                    player.sendMessage(ChatColor.RED + "The fill limit must be between 1 and " + maxChunks + "!");
+                    return null;
+                }
+                return plugin.getStorageManager().getTerritoryManager().selectFlood(
+                        player.getWorld().getName(), chunkX, chunkZ, fillOwner, limit);
+            }
+        } catch (NumberFormatException e) {
+            player.sendMessage(ChatColor.RED + "Chunk coordinates, radius and limit must be whole numbers!");
+            return null;
+        }
+        
+        player.sendMessage(ChatColor.RED + usage);
+        return null;
+    }
+    
+    /**
+     * Describes the selected chunks a bulk operation left as they were.
+     * 
+     * @param result The bulk result
+     * @return The message suffix, or an empty string if none were skipped
+     */
+    private String skippedSuffix(TerritoryManager.BulkResult result) {
+        return result.getSkipped() > 0 ? ChatColor.GRAY + " (" + result.getSkipped() + " skipped)" : "";
+    }
+    
     /**
      * Handles the territory list command.
      * 
@@ -434,6 +649,222 @@ public class ClanTerritoryCommand implements CommandExecutor {
         return true;
     }
     
+    /**
+     * Handles the territory permission command: shows the rules in effect in
+     * the current chunk, or changes a rule for the clan's whole territory or,
+     * with "here", for the current chunk only.
+     * 
+     * @param player The player
+     * @param args The command arguments
+     * @return True if the command was handled
+     */
+    private boolean handlePerm(Player player, String[] args) {
+        String clanName = getOfficerClanName(player, "change territory permissions");
+        if (clanName == null) {
+            return true;
+        }
+        
+        TerritoryManager territoryManager = plugin.getStorageManager().getTerritoryManager();
+        TerritoryPermissionManager permissionManager = territoryManager.getPermissionManager();
+        Territory here = territoryManager.getTerritory(player.getLocation().getChunk());
+        if (here != null && !here.getClanName().equals(clanName)) {
+            here = null;
+        }
+        
+        if (args.length == 1) {
+            if (here == null) {
+                player.sendMessage(ChatColor.RED + "Stand in your clan's territory to see its permissions.");
+                return true;
+            }
+            showPermissions(player, here, permissionManager);
+            return true;
+        }
+        
+        if (args.length == 2 && args[1].equalsIgnoreCase("reset")) {
+            if (here == null || !permissionManager.clearOwnRules(here)) {
+                player.sendMessage(ChatColor.RED + "This chunk has no permissions of its own.");
+            } else {
+                player.sendMessage(ChatColor.GREEN + "This chunk follows your clan's permissions again.");
+            }
+            return true;
+        }
+        
+        if (args.length < 4) {
+            player.sendMessage(ChatColor.RED + "Usage: /clan territory perm <role> <permission|all> <allow|deny|default> [here]");
+            return true;
+        }
+        
+        int role = Arrays.asList(TerritoryPermissionManager.ROLE_NAMES).indexOf(args[1].toLowerCase());
+        if (role < 0) {
+            player.sendMessage(ChatColor.RED + "Unknown role. Roles: " + String.join(", ", TerritoryPermissionManager.ROLE_NAMES));
+            return true;
+        }
+        
+        int mask;
+        if (args[2].equalsIgnoreCase("all")) {
+            mask = TerritoryPermission.ALL;
+        } else {
+            TerritoryPermission permission = TerritoryPermission.fromName(args[2]);
+            if (permission == null) {
+                player.sendMessage(ChatColor.RED + "Unknown permission. Permissions: " + 
+                                  String.join(", ", TerritoryPermissionManager.namesOf(TerritoryPermission.ALL)));
+                return true;
+            }
+            mask = permission.getBit();
+        }
+        
+        Boolean allowed;
+        switch (args[3].toLowerCase()) {
+            case "allow":
+                allowed = Boolean.TRUE;
+                break;
+            case "deny":
+                allowed = Boolean.FALSE;
+                break;
+            case "default":
+                allowed = null;
+                break;
+            default:
+                player.sendMessage(ChatColor.RED + "Use allow, deny or default.");
+                return true;
+        }
+        
+        boolean chunkOnly = args.length > 4 && args[4].equalsIgnoreCase("here");
+        if (chunkOnly && here == null) {
+            player.sendMessage(ChatColor.RED + "Stand in your clan's territory to change its permissions.");
+            return true;
+        }
+        
+        permissionManager.setRule(clanName, chunkOnly ? here : null, role, mask, allowed);
+        player.sendMessage(ChatColor.GREEN + "Permission updated for " + ChatColor.YELLOW + 
+                          TerritoryPermissionManager.ROLE_NAMES[role] + ChatColor.GREEN + 
+                          (chunkOnly ? " in this chunk." : " in your clan's territory."));
+        return true;
+    }
+    
+    /**
+     * Shows the permission rules in effect in a chunk.
+     * 
+     * @param player The player
+     * @param territory The territory
+     * @param permissionManager The permission manager
+     */
+    private void showPermissions(Player player, Territory territory, TerritoryPermissionManager permissionManager) {
+        int[] masks = permissionManager.getMasks(territory);
+        int roles = TerritoryPermissionManager.ROLE_NAMES.length;
+        
+        player.sendMessage(ChatColor.GOLD + "=== Territory Permissions" + 
+                          (permissionManager.hasOwnRules(territory) ? " (this chunk)" : "") + " ===");
+        for (int role = 0; role < roles; role++) {
+            List<String> allowed = TerritoryPermissionManager.namesOf(masks[role]);
+            List<String> denied = TerritoryPermissionManager.namesOf(masks[roles + role]);
+            player.sendMessage(ChatColor.YELLOW + TerritoryPermissionManager.ROLE_NAMES[role] + ": " + 
+                              ChatColor.GREEN + "allow " + (allowed.isEmpty() ? "-" : String.join(", ", allowed)) + 
+                              ChatColor.RED + " deny " + (denied.isEmpty() ? "-" : String.join(", ", denied)));
+        }
+        player.sendMessage(ChatColor.GRAY + "Anything not listed follows the protection level (" + 
+                          territory.getProtectionLevel() + ").");
+    }
+    
+    /**
+     * Handles the territory trust and untrust commands.
+     * 
+     * @param player The player
+     * @param args The command arguments
+     * @param trust True to trust the player, false to stop trusting them
+     * @return True if the command was handled
+     */
+    private boolean handleTrust(Player player, String[] args, boolean trust) {
+        String clanName = getOfficerClanName(player, "manage trusted players");
+        if (clanName == null) {
+            return true;
+        }
+        
+        if (args.length < 2) {
+            player.sendMessage(ChatColor.RED + "Usage: /clan territory " + (trust ? "trust" : "untrust") + " <player>");
+            return true;
+        }
+        
+        TerritoryPermissionManager permissionManager = plugin.getStorageManager().getTerritoryManager().getPermissionManager();
+        UUID targetUUID = null;
+        Player target = plugin.getServer().getPlayer(args[1]);
+        if (target != null) {
+            targetUUID = target.getUniqueId();
+        } else if (!trust) {
+            // Trusted players may be offline, so look them up among the trusted
+            for (UUID trustedUUID : permissionManager.getTrusted(clanName)) {
+                if (args[1].equalsIgnoreCase(plugin.getServer().getOfflinePlayer(trustedUUID).getName())) {
+                    targetUUID = trustedUUID;
+                    break;
+                }
+            }
+        }
+        
+        if (targetUUID == null) {
+            player.sendMessage(ChatColor.RED + "Player " + args[1] + (trust ? " is not online." : " is not trusted."));
+            return true;
+        }
+        
+        if (trust ? permissionManager.trust(clanName, targetUUID) : permissionManager.untrust(clanName, targetUUID)) {
+            player.sendMessage(ChatColor.GREEN + args[1] + (trust ? " is now trusted in your clan's territory." : 
+                                                            " is no longer trusted in your clan's territory."));
+        } else {
+            player.sendMessage(ChatColor.YELLOW + args[1] + (trust ? " is already trusted." : " is not trusted."));
+        }
+        return true;
+    }
+    
+    /**
+     * Handles the trusted players list command.
+     * 
+     * @param player The player
+     * @return True if the command was handled
+     */
+    private boolean handleTrusted(Player player) {
+        String clanName = plugin.getStorageManager().getClanStorage().getPlayerClanName(player.getUniqueId());
+        if (clanName == null) {
+            player.sendMessage(ChatColor.RED + "You must be in a clan to view trusted players!");
+            return true;
+        }
+        
+        Set<UUID> trusted = plugin.getStorageManager().getTerritoryManager().getPermissionManager().getTrusted(clanName);
+        if (trusted.isEmpty()) {
+            player.sendMessage(ChatColor.YELLOW + "Nobody is trusted in your clan's territory.");
+            return true;
+        }
+        
+        List<String> names = new ArrayList<>();
+        for (UUID uuid : trusted) {
+            String name = plugin.getServer().getOfflinePlayer(uuid).getName();
+            names.add(name != null ? name : uuid.toString());
+        }
+        player.sendMessage(ChatColor.GOLD + "Trusted players: " + ChatColor.WHITE + String.join(", ", names));
+        return true;
+    }
+    
+    /**
+     * Gets the clan of a player who is an officer or leader, telling them if they are not.
+     * 
+     * @param player The player
+     * @param action What the player tried to do, for the message
+     * @return The clan name, or null if the player is not an officer or leader of a clan
+     */
+    private String getOfficerClanName(Player player, String action) {
+        String clanName = plugin.getStorageManager().getClanStorage().getPlayerClanName(player.getUniqueId());
+        if (clanName == null) {
+            player.sendMessage(ChatColor.RED + "You must be in a clan to " + action + "!");
+            return null;
+        }
+        
+        Clan clan = plugin.getStorageManager().getClanStorage().getClan(clanName);
+        ClanMember member = clan.getMember(player.getUniqueId());
+        if (member == null || member.getRole().getRoleLevel() < ClanRole.OFFICER.getRoleLevel()) {
+            player.sendMessage(ChatColor.RED + "You must be an officer or leader to " + action + "!");
+            return null;
+        }
+        return clanName;
+    }
+    
     /**
      * Handles the territory admin commands.
      * 
@@ -462,6 +893,10 @@ public class ClanTerritoryCommand implements CommandExecutor {
                 return handleAdminSet(player, args);
             case "bypass":
                 return handleAdminBypass(player);
+            case "claim":
+                return handleAdminBulk(player, args, true);
+            case "unclaim":
+                return handleAdminBulk(player, args, false);
             default:
                 sendAdminHelpMessage(player);
                 return true;
@@ -537,6 +972,53 @@ public class ClanTerritoryCommand implements CommandExecutor {
         return true;
     }
     
+    /**
+     * Handles the admin bulk claim and unclaim commands, which act for any
+     * clan and ignore the claim limit. Used to import large areas.
+     * 
+     * @param player The player
+     * @param args The command arguments
+     * @param claim Whether to claim rather than unclaim
+     * @return True if the command was handled
+     */
+    private boolean handleAdminBulk(Player player, String[] args, boolean claim) {
+        String action = claim ? "claim" : "unclaim";
+        if (args.length < 4) {
+            player.sendMessage(ChatColor.RED + "Usage: /clan territory admin " + action +
+                              " <clan> <radius <r> | rect <x1> <z1> <x2> <z2> | fill <limit>>");
+            return true;
+        }
+        
+        String clanName = args[2];
+        Clan clan = plugin.getStorageManager().getClanStorage().getClan(clanName);
+        if (clan == null) {
+            player.sendMessage(ChatColor.RED + "Clan " + clanName + " does not exist!");
+            return true;
+        }
+        
+        long[] chunks = parseSelection(player, args, 3, claim ? null : clanName, ADMIN_BULK_MAX_CHUNKS,
+                "admin " + action + " " + clanName);
+        if (chunks == null) {
+            return true;
+        }
+        
+        TerritoryManager territoryManager = plugin.getStorageManager().getTerritoryManager();
+        long start = System.nanoTime();
+        TerritoryManager.BulkResult result = claim
+            ? territoryManager.claimTerritories(player.getWorld().getName(), chunks, clanName, null, true)
+            : territoryManager.unclaimTerritories(player.getWorld().getName(), chunks, clanName);
+        long millis = (System.nanoTime() - start) / 1000000;
+        
+        if (result.isDisconnected()) {
+            player.sendMessage(ChatColor.RED + "Could not unclaim these chunks. It would disconnect other territories.");
+        } else {
+            player.sendMessage(ChatColor.GREEN + (claim ? "Claimed " : "Unclaimed ") + result.getChanged() +
+                              " chunks for clan " + clanName + " in " + millis + "ms." + skippedSuffix(result));
+        }
+        
+        return true;
+    }
+    
     /**
      * Handles the admin bypass command.
      * 
@@ -577,13 +1059,20 @@ public class ClanTerritoryCommand implements CommandExecutor {
         player.sendMessage(ChatColor.YELLOW + "/clan territory clanmates" + ChatColor.WHITE + " - Shows clan members on your map");
         player.sendMessage(ChatColor.YELLOW + "/clan territory info" + ChatColor.WHITE + " - Shows information about the current chunk");
         player.sendMessage(ChatColor.YELLOW + "/clan territory claim" + ChatColor.WHITE + " - Claims the current chunk for your clan");
+        player.sendMessage(ChatColor.YELLOW + "/clan territory claim <radius|rect|fill> ..." + ChatColor.WHITE + " - Claims many chunks at once");
         player.sendMessage(ChatColor.YELLOW + "/clan territory unclaim" + ChatColor.WHITE + " - Unclaims the current chunk");
+        player.sendMessage(ChatColor.YELLOW + "/clan territory unclaim <radius|rect|fill> ..." + ChatColor.WHITE + " - Unclaims many chunks at once");
         player.sendMessage(ChatColor.YELLOW + "/clan territory list" + ChatColor.WHITE + " - Lists all territory chunks owned by your clan");
+        player.sendMessage(ChatColor.YELLOW + "/clan territory perm [<role> <permission|all> <allow|deny|default> [here]]" + ChatColor.WHITE + " - Shows or changes what each role may use");
+        player.sendMessage(ChatColor.YELLOW + "/clan territory perm reset" + ChatColor.WHITE + " - Makes the current chunk follow your clan's permissions again");
+        player.sendMessage(ChatColor.YELLOW + "/clan territory <trust|untrust> <player>" + ChatColor.WHITE + " - Trusts a player to use things in your territory");
+        player.sendMessage(ChatColor.YELLOW + "/clan territory trusted" + ChatColor.WHITE + " - Lists the players your clan trusts");
         
         if (player.hasPermission("clan.admin.territory")) {
             player.sendMessage(ChatColor.GOLD + "=== Admin Commands ===");
             player.sendMessage(ChatColor.YELLOW + "/clan territory admin clear <clan>" + ChatColor.WHITE + " - Clears all territory for a clan");
             player.sendMessage(ChatColor.YELLOW + "/clan territory admin set <clan>" + ChatColor.WHITE + " - Sets the current chunk ownership");
+            player.sendMessage(ChatColor.YELLOW + "/clan territory admin <claim|unclaim> <clan> <radius|rect|fill> ..." + ChatColor.WHITE + " - Claims or unclaims an area for a clan, ignoring limits");
             player.sendMessage(ChatColor.YELLOW + "/clan territory admin bypass" + ChatColor.WHITE + " - Toggles admin bypass mode");
         }
     }
@@ -597,6 +1086,7 @@ public class ClanTerritoryCommand implements CommandExecutor {
         player.sendMessage(ChatColor.GOLD + "=== Territory Admin Commands ===");
         player.sendMessage(ChatColor.YELLOW + "/clan territory admin clear <clan>" + ChatColor.WHITE + " - Clears all territory for a clan");
         player.sendMessage(ChatColor.YELLOW + "/clan territory admin set <clan>" + ChatColor.WHITE + " - Sets the current chunk ownership");
+        player.sendMessage(ChatColor.YELLOW + "/clan territory admin <claim|unclaim> <clan> <radius|rect|fill> ..." + ChatColor.WHITE + " - Claims or unclaims an area for a clan, ignoring limits");
         player.sendMessage(ChatColor.YELLOW + "/clan territory admin bypass" + ChatColor.WHITE + " - Toggles admin bypass mode");
     }
 }
\ No newline at end of file
@@ -5,6 +5,8 @@ import com.minecraft.clanplugin.models.Clan;
 import com.minecraft.clanplugin.models.ClanMember;
 import com.minecraft.clanplugin.models.ClanRole;
 import com.minecraft.clanplugin.wars.ClanWar;
+import com.minecraft.clanplugin.wars.RaidManager;
+import com.minecraft.clanplugin.wars.RaidSession;
 import com.minecraft.clanplugin.wars.WarManager;
 import com.minecraft.clanplugin.wars.WarStatus;
 import org.bukkit.ChatColor;
@@ -58,6 +60,8 @@ public class ClanWarCommand implements CommandExecutor {
                 return handleStats(player, args);
             case "leaderboard":
                 return handleLeaderboard(player);
+            case "raid":
+                return handleRaid(player, args);
             case "help":
             default:
                 sendHelpMessage(player);
@@ -378,6 +382,74 @@ public class ClanWarCommand implements CommandExecutor {
         return true;
     }
     
+    /**
+     * Handles the raid command: starts a raid, joins the clan's raid or shows its progress.
+     * 
+     * @param player The player
+     * @param args The command arguments
+     * @return True if the command was handled
+     */
+    private boolean handleRaid(Player player, String[] args) {
+        String playerClanName = plugin.getStorageManager().getClanStorage().getPlayerClanName(player.getUniqueId());
+        if (playerClanName == null) {
+            player.sendMessage(ChatColor.RED + "You must be in a clan to raid!");
+            return true;
+        }
+        
+        RaidManager raidManager = plugin.getRaidManager();
+        String action = args.length > 1 ? args[1].toLowerCase() : "status";
+        
+        switch (action) {
+            case "start": {
+                Clan playerClan = plugin.getStorageManager().getClanStorage().getClan(playerClanName);
+                ClanMember member = playerClan.getMember(player.getUniqueId());
+                if (member.getRole().getRoleLevel() < ClanRole.OFFICER.getRoleLevel()) {
+                    player.sendMessage(ChatColor.RED + "Only clan officers and leaders can start a raid!");
+                    return true;
+                }
+                
+                String reason = raidManager.checkRaid(player, playerClanName);
+                if (reason != null) {
+                    player.sendMessage(ChatColor.RED + reason);
+                    return true;
+                }
+                
+                RaidSession raid = raidManager.startRaid(player, playerClanName);
+                player.sendMessage(ChatColor.GREEN + "Raid on " + raid.getTargetClan() + " started! It will last " +
+                                   warManager.formatTimeRemaining(raid.getTimeRemaining()) + ".");
+                return true;
+            }
+            case "join":
+                if (raidManager.joinRaid(player.getUniqueId(), playerClanName)) {
+                    player.sendMessage(ChatColor.GREEN + "You have joined your clan's raid!");
+                } else if (raidManager.getRaid(playerClanName) == null) {
+                    player.sendMessage(ChatColor.RED + "Your clan is not raiding!");
+                } else {
+                    player.sendMessage(ChatColor.YELLOW + "You are already taking part in the raid.");
+                }
+                return true;
+            case "status":
+            default: {
+                RaidSession raid = raidManager.getRaid(playerClanName);
+                if (raid == null) {
+                    player.sendMessage(ChatColor.YELLOW + "Your clan is not raiding.");
+                    return true;
+                }
+                
+                player.sendMessage(ChatColor.GOLD + "=== Raid Status ===");
+                player.sendMessage(ChatColor.YELLOW + "Target: " + ChatColor.WHITE + raid.getTargetClan());
+                player.sendMessage(ChatColor.YELLOW + "Center: " + ChatColor.WHITE + raid.getWorldName() + " chunk " +
+                                   raid.getCenterX() + ", " + raid.getCenterZ() + " (radius " + raid.getRadius() + ")");
+                player.sendMessage(ChatColor.YELLOW + "Progress: " + ChatColor.WHITE + (int) (raid.getProgress() * 100) + "%");
+                player.sendMessage(ChatColor.YELLOW + "Territories weakened: " + ChatColor.WHITE + raid.getWeakenedTerritories().size());
+                player.sendMessage(ChatColor.YELLOW + "Participants: " + ChatColor.WHITE + raid.getParticipants().size());
+                player.sendMessage(ChatColor.YELLOW + "Time remaining: " + ChatColor.WHITE +
+                                   warManager.formatTimeRemaining(raid.getTimeRemaining()));
+                return true;
+            }
+        }
+    }
+    
     /**
      * Sends the help message for war commands.
      * 
@@ -390,5 +462,6 @@ public class ClanWarCommand implements CommandExecutor {
         player.sendMessage(ChatColor.YELLOW + "/clan war surrender" + ChatColor.WHITE + " - Surrender the current war (Leader only)");
         player.sendMessage(ChatColor.YELLOW + "/clan war stats [clan]" + ChatColor.WHITE + " - View war statistics for a clan");
         player.sendMessage(ChatColor.YELLOW + "/clan war leaderboard" + ChatColor.WHITE + " - View the current war's kill leaderboard");
+        player.sendMessage(ChatColor.YELLOW + "/clan war raid <start|join|status>" + ChatColor.WHITE + " - Raid the territory of the clan you are at war with around you (start: Officer+)");
     }
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import com.minecraft.clanplugin.ClanPlugin;
 import com.minecraft.clanplugin.models.Clan;
 import com.minecraft.clanplugin.models.ClanMember;
 import com.minecraft.clanplugin.models.ClanRole;
+import com.minecraft.clanplugin.storage.PersistenceService;
 import net.milkbowl.vault.economy.Economy;
 import net.milkbowl.vault.economy.EconomyResponse;
 import org.bukkit.Bukkit;
@@ -14,9 +15,11 @@ import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 
 import java.io.File;
-import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -29,6 +32,7 @@ public class ClanEconomy {
     private final Map<String, Double> clanTaxRates;
     private final Map<UUID, Long> lastTaxCollectionTime;
     private final File economyFile;
+    private final PersistenceService.Registration economyRegistration;
     
     // Default values
     private final double DEFAULT_STARTING_BALANCE = 0.0;
@@ -46,9 +50,8 @@ public class ClanEconomy {
         this.clanTaxRates = new HashMap<>();
         this.lastTaxCollectionTime = new HashMap<>();
         this.economyFile = new File(plugin.getDataFolder(), "economy.yml");
-        
-        // Load economy data
-        loadEconomyData();
+        this.economyRegistration = plugin.getPersistenceService()
+                .registerSnapshot("Economy", economyFile, this::publishEconomyData);
     }
     
     /**
@@ -239,6 +242,47 @@ public class ClanEconomy {
         return withdrawFromClan(clanName, cost);
     }
     
+    /**
+     * Pays the territory upkeep of many clans at once. Each clan pays its
+     * whole cost or nothing, and the economy file is saved once for all of them.
+     * 
+     * @param costs The upkeep cost of each clan
+     * @return The names of the clans that could not pay
+     */
+    public Set<String> payTerritoryUpkeep(Map<String, Double> costs) {
+        Set<String> unpaid = new HashSet<>();
+        boolean changed = false;
+        
+        for (Map.Entry<String, Double> entry : costs.entrySet()) {
+            double cost = entry.getValue();
+            if (cost <= 0) {
+                continue;
+            }
+            
+            String key = entry.getKey().toLowerCase();
+            double balance = clanBalances.getOrDefault(key, DEFAULT_STARTING_BALANCE);
+            if (balance < cost) {
+                unpaid.add(entry.getKey());
+                continue;
+            }
+            clanBalances.put(key, balance - cost);
+            changed = true;
+        }
+        
+        if (changed) {
+            saveEconomyData();
+        }
+        return unpaid;
+    }
+    
+    /**
+     * Reads economy.yml. Runs on a loader thread while the plugin is enabled,
+     * after the constructor registered the file on the main thread.
+     */
+    public void load() {
+        loadEconomyData();
+    }
+    
     /**
      * Loads economy data from file
      */
@@ -279,31 +323,44 @@ public class ClanEconomy {
     }
     
     /**
-     * Saves economy data to file
+     * Saves economy data to file. The file is marked changed and written by the
+     * next persistence flush.
      */
     private void saveEconomyData() {
-        FileConfiguration config = new YamlConfiguration();
-        
-        // Save balances
-        for (Map.Entry<String, Double> entry : clanBalances.entrySet()) {
-            config.set("balances." + entry.getKey(), entry.getValue());
-        }
-        
-        // Save tax rates
-        for (Map.Entry<String, Double> entry : clanTaxRates.entrySet()) {
-            config.set("tax_rates." + entry.getKey(), entry.getValue());
-        }
-        
-        // Save cooldowns
-        for (Map.Entry<UUID, Long> entry : lastTaxCollectionTime.entrySet()) {
-            config.set("tax_cooldowns." + entry.getKey().toString(), entry.getValue());
-        }
+        economyRegistration.markDirty();
+    }
+    
+    /**
+     * Copies the balances, tax rates and cooldowns. The values are immutable, so
+     * shallow copies are enough. Called on the main thread.
+     * 
+     * @return The snapshot to write
+     */
+    private PersistenceService.Snapshot publishEconomyData() {
+        Map<String, Double> balances = new HashMap<>(clanBalances);
+        Map<String, Double> taxRates = new HashMap<>(clanTaxRates);
+        Map<UUID, Long> cooldowns = new HashMap<>(lastTaxCollectionTime);
         
-        try {
-            config.save(economyFile);
-        } catch (IOException e) {
-            plugin.getLogger().warning("Failed to save economy data: " + e.getMessage());
-        }
+        return out -> {
+            FileConfiguration config = new YamlConfiguration();
+            
+            // Save balances
+            for (Map.Entry<String, Double> entry : balances.entrySet()) {
+                config.set("balances." + entry.getKey(), entry.getValue());
+            }
+            
+            // Save tax rates
+            for (Map.Entry<String, Double> entry : taxRates.entrySet()) {
+                config.set("tax_rates." + entry.getKey(), entry.getValue());
+            }
+            
+            // Save cooldowns
+            for (Map.Entry<UUID, Long> entry : cooldowns.entrySet()) {
+                config.set("tax_cooldowns." + entry.getKey().toString(), entry.getValue());
+            }
+            
+            out.write(config.saveToString().getBytes(StandardCharsets.UTF_8));
+        };
     }
     
     /**
@@ -320,11 +377,23 @@ public class ClanEconomy {
      * Handles when a clan is deleted
      * 
      * @param clanName The name of the clan
+     * @return An action that restores the balance and tax rate, used to roll back a unit of work
      */
-    public void handleClanDeleted(String clanName) {
-        clanBalances.remove(clanName.toLowerCase());
-        clanTaxRates.remove(clanName.toLowerCase());
+    public Runnable handleClanDeleted(String clanName) {
+        String key = clanName.toLowerCase();
+        Double balance = clanBalances.remove(key);
+        Double taxRate = clanTaxRates.remove(key);
         saveEconomyData();
+        
+        return () -> {
+            if (balance != null) {
+                clanBalances.put(key, balance);
+            }
+            if (taxRate != null) {
+                clanTaxRates.put(key, taxRate);
+            }
+            saveEconomyData();
+        };
     }
     
     /**
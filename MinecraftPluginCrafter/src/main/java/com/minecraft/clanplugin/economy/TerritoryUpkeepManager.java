@@ -0,0 +1,192 @@
+package com.minecraft.clanplugin.economy;
+
+import com.minecraft.clanplugin.ClanPlugin;
+import com.minecraft.clanplugin.storage.PersistenceService;
+import com.minecraft.clanplugin.storage.TerritoryManager;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bills clans for the territory they hold. Every upkeep interval the clans
+ * that own territory are queued and their costs worked out a small batch per
+ * tick, from their territory count and flag tiers. When the last batch is
+ * done, all costs are paid from the clan banks in one go, so the economy file
+ * is saved once per cycle. Clans that cannot pay are marked as not
+ * maintaining their territory, which then loses influence until they pay again.
+ * <p>
+ * The time of the last cycle and the clans that could not pay are kept in
+ * upkeep.yml, so restarts neither postpone billing nor forgive unpaid upkeep.
+ */
+public class TerritoryUpkeepManager {
+    
+    private final ClanPlugin plugin;
+    private final ArrayDeque<String> queue;
+    private final Map<String, Double> costs;
+    private final double chunkCost;
+    private final double flagTierCost;
+    private final int batchSize;
+    private final Set<String> unmaintainedClans;
+    private final File upkeepFile;
+    private final PersistenceService.Registration persistence;
+    private BukkitTask batchTask;
+    private long lastBilled; // Wall-clock time the last cycle started, 0 if none has
+    private long cycleStart;
+    private int cycleTicks;
+    
+    /**
+     * Creates the upkeep manager from the economy.territory_costs settings.
+     *
+     * @param plugin The plugin instance
+     */
+    public TerritoryUpkeepManager(ClanPlugin plugin) {
+        this.plugin = plugin;
+        this.queue = new ArrayDeque<>();
+        this.costs = new HashMap<>();
+        this.chunkCost = plugin.getConfig().getDouble("economy.territory_costs.daily_upkeep", 5.0);
+        this.flagTierCost = plugin.getConfig().getDouble("economy.territory_costs.upkeep_per_flag_tier", 2.0);
+        this.batchSize = Math.max(1, plugin.getConfig().getInt("economy.territory_costs.upkeep_batch_size", 50));
+        this.unmaintainedClans = new LinkedHashSet<>();
+        this.upkeepFile = new File(plugin.getDataFolder(), "upkeep.yml");
+        
+        if (upkeepFile.exists()) {
+            YamlConfiguration config = YamlConfiguration.loadConfiguration(upkeepFile);
+            this.lastBilled = config.getLong("last_billed", 0L);
+            this.unmaintainedClans.addAll(config.getStringList("unmaintained"));
+        }
+        
+        // Changes are written in the background
+        this.persistence = plugin.getPersistenceService().register("Upkeep", upkeepFile, this::snapshotUpkeep);
+    }
+    
+    /**
+     * Starts the billing cycles, unless upkeep or the economy is disabled.
+     */
+    public void start() {
+        int minutes = plugin.getConfig().getInt("economy.territory_costs.upkeep_interval_minutes", 1440);
+        if (!plugin.getConfig().getBoolean("economy.enabled", true) || minutes <= 0) {
+            return;
+        }
+        
+        // Clans that could not pay before the restart keep losing influence
+        TerritoryManager territoryManager = plugin.getStorageManager().getTerritoryManager();
+        for (String clanName : unmaintainedClans) {
+            territoryManager.setClanMaintained(clanName, false);
+        }
+        
+        // The first cycle is due one interval after the last one, even if that was before the restart
+        long intervalMillis = minutes * 60000L;
+        long now = System.currentTimeMillis();
+        if (lastBilled <= 0 || lastBilled > now) {
+            lastBilled = now;
+            persistence.markDirty();
+        }
+        long delayTicks = Math.max(1L, (lastBilled + intervalMillis - now) / 50L);
+        plugin.getServer().getScheduler().runTaskTimer(plugin, this::startCycle, delayTicks, minutes * 60L * 20L);
+    }
+    
+    /**
+     * Gets the upkeep a clan pays per cycle for its current territory.
+     *
+     * @param clanName The name of the clan
+     * @return The upkeep cost
+     */
+    public double calculateUpkeep(String clanName) {
+        TerritoryManager territoryManager = plugin.getStorageManager().getTerritoryManager();
+        return territoryManager.getClanTerritoryCount(clanName) * chunkCost +
+               territoryManager.getClanFlagTierSum(clanName) * flagTierCost;
+    }
+    
+    /**
+     * Queues every clan that owns territory and starts billing them. A cycle
+     * still running is left to finish first.
+     */
+    private void startCycle() {
+        if (batchTask != null) {
+            return;
+        }
+        
+        lastBilled = System.currentTimeMillis();
+        queue.addAll(plugin.getStorageManager().getTerritoryManager().getClaimingClans());
+        if (queue.isEmpty()) {
+            persistence.markDirty();
+            return;
+        }
+        
+        costs.clear();
+        cycleStart = System.nanoTime();
+        cycleTicks = 0;
+        batchTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::runBatch, 1L, 1L);
+    }
+    
+    /**
+     * Works out the costs of the next batch of clans, and settles the cycle
+     * after the last batch.
+     */
+    private void runBatch() {
+        cycleTicks++;
+        for (int i = 0; i < batchSize && !queue.isEmpty(); i++) {
+            String clanName = queue.poll();
+            costs.put(clanName, calculateUpkeep(clanName));
+        }
+        
+        if (queue.isEmpty()) {
+            batchTask.cancel();
+            batchTask = null;
+            settleCycle();
+        }
+    }
+    
+    /**
+     * Pays all costs of the cycle from the clan banks and marks which clans
+     * maintain their territory.
+     */
+    private void settleCycle() {
+        Set<String> unpaid = plugin.getEconomy().payTerritoryUpkeep(costs);
+        
+        TerritoryManager territoryManager = plugin.getStorageManager().getTerritoryManager();
+        // Clans no longer holding territory were not billed and owe nothing
+        for (String clanName : unmaintainedClans) {
+            if (!costs.containsKey(clanName)) {
+                territoryManager.setClanMaintained(clanName, true);
+            }
+        }
+        unmaintainedClans.clear();
+        
+        double total = 0;
+        for (Map.Entry<String, Double> entry : costs.entrySet()) {
+            boolean paid = !unpaid.contains(entry.getKey());
+            territoryManager.setClanMaintained(entry.getKey(), paid);
+            if (paid) {
+                total += entry.getValue();
+            } else {
+                unmaintainedClans.add(entry.getKey());
+            }
+        }
+        persistence.markDirty();
+        
+        plugin.getLogger().info("Territory upkeep: billed " + costs.size() + " clans " + String.format("$%.2f", total) +
+                                ", " + unpaid.size() + " could not pay, in " + cycleTicks + " ticks (" +
+                                ((System.nanoTime() - cycleStart) / 1000000) + "ms).");
+        costs.clear();
+    }
+    
+    /**
+     * Builds a copy of the upkeep state for the background writer.
+     *
+     * @return The upkeep state to write
+     */
+    private YamlConfiguration snapshotUpkeep() {
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("last_billed", lastBilled);
+        config.set("unmaintained", new ArrayList<>(unmaintainedClans));
+        return config;
+    }
+}
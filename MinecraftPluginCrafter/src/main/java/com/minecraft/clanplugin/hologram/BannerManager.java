@@ -4,6 +4,7 @@ import com.minecraft.clanplugin.ClanPlugin;
 import com.minecraft.clanplugin.models.Clan;
 import com.minecraft.clanplugin.models.ClanMember;
 import com.minecraft.clanplugin.models.ClanRole;
+import com.minecraft.clanplugin.storage.PersistenceService;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
@@ -28,6 +29,7 @@ public class BannerManager {
     private final Map<String, List<UUID>> clanBanners;
     private final File bannersFile;
     private FileConfiguration bannersConfig;
+    private final PersistenceService.Registration persistence;
     
     /**
      * Creates a new banner manager.
@@ -39,8 +41,14 @@ public class BannerManager {
         this.banners = new HashMap<>();
         this.clanBanners = new HashMap<>();
         this.bannersFile = new File(plugin.getDataFolder(), "banners.yml");
-        
-        // Load banners from file
+        this.persistence = plugin.getPersistenceService().register("Banners", bannersFile, this::snapshotBanners);
+    }
+    
+    /**
+     * Reads banners.yml. Runs on a loader thread while the plugin is enabled,
+     * after the constructor registered the file on the main thread.
+     */
+    public void load() {
         loadBanners();
     }
     
@@ -141,9 +149,18 @@ public class BannerManager {
     }
     
     /**
-     * Save banners to configuration.
+     * Mark banners as changed so they are saved in the background.
      */
     public void saveBanners() {
+        persistence.markDirty();
+    }
+    
+    /**
+     * Build a copy of the banner configuration for the background writer.
+     * 
+     * @return The banner data to write
+     */
+    private YamlConfiguration snapshotBanners() {
         bannersConfig.set("banners", null);
         ConfigurationSection bannersSection = bannersConfig.createSection("banners");
         
@@ -184,11 +201,7 @@ public class BannerManager {
             bannerSection.set("permission", banner.getPermission().name());
         }
         
-        try {
-            bannersConfig.save(bannersFile);
-        } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "Could not save banners.yml", e);
-        }
+        return PersistenceService.copyOf(bannersConfig);
     }
     
     /**
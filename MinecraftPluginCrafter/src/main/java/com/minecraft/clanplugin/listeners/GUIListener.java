@@ -1189,7 +1189,7 @@ public class GUIListener implements Listener {
             skills.increaseSkillLevel(skillId, 1);
             int newLevel = skills.getSkillLevel(skillId);
             skills.setSkillPoints(skills.getSkillPoints() - skillCost);
-            plugin.getSkillManager().saveMemberSkills();
+            plugin.getSkillManager().saveMemberSkills(player.getUniqueId());
             
             player.sendMessage(ChatColor.GREEN + "You've learned " + skill.getName() + 
                               " (Level " + newLevel + ")!");
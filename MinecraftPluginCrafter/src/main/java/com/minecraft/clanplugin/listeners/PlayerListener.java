@@ -7,7 +7,9 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
 /**
@@ -26,6 +28,29 @@ public class PlayerListener implements Listener {
         this.plugin = plugin;
     }
 
+    /**
+     * Loads the connecting player's skills and badges off the main thread.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onAsyncPlayerPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            return;
+        }
+        
+        plugin.getSkillManager().preloadMemberSkills(event.getUniqueId());
+        plugin.getBadgeManager().preloadPlayer(event.getUniqueId());
+    }
+    
+    /**
+     * Releases preloaded data when the login is refused after all.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLogin(PlayerLoginEvent event) {
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+            unloadPlayerData(event.getPlayer());
+        }
+    }
+    
     /**
      * Handles player join events.
      */
@@ -54,8 +79,18 @@ public class PlayerListener implements Listener {
      */
     @EventHandler(priority = EventPriority.NORMAL)
     public void onPlayerQuit(PlayerQuitEvent event) {
-        // No action needed when player quits
-        // All clan data is maintained in memory
+        // Clan data stays in memory, per-player data is saved and evicted
+        unloadPlayerData(event.getPlayer());
+    }
+    
+    /**
+     * Saves a player's skills and badges if they changed and removes them from memory.
+     * 
+     * @param player The player
+     */
+    private void unloadPlayerData(Player player) {
+        plugin.getSkillManager().unloadMemberSkills(player.getUniqueId());
+        plugin.getBadgeManager().unloadPlayer(player.getUniqueId());
     }
     
     /**
@@ -100,7 +100,7 @@ public class SkillProgressionListener implements Listener {
             if (Math.random() < 0.05) { // 5% chance
                 skills.addSkillPoints(1);
                 player.sendMessage(ChatColor.GREEN + "You gained 1 skill point from mining!");
-                plugin.getSkillManager().saveMemberSkills();
+                plugin.getSkillManager().saveMemberSkills(player.getUniqueId());
             }
         }
     }
@@ -150,7 +150,7 @@ public class SkillProgressionListener implements Listener {
             if (Math.random() < 0.05) { // 5% chance
                 skills.addSkillPoints(1);
                 player.sendMessage(ChatColor.GREEN + "You gained 1 skill point from farming!");
-                plugin.getSkillManager().saveMemberSkills();
+                plugin.getSkillManager().saveMemberSkills(player.getUniqueId());
             }
         }
     }
@@ -215,7 +215,7 @@ public class SkillProgressionListener implements Listener {
             if (Math.random() < 0.1) { // 10% chance for hostile mobs
                 skills.addSkillPoints(1);
                 killer.sendMessage(ChatColor.GREEN + "You gained 1 skill point from hunting!");
-                plugin.getSkillManager().saveMemberSkills();
+                plugin.getSkillManager().saveMemberSkills(killer.getUniqueId());
             }
         }
     }
@@ -256,7 +256,7 @@ public class SkillProgressionListener implements Listener {
             if (Math.random() < 0.01) { // 1% chance
                 skills.addSkillPoints(1);
                 player.sendMessage(ChatColor.GREEN + "You gained 1 skill point from building!");
-                plugin.getSkillManager().saveMemberSkills();
+                plugin.getSkillManager().saveMemberSkills(player.getUniqueId());
             }
         }
     }
@@ -333,7 +333,7 @@ public class SkillProgressionListener implements Listener {
         }
         
         // Save updated skills
-        plugin.getSkillManager().saveMemberSkills();
+        plugin.getSkillManager().saveMemberSkills(uuid);
     }
     
     /**
@@ -3,22 +3,41 @@ package com.minecraft.clanplugin.listeners;
 import com.minecraft.clanplugin.ClanPlugin;
 import com.minecraft.clanplugin.models.Clan;
 import com.minecraft.clanplugin.models.Territory;
+import com.minecraft.clanplugin.models.TerritoryPermission;
 import com.minecraft.clanplugin.storage.TerritoryManager;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
+import org.bukkit.entity.Projectile;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.block.Action;
 import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockFromToEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.block.BlockSpreadEvent;
 import org.bukkit.event.entity.EntityDamageByEntityEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.hanging.HangingBreakByEntityEvent;
+import org.bukkit.event.player.PlayerBucketEmptyEvent;
+import org.bukkit.event.player.PlayerBucketFillEvent;
+import org.bukkit.event.player.PlayerInteractEntityEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
 import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.vehicle.VehicleDestroyEvent;
+import org.bukkit.event.vehicle.VehicleEnterEvent;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -29,10 +48,12 @@ public class TerritoryListener implements Listener {
     
     private final ClanPlugin plugin;
     private final Map<UUID, String> lastTerritoryMessages;
+    private final boolean protectBorders;
     
     public TerritoryListener(ClanPlugin plugin) {
         this.plugin = plugin;
         this.lastTerritoryMessages = new HashMap<>();
+        this.protectBorders = !plugin.getConfig().getBoolean("territory.protection.cross_border_griefing", false);
     }
     
     @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
@@ -49,7 +70,7 @@ public class TerritoryListener implements Listener {
         // Check if the block is a flag (using Material name comparison since Material.BANNER might not exist in all versions)
         if (block.getType().name().contains("BANNER")) {
             TerritoryManager territoryManager = plugin.getStorageManager().getTerritoryManager();
-            Territory territory = territoryManager.getTerritory(block.getChunk());
+            Territory territory = territoryManager.getTerritory(block.getWorld(), block.getX() >> 4, block.getZ() >> 4);
             
             if (territory != null) {
                 // Check if player is in the territory clan or has admin permission
@@ -91,7 +112,7 @@ public class TerritoryListener implements Listener {
             }
             
             TerritoryManager territoryManager = plugin.getStorageManager().getTerritoryManager();
-            Territory territory = territoryManager.getTerritory(block.getChunk());
+            Territory territory = territoryManager.getTerritory(block.getWorld(), block.getX() >> 4, block.getZ() >> 4);
             
             if (territory == null) {
                 // Unclaimed chunk, try to claim it with a flag
@@ -134,10 +155,84 @@ public class TerritoryListener implements Listener {
         Player player = event.getPlayer();
         Block block = event.getClickedBlock();
         
-        // Check if the block is in a protected territory
-        if (!canInteract(player, block.getLocation())) {
+        // Containers, doors and redstone follow the clan's permission rules, other blocks the protection tier
+        TerritoryPermission permission = TerritoryPermission.forMaterial(block.getType());
+        if (permission != null ? !canUse(player, block.getLocation(), permission) : !canInteract(player, block.getLocation())) {
+            event.setCancelled(true);
+            // Stepping on a pressure plate is not worth a message every tick
+            if (event.getAction() != Action.PHYSICAL) {
+                player.sendMessage(ChatColor.RED + "You cannot interact with blocks in this territory!");
+            }
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onBucketEmpty(PlayerBucketEmptyEvent event) {
+        Block block = event.getBlockClicked().getRelative(event.getBlockFace());
+        if (!canUse(event.getPlayer(), block.getLocation(), TerritoryPermission.BUCKETS)) {
+            event.setCancelled(true);
+            event.getPlayer().sendMessage(ChatColor.RED + "You cannot use buckets in this territory!");
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onBucketFill(PlayerBucketFillEvent event) {
+        if (!canUse(event.getPlayer(), event.getBlockClicked().getLocation(), TerritoryPermission.BUCKETS)) {
+            event.setCancelled(true);
+            event.getPlayer().sendMessage(ChatColor.RED + "You cannot use buckets in this territory!");
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onPlayerInteractEntity(PlayerInteractEntityEvent event) {
+        Entity entity = event.getRightClicked();
+        if (!canUseEntity(event.getPlayer(), entity)) {
+            event.setCancelled(true);
+            event.getPlayer().sendMessage(ChatColor.RED + "You cannot use that in this territory!");
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onEntityDamageByPlayer(EntityDamageByEntityEvent event) {
+        if (event.getEntity() instanceof Player) {
+            return;
+        }
+        
+        Player attacker = getPlayerDamager(event.getDamager());
+        if (attacker != null && !canUseEntity(attacker, event.getEntity())) {
             event.setCancelled(true);
-            player.sendMessage(ChatColor.RED + "You cannot interact with blocks in this territory!");
+            attacker.sendMessage(ChatColor.RED + "You cannot hurt that in this territory!");
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onHangingBreak(HangingBreakByEntityEvent event) {
+        Player remover = getPlayerDamager(event.getRemover());
+        if (remover != null && !canUseEntity(remover, event.getEntity())) {
+            event.setCancelled(true);
+            remover.sendMessage(ChatColor.RED + "You cannot break that in this territory!");
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onVehicleDestroy(VehicleDestroyEvent event) {
+        Player attacker = getPlayerDamager(event.getAttacker());
+        if (attacker != null && !canUseEntity(attacker, event.getVehicle())) {
+            event.setCancelled(true);
+            attacker.sendMessage(ChatColor.RED + "You cannot break vehicles in this territory!");
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onVehicleEnter(VehicleEnterEvent event) {
+        if (!(event.getEntered() instanceof Player)) {
+            return;
+        }
+        
+        Player player = (Player) event.getEntered();
+        if (!canUseEntity(player, event.getVehicle())) {
+            event.setCancelled(true);
+            player.sendMessage(ChatColor.RED + "You cannot ride that in this territory!");
         }
     }
     
@@ -158,10 +253,70 @@ public class TerritoryListener implements Listener {
         }
     }
     
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent event) {
+        if (protectBorders) {
+            TerritoryManager territoryManager = plugin.getStorageManager().getTerritoryManager();
+            territoryManager.filterProtected(event.blockList(), territoryManager.getOwnerAt(event.getLocation()));
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent event) {
+        if (protectBorders) {
+            TerritoryManager territoryManager = plugin.getStorageManager().getTerritoryManager();
+            territoryManager.filterProtected(event.blockList(), territoryManager.getOwnerAt(event.getBlock().getLocation()));
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onPistonExtend(BlockPistonExtendEvent event) {
+        if (protectBorders && isPistonProtected(event.getBlock(), event.getBlocks(), event.getDirection(), true)) {
+            event.setCancelled(true);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onPistonRetract(BlockPistonRetractEvent event) {
+        // The direction of a retraction points back towards the piston, the way pulled blocks move
+        if (protectBorders && isPistonProtected(event.getBlock(), event.getBlocks(), event.getDirection(), false)) {
+            event.setCancelled(true);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onBlockFromTo(BlockFromToEvent event) {
+        if (protectBorders && plugin.getStorageManager().getTerritoryManager().isProtectedFrom(event.getBlock(), event.getToBlock())) {
+            event.setCancelled(true);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onBlockSpread(BlockSpreadEvent event) {
+        // Only fire; grass, vines and the like may spread freely
+        if (protectBorders && event.getNewState().getType().name().endsWith("FIRE") &&
+            plugin.getStorageManager().getTerritoryManager().isProtectedFrom(event.getSource(), event.getBlock())) {
+            event.setCancelled(true);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onBlockBurn(BlockBurnEvent event) {
+        Block source = event.getIgnitingBlock();
+        if (protectBorders && source != null &&
+            plugin.getStorageManager().getTerritoryManager().isProtectedFrom(source, event.getBlock())) {
+            event.setCancelled(true);
+        }
+    }
+    
     @EventHandler
     public void onPlayerMove(PlayerMoveEvent event) {
-        // Only check when the player moves to a new chunk
-        if (event.getFrom().getChunk().equals(event.getTo().getChunk())) {
+        // Only check when the player moves to a new chunk; compared by coordinates
+        // so that most move events neither look up nor load a chunk
+        Location from = event.getFrom();
+        Location to = event.getTo();
+        if ((from.getBlockX() >> 4) == (to.getBlockX() >> 4) && (from.getBlockZ() >> 4) == (to.getBlockZ() >> 4) &&
+            from.getWorld() == to.getWorld()) {
             return;
         }
         
@@ -169,8 +324,8 @@ public class TerritoryListener implements Listener {
         UUID playerId = player.getUniqueId();
         TerritoryManager territoryManager = plugin.getStorageManager().getTerritoryManager();
         
-        Territory fromTerritory = territoryManager.getTerritory(event.getFrom().getChunk());
-        Territory toTerritory = territoryManager.getTerritory(event.getTo().getChunk());
+        Territory fromTerritory = territoryManager.getTerritoryAt(from);
+        Territory toTerritory = territoryManager.getTerritoryAt(to);
         
         // Handle leaving a territory
         if (fromTerritory != null && (toTerritory == null || !toTerritory.getClanName().equals(fromTerritory.getClanName()))) {
@@ -220,6 +375,69 @@ public class TerritoryListener implements Listener {
         return territoryManager.canBuild(player, location);
     }
     
+    /**
+     * Checks if a player can use something needing a territory permission at a location.
+     * 
+     * @param player The player
+     * @param location The location
+     * @param permission The permission needed
+     * @return True if the player can use it
+     */
+    private boolean canUse(Player player, Location location, TerritoryPermission permission) {
+        // Admin bypass
+        if (player.hasPermission("clan.admin.territory.bypass")) {
+            return true;
+        }
+        
+        TerritoryManager territoryManager = plugin.getStorageManager().getTerritoryManager();
+        return territoryManager.canUse(player, location, permission);
+    }
+    
+    /**
+     * Checks if a player can use, ride or hurt an entity where it stands.
+     * 
+     * @param player The player
+     * @param entity The entity
+     * @return True if the player can, or if the entity needs no permission
+     */
+    private boolean canUseEntity(Player player, Entity entity) {
+        TerritoryPermission permission = TerritoryPermission.forEntity(entity.getType());
+        return permission == null || canUse(player, entity.getLocation(), permission);
+    }
+    
+    /**
+     * Gets the player behind damage, directly or through a projectile they shot.
+     * 
+     * @param damager The damaging entity, may be null
+     * @return The player, or null if no player caused the damage
+     */
+    private Player getPlayerDamager(Entity damager) {
+        if (damager instanceof Player) {
+            return (Player) damager;
+        }
+        if (damager instanceof Projectile && ((Projectile) damager).getShooter() instanceof Player) {
+            return (Player) ((Projectile) damager).getShooter();
+        }
+        return null;
+    }
+    
+    /**
+     * Checks if a piston would push or pull blocks across a claim border.
+     * 
+     * @param piston The piston block
+     * @param blocks The blocks it moves
+     * @param direction The direction the blocks move in
+     * @param extending Whether the piston is extending its head
+     * @return True if the piston must be stopped
+     */
+    private boolean isPistonProtected(Block piston, List<Block> blocks, BlockFace direction, boolean extending) {
+        TerritoryManager territoryManager = plugin.getStorageManager().getTerritoryManager();
+        String pistonOwner = territoryManager.getOwnerAt(piston.getLocation());
+        // An extending head moves into the block in front even when nothing is pushed
+        return territoryManager.isAnyProtected(blocks, direction, pistonOwner) ||
+               (extending && territoryManager.isProtectedFrom(piston, piston.getRelative(direction)));
+    }
+    
     /**
      * Checks if a player can interact with blocks at a location.
      * 
@@ -28,6 +28,7 @@ import org.bukkit.scheduler.BukkitTask;
 import java.awt.Color;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -141,6 +142,15 @@ public class TerritoryMap {
         
         // N = -Z, S = +Z, W = -X, E = +X in Minecraft
         
+        // Look up only the claimed chunks in view, placed in a grid by offset
+        int size = radius * 2 + 1;
+        List<Territory> territoriesInView = plugin.getStorageManager().getTerritoryManager().getTerritoriesInArea(
+            player.getWorld().getName(), centerX - radius, centerZ - radius, centerX + radius, centerZ + radius);
+        Territory[] grid = new Territory[size * size];
+        for (Territory territory : territoriesInView) {
+            grid[(territory.getChunkZ() - centerZ + radius) * size + (territory.getChunkX() - centerX + radius)] = territory;
+        }
+        
         // For each row (Z coordinate)
         for (int z = centerZ - radius; z <= centerZ + radius; z++) {
             StringBuilder row = new StringBuilder();
@@ -153,8 +163,7 @@ public class TerritoryMap {
                     continue;
                 }
                 
-                Chunk chunk = player.getWorld().getChunkAt(x, z);
-                Territory territory = plugin.getStorageManager().getTerritoryManager().getTerritory(chunk);
+                Territory territory = grid[(z - centerZ + radius) * size + (x - centerX + radius)];
                 
                 if (territory == null) {
                     // Unclaimed territory
@@ -181,17 +190,10 @@ public class TerritoryMap {
         // Display clan colors in the legend
         Map<String, Clan> clansInView = new HashMap<>();
         
-        for (int z = centerZ - radius; z <= centerZ + radius; z++) {
-            for (int x = centerX - radius; x <= centerX + radius; x++) {
-                Chunk chunk = player.getWorld().getChunkAt(x, z);
-                Territory territory = plugin.getStorageManager().getTerritoryManager().getTerritory(chunk);
-                
-                if (territory != null) {
-                    Clan clan = getClan(territory.getClanName());
-                    if (clan != null && !clansInView.containsKey(clan.getName())) {
-                        clansInView.put(clan.getName(), clan);
-                    }
-                }
+        for (Territory territory : territoriesInView) {
+            Clan clan = getClan(territory.getClanName());
+            if (clan != null && !clansInView.containsKey(clan.getName())) {
+                clansInView.put(clan.getName(), clan);
             }
         }
         
@@ -350,14 +352,15 @@ public class TerritoryMap {
         player.sendMessage(ChatColor.YELLOW + "Protection: " + protectionColor + protectionLevel);
         
         // Display flag count
-        int flagCount = territory.getFlags().size();
+        int flagCount = territory.getFlagCount();
         player.sendMessage(ChatColor.YELLOW + "Flags: " + ChatColor.WHITE + flagCount);
         
         // Display borders
-        boolean isNorthBorder = !isClaimed(chunk.getWorld().getChunkAt(chunk.getX(), chunk.getZ() - 1), clan.getName());
-        boolean isSouthBorder = !isClaimed(chunk.getWorld().getChunkAt(chunk.getX(), chunk.getZ() + 1), clan.getName());
-        boolean isWestBorder = !isClaimed(chunk.getWorld().getChunkAt(chunk.getX() - 1, chunk.getZ()), clan.getName());
-        boolean isEastBorder = !isClaimed(chunk.getWorld().getChunkAt(chunk.getX() + 1, chunk.getZ()), clan.getName());
+        World world = chunk.getWorld();
+        boolean isNorthBorder = !isClaimed(world, chunk.getX(), chunk.getZ() - 1, clan.getName());
+        boolean isSouthBorder = !isClaimed(world, chunk.getX(), chunk.getZ() + 1, clan.getName());
+        boolean isWestBorder = !isClaimed(world, chunk.getX() - 1, chunk.getZ(), clan.getName());
+        boolean isEastBorder = !isClaimed(world, chunk.getX() + 1, chunk.getZ(), clan.getName());
         
         if (isNorthBorder || isSouthBorder || isWestBorder || isEastBorder) {
             StringBuilder borderInfo = new StringBuilder(ChatColor.YELLOW + "Borders: " + ChatColor.WHITE);
@@ -372,20 +375,16 @@ public class TerritoryMap {
     }
     
     /**
-     * Checks if a chunk is claimed by a specific clan.
+     * Checks if a chunk is claimed by a specific clan, without loading it.
      * 
-     * @param chunk The chunk to check
+     * @param world The world
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
      * @param clanName The name of the clan to check ownership for
      * @return True if the chunk is claimed by the clan
      */
-    private boolean isClaimed(Chunk chunk, String clanName) {
-        Territory territory = plugin.getStorageManager().getTerritoryManager().getTerritory(chunk);
-        
-        if (territory == null) {
-            return false;
-        }
-        
-        return territory.getClanName().equals(clanName);
+    private boolean isClaimed(World world, int chunkX, int chunkZ, String clanName) {
+        return plugin.getStorageManager().getTerritoryManager().isClaimedBy(world.getName(), chunkX, chunkZ, clanName);
     }
     
     /**
@@ -406,14 +405,14 @@ public class TerritoryMap {
      */
     /**
      * Save all territory data to file.
-     * This method is called when the server shuts down to
-     * ensure all territory information is persisted.
+     * This method is called on the main thread when the server shuts down,
+     * before the persistence service writes the changed files.
      */
     public void saveAllTerritories() {
         if (plugin.getStorageManager() != null && 
             plugin.getStorageManager().getTerritoryManager() != null) {
             plugin.getStorageManager().getTerritoryManager().saveAllTerritories();
-            plugin.getLogger().info("All territory data has been saved.");
+            plugin.getLogger().info("All territory data has been queued for saving.");
         }
     }
     
@@ -699,14 +698,20 @@ public class TerritoryMap {
             public void run() {
                 try {
                     World world = chunk.getWorld();
+                    
+                    // Markers sit on the surface, so skip chunks that unloaded before this ran
+                    if (!world.isChunkLoaded(chunk.getX(), chunk.getZ())) {
+                        return;
+                    }
+                    
                     int chunkX = chunk.getX() << 4; // Multiply by 16
                     int chunkZ = chunk.getZ() << 4; // Multiply by 16
                     
                     // Check adjacent chunks
-                    boolean isNorthBorder = !isClaimed(world.getChunkAt(chunk.getX(), chunk.getZ() - 1), clan.getName());
-                    boolean isSouthBorder = !isClaimed(world.getChunkAt(chunk.getX(), chunk.getZ() + 1), clan.getName());
-                    boolean isWestBorder = !isClaimed(world.getChunkAt(chunk.getX() - 1, chunk.getZ()), clan.getName());
-                    boolean isEastBorder = !isClaimed(world.getChunkAt(chunk.getX() + 1, chunk.getZ()), clan.getName());
+                    boolean isNorthBorder = !isClaimed(world, chunk.getX(), chunk.getZ() - 1, clan.getName());
+                    boolean isSouthBorder = !isClaimed(world, chunk.getX(), chunk.getZ() + 1, clan.getName());
+                    boolean isWestBorder = !isClaimed(world, chunk.getX() - 1, chunk.getZ(), clan.getName());
+                    boolean isEastBorder = !isClaimed(world, chunk.getX() + 1, chunk.getZ(), clan.getName());
                     
                     // Only create border markers if this is a border chunk
                     if (!isNorthBorder && !isSouthBorder && !isWestBorder && !isEastBorder) {
@@ -779,6 +784,7 @@ public class TerritoryMap {
         private final UUID playerUUID;
         private int lastX = -999999;
         private int lastZ = -999999;
+        private long lastRevision = -1;
         
         /**
          * Creates a new territory map renderer for a specific player.
@@ -804,14 +810,17 @@ public class TerritoryMap {
             // Get current zoom level
             int zoomLevel = getZoomLevel(player);
             
-            // Don't re-render if position hasn't changed enough (based on zoom level)
+            // Don't re-render if position hasn't changed enough (based on zoom level) and no claims changed
             int minMovement = 4 * zoomLevel; // Allow less frequent updates at higher zoom levels
-            if (Math.abs(centerX - lastX) < minMovement && Math.abs(centerZ - lastZ) < minMovement) {
+            long revision = plugin.getStorageManager().getTerritoryManager().getRevision();
+            if (Math.abs(centerX - lastX) < minMovement && Math.abs(centerZ - lastZ) < minMovement
+                    && revision == lastRevision) {
                 return;
             }
             
             lastX = centerX;
             lastZ = centerZ;
+            lastRevision = revision;
             
             // Center the map on player
             map.setCenterX(centerX);
@@ -839,12 +848,20 @@ public class TerritoryMap {
                 playerClanName = playerClan.getName();
             }
             
-            // Draw each chunk's territory
-            for (int chunkX = centerX / 16 - chunkRadius; chunkX <= centerX / 16 + chunkRadius; chunkX++) {
-                for (int chunkZ = centerZ / 16 - chunkRadius; chunkZ <= centerZ / 16 + chunkRadius; chunkZ++) {
-                    renderChunk(canvas, world, chunkX, chunkZ, centerX, centerZ, playerClanName);
+            // Draw the chunk grid, then the claimed chunks in view on top of it
+            int minChunkX = centerX / 16 - chunkRadius;
+            int minChunkZ = centerZ / 16 - chunkRadius;
+            int maxChunkX = centerX / 16 + chunkRadius;
+            int maxChunkZ = centerZ / 16 + chunkRadius;
+            for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                    renderChunk(canvas, null, chunkX, chunkZ, centerX, centerZ, playerClanName);
                 }
             }
+            for (Territory territory : plugin.getStorageManager().getTerritoryManager().getTerritoriesInArea(
+                    world.getName(), minChunkX, minChunkZ, maxChunkX, maxChunkZ)) {
+                renderChunk(canvas, territory, territory.getChunkX(), territory.getChunkZ(), centerX, centerZ, playerClanName);
+            }
             
             // Draw player position
             int playerPixelX = mapWidth / 2;
@@ -869,12 +886,9 @@ public class TerritoryMap {
         /**
          * Renders a single chunk on the map.
          */
-        private void renderChunk(MapCanvas canvas, World world, int chunkX, int chunkZ, 
+        private void renderChunk(MapCanvas canvas, Territory territory, int chunkX, int chunkZ, 
                                 int centerX, int centerZ, String playerClanName) {
             
-            Chunk chunk = world.getChunkAt(chunkX, chunkZ);
-            Territory territory = plugin.getStorageManager().getTerritoryManager().getTerritory(chunk);
-            
             // Get current zoom level
             int zoomLevel = getZoomLevel(Bukkit.getPlayer(playerUUID));
             
@@ -992,24 +1006,17 @@ public class TerritoryMap {
             
             // Add territory flags as green cursors
             int searchRadius = 32 * zoomLevel; // Bigger search at higher zoom levels
-            for (int chunkX = centerX / 16 - searchRadius / 16; chunkX <= centerX / 16 + searchRadius / 16; chunkX++) {
-                for (int chunkZ = centerZ / 16 - searchRadius / 16; chunkZ <= centerZ / 16 + searchRadius / 16; chunkZ++) {
-                    Chunk chunk = player.getWorld().getChunkAt(chunkX, chunkZ);
-                    Territory territory = plugin.getStorageManager().getTerritoryManager().getTerritory(chunk);
-                    
-                    if (territory != null && !territory.getFlags().isEmpty()) {
-                        for (Flag flag : territory.getFlags()) {
-                            Location flagLoc = flag.getLocation();
-                            byte cursorType = MapCursor.Type.GREEN_POINTER.getValue();
-                            
-                            int cursorX = (int) (128 * (flagLoc.getBlockX() - centerX) / (128 * 2 * zoomLevel));
-                            int cursorZ = (int) (128 * (flagLoc.getBlockZ() - centerZ) / (128 * 2 * zoomLevel));
-                            
-                            if (cursorX >= -128 && cursorX <= 127 && cursorZ >= -128 && cursorZ <= 127) {
-                                cursors.addCursor(cursorX, cursorZ, (byte) 0, cursorType, true);
-                            }
-                        }
-                    }
+            List<Flag> nearbyFlags = plugin.getStorageManager().getTerritoryManager().getFlagsInRadius(
+                player.getWorld().getName(), centerX, centerZ, searchRadius);
+            for (Flag flag : nearbyFlags) {
+                Location flagLoc = flag.getLocation();
+                byte cursorType = MapCursor.Type.GREEN_POINTER.getValue();
+                
+                int cursorX = (int) (128 * (flagLoc.getBlockX() - centerX) / (128 * 2 * zoomLevel));
+                int cursorZ = (int) (128 * (flagLoc.getBlockZ() - centerZ) / (128 * 2 * zoomLevel));
+                
+                if (cursorX >= -128 && cursorX <= 127 && cursorZ >= -128 && cursorZ <= 127) {
+                    cursors.addCursor(cursorX, cursorZ, (byte) 0, cursorType, true);
                 }
             }
             
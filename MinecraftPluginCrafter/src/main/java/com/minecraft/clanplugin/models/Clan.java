@@ -33,6 +33,8 @@ public class Clan {
     private int warLosses; // Number of clan wars lost
     private Map<String, Long> recentRecruits; // Map of recent recruits (UUID, join timestamp)
     private Map<String, Double> memberContributions; // Map of member contributions to the clan treasury
+    private long modCount; // Bumped by every change that is persisted
+    private int relationCount; // Bumped when an ally or enemy is added or removed
 
     /**
      * Create a new clan with the given name.
@@ -107,6 +109,7 @@ public class Clan {
      * @param tag The new clan tag
      */
     public void setTag(String tag) {
+        modCount++;
         this.tag = tag;
     }
 
@@ -125,6 +128,7 @@ public class Clan {
      * @param color The new clan color
      */
     public void setColor(String color) {
+        modCount++;
         this.color = color;
     }
     
@@ -180,6 +184,7 @@ public class Clan {
      * @param description The new clan description
      */
     public void setDescription(String description) {
+        modCount++;
         this.description = description;
     }
 
@@ -211,6 +216,7 @@ public class Clan {
      * @param member The member to add
      */
     public void addMember(ClanMember member) {
+        modCount++;
         members.add(member);
     }
 
@@ -221,6 +227,7 @@ public class Clan {
      * @return True if the member was removed, false if not found
      */
     public boolean removeMember(UUID playerUUID) {
+        modCount++;
         Iterator<ClanMember> iterator = members.iterator();
         while (iterator.hasNext()) {
             ClanMember member = iterator.next();
@@ -263,6 +270,7 @@ public class Clan {
      * @param playerUUID The UUID of the invited player
      */
     public void addInvite(UUID playerUUID) {
+        modCount++;
         invites.add(playerUUID);
     }
 
@@ -273,6 +281,7 @@ public class Clan {
      * @return True if the invite was removed, false if not found
      */
     public boolean removeInvite(UUID playerUUID) {
+        modCount++;
         return invites.remove(playerUUID);
     }
 
@@ -301,6 +310,8 @@ public class Clan {
      * @param clanName The name of the allied clan
      */
     public void addAlliance(String clanName) {
+        modCount++;
+        relationCount++;
         allies.add(clanName.toLowerCase());
         // Remove from enemies if they were enemies before
         enemies.remove(clanName.toLowerCase());
@@ -313,6 +324,8 @@ public class Clan {
      * @return True if the clan was removed, false if not found
      */
     public boolean removeAlliance(String clanName) {
+        modCount++;
+        relationCount++;
         return allies.remove(clanName.toLowerCase());
     }
 
@@ -351,6 +364,8 @@ public class Clan {
      * @param clanName The name of the enemy clan
      */
     public void addEnemy(String clanName) {
+        modCount++;
+        relationCount++;
         enemies.add(clanName.toLowerCase());
         // Remove from allies if they were allies before
         allies.remove(clanName.toLowerCase());
@@ -363,6 +378,8 @@ public class Clan {
      * @return True if the clan was removed, false if not found
      */
     public boolean removeEnemy(String clanName) {
+        modCount++;
+        relationCount++;
         return enemies.remove(clanName.toLowerCase());
     }
 
@@ -385,6 +402,16 @@ public class Clan {
         return Collections.unmodifiableSet(enemies);
     }
 
+    /**
+     * Get a number that changes whenever an ally or enemy is added or removed.
+     * Lets relations looked up from this clan be cached until they change.
+     * 
+     * @return The current relation version
+     */
+    public int getRelationVersion() {
+        return relationCount;
+    }
+    
     /**
      * Get the clan home location.
      * 
@@ -400,6 +427,7 @@ public class Clan {
      * @param home The new clan home location
      */
     public void setHome(Location home) {
+        modCount++;
         this.home = home;
     }
     
@@ -420,6 +448,7 @@ public class Clan {
      * @param location The location of the home
      */
     public void setAdditionalHome(String name, Location location) {
+        modCount++;
         additionalHomes.put(name.toLowerCase(), location);
     }
     
@@ -430,6 +459,7 @@ public class Clan {
      * @return True if the home was removed, false if not found
      */
     public boolean removeAdditionalHome(String name) {
+        modCount++;
         return additionalHomes.remove(name.toLowerCase()) != null;
     }
     
@@ -451,6 +481,16 @@ public class Clan {
         return creationTime;
     }
     
+    /**
+     * Set the creation time of the clan (used when loading stored clans).
+     * 
+     * @param creationTime The creation time in milliseconds
+     */
+    public void setCreationTime(long creationTime) {
+        modCount++;
+        this.creationTime = creationTime;
+    }
+    
     /**
      * Get the age of the clan in days.
      * 
@@ -477,6 +517,7 @@ public class Clan {
      * @param level The new clan level
      */
     public void setLevel(int level) {
+        modCount++;
         this.level = Math.max(1, level);
     }
     
@@ -495,6 +536,7 @@ public class Clan {
      * @param experience The new clan experience
      */
     public void setExperience(int experience) {
+        modCount++;
         this.experience = Math.max(0, experience);
     }
     
@@ -504,6 +546,7 @@ public class Clan {
      * @param amount The amount of experience to add
      */
     public void addExperience(int amount) {
+        modCount++;
         if (amount > 0) {
             this.experience += amount;
         }
@@ -526,6 +569,7 @@ public class Clan {
      * @param value The value of the statistic
      */
     public void setStat(String statName, int value) {
+        modCount++;
         stats.put(statName.toLowerCase(), value);
     }
     
@@ -536,6 +580,7 @@ public class Clan {
      * @param amount The amount to increment by
      */
     public void incrementStat(String statName, int amount) {
+        modCount++;
         if (amount <= 0) {
             return;
         }
@@ -571,6 +616,7 @@ public class Clan {
      * @param coloredArmor Whether to use colored armor
      */
     public void setColoredArmor(boolean coloredArmor) {
+        modCount++;
         this.coloredArmor = coloredArmor;
     }
     
@@ -589,6 +635,7 @@ public class Clan {
      * @param skillPoints The number of additional skill points
      */
     public void setSkillPoints(int skillPoints) {
+        modCount++;
         this.skillPoints = Math.max(0, skillPoints);
     }
     
@@ -598,6 +645,7 @@ public class Clan {
      * @param amount The amount of skill points to add
      */
     public void addSkillPoints(int amount) {
+        modCount++;
         if (amount > 0) {
             this.skillPoints += amount;
         }
@@ -618,6 +666,7 @@ public class Clan {
      * @param maxMembers The new maximum number of members
      */
     public void setMaxMembers(int maxMembers) {
+        modCount++;
         this.maxMembers = Math.max(1, maxMembers);
     }
     
@@ -636,6 +685,7 @@ public class Clan {
      * @param maxTerritories The new maximum number of territories
      */
     public void setMaxTerritories(int maxTerritories) {
+        modCount++;
         this.maxTerritories = Math.max(1, maxTerritories);
     }
     
@@ -654,6 +704,7 @@ public class Clan {
      * @param incomeBoost The new income boost percentage
      */
     public void setIncomeBoost(int incomeBoost) {
+        modCount++;
         this.incomeBoost = Math.max(0, incomeBoost);
     }
     
@@ -694,6 +745,7 @@ public class Clan {
      * @param warWins The new number of clan wars won
      */
     public void setWarWins(int warWins) {
+        modCount++;
         this.warWins = Math.max(0, warWins);
     }
     
@@ -701,6 +753,7 @@ public class Clan {
      * Increment the number of clan wars won by 1.
      */
     public void incrementWarWins() {
+        modCount++;
         this.warWins++;
     }
     
@@ -719,6 +772,7 @@ public class Clan {
      * @param warLosses The new number of clan wars lost
      */
     public void setWarLosses(int warLosses) {
+        modCount++;
         this.warLosses = Math.max(0, warLosses);
     }
     
@@ -726,6 +780,7 @@ public class Clan {
      * Increment the number of clan wars lost by 1.
      */
     public void incrementWarLosses() {
+        modCount++;
         this.warLosses++;
     }
     
@@ -790,4 +845,20 @@ public class Clan {
     public Map<String, Double> getMemberContributions() {
         return Collections.unmodifiableMap(memberContributions);
     }
+    
+    /**
+     * Get a version number that changes whenever a persisted field of the clan
+     * or of one of its members changes. Storage uses it to reuse the snapshot
+     * of a clan that did not change since the last save.
+     * 
+     * @return The current version
+     */
+    public long getVersion() {
+        long memberVersions = 0;
+        for (ClanMember member : members) {
+            memberVersions += member.getVersion();
+        }
+        // Adding or removing a member bumps modCount, so the sum alone never has to tell them apart
+        return (modCount << 32) + memberVersions;
+    }
 }
@@ -11,6 +11,7 @@ public class ClanMember {
     private String playerName;
     private ClanRole role;
     private long lastActive; // Timestamp of last activity
+    private int version; // Bumped when the name or role changes
 
     /**
      * Create a new clan member.
@@ -50,6 +51,7 @@ public class ClanMember {
      * @param playerName The new player name
      */
     public void setPlayerName(String playerName) {
+        version++;
         this.playerName = playerName;
     }
 
@@ -68,6 +70,7 @@ public class ClanMember {
      * @param role The new role
      */
     public void setRole(ClanRole role) {
+        version++;
         this.role = role;
     }
     
@@ -110,6 +113,15 @@ public class ClanMember {
         this.lastActive = timestamp;
     }
     
+    /**
+     * Get a version number that changes whenever the stored name or role changes.
+     * 
+     * @return The current version
+     */
+    public int getVersion() {
+        return version;
+    }
+    
     /**
      * Get the name of the member. Alias for getPlayerName().
      * 
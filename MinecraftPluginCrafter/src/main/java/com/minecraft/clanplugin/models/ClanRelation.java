@@ -0,0 +1,27 @@
+package com.minecraft.clanplugin.models;
+
+/**
+ * Enum representing how a player stands towards the clan owning a territory,
+ * from the closest to the most distant relation.
+ */
+public enum ClanRelation {
+    /**
+     * The player is a member of the clan.
+     */
+    MEMBER,
+    
+    /**
+     * The player's clan counts the clan as an ally.
+     */
+    ALLY,
+    
+    /**
+     * The player is in no clan, or their clan is neither allied with nor an enemy of the clan.
+     */
+    NEUTRAL,
+    
+    /**
+     * The player's clan counts the clan as an enemy.
+     */
+    ENEMY
+}
@@ -14,6 +14,7 @@ public class Flag {
     private int tier;  // Flag upgrade level
     private int influenceRadius;
     private String name; // Optional name for the flag
+    private int version; // Bumped when the tier or name changes
     
     /**
      * Creates a new clan flag
@@ -98,6 +99,7 @@ public class Flag {
     public boolean upgrade() {
         if (tier < 3) {  // Maximum tier is 3
             tier++;
+            version++;
             updateInfluenceRadius();
             return true;
         }
@@ -128,9 +130,19 @@ public class Flag {
      * @param name The new flag name
      */
     public void setName(String name) {
+        version++;
         this.name = name;
     }
     
+    /**
+     * Gets a version number that changes whenever the tier or name changes
+     * 
+     * @return The current version
+     */
+    public int getVersion() {
+        return version;
+    }
+    
     /**
      * Updates the influence radius based on the current tier
      */
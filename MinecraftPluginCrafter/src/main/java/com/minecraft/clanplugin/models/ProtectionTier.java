@@ -0,0 +1,113 @@
+package com.minecraft.clanplugin.models;
+
+/**
+ * Enum representing the protection tiers of a territory, chosen by its
+ * influence. Each tier holds who may build and interact in it, so a
+ * protection check is a comparison instead of a lookup by name.
+ */
+public enum ProtectionTier {
+    /**
+     * Influence 75 and above - only members may build or interact, no PvP.
+     */
+    CORE("Core", 75, ClanRelation.MEMBER, ClanRelation.MEMBER, false),
+    
+    /**
+     * Influence 50 to 74 - members build, allies may interact, no PvP.
+     */
+    SECURE("Secure", 50, ClanRelation.MEMBER, ClanRelation.ALLY, false),
+    
+    /**
+     * Influence 25 to 49 - members and allies may build and interact, PvP allowed.
+     */
+    CONTESTED("Contested", 25, ClanRelation.ALLY, ClanRelation.ALLY, true),
+    
+    /**
+     * Influence below 25 - everyone but enemies may build and interact, PvP allowed.
+     */
+    FRONTIER("Frontier", 0, ClanRelation.NEUTRAL, ClanRelation.NEUTRAL, true);
+    
+    // The tier for every influence level from 0 to 100
+    private static final ProtectionTier[] BY_INFLUENCE = new ProtectionTier[101];
+    
+    static {
+        for (int influence = 0; influence < BY_INFLUENCE.length; influence++) {
+            for (ProtectionTier tier : values()) {
+                if (influence >= tier.minInfluence) {
+                    BY_INFLUENCE[influence] = tier;
+                    break;
+                }
+            }
+        }
+    }
+    
+    private final String displayName;
+    private final int minInfluence;
+    private final int builders; // The most distant relation allowed to build
+    private final int interactors; // The most distant relation allowed to interact
+    private final boolean pvpEnabled;
+    
+    /**
+     * Constructor for ProtectionTier
+     * 
+     * @param displayName The name shown to players
+     * @param minInfluence The lowest influence level of the tier
+     * @param builders The most distant relation allowed to build
+     * @param interactors The most distant relation allowed to interact
+     * @param pvpEnabled Whether PvP is allowed
+     */
+    ProtectionTier(String displayName, int minInfluence, ClanRelation builders, ClanRelation interactors, boolean pvpEnabled) {
+        this.displayName = displayName;
+        this.minInfluence = minInfluence;
+        this.builders = builders.ordinal();
+        this.interactors = interactors.ordinal();
+        this.pvpEnabled = pvpEnabled;
+    }
+    
+    /**
+     * Gets the tier for an influence level.
+     * 
+     * @param influenceLevel The influence level, clamped to 0-100
+     * @return The protection tier
+     */
+    public static ProtectionTier of(int influenceLevel) {
+        return BY_INFLUENCE[Math.max(0, Math.min(100, influenceLevel))];
+    }
+    
+    /**
+     * Gets the name shown to players.
+     * 
+     * @return The display name
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+    
+    /**
+     * Checks whether a player with the given relation to the owning clan may build.
+     * 
+     * @param relation The player's relation to the owning clan
+     * @return True if the player may build
+     */
+    public boolean allowsBuild(ClanRelation relation) {
+        return relation.ordinal() <= builders;
+    }
+    
+    /**
+     * Checks whether a player with the given relation to the owning clan may interact with blocks.
+     * 
+     * @param relation The player's relation to the owning clan
+     * @return True if the player may interact
+     */
+    public boolean allowsInteract(ClanRelation relation) {
+        return relation.ordinal() <= interactors;
+    }
+    
+    /**
+     * Checks whether PvP is allowed.
+     * 
+     * @return True if PvP is allowed
+     */
+    public boolean isPvpEnabled() {
+        return pvpEnabled;
+    }
+}
@@ -6,19 +6,31 @@ import org.bukkit.Location;
 import org.bukkit.World;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents a territory chunk claimed by a clan.
+ * <p>
+ * Servers hold hundreds of thousands of these, so they are kept small: world
+ * and clan names are shared between territories instead of each holding its
+ * own copy, and the flag list is only allocated once a flag is placed.
+ * Bookkeeping that is not saved, such as the influence nearby flags spread
+ * into the chunk, is kept next to the territory in the territory index.
  */
 public class Territory {
+    // World and clan names in use; territories loaded from files would otherwise each hold their own copies
+    private static final Map<String, String> NAMES = new ConcurrentHashMap<>();
+    
     private final int chunkX;
     private final int chunkZ;
     private final String worldName;
     private final String clanName;
     private int influenceLevel;
-    private List<Flag> flags;
+    private List<Flag> flags; // Null until the first flag is placed
     private long claimTime;
 
     /**
@@ -30,10 +42,9 @@ public class Territory {
     public Territory(Chunk chunk, String clanName) {
         this.chunkX = chunk.getX();
         this.chunkZ = chunk.getZ();
-        this.worldName = chunk.getWorld().getName();
-        this.clanName = clanName;
+        this.worldName = intern(chunk.getWorld().getName());
+        this.clanName = intern(clanName);
         this.influenceLevel = 100; // Default max influence
-        this.flags = new ArrayList<>();
         this.claimTime = System.currentTimeMillis();
     }
     
@@ -44,13 +55,35 @@ public class Territory {
                      int influenceLevel, List<Flag> flags, long claimTime) {
         this.chunkX = chunkX;
         this.chunkZ = chunkZ;
-        this.worldName = worldName;
-        this.clanName = clanName;
+        this.worldName = intern(worldName);
+        this.clanName = intern(clanName);
         this.influenceLevel = influenceLevel;
-        this.flags = flags != null ? flags : new ArrayList<>();
+        this.flags = flags != null && !flags.isEmpty() ? flags : null;
         this.claimTime = claimTime;
     }
     
+    /**
+     * Gets the shared instance of a world or clan name.
+     * 
+     * @param name The name
+     * @return The shared instance
+     */
+    private static String intern(String name) {
+        if (name == null) {
+            return null;
+        }
+        String shared = NAMES.putIfAbsent(name, name);
+        return shared != null ? shared : name;
+    }
+    
+    /**
+     * Forgets the shared world and clan names. Called when the plugin is
+     * disabled, so names of deleted clans do not outlive a reload.
+     */
+    public static void clearNames() {
+        NAMES.clear();
+    }
+    
     /**
      * Gets the chunk's X coordinate
      * 
@@ -106,12 +139,13 @@ public class Territory {
     }
     
     /**
-     * Gets the list of flags placed in this territory
+     * Gets the list of flags placed in this territory. Flags are added and
+     * removed through {@link #addFlag(Flag)} and {@link #removeFlag(Flag)}.
      * 
-     * @return The list of flags
+     * @return The list of flags, empty and unmodifiable if there are none
      */
     public List<Flag> getFlags() {
-        return flags;
+        return flags != null ? flags : Collections.emptyList();
     }
     
     /**
@@ -120,6 +154,9 @@ public class Territory {
      * @param flag The flag to add
      */
     public void addFlag(Flag flag) {
+        if (flags == null) {
+            flags = new ArrayList<>(1);
+        }
         this.flags.add(flag);
         recalculateInfluence();
     }
@@ -131,13 +168,48 @@ public class Territory {
      * @return True if the flag was removed, false otherwise
      */
     public boolean removeFlag(Flag flag) {
-        boolean removed = this.flags.remove(flag);
+        boolean removed = flags != null && this.flags.remove(flag);
         if (removed) {
+            if (flags.isEmpty()) {
+                flags = null;
+            }
             recalculateInfluence();
         }
         return removed;
     }
     
+    /**
+     * Gets the number of flags in this territory
+     * 
+     * @return The flag count
+     */
+    public int getFlagCount() {
+        return flags != null ? flags.size() : 0;
+    }
+    
+    /**
+     * Gets the sum of the tiers of this territory's flags
+     * 
+     * @return The tier sum
+     */
+    public int getFlagTierSum() {
+        int sum = 0;
+        for (Flag flag : getFlags()) {
+            sum += flag.getTier();
+        }
+        return sum;
+    }
+    
+    /**
+     * Gets the influence this territory's flags add on top of the base
+     * influence: 10 per flag plus 5 per tier, before the cap of 100
+     * 
+     * @return The flag influence
+     */
+    public int getFlagInfluence() {
+        return getFlagCount() * 10 + getFlagTierSum() * 5;
+    }
+    
     /**
      * Gets the time when this territory was claimed
      * 
@@ -151,33 +223,29 @@ public class Territory {
      * Recalculates the influence level based on the number and tier of flags
      */
     private void recalculateInfluence() {
-        // Base influence is 50
-        int newInfluence = 50;
-        
-        // Each flag adds 10 influence, plus 5 per tier
-        for (Flag flag : flags) {
-            newInfluence += 10 + (flag.getTier() * 5);
-        }
+        // Base influence is 50, each flag adds 10 influence, plus 5 per tier
+        int newInfluence = 50 + getFlagInfluence();
         
         // Cap at 100
         this.influenceLevel = Math.min(100, newInfluence);
     }
     
+    /**
+     * Gets the protection tier based on influence
+     * 
+     * @return The protection tier
+     */
+    public ProtectionTier getProtectionTier() {
+        return ProtectionTier.of(influenceLevel);
+    }
+    
     /**
      * Gets the protection level name based on influence
      * 
      * @return The protection level name
      */
     public String getProtectionLevel() {
-        if (influenceLevel >= 75) {
-            return "Core";
-        } else if (influenceLevel >= 50) {
-            return "Secure";
-        } else if (influenceLevel >= 25) {
-            return "Contested";
-        } else {
-            return "Frontier";
-        }
+        return getProtectionTier().getDisplayName();
     }
     
     /**
@@ -212,8 +280,7 @@ public class Territory {
             return false;
         }
         
-        Chunk locationChunk = location.getChunk();
-        return locationChunk.getX() == chunkX && locationChunk.getZ() == chunkZ;
+        return (location.getBlockX() >> 4) == chunkX && (location.getBlockZ() >> 4) == chunkZ;
     }
     
     /**
@@ -232,7 +299,7 @@ public class Territory {
      */
     public String getName() {
         // Provide a friendly name if there's a flag with a name, otherwise a default name
-        for (Flag flag : flags) {
+        for (Flag flag : getFlags()) {
             if (flag.getName() != null && !flag.getName().isEmpty()) {
                 return flag.getName() + " Territory";
             }
@@ -243,7 +310,9 @@ public class Territory {
     }
     
     /**
-     * Gets the center location of this territory.
+     * Gets the center location of this territory. The surface height is only
+     * looked up when the chunk is loaded; otherwise the sea level is used, so
+     * the chunk is never loaded or generated just to find a center.
      * 
      * @return The center location
      */
@@ -258,7 +327,7 @@ public class Territory {
         int blockZ = chunkZ * 16 + 8;
         
         // Find a safe Y coordinate
-        int blockY = world.getHighestBlockYAt(blockX, blockZ);
+        int blockY = world.isChunkLoaded(chunkX, chunkZ) ? world.getHighestBlockYAt(blockX, blockZ) : world.getSeaLevel();
         
         return new Location(world, blockX, blockY, blockZ);
     }
@@ -283,7 +352,7 @@ public class Territory {
         int baseValue = Math.max(1, Math.min(5, (influenceLevel / 20)));
         
         // Add 1 for each flag
-        baseValue += Math.min(5, flags.size());
+        baseValue += Math.min(5, getFlagCount());
         
         // Ensure value is between 1 and 10
         return Math.max(1, Math.min(10, baseValue));
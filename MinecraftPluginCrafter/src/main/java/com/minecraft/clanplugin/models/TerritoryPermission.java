@@ -0,0 +1,193 @@
+package com.minecraft.clanplugin.models;
+
+import org.bukkit.Material;
+import org.bukkit.entity.Animals;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.ItemFrame;
+import org.bukkit.entity.Vehicle;
+
+/**
+ * Enum representing the kinds of interaction a clan can allow or deny in its
+ * territory, each one bit of a permission mask. Blocks, bucket items and
+ * entity types are mapped to their bit once, so an interaction is matched to
+ * its permission with one array read.
+ */
+public enum TerritoryPermission {
+    /**
+     * Opening chests, barrels, furnaces, hoppers and other blocks with an inventory.
+     */
+    CONTAINERS,
+    
+    /**
+     * Opening doors, trapdoors and fence gates.
+     */
+    DOORS,
+    
+    /**
+     * Using levers, buttons, pressure plates, repeaters and comparators.
+     */
+    REDSTONE,
+    
+    /**
+     * Filling and emptying buckets.
+     */
+    BUCKETS,
+    
+    /**
+     * Riding, using and breaking minecarts and boats.
+     */
+    VEHICLES,
+    
+    /**
+     * Feeding, leashing, riding and hurting animals.
+     */
+    ANIMALS,
+    
+    /**
+     * Using and breaking item frames.
+     */
+    ITEM_FRAMES;
+    
+    /**
+     * A mask with every permission set.
+     */
+    public static final int ALL = (1 << values().length) - 1;
+    
+    private static final TerritoryPermission[] VALUES = values();
+    private static final byte[] BY_MATERIAL = new byte[Material.values().length];
+    private static final byte[] BY_ENTITY_TYPE = new byte[EntityType.values().length];
+    
+    static {
+        // Stored as ordinal + 1, 0 meaning the interaction needs no permission
+        for (Material material : Material.values()) {
+            TerritoryPermission permission = classify(material.name());
+            if (permission != null) {
+                BY_MATERIAL[material.ordinal()] = (byte) (permission.ordinal() + 1);
+            }
+        }
+        for (EntityType type : EntityType.values()) {
+            TerritoryPermission permission = classify(type.getEntityClass());
+            if (permission != null) {
+                BY_ENTITY_TYPE[type.ordinal()] = (byte) (permission.ordinal() + 1);
+            }
+        }
+    }
+    
+    /**
+     * Gets the bit of this permission in a permission mask.
+     * 
+     * @return The bit
+     */
+    public int getBit() {
+        return 1 << ordinal();
+    }
+    
+    /**
+     * Gets the permission needed to use a block or item.
+     * 
+     * @param material The material of the block or item
+     * @return The permission, or null if using it needs none
+     */
+    public static TerritoryPermission forMaterial(Material material) {
+        int index = BY_MATERIAL[material.ordinal()];
+        return index == 0 ? null : VALUES[index - 1];
+    }
+    
+    /**
+     * Gets the permission needed to use or hurt an entity.
+     * 
+     * @param type The entity type
+     * @return The permission, or null if using it needs none
+     */
+    public static TerritoryPermission forEntity(EntityType type) {
+        int index = BY_ENTITY_TYPE[type.ordinal()];
+        return index == 0 ? null : VALUES[index - 1];
+    }
+    
+    /**
+     * Finds a permission by name, ignoring case, dashes and underscores.
+     * 
+     * @param name The name, such as "containers" or "item-frames"
+     * @return The permission, or null if there is none with that name
+     */
+    public static TerritoryPermission fromName(String name) {
+        String key = name.replace("-", "").replace("_", "");
+        for (TerritoryPermission permission : VALUES) {
+            if (permission.name().replace("_", "").equalsIgnoreCase(key)) {
+                return permission;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Matches a material name to its permission.
+     * 
+     * @param name The material name
+     * @return The permission, or null if using the material needs none
+     */
+    private static TerritoryPermission classify(String name) {
+        if (name.startsWith("LEGACY_")) {
+            return null;
+        }
+        if (name.endsWith("_DOOR") || name.endsWith("_TRAPDOOR") || name.endsWith("_FENCE_GATE")) {
+            return DOORS;
+        }
+        if (name.endsWith("_BUTTON") || name.endsWith("_PRESSURE_PLATE")) {
+            return REDSTONE;
+        }
+        if (name.endsWith("SHULKER_BOX")) {
+            return CONTAINERS;
+        }
+        if (name.equals("BUCKET") || name.endsWith("_BUCKET")) {
+            return BUCKETS;
+        }
+        switch (name) {
+            case "CHEST":
+            case "TRAPPED_CHEST":
+            case "BARREL":
+            case "FURNACE":
+            case "BLAST_FURNACE":
+            case "SMOKER":
+            case "HOPPER":
+            case "DROPPER":
+            case "DISPENSER":
+            case "BREWING_STAND":
+            case "LECTERN":
+            case "JUKEBOX":
+            case "BEACON":
+                return CONTAINERS;
+            case "LEVER":
+            case "REPEATER":
+            case "COMPARATOR":
+            case "DAYLIGHT_DETECTOR":
+            case "NOTE_BLOCK":
+                return REDSTONE;
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * Matches an entity class to its permission.
+     * 
+     * @param entityClass The entity class, or null for types without one
+     * @return The permission, or null if using the entity needs none
+     */
+    private static TerritoryPermission classify(Class<?> entityClass) {
+        if (entityClass == null) {
+            return null;
+        }
+        // Checked before vehicles, as rideable animals are vehicles too
+        if (Animals.class.isAssignableFrom(entityClass)) {
+            return ANIMALS;
+        }
+        if (Vehicle.class.isAssignableFrom(entityClass)) {
+            return VEHICLES;
+        }
+        if (ItemFrame.class.isAssignableFrom(entityClass)) {
+            return ITEM_FRAMES;
+        }
+        return null;
+    }
+}
@@ -2,6 +2,7 @@ package com.minecraft.clanplugin.reputation;
 
 import com.minecraft.clanplugin.ClanPlugin;
 import com.minecraft.clanplugin.models.Clan;
+import com.minecraft.clanplugin.storage.PersistenceService;
 import com.minecraft.clanplugin.utils.MessageUtils;
 import org.bukkit.ChatColor;
 import org.bukkit.configuration.file.FileConfiguration;
@@ -21,6 +22,7 @@ public class ReputationManager {
     private Map<String, Integer> clanReputation;
     private File reputationFile;
     private FileConfiguration reputationConfig;
+    private PersistenceService.Registration persistence;
     
     /**
      * Creates a new reputation manager.
@@ -31,8 +33,16 @@ public class ReputationManager {
         this.plugin = plugin;
         this.clanReputation = new HashMap<>();
         
-        // Initialize reputation file
+        // Changes are written in the background
         this.reputationFile = new File(plugin.getDataFolder(), "reputation.yml");
+        this.persistence = plugin.getPersistenceService().register("Reputation", reputationFile, this::snapshotReputation);
+    }
+    
+    /**
+     * Reads reputation.yml. Runs on a loader thread while the plugin is enabled,
+     * after the constructor registered the file on the main thread.
+     */
+    public void load() {
         if (!reputationFile.exists()) {
             try {
                 reputationFile.createNewFile();
@@ -61,27 +71,30 @@ public class ReputationManager {
     }
     
     /**
-     * Saves reputation data to configuration.
+     * Marks reputation data as changed so it is saved in the background.
      */
     private void saveReputation() {
+        persistence.markDirty();
+    }
+    
+    /**
+     * Builds a copy of the reputation data for the background writer.
+     * 
+     * @return The reputation data to write
+     */
+    private YamlConfiguration snapshotReputation() {
         for (Map.Entry<String, Integer> entry : clanReputation.entrySet()) {
             reputationConfig.set("clans." + entry.getKey(), entry.getValue());
         }
         
-        try {
-            reputationConfig.save(reputationFile);
-        } catch (IOException e) {
-            plugin.getLogger().severe("Could not save reputation data!");
-            e.printStackTrace();
-        }
+        return PersistenceService.copyOf(reputationConfig);
     }
     
     /**
      * Public method to save all reputation data.
-     * This is called when the server is shutting down.
+     * The data is written when the persistence service drains on shutdown.
      */
     public void saveReputationData() {
-        plugin.getLogger().info("Saving reputation data...");
         saveReputation();
     }
     
@@ -4,6 +4,7 @@ import com.minecraft.clanplugin.ClanPlugin;
 import com.minecraft.clanplugin.models.Clan;
 import com.minecraft.clanplugin.models.ClanMember;
 import com.minecraft.clanplugin.models.ClanRole;
+import com.minecraft.clanplugin.storage.PersistenceService;
 import com.minecraft.clanplugin.utils.ItemUtils;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
@@ -29,6 +30,7 @@ public class ClanShop {
     private final Map<String, ShopCategory> categories;
     private final Map<String, ShopItem> allItems;
     private final ShopManager shopManager;
+    private final PersistenceService.Registration configPersistence;
     
     /**
      * Creates a new clan shop manager.
@@ -41,6 +43,11 @@ public class ClanShop {
         this.allItems = new HashMap<>();
         this.shopManager = new ShopManager(plugin);
         
+        // Unique purchases are stored in config.yml and written in the background
+        this.configPersistence = plugin.getPersistenceService().register("Config", 
+                new java.io.File(plugin.getDataFolder(), "config.yml"), 
+                () -> PersistenceService.copyOf(plugin.getConfig()));
+        
         loadShopItems();
     }
     
@@ -520,7 +527,7 @@ public class ClanShop {
         List<String> uniquePurchases = plugin.getConfig().getStringList("clan_purchases." + clan.getName());
         uniquePurchases.add(itemKey);
         plugin.getConfig().set("clan_purchases." + clan.getName(), uniquePurchases);
-        plugin.saveConfig();
+        configPersistence.markDirty();
     }
     
     /**
@@ -3,6 +3,7 @@ package com.minecraft.clanplugin.skills;
 import com.minecraft.clanplugin.ClanPlugin;
 import com.minecraft.clanplugin.models.Clan;
 import com.minecraft.clanplugin.models.ClanMember;
+import com.minecraft.clanplugin.storage.PlayerDataStore;
 import org.bukkit.ChatColor;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
@@ -22,7 +23,7 @@ import java.util.*;
 public class SkillManager {
     private ClanPlugin plugin;
     private Map<String, ClanSkill> skills;
-    private Map<UUID, MemberSkills> memberSkills;
+    private PlayerDataStore<MemberSkills> memberSkills;
     private File skillsFile;
     private FileConfiguration skillsConfig;
     
@@ -34,10 +35,32 @@ public class SkillManager {
     public SkillManager(ClanPlugin plugin) {
         this.plugin = plugin;
         this.skills = new HashMap<>();
-        this.memberSkills = new HashMap<>();
+        this.memberSkills = new PlayerDataStore<>(plugin, "Skills", 
+                new File(plugin.getDataFolder(), "playerdata" + File.separator + "skills"),
+                new PlayerDataStore.Codec<MemberSkills>() {
+                    @Override
+                    public MemberSkills create(UUID playerUUID) {
+                        return new MemberSkills(playerUUID);
+                    }
+                    
+                    @Override
+                    public MemberSkills read(UUID playerUUID, ConfigurationSection section) {
+                        return readMemberSkills(playerUUID, section);
+                    }
+                    
+                    @Override
+                    public void write(MemberSkills skills, ConfigurationSection section) {
+                        writeMemberSkills(skills, section);
+                    }
+                });
         
-        // Initialize skills file
         this.skillsFile = new File(plugin.getDataFolder(), "skills.yml");
+    }
+    
+    /**
+     * Reads skills.yml. Runs on a loader thread while the plugin is enabled.
+     */
+    public void load() {
         if (!skillsFile.exists()) {
             try {
                 skillsFile.createNewFile();
@@ -49,9 +72,17 @@ public class SkillManager {
         
         this.skillsConfig = YamlConfiguration.loadConfiguration(skillsFile);
         
-        // Load skills and member data
+        // Load skills and move member data from skills.yml to per-player files
         loadSkills();
-        loadMemberSkills();
+        migrateMemberSkills();
+    }
+    
+    /**
+     * Starts writing changed member skills in the background. Must be called
+     * on the main thread, once the skills are loaded.
+     */
+    public void start() {
+        memberSkills.start();
     }
     
     /**
@@ -417,93 +448,145 @@ public class SkillManager {
     }
     
     /**
-     * Loads member skills from configuration.
+     * Moves member skills stored in skills.yml by older versions into per-player files.
      */
-    private void loadMemberSkills() {
+    private void migrateMemberSkills() {
         ConfigurationSection membersSection = skillsConfig.getConfigurationSection("members");
         
         if (membersSection == null) {
             return;
         }
         
+        int migrated = 0;
         for (String uuidStr : membersSection.getKeys(false)) {
             try {
                 UUID uuid = UUID.fromString(uuidStr);
                 ConfigurationSection memberSection = membersSection.getConfigurationSection(uuidStr);
                 
                 if (memberSection != null) {
-                    MemberSkills skills = new MemberSkills(uuid);
-                    
-                    // Load skill points
-                    skills.setSkillPoints(memberSection.getInt("skill_points", 0));
-                    
-                    // Load specialization if any
-                    String specializationStr = memberSection.getString("specialization", "");
-                    if (!specializationStr.isEmpty()) {
-                        try {
-                            SkillTree specialization = SkillTree.valueOf(specializationStr.toUpperCase());
-                            skills.setSpecialization(specialization);
-                        } catch (IllegalArgumentException e) {
-                            // Invalid specialization, ignore
-                        }
-                    }
-                    
-                    // Load skill levels
-                    ConfigurationSection skillsSection = memberSection.getConfigurationSection("skills");
-                    if (skillsSection != null) {
-                        for (String skillId : skillsSection.getKeys(false)) {
-                            int level = skillsSection.getInt(skillId);
-                            skills.setSkillLevel(skillId, level);
-                        }
-                    }
-                    
-                    memberSkills.put(uuid, skills);
+                    memberSkills.writeNow(uuid, readMemberSkills(uuid, memberSection));
+                    migrated++;
                 }
             } catch (IllegalArgumentException e) {
                 // Invalid UUID, skip
             }
         }
+        
+        skillsConfig.set("members", null);
+        try {
+            skillsConfig.save(skillsFile);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Could not save skills.yml after moving member skills!");
+            e.printStackTrace();
+        }
+        
+        plugin.getLogger().info("Moved skills of " + migrated + " members to per-player files.");
     }
     
     /**
-     * Saves member skills to configuration.
+     * Reads a member's skills from configuration.
+     * 
+     * @param uuid The UUID of the member
+     * @param memberSection The section holding the member's skills
+     * @return The member's skills
      */
-    public void saveMemberSkills() {
-        // Clear existing data
-        skillsConfig.set("members", null);
+    private MemberSkills readMemberSkills(UUID uuid, ConfigurationSection memberSection) {
+        MemberSkills skills = new MemberSkills(uuid);
         
-        // Save current data
-        for (Map.Entry<UUID, MemberSkills> entry : memberSkills.entrySet()) {
-            UUID uuid = entry.getKey();
-            MemberSkills skills = entry.getValue();
-            
-            String path = "members." + uuid.toString();
-            
-            // Save skill points
-            skillsConfig.set(path + ".skill_points", skills.getSkillPoints());
-            
-            // Save specialization if any
-            if (skills.getSpecialization() != null) {
-                skillsConfig.set(path + ".specialization", skills.getSpecialization().name());
+        // Load skill points
+        skills.setSkillPoints(memberSection.getInt("skill_points", 0));
+        
+        // Load specialization if any
+        String specializationStr = memberSection.getString("specialization", "");
+        if (!specializationStr.isEmpty()) {
+            try {
+                SkillTree specialization = SkillTree.valueOf(specializationStr.toUpperCase());
+                skills.setSpecialization(specialization);
+            } catch (IllegalArgumentException e) {
+                // Invalid specialization, ignore
             }
-            
-            // Save skill levels
-            Map<String, Integer> skillLevels = skills.getSkillLevels();
-            for (Map.Entry<String, Integer> skillEntry : skillLevels.entrySet()) {
-                if (skillEntry.getValue() > 0) {
-                    skillsConfig.set(path + ".skills." + skillEntry.getKey(), skillEntry.getValue());
-                }
+        }
+        
+        // Load skill levels
+        ConfigurationSection skillsSection = memberSection.getConfigurationSection("skills");
+        if (skillsSection != null) {
+            for (String skillId : skillsSection.getKeys(false)) {
+                int level = skillsSection.getInt(skillId);
+                skills.setSkillLevel(skillId, level);
             }
         }
         
-        try {
-            skillsConfig.save(skillsFile);
-        } catch (IOException e) {
-            plugin.getLogger().severe("Could not save member skills data!");
-            e.printStackTrace();
+        return skills;
+    }
+    
+    /**
+     * Writes a member's skills to configuration.
+     * 
+     * @param skills The member's skills
+     * @param memberSection The section to write to
+     */
+    private void writeMemberSkills(MemberSkills skills, ConfigurationSection memberSection) {
+        // Save skill points
+        memberSection.set("skill_points", skills.getSkillPoints());
+        
+        // Save specialization if any
+        if (skills.getSpecialization() != null) {
+            memberSection.set("specialization", skills.getSpecialization().name());
+        }
+        
+        // Save skill levels
+        Map<String, Integer> skillLevels = skills.getSkillLevels();
+        for (Map.Entry<String, Integer> skillEntry : skillLevels.entrySet()) {
+            if (skillEntry.getValue() > 0) {
+                memberSection.set("skills." + skillEntry.getKey(), skillEntry.getValue());
+            }
         }
     }
     
+    /**
+     * Loads a connecting player's skills. Called off the main thread.
+     * 
+     * @param playerUUID The UUID of the player
+     */
+    public void preloadMemberSkills(UUID playerUUID) {
+        memberSkills.preload(playerUUID);
+    }
+    
+    /**
+     * Marks an online player's skills as resident.
+     * 
+     * @param playerUUID The UUID of the player
+     */
+    public void markMemberOnline(UUID playerUUID) {
+        memberSkills.markOnline(playerUUID);
+    }
+    
+    /**
+     * Saves a player's skills if they changed and removes them from memory.
+     * 
+     * @param playerUUID The UUID of the player
+     */
+    public void unloadMemberSkills(UUID playerUUID) {
+        memberSkills.unload(playerUUID);
+    }
+    
+    /**
+     * Saves a member's skills to their file in the background.
+     * 
+     * @param playerUUID The UUID of the player
+     */
+    public void saveMemberSkills(UUID playerUUID) {
+        memberSkills.markDirty(playerUUID);
+    }
+    
+    /**
+     * Saves all changed member skills and waits for the files to be written.
+     * Called when the plugin is disabled.
+     */
+    public void shutdown() {
+        memberSkills.drain();
+    }
+    
     /**
      * Gets a skill by its ID.
      * 
@@ -548,14 +631,7 @@ public class SkillManager {
      * @return The member's skills
      */
     public MemberSkills getMemberSkills(UUID playerUUID) {
-        MemberSkills skills = memberSkills.get(playerUUID);
-        
-        if (skills == null) {
-            skills = new MemberSkills(playerUUID);
-            memberSkills.put(playerUUID, skills);
-        }
-        
-        return skills;
+        return memberSkills.get(playerUUID);
     }
     
     /**
@@ -571,6 +647,7 @@ public class SkillManager {
         
         MemberSkills skills = getMemberSkills(playerUUID);
         skills.addSkillPoints(points);
+        saveMemberSkills(playerUUID);
         
         Player player = plugin.getServer().getPlayer(playerUUID);
         if (player != null && player.isOnline()) {
@@ -648,7 +725,7 @@ public class SkillManager {
             updateSpecialization(player.getUniqueId());
             
             // Save data
-            saveMemberSkills();
+            saveMemberSkills(player.getUniqueId());
             
             return true;
         }
@@ -680,7 +757,7 @@ public class SkillManager {
                 }
             }
             
-            saveMemberSkills();
+            saveMemberSkills(playerUUID);
         }
     }
     
@@ -0,0 +1,722 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.ClanPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Incremental backups of the plugin data folder.
+ *
+ * Every file is stored once as a gzip-compressed object named after the
+ * SHA-256 of its content, and each backup is a small manifest that maps paths
+ * to objects. A file whose size and modification time match the previous
+ * backup is not read again, so a backup only reads, hashes and compresses
+ * the files that changed since the last one.
+ *
+ * Backups run on the persistence I/O thread right after a flush, so no
+ * registered file is written while the data folder is read. Restores are
+ * staged and applied on the next start, before any data is loaded.
+ */
+public class BackupManager {
+    
+    private static final String BACKUP_FOLDER = "backups";
+    private static final String MANIFEST_SUFFIX = ".manifest";
+    private static final String MANIFEST_HEADER = "# ClanPlugin backup ";
+    private static final String RESTORE_MARKER = "restore" + MANIFEST_SUFFIX;
+    private static final String DATABASE_FILE = "clans.db";
+    private static final long EXPORT_TIMEOUT_SECONDS = 30;
+    
+    private final ClanPlugin plugin;
+    private final File dataFolder;
+    private final File objectFolder;
+    private final File manifestFolder;
+    private final File restoreFolder;
+    private final int keep;
+    private Map<String, ManifestEntry> lastManifest;
+    private BukkitTask backupTask;
+    
+    /**
+     * A file recorded in a backup manifest.
+     */
+    private static final class ManifestEntry {
+        private final String hash;
+        private final long size;
+        private final long lastModified;
+        
+        ManifestEntry(String hash, long size, long lastModified) {
+            this.hash = hash;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+    
+    /**
+     * Summary of a stored backup.
+     */
+    public static final class BackupInfo {
+        
+        private final String id;
+        private final int fileCount;
+        private final long totalSize;
+        
+        /**
+         * Creates a backup summary.
+         *
+         * @param id The backup ID
+         * @param fileCount The number of files in the backup
+         * @param totalSize The uncompressed size of all files in bytes
+         */
+        private BackupInfo(String id, int fileCount, long totalSize) {
+            this.id = id;
+            this.fileCount = fileCount;
+            this.totalSize = totalSize;
+        }
+        
+        /**
+         * Gets the backup ID, which is also its creation time.
+         *
+         * @return The backup ID
+         */
+        public String getId() {
+            return id;
+        }
+        
+        /**
+         * Gets the number of files in the backup.
+         *
+         * @return The file count
+         */
+        public int getFileCount() {
+            return fileCount;
+        }
+        
+        /**
+         * Gets the uncompressed size of all files in the backup.
+         *
+         * @return The size in bytes
+         */
+        public long getTotalSize() {
+            return totalSize;
+        }
+    }
+    
+    /**
+     * Creates a new backup manager.
+     *
+     * @param plugin The plugin instance
+     */
+    public BackupManager(ClanPlugin plugin) {
+        this.plugin = plugin;
+        this.dataFolder = plugin.getDataFolder();
+        File backupFolder = new File(dataFolder, BACKUP_FOLDER);
+        this.objectFolder = new File(backupFolder, "objects");
+        this.manifestFolder = new File(backupFolder, "manifests");
+        this.restoreFolder = new File(backupFolder, "restore");
+        this.keep = Math.max(1, plugin.getConfig().getInt("storage.backup.keep", 48));
+        
+        objectFolder.mkdirs();
+        manifestFolder.mkdirs();
+    }
+    
+    /**
+     * Starts periodic backups if they are enabled.
+     */
+    public void start() {
+        if (!plugin.getConfig().getBoolean("storage.backup.enabled", true)) {
+            return;
+        }
+        
+        int interval = Math.max(1, plugin.getConfig().getInt("storage.backup.interval_minutes", 60));
+        long ticks = interval * 60L * 20L;
+        backupTask = plugin.getServer().getScheduler().runTaskTimer(plugin, () -> backup(null), ticks, ticks);
+    }
+    
+    /**
+     * Takes a backup in the background. Changed files are flushed first, and
+     * the backup runs on the persistence I/O thread once they are written.
+     * Must be called from the main thread.
+     *
+     * @param callback Receives a result message on the main thread, may be null
+     */
+    public void backup(Consumer<String> callback) {
+        PersistenceService persistence = plugin.getPersistenceService();
+        persistence.flush();
+        
+        boolean queued = persistence.runOnWriter(() -> {
+            String result;
+            try {
+                result = createBackup();
+            } catch (IOException | RuntimeException e) {
+                plugin.getLogger().log(Level.SEVERE, "Backup failed", e);
+                result = "Backup failed: " + e.getMessage();
+            }
+            reply(callback, result);
+        });
+        
+        if (!queued && callback != null) {
+            callback.accept("The background writer is not running.");
+        }
+    }
+    
+    /**
+     * Lists the stored backups, oldest first.
+     *
+     * @return The backups
+     */
+    public List<BackupInfo> listBackups() {
+        List<BackupInfo> backups = new ArrayList<>();
+        for (String id : listBackupIds()) {
+            try {
+                Map<String, ManifestEntry> manifest = readManifest(getManifestFile(id));
+                long totalSize = 0;
+                for (ManifestEntry entry : manifest.values()) {
+                    totalSize += entry.size;
+                }
+                backups.add(new BackupInfo(id, manifest.size(), totalSize));
+            } catch (IOException e) {
+                plugin.getLogger().warning("Could not read backup manifest " + id + ": " + e.getMessage());
+            }
+        }
+        return backups;
+    }
+    
+    /**
+     * Extracts a backup into the restore folder in the background. The files
+     * replace the data folder on the next start, before any data is loaded.
+     * Must be called from the main thread.
+     *
+     * @param id The backup ID
+     * @param callback Receives a result message on the main thread
+     */
+    public void stageRestore(String id, Consumer<String> callback) {
+        File manifestFile = getManifestFile(id);
+        if (!manifestFile.isFile()) {
+            callback.accept("Backup " + id + " does not exist.");
+            return;
+        }
+        
+        boolean queued = plugin.getPersistenceService().runOnWriter(() -> {
+            String result;
+            try {
+                int files = extract(manifestFile);
+                result = "Backup " + id + " (" + files + " files) will be restored when the server restarts.";
+            } catch (IOException | RuntimeException e) {
+                plugin.getLogger().log(Level.SEVERE, "Could not stage restore of backup " + id, e);
+                result = "Could not stage the restore: " + e.getMessage();
+            }
+            reply(callback, result);
+        });
+        
+        if (!queued) {
+            callback.accept("The background writer is not running.");
+        }
+    }
+    
+    /**
+     * Replaces the data folder with a staged restore, if there is one. Files
+     * that did not exist in the restored backup are deleted. Called when the
+     * plugin is enabled, before any data file is read.
+     *
+     * @param dataFolder The plugin data folder
+     * @param logger The logger for progress messages
+     */
+    public static void applyPendingRestore(File dataFolder, Logger logger) {
+        File restoreFolder = new File(new File(dataFolder, BACKUP_FOLDER), "restore");
+        if (!restoreFolder.isDirectory()) {
+            return;
+        }
+        
+        File marker = new File(restoreFolder, RESTORE_MARKER);
+        if (!marker.isFile()) {
+            // Extraction did not finish, so the staged files are incomplete
+            logger.warning("Discarding an incomplete backup restore.");
+            deleteRecursively(restoreFolder);
+            return;
+        }
+        
+        try {
+            Map<String, ManifestEntry> manifest = readManifest(marker);
+            
+            for (String path : listDataFiles(dataFolder)) {
+                if (!manifest.containsKey(path)) {
+                    Files.deleteIfExists(new File(dataFolder, path).toPath());
+                }
+            }
+            for (String path : manifest.keySet()) {
+                File target = new File(dataFolder, path);
+                target.getParentFile().mkdirs();
+                BinarySnapshot.moveIntoPlace(new File(restoreFolder, path), target);
+            }
+            
+            logger.info("Restored " + manifest.size() + " data files from backup.");
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Could not apply the staged backup restore", e);
+        } finally {
+            deleteRecursively(restoreFolder);
+        }
+    }
+    
+    /**
+     * Writes a new backup. Runs on the persistence I/O thread.
+     *
+     * @return A summary of the backup
+     * @throws IOException If the backup could not be written
+     */
+    private String createBackup() throws IOException {
+        long start = System.nanoTime();
+        if (lastManifest == null) {
+            lastManifest = loadLatestManifest();
+        }
+        
+        String id = nextBackupId();
+        Map<String, ManifestEntry> manifest = new LinkedHashMap<>();
+        int changed = 0;
+        int newObjects = 0;
+        long written = 0;
+        
+        for (String path : listDataFiles(dataFolder)) {
+            if (isDatabaseFile(path)) {
+                continue;
+            }
+            
+            File file = new File(dataFolder, path);
+            long size = file.length();
+            long lastModified = file.lastModified();
+            
+            // Unchanged files are recorded without being read
+            ManifestEntry previous = lastManifest.get(path);
+            if (previous != null && previous.size == size && previous.lastModified == lastModified
+                    && getObjectFile(previous.hash).isFile()) {
+                manifest.put(path, previous);
+                continue;
+            }
+            
+            changed++;
+            String hash = hash(file);
+            long objectSize = storeObject(file, hash);
+            if (objectSize >= 0) {
+                newObjects++;
+                written += objectSize;
+            }
+            manifest.put(path, new ManifestEntry(hash, size, lastModified));
+        }
+        
+        // The database is exported rather than copied, since it may be mid-transaction
+        File export = exportDatabase();
+        if (export != null) {
+            try {
+                changed++;
+                String hash = hash(export);
+                long objectSize = storeObject(export, hash);
+                if (objectSize >= 0) {
+                    newObjects++;
+                    written += objectSize;
+                }
+                manifest.put(DATABASE_FILE, new ManifestEntry(hash, export.length(), 0));
+            } finally {
+                Files.deleteIfExists(export.toPath());
+            }
+        }
+        
+        writeManifest(id, manifest);
+        lastManifest = manifest;
+        int removed = rotate();
+        
+        String summary = String.format("Backup %s: %d files, %d changed, %d new objects (%dKB) in %dms",
+                id, manifest.size(), changed, newObjects, written / 1024, (System.nanoTime() - start) / 1000000);
+        if (removed > 0) {
+            summary += ", removed " + removed + " old backups";
+        }
+        plugin.getLogger().info(summary);
+        return summary;
+    }
+    
+    /**
+     * Exports the clan database when the SQLite backend is in use.
+     *
+     * @return The exported copy, or null if the database is not in use
+     * @throws IOException If the export failed
+     */
+    private File exportDatabase() throws IOException {
+        if (plugin.getStorageManager() == null ||
+            !(plugin.getStorageManager().getClanStorage() instanceof SqlClanStorage)) {
+            return null;
+        }
+        
+        SqlClanStorage database = (SqlClanStorage) plugin.getStorageManager().getClanStorage();
+        File export = new File(objectFolder, DATABASE_FILE + ".export");
+        Files.deleteIfExists(export.toPath());
+        
+        try {
+            database.exportTo(export).get(EXPORT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            return export;
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IOException("Could not export the clan database", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while exporting the clan database", e);
+        }
+    }
+    
+    /**
+     * Checks if a path belongs to the live clan database, which is backed up
+     * through an export instead. Only skipped while the database is open.
+     *
+     * @param path The relative path
+     * @return True if the file is skipped
+     */
+    private boolean isDatabaseFile(String path) {
+        if (path.equals(DATABASE_FILE + "-wal") || path.equals(DATABASE_FILE + "-shm") ||
+            path.equals(DATABASE_FILE + "-journal")) {
+            return true;
+        }
+        return path.equals(DATABASE_FILE) && plugin.getStorageManager() != null &&
+               plugin.getStorageManager().getClanStorage() instanceof SqlClanStorage;
+    }
+    
+    /**
+     * Stores a file as a compressed object unless an object with the same hash exists.
+     *
+     * @param file The file to store
+     * @param hash The SHA-256 of the file
+     * @return The compressed size, or -1 if the object already existed
+     * @throws IOException If the object could not be written
+     */
+    private long storeObject(File file, String hash) throws IOException {
+        File object = getObjectFile(hash);
+        if (object.isFile()) {
+            return -1;
+        }
+        
+        object.getParentFile().mkdirs();
+        File temp = new File(object.getParentFile(), object.getName() + ".tmp");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp.toPath()))) {
+            Files.copy(file.toPath(), out);
+        }
+        BinarySnapshot.moveIntoPlace(temp, object);
+        return object.length();
+    }
+    
+    /**
+     * Extracts every file of a backup into the restore folder. The marker is
+     * written last, so an interrupted extraction is never applied.
+     *
+     * @param manifestFile The manifest of the backup
+     * @return The number of extracted files
+     * @throws IOException If a file could not be extracted
+     */
+    private int extract(File manifestFile) throws IOException {
+        Map<String, ManifestEntry> manifest = readManifest(manifestFile);
+        deleteRecursively(restoreFolder);
+        
+        for (Map.Entry<String, ManifestEntry> entry : manifest.entrySet()) {
+            File object = getObjectFile(entry.getValue().hash);
+            if (!object.isFile()) {
+                throw new IOException("Missing backup object for " + entry.getKey());
+            }
+            
+            File target = new File(restoreFolder, entry.getKey());
+            target.getParentFile().mkdirs();
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(object.toPath()))) {
+                Files.copy(in, target.toPath());
+            }
+        }
+        
+        Files.copy(manifestFile.toPath(), new File(restoreFolder, RESTORE_MARKER).toPath());
+        return manifest.size();
+    }
+    
+    /**
+     * Deletes the oldest backups beyond the configured number, then deletes
+     * every object no remaining backup refers to.
+     *
+     * @return The number of deleted backups
+     * @throws IOException If a manifest could not be read
+     */
+    private int rotate() throws IOException {
+        List<String> ids = listBackupIds();
+        int excess = ids.size() - keep;
+        if (excess <= 0) {
+            return 0;
+        }
+        
+        for (String id : ids.subList(0, excess)) {
+            Files.deleteIfExists(getManifestFile(id).toPath());
+        }
+        
+        Set<String> referenced = new HashSet<>();
+        for (String id : ids.subList(excess, ids.size())) {
+            for (ManifestEntry entry : readManifest(getManifestFile(id)).values()) {
+                referenced.add(entry.hash);
+            }
+        }
+        
+        File[] prefixes = objectFolder.listFiles(File::isDirectory);
+        if (prefixes != null) {
+            for (File prefix : prefixes) {
+                File[] objects = prefix.listFiles();
+                if (objects == null) {
+                    continue;
+                }
+                for (File object : objects) {
+                    String name = object.getName();
+                    if (!name.endsWith(".gz") || !referenced.contains(name.substring(0, name.length() - 3))) {
+                        Files.deleteIfExists(object.toPath());
+                    }
+                }
+            }
+        }
+        return excess;
+    }
+    
+    /**
+     * Loads the manifest of the newest backup, used to skip unchanged files.
+     *
+     * @return The manifest, or an empty map if there is no backup yet
+     */
+    private Map<String, ManifestEntry> loadLatestManifest() {
+        List<String> ids = listBackupIds();
+        if (ids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        
+        try {
+            return readManifest(getManifestFile(ids.get(ids.size() - 1)));
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not read the latest backup manifest, reading all files: " + e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+    
+    /**
+     * Creates an ID for a new backup from the current time.
+     *
+     * @return A backup ID that is not used yet
+     */
+    private String nextBackupId() {
+        String base = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        String id = base;
+        for (int suffix = 2; getManifestFile(id).exists(); suffix++) {
+            id = base + "-" + suffix;
+        }
+        return id;
+    }
+    
+    /**
+     * Lists the IDs of all stored backups, oldest first.
+     *
+     * @return The backup IDs
+     */
+    private List<String> listBackupIds() {
+        List<String> ids = new ArrayList<>();
+        String[] names = manifestFolder.list((dir, name) -> name.endsWith(MANIFEST_SUFFIX));
+        if (names != null) {
+            for (String name : names) {
+                ids.add(name.substring(0, name.length() - MANIFEST_SUFFIX.length()));
+            }
+        }
+        // IDs are timestamps, so name order is creation order
+        Collections.sort(ids);
+        return ids;
+    }
+    
+    /**
+     * Gets the manifest file of a backup.
+     *
+     * @param id The backup ID
+     * @return The manifest file
+     */
+    private File getManifestFile(String id) {
+        return new File(manifestFolder, id + MANIFEST_SUFFIX);
+    }
+    
+    /**
+     * Gets the file holding a stored object.
+     *
+     * @param hash The SHA-256 of the object's content
+     * @return The object file
+     */
+    private File getObjectFile(String hash) {
+        return new File(new File(objectFolder, hash.substring(0, 2)), hash + ".gz");
+    }
+    
+    /**
+     * Writes a backup manifest through a temporary file.
+     *
+     * @param id The backup ID
+     * @param manifest The files in the backup
+     * @throws IOException If the manifest could not be written
+     */
+    private void writeManifest(String id, Map<String, ManifestEntry> manifest) throws IOException {
+        File target = getManifestFile(id);
+        File temp = new File(manifestFolder, target.getName() + ".tmp");
+        
+        try (BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(MANIFEST_HEADER + id);
+            writer.newLine();
+            for (Map.Entry<String, ManifestEntry> entry : manifest.entrySet()) {
+                ManifestEntry value = entry.getValue();
+                // The path goes last because it may contain spaces
+                writer.write(value.hash + " " + value.size + " " + value.lastModified + " " + entry.getKey());
+                writer.newLine();
+            }
+        }
+        BinarySnapshot.moveIntoPlace(temp, target);
+    }
+    
+    /**
+     * Reads a backup manifest.
+     *
+     * @param file The manifest file
+     * @return The files in the backup keyed by relative path
+     * @throws IOException If the manifest could not be read or is malformed
+     */
+    private static Map<String, ManifestEntry> readManifest(File file) throws IOException {
+        Map<String, ManifestEntry> manifest = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                
+                String[] parts = line.split(" ", 4);
+                if (parts.length != 4) {
+                    throw new IOException("Malformed line in " + file.getName() + ": " + line);
+                }
+                manifest.put(parts[3], new ManifestEntry(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2])));
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed number in " + file.getName(), e);
+        }
+        return manifest;
+    }
+    
+    /**
+     * Lists every data file below the data folder, excluding backups and
+     * temporary files.
+     *
+     * @param dataFolder The plugin data folder
+     * @return The relative paths, using '/' as separator
+     */
+    private static List<String> listDataFiles(File dataFolder) {
+        List<String> paths = new ArrayList<>();
+        collectFiles(dataFolder, "", paths);
+        Collections.sort(paths);
+        return paths;
+    }
+    
+    /**
+     * Adds the files of a folder and its subfolders to a list.
+     *
+     * @param folder The folder to walk
+     * @param prefix The relative path of the folder, empty or ending in '/'
+     * @param paths The list to add to
+     */
+    private static void collectFiles(File folder, String prefix, List<String> paths) {
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return;
+        }
+        
+        for (File file : files) {
+            String path = prefix + file.getName();
+            if (file.isDirectory()) {
+                if (!path.equals(BACKUP_FOLDER)) {
+                    collectFiles(file, path + "/", paths);
+                }
+            } else if (!file.getName().endsWith(".tmp")) {
+                paths.add(path);
+            }
+        }
+    }
+    
+    /**
+     * Computes the SHA-256 of a file.
+     *
+     * @param file The file
+     * @return The hash as lowercase hex
+     * @throws IOException If the file could not be read
+     */
+    private static String hash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+    
+    /**
+     * Delivers a result message on the main thread.
+     *
+     * @param callback The callback, may be null
+     * @param message The message
+     */
+    private void reply(Consumer<String> callback, String message) {
+        if (callback == null || !plugin.isEnabled()) {
+            return;
+        }
+        plugin.getServer().getScheduler().runTask(plugin, () -> callback.accept(message));
+    }
+    
+    /**
+     * Deletes a folder and everything in it.
+     *
+     * @param folder The folder to delete
+     */
+    private static void deleteRecursively(File folder) {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    deleteRecursively(file);
+                } else {
+                    file.delete();
+                }
+            }
+        }
+        folder.delete();
+    }
+}
@@ -0,0 +1,396 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.models.Clan;
+import com.minecraft.clanplugin.models.ClanMember;
+import com.minecraft.clanplugin.models.ClanRole;
+import com.minecraft.clanplugin.models.Flag;
+import com.minecraft.clanplugin.models.Territory;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compact binary snapshot format for clans and territories.
+ *
+ * A snapshot starts with a magic number and a format version, followed by a
+ * string table holding every clan name and world name once. Records refer to
+ * those strings by index and store numbers as varints, which keeps the files
+ * small and lets them load without building a YAML or JSON tree first.
+ */
+public final class BinarySnapshot {
+    
+    /** Current snapshot format version. */
+    public static final int VERSION = SnapshotCodec.VERSION;
+    
+    private BinarySnapshot() {
+    }
+    
+    /**
+     * Checks if a snapshot can be used instead of its source file.
+     * A snapshot is only trusted when it is at least as new as the source,
+     * so edits made to the YAML/JSON file while the server was offline win.
+     *
+     * @param snapshot The snapshot file
+     * @param source The YAML or JSON file the snapshot replaces
+     * @return True if the snapshot should be loaded
+     */
+    public static boolean isUsable(File snapshot, File source) {
+        return snapshot.isFile() && (!source.exists() || snapshot.lastModified() >= source.lastModified());
+    }
+    
+    /**
+     * Writes all clans to a snapshot file.
+     *
+     * @param file The snapshot file
+     * @param clans The clans to write
+     * @throws IOException If the file could not be written
+     */
+    public static void writeClans(File file, Collection<ClanSnapshot> clans) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp.toPath())) {
+            writeClans(out, clans);
+        }
+        moveIntoPlace(temp, file);
+    }
+    
+    /**
+     * Writes all clans in snapshot format to a stream. Only reads the given
+     * snapshots, so it may run on any thread.
+     *
+     * @param stream The stream to write to; it is flushed but not closed
+     * @param clans The clans to write
+     * @throws IOException If the data could not be written
+     */
+    public static void writeClans(OutputStream stream, Collection<ClanSnapshot> clans) throws IOException {
+        // Collect clan and world names for the string table
+        SnapshotCodec.StringTable table = new SnapshotCodec.StringTable();
+        for (ClanSnapshot clan : clans) {
+            table.add(clan.getName());
+            table.addAll(clan.getAllies());
+            table.addAll(clan.getEnemies());
+            if (clan.getHome() != null) {
+                table.add(clan.getHome().getWorldName());
+            }
+            for (ClanSnapshot.Position home : clan.getAdditionalHomes().values()) {
+                table.add(home.getWorldName());
+            }
+        }
+        
+        SnapshotCodec.Output out = new SnapshotCodec.Output(stream);
+        out.writeHeader(SnapshotCodec.CLAN_MAGIC, table);
+        out.writeVarInt(clans.size());
+        
+        for (ClanSnapshot clan : clans) {
+            out.writeVarInt(table.indexOf(clan.getName()));
+            out.writeString(clan.getTag());
+            out.writeString(clan.getColor());
+            out.writeString(clan.getDescription());
+            out.writeVarLong(clan.getCreationTime());
+            out.writeVarInt(clan.getLevel());
+            out.writeVarInt(clan.getExperience());
+            out.writeBoolean(clan.hasColoredArmor());
+            out.writeVarInt(clan.getSkillPoints());
+            out.writeVarInt(clan.getMaxMembers());
+            out.writeVarInt(clan.getMaxTerritories());
+            out.writeVarInt(clan.getIncomeBoost());
+            out.writeVarInt(clan.getWarWins());
+            out.writeVarInt(clan.getWarLosses());
+            
+            Map<String, Integer> stats = clan.getStats();
+            out.writeVarInt(stats.size());
+            for (Map.Entry<String, Integer> stat : stats.entrySet()) {
+                out.writeString(stat.getKey());
+                out.writeSignedVarInt(stat.getValue());
+            }
+            
+            out.writeBoolean(clan.getHome() != null);
+            if (clan.getHome() != null) {
+                writeLocation(out, clan.getHome(), table);
+            }
+            
+            Map<String, ClanSnapshot.Position> homes = clan.getAdditionalHomes();
+            out.writeVarInt(homes.size());
+            for (Map.Entry<String, ClanSnapshot.Position> home : homes.entrySet()) {
+                out.writeString(home.getKey());
+                writeLocation(out, home.getValue(), table);
+            }
+            
+            out.writeVarInt(clan.getMembers().size());
+            for (ClanSnapshot.Member member : clan.getMembers()) {
+                out.writeUuid(member.getPlayerUUID());
+                out.writeString(member.getPlayerName());
+                out.writeVarInt(member.getRole().ordinal());
+            }
+            
+            out.writeVarInt(clan.getAllies().size());
+            for (String ally : clan.getAllies()) {
+                out.writeVarInt(table.indexOf(ally));
+            }
+            
+            out.writeVarInt(clan.getEnemies().size());
+            for (String enemy : clan.getEnemies()) {
+                out.writeVarInt(table.indexOf(enemy));
+            }
+            
+            out.writeVarInt(clan.getInvites().size());
+            for (UUID invite : clan.getInvites()) {
+                out.writeUuid(invite);
+            }
+        }
+        out.flush();
+    }
+    
+    /**
+     * Reads all clans from a snapshot file.
+     *
+     * @param file The snapshot file
+     * @return The loaded clans
+     * @throws IOException If the file is missing, corrupt or of an unknown version
+     */
+    public static List<Clan> readClans(File file) throws IOException {
+        try (SnapshotCodec.Input in = SnapshotCodec.Input.open(file)) {
+            String[] strings = in.readHeader(SnapshotCodec.CLAN_MAGIC);
+            World[] worlds = new World[strings.length];
+            ClanRole[] roles = ClanRole.values();
+            
+            int count = in.readVarInt();
+            List<Clan> clans = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Clan clan = new Clan(strings[in.readVarInt()]);
+                clan.setTag(in.readString());
+                clan.setColor(in.readString());
+                clan.setDescription(in.readString());
+                clan.setCreationTime(in.readVarLong());
+                clan.setLevel(in.readVarInt());
+                clan.setExperience(in.readVarInt());
+                clan.setColoredArmor(in.readBoolean());
+                clan.setSkillPoints(in.readVarInt());
+                clan.setMaxMembers(in.readVarInt());
+                clan.setMaxTerritories(in.readVarInt());
+                clan.setIncomeBoost(in.readVarInt());
+                clan.setWarWins(in.readVarInt());
+                clan.setWarLosses(in.readVarInt());
+                
+                int statCount = in.readVarInt();
+                for (int s = 0; s < statCount; s++) {
+                    clan.setStat(in.readString(), in.readSignedVarInt());
+                }
+                
+                if (in.readBoolean()) {
+                    Location home = readLocation(in, strings, worlds);
+                    if (home.getWorld() != null) {
+                        clan.setHome(home);
+                    }
+                }
+                
+                int homeCount = in.readVarInt();
+                for (int h = 0; h < homeCount; h++) {
+                    String homeName = in.readString();
+                    Location home = readLocation(in, strings, worlds);
+                    if (home.getWorld() != null) {
+                        clan.setAdditionalHome(homeName, home);
+                    }
+                }
+                
+                int memberCount = in.readVarInt();
+                for (int m = 0; m < memberCount; m++) {
+                    UUID playerUUID = in.readUuid();
+                    String playerName = in.readString();
+                    clan.addMember(new ClanMember(playerUUID, playerName, roles[in.readVarInt()]));
+                }
+                
+                int allyCount = in.readVarInt();
+                for (int a = 0; a < allyCount; a++) {
+                    clan.addAlliance(strings[in.readVarInt()]);
+                }
+                
+                int enemyCount = in.readVarInt();
+                for (int e = 0; e < enemyCount; e++) {
+                    clan.addEnemy(strings[in.readVarInt()]);
+                }
+                
+                int inviteCount = in.readVarInt();
+                for (int v = 0; v < inviteCount; v++) {
+                    clan.addInvite(in.readUuid());
+                }
+                
+                clans.add(clan);
+            }
+            return clans;
+        }
+    }
+    
+    /**
+     * Writes all territories to a snapshot file.
+     *
+     * @param file The snapshot file
+     * @param territories The territories to write
+     * @throws IOException If the file could not be written
+     */
+    public static void writeTerritories(File file, Collection<TerritorySnapshot> territories) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp.toPath())) {
+            writeTerritories(out, territories);
+        }
+        moveIntoPlace(temp, file);
+    }
+    
+    /**
+     * Writes all territories in snapshot format to a stream. Only reads the
+     * given snapshots, so it may run on any thread.
+     *
+     * @param stream The stream to write to; it is flushed but not closed
+     * @param territories The territories to write
+     * @throws IOException If the data could not be written
+     */
+    public static void writeTerritories(OutputStream stream, Collection<TerritorySnapshot> territories) throws IOException {
+        SnapshotCodec.StringTable table = new SnapshotCodec.StringTable();
+        for (TerritorySnapshot territory : territories) {
+            table.add(territory.getWorldName());
+            table.add(territory.getClanName());
+        }
+        
+        SnapshotCodec.Output out = new SnapshotCodec.Output(stream);
+        out.writeHeader(SnapshotCodec.TERRITORY_MAGIC, table);
+        out.writeVarInt(territories.size());
+        
+        for (TerritorySnapshot territory : territories) {
+            int worldIndex = table.indexOf(territory.getWorldName());
+            out.writeVarInt(worldIndex);
+            out.writeSignedVarInt(territory.getChunkX());
+            out.writeSignedVarInt(territory.getChunkZ());
+            out.writeVarInt(table.indexOf(territory.getClanName()));
+            out.writeVarInt(territory.getInfluenceLevel());
+            out.writeVarLong(territory.getClaimTime());
+            
+            List<TerritorySnapshot.FlagSnapshot> flags = territory.getFlags();
+            out.writeVarInt(flags.size());
+            for (TerritorySnapshot.FlagSnapshot flag : flags) {
+                // Flags always sit inside their territory, so they share its world
+                out.writeDouble(flag.getX());
+                out.writeDouble(flag.getY());
+                out.writeDouble(flag.getZ());
+                out.writeUuid(flag.getPlacedBy());
+                out.writeVarLong(flag.getPlacedTime());
+                out.writeVarInt(flag.getTier());
+                out.writeVarInt(flag.getInfluenceRadius());
+                out.writeBoolean(flag.getName() != null);
+                if (flag.getName() != null) {
+                    out.writeString(flag.getName());
+                }
+            }
+        }
+        out.flush();
+    }
+    
+    /**
+     * Reads all territories from a snapshot file.
+     *
+     * @param file The snapshot file
+     * @return The loaded territories
+     * @throws IOException If the file is missing, corrupt or of an unknown version
+     */
+    public static List<Territory> readTerritories(File file) throws IOException {
+        try (SnapshotCodec.Input in = SnapshotCodec.Input.open(file)) {
+            String[] strings = in.readHeader(SnapshotCodec.TERRITORY_MAGIC);
+            World[] worlds = new World[strings.length];
+            
+            int count = in.readVarInt();
+            List<Territory> territories = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int worldIndex = in.readVarInt();
+                int chunkX = in.readSignedVarInt();
+                int chunkZ = in.readSignedVarInt();
+                String clanName = strings[in.readVarInt()];
+                int influenceLevel = in.readVarInt();
+                long claimTime = in.readVarLong();
+                
+                World world = resolveWorld(worldIndex, strings, worlds);
+                int flagCount = in.readVarInt();
+                List<Flag> flags = new ArrayList<>(flagCount);
+                for (int f = 0; f < flagCount; f++) {
+                    Location location = new Location(world, in.readDouble(), in.readDouble(), in.readDouble());
+                    UUID placedBy = in.readUuid();
+                    long placedTime = in.readVarLong();
+                    int tier = in.readVarInt();
+                    int influenceRadius = in.readVarInt();
+                    String name = in.readBoolean() ? in.readString() : null;
+                    flags.add(new Flag(location, placedBy, placedTime, tier, influenceRadius, name));
+                }
+                
+                territories.add(new Territory(chunkX, chunkZ, strings[worldIndex], clanName,
+                                              influenceLevel, flags, claimTime));
+            }
+            return territories;
+        }
+    }
+    
+    /**
+     * Replaces the target file with the temporary file, atomically where supported.
+     *
+     * @param temp The freshly written file
+     * @param target The file to replace
+     * @throws IOException If the file could not be moved
+     */
+    static void moveIntoPlace(File temp, File target) throws IOException {
+        SnapshotCodec.moveIntoPlace(temp, target);
+    }
+    
+    /**
+     * Writes a location as a world index followed by its coordinates.
+     *
+     * @param out The snapshot output
+     * @param location The location to write
+     * @param table The string table holding the world name
+     * @throws IOException If the data could not be written
+     */
+    private static void writeLocation(SnapshotCodec.Output out, ClanSnapshot.Position location,
+                                      SnapshotCodec.StringTable table) throws IOException {
+        out.writeVarInt(table.indexOf(location.getWorldName()));
+        out.writeDouble(location.getX());
+        out.writeDouble(location.getY());
+        out.writeDouble(location.getZ());
+        out.writeFloat(location.getYaw());
+        out.writeFloat(location.getPitch());
+    }
+    
+    /**
+     * Looks up a world from the string table. Each world is looked up once per
+     * snapshot instead of once per record.
+     *
+     * @param index The string table index of the world name
+     * @param strings The string table
+     * @param worlds Worlds resolved so far, by string table index
+     * @return The world, or null if it is not loaded
+     */
+    private static World resolveWorld(int index, String[] strings, World[] worlds) {
+        if (worlds[index] == null) {
+            worlds[index] = Bukkit.getWorld(strings[index]);
+        }
+        return worlds[index];
+    }
+    
+    /**
+     * Reads a location written by {@link #writeLocation}.
+     *
+     * @param in The snapshot input
+     * @param strings The string table
+     * @param worlds Worlds resolved so far, by string table index
+     * @return The location; its world is null if the world is not loaded
+     * @throws IOException If the data could not be read
+     */
+    private static Location readLocation(SnapshotCodec.Input in, String[] strings, World[] worlds) throws IOException {
+        World world = resolveWorld(in.readVarInt(), strings, worlds);
+        return new Location(world, in.readDouble(), in.readDouble(), in.readDouble(), in.readFloat(), in.readFloat());
+    }
+}
@@ -0,0 +1,254 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.ClanPlugin;
+import com.minecraft.clanplugin.economy.ClanEconomy;
+import com.minecraft.clanplugin.models.Clan;
+import com.minecraft.clanplugin.models.ClanMember;
+import com.minecraft.clanplugin.models.ClanRole;
+import com.minecraft.clanplugin.utils.TerritoryEffectUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Operations that change data owned by several managers at once. Each one
+ * runs as a {@link UnitOfWork}, so it is applied completely or not at all and
+ * costs one save per affected file.
+ */
+public class ClanOperations {
+    
+    /**
+     * Clan fields that can be changed with {@link #bulkSet(Collection, String, int)}.
+     */
+    public static final List<String> BULK_FIELDS = Arrays.asList(
+            "level", "experience", "skillpoints", "maxmembers", "maxterritories");
+    
+    private final ClanPlugin plugin;
+    
+    /**
+     * Creates a new operations helper.
+     *
+     * @param plugin The plugin instance
+     */
+    public ClanOperations(ClanPlugin plugin) {
+        this.plugin = plugin;
+    }
+    
+    /**
+     * Deletes a clan together with its territories, territory rules, wars,
+     * bank account and the alliances and rivalries other clans have with it.
+     *
+     * @param clan The clan to delete
+     * @return True if the clan was deleted, false if it was rolled back
+     */
+    public boolean deleteClan(Clan clan) {
+        String clanName = clan.getName();
+        UnitOfWork work = new UnitOfWork(plugin, "delete clan " + clanName);
+        addDetachSteps(work, clanName);
+        work.step("territories", () -> territories().clearClanTerritories(clanName));
+        work.step("clan", () -> removeClan(clan));
+        return work.commit();
+    }
+    
+    /**
+     * Merges one clan into another. Members, territories and the bank balance
+     * of the source clan move to the target clan, and the source clan is
+     * deleted. The source clan's leader becomes an officer of the target.
+     *
+     * @param source The clan that is merged away
+     * @param target The clan that remains
+     * @return True if the clans were merged, false if it was rolled back
+     */
+    public boolean mergeClans(Clan source, Clan target) {
+        String sourceName = source.getName();
+        String targetName = target.getName();
+        UnitOfWork work = new UnitOfWork(plugin, "merge clan " + sourceName + " into " + targetName);
+        
+        ClanEconomy economy = plugin.getEconomy();
+        if (economy != null) {
+            work.step("balance", () -> {
+                double moved = economy.getClanBalance(sourceName);
+                double previous = economy.getClanBalance(targetName);
+                economy.setClanBalance(targetName, previous + moved);
+                return () -> economy.setClanBalance(targetName, previous);
+            });
+        }
+        addDetachSteps(work, sourceName);
+        work.step("territories", () -> territories().transferTerritories(sourceName, targetName));
+        
+        // The source clan is removed before its members move, because removing
+        // a clan also removes the player mappings of the members it still lists
+        List<ClanMember> members = new ArrayList<>(source.getMembers());
+        work.step("clan", () -> removeClan(source));
+        work.step("members", () -> moveMembers(members, source, target));
+        return work.commit();
+    }
+    
+    /**
+     * Sets a numeric field on many clans at once.
+     *
+     * @param clans The clans to change
+     * @param field One of {@link #BULK_FIELDS}
+     * @param value The new value
+     * @return True if every clan was changed, false if it was rolled back
+     * @throws IllegalArgumentException If the field is unknown
+     */
+    public boolean bulkSet(Collection<Clan> clans, String field, int value) {
+        ToIntFunction<Clan> getter;
+        ObjIntConsumer<Clan> setter;
+        switch (field.toLowerCase(Locale.ROOT)) {
+            case "level":
+                getter = Clan::getLevel;
+                setter = Clan::setLevel;
+                break;
+            case "experience":
+                getter = Clan::getExperience;
+                setter = Clan::setExperience;
+                break;
+            case "skillpoints":
+                getter = Clan::getSkillPoints;
+                setter = Clan::setSkillPoints;
+                break;
+            case "maxmembers":
+                getter = Clan::getMaxMembers;
+                setter = Clan::setMaxMembers;
+                break;
+            case "maxterritories":
+                getter = Clan::getMaxTerritories;
+                setter = Clan::setMaxTerritories;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown clan field: " + field);
+        }
+        
+        UnitOfWork work = new UnitOfWork(plugin, "set " + field + " of " + clans.size() + " clans");
+        StorageManager storage = plugin.getStorageManager();
+        for (Clan clan : clans) {
+            work.step(clan.getName(), () -> {
+                int previous = getter.applyAsInt(clan);
+                setter.accept(clan, value);
+                try {
+                    storage.saveClan(clan);
+                } catch (RuntimeException e) {
+                    // A failed step is not undone by the unit, so revert this clan here
+                    setter.accept(clan, previous);
+                    throw e;
+                }
+                return () -> {
+                    setter.accept(clan, previous);
+                    storage.saveClan(clan);
+                };
+            });
+        }
+        return work.commit();
+    }
+    
+    /**
+     * Adds the steps that cut a clan off from other clans, its wars, its
+     * bank account and its territory rules.
+     *
+     * @param work The unit of work to add the steps to
+     * @param clanName The clan being removed
+     */
+    private void addDetachSteps(UnitOfWork work, String clanName) {
+        work.step("relations", () -> removeRelations(clanName));
+        work.step("permissions", () -> territories().getPermissionManager().forgetClan(clanName));
+        if (plugin.getWarManager() != null) {
+            work.step("wars", () -> plugin.getWarManager().handleClanDeleted(clanName));
+        }
+        if (plugin.getEconomy() != null) {
+            work.step("economy", () -> plugin.getEconomy().handleClanDeleted(clanName));
+        }
+    }
+    
+    /**
+     * Removes a clan from the alliance and enemy lists of every other clan.
+     *
+     * @param clanName The clan being removed
+     * @return An action that restores the relations
+     */
+    private Runnable removeRelations(String clanName) {
+        StorageManager storage = plugin.getStorageManager();
+        List<Clan> formerAllies = new ArrayList<>();
+        List<Clan> formerEnemies = new ArrayList<>();
+        
+        for (Clan other : storage.getAllClans()) {
+            if (other.getName().equalsIgnoreCase(clanName)) {
+                continue;
+            }
+            boolean changed = false;
+            if (other.removeAlliance(clanName)) {
+                formerAllies.add(other);
+                changed = true;
+            }
+            if (other.removeEnemy(clanName)) {
+                formerEnemies.add(other);
+                changed = true;
+            }
+            if (changed) {
+                storage.saveClan(other);
+            }
+        }
+        
+        return () -> {
+            for (Clan other : formerAllies) {
+                other.addAlliance(clanName);
+                storage.saveClan(other);
+            }
+            for (Clan other : formerEnemies) {
+                other.addEnemy(clanName);
+                storage.saveClan(other);
+            }
+        };
+    }
+    
+    /**
+     * Removes a clan from storage.
+     *
+     * @param clan The clan to remove
+     * @return An action that adds the clan back
+     */
+    private Runnable removeClan(Clan clan) {
+        StorageManager storage = plugin.getStorageManager();
+        if (!storage.removeClan(clan.getName())) {
+            throw new IllegalStateException("Clan " + clan.getName() + " is not stored");
+        }
+        TerritoryEffectUtils.forgetClan(clan.getName());
+        return () -> storage.addClan(clan);
+    }
+    
+    /**
+     * Moves members into another clan. Leaders become officers.
+     *
+     * @param members The members to move
+     * @param source The clan they come from
+     * @param target The clan they join
+     * @return An action that moves them back
+     */
+    private Runnable moveMembers(List<ClanMember> members, Clan source, Clan target) {
+        StorageManager storage = plugin.getStorageManager();
+        for (ClanMember member : members) {
+            ClanRole role = member.getRole() == ClanRole.LEADER ? ClanRole.OFFICER : member.getRole();
+            target.addMember(new ClanMember(member.getPlayerUUID(), member.getPlayerName(), role));
+            storage.updatePlayerClan(member.getPlayerUUID(), target);
+        }
+        storage.saveClan(target);
+        
+        return () -> {
+            for (ClanMember member : members) {
+                target.removeMember(member.getPlayerUUID());
+                storage.updatePlayerClan(member.getPlayerUUID(), source);
+            }
+            storage.saveClan(target);
+        };
+    }
+    
+    private TerritoryManager territories() {
+        return plugin.getStorageManager().getTerritoryManager();
+    }
+}
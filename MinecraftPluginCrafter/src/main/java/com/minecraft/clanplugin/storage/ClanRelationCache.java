@@ -0,0 +1,118 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.ClanPlugin;
+import com.minecraft.clanplugin.models.Clan;
+import com.minecraft.clanplugin.models.ClanRelation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Caches how players stand towards the clans owning territory, for the
+ * protection checks run on every block event. Clans are numbered as they are
+ * first seen and each clan gets a row of its relations to the others, filled
+ * on first use. A row is dropped when the clan's allies or enemies change or
+ * the clan is replaced; membership comes from the storage's player index and
+ * the territory's tier from its influence, so neither needs invalidating.
+ * Used on the main thread.
+ */
+final class ClanRelationCache {
+    
+    private static final ClanRelation[] RELATIONS = ClanRelation.values();
+    
+    private final ClanPlugin plugin;
+    private final Map<String, Integer> ids; // Clan names as given, each spelling mapped once
+    private final Map<String, Integer> idsByLowerName;
+    private final List<String> lowerNames;
+    private Clan[] rowClans;
+    private int[] rowVersions;
+    private byte[][] rows; // Relation ordinal + 1 per other clan, 0 until looked up
+    
+    /**
+     * Creates an empty cache.
+     *
+     * @param plugin The plugin instance
+     */
+    ClanRelationCache(ClanPlugin plugin) {
+        this.plugin = plugin;
+        this.ids = new HashMap<>();
+        this.idsByLowerName = new HashMap<>();
+        this.lowerNames = new ArrayList<>();
+        this.rowClans = new Clan[16];
+        this.rowVersions = new int[16];
+        this.rows = new byte[16][];
+    }
+    
+    /**
+     * Gets a player's relation to a clan.
+     *
+     * @param playerUUID The UUID of the player
+     * @param clanName The name of the clan
+     * @return The relation; players outside any clan are neutral
+     */
+    ClanRelation getRelation(UUID playerUUID, String clanName) {
+        Clan playerClan = plugin.getStorageManager().getClanStorage().getPlayerClan(playerUUID);
+        if (playerClan == null) {
+            return ClanRelation.NEUTRAL;
+        }
+        
+        int ownerId = idOf(clanName);
+        int playerClanId = idOf(playerClan.getName());
+        if (ownerId == playerClanId) {
+            return ClanRelation.MEMBER;
+        }
+        
+        byte[] row = rows[playerClanId];
+        if (row == null || rowClans[playerClanId] != playerClan || rowVersions[playerClanId] != playerClan.getRelationVersion()) {
+            row = new byte[Math.max(16, lowerNames.size())];
+            rows[playerClanId] = row;
+            rowClans[playerClanId] = playerClan;
+            rowVersions[playerClanId] = playerClan.getRelationVersion();
+        } else if (ownerId >= row.length) {
+            row = Arrays.copyOf(row, Math.max(ownerId + 1, row.length * 2));
+            rows[playerClanId] = row;
+        }
+        
+        if (row[ownerId] == 0) {
+            String ownerName = lowerNames.get(ownerId);
+            ClanRelation relation = playerClan.isAllied(ownerName) ? ClanRelation.ALLY
+                    : playerClan.isEnemy(ownerName) ? ClanRelation.ENEMY : ClanRelation.NEUTRAL;
+            row[ownerId] = (byte) (relation.ordinal() + 1);
+        }
+        return RELATIONS[row[ownerId] - 1];
+    }
+    
+    /**
+     * Gets the number of a clan, numbering it the first time. Spellings that
+     * differ only in case get the same number.
+     *
+     * @param clanName The name of the clan
+     * @return The clan number
+     */
+    private int idOf(String clanName) {
+        Integer id = ids.get(clanName);
+        if (id != null) {
+            return id;
+        }
+        
+        String lowerName = clanName.toLowerCase();
+        id = idsByLowerName.get(lowerName);
+        if (id == null) {
+            id = lowerNames.size();
+            lowerNames.add(lowerName);
+            idsByLowerName.put(lowerName, id);
+            if (id >= rows.length) {
+                int capacity = rows.length * 2;
+                rowClans = Arrays.copyOf(rowClans, capacity);
+                rowVersions = Arrays.copyOf(rowVersions, capacity);
+                rows = Arrays.copyOf(rows, capacity);
+            }
+        }
+        ids.put(clanName, id);
+        return id;
+    }
+}
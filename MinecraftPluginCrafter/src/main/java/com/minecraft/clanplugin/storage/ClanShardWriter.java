@@ -0,0 +1,234 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.ClanPlugin;
+import com.minecraft.clanplugin.models.Clan;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Write-behind persistence for clans stored as one YAML shard per clan.
+ * Mutations only mark a clan as dirty. A periodic flush copies the dirty
+ * clans into immutable snapshots on the main thread and hands them to a
+ * single background writer, which builds and writes the YAML documents, so
+ * a change costs one small file write instead of a rewrite of every clan.
+ */
+public class ClanShardWriter {
+    
+    private static final int MIN_FLUSH_INTERVAL_SECONDS = 1;
+    private static final int MAX_FLUSH_INTERVAL_SECONDS = 60;
+    private static final long DRAIN_TIMEOUT_SECONDS = 30;
+    
+    private final ClanPlugin plugin;
+    private final StorageManager storageManager;
+    private final File shardFolder;
+    private final Set<String> dirtyClans;
+    private final Set<String> removedClans;
+    private final ExecutorService writer;
+    private BukkitTask flushTask;
+    
+    /**
+     * Creates a new shard writer.
+     *
+     * @param plugin The plugin instance
+     * @param storageManager The storage manager that owns the clans
+     * @param shardFolder The folder holding one file per clan
+     */
+    public ClanShardWriter(ClanPlugin plugin, StorageManager storageManager, File shardFolder) {
+        this.plugin = plugin;
+        this.storageManager = storageManager;
+        this.shardFolder = shardFolder;
+        this.dirtyClans = new LinkedHashSet<>();
+        this.removedClans = new LinkedHashSet<>();
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ClanPlugin-ShardWriter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        shardFolder.mkdirs();
+    }
+    
+    /**
+     * Starts the periodic flush task.
+     *
+     * @param intervalSeconds The flush interval in seconds (clamped to 1-60)
+     */
+    public void start(int intervalSeconds) {
+        int interval = Math.max(MIN_FLUSH_INTERVAL_SECONDS, Math.min(MAX_FLUSH_INTERVAL_SECONDS, intervalSeconds));
+        long ticks = interval * 20L;
+        flushTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::flush, ticks, ticks);
+    }
+    
+    /**
+     * Gets the folder that holds the clan shards.
+     *
+     * @return The shard folder
+     */
+    public File getShardFolder() {
+        return shardFolder;
+    }
+    
+    /**
+     * Gets the shard file for a clan.
+     *
+     * @param clanName The name of the clan
+     * @return The shard file
+     */
+    public File getShardFile(String clanName) {
+        return new File(shardFolder, StorageFormats.shardFileName(clanName));
+    }
+    
+    /**
+     * Marks a clan as changed so it is written on the next flush.
+     *
+     * @param clanName The name of the clan
+     */
+    public synchronized void markDirty(String clanName) {
+        String key = clanName.toLowerCase();
+        removedClans.remove(key);
+        dirtyClans.add(key);
+    }
+    
+    /**
+     * Marks a clan as deleted so its shard is removed on the next flush.
+     *
+     * @param clanName The name of the clan
+     */
+    public synchronized void markRemoved(String clanName) {
+        String key = clanName.toLowerCase();
+        dirtyClans.remove(key);
+        removedClans.add(key);
+    }
+    
+    /**
+     * Gets the number of clans waiting to be written or deleted.
+     *
+     * @return The number of pending shard changes
+     */
+    public synchronized int getPendingCount() {
+        return dirtyClans.size() + removedClans.size();
+    }
+    
+    /**
+     * Snapshots every dirty clan and queues the shards on the background writer.
+     * Must be called from the main thread.
+     */
+    public void flush() {
+        List<String> dirty;
+        List<String> removed;
+        synchronized (this) {
+            if (dirtyClans.isEmpty() && removedClans.isEmpty()) {
+                return;
+            }
+            dirty = new ArrayList<>(dirtyClans);
+            removed = new ArrayList<>(removedClans);
+            dirtyClans.clear();
+            removedClans.clear();
+        }
+        
+        // Copy the clans here so the background thread never touches live Clan objects
+        Map<String, ClanSnapshot> snapshots = new LinkedHashMap<>();
+        for (String key : dirty) {
+            Clan clan = storageManager.getClan(key);
+            if (clan != null) {
+                snapshots.put(key, ClanSnapshot.of(clan));
+            }
+        }
+        
+        try {
+            writer.execute(() -> writeShards(snapshots, removed));
+        } catch (RejectedExecutionException e) {
+            // Writer already stopped, write on the calling thread instead
+            writeShards(snapshots, removed);
+        }
+    }
+    
+    /**
+     * Flushes all pending changes and waits for the background writer to finish.
+     * Called when the plugin is disabled.
+     */
+    public void drain() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        
+        flush();
+        writer.shutdown();
+        
+        try {
+            if (!writer.awaitTermination(DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                plugin.getLogger().severe("Timed out waiting for clan shards to be written!");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            plugin.getLogger().severe("Interrupted while waiting for clan shards to be written!");
+        }
+    }
+    
+    /**
+     * Writes and deletes shard files. Runs on the background writer.
+     *
+     * @param snapshots The clan snapshots keyed by lowercase clan name
+     * @param removed The lowercase names of clans whose shards should be deleted
+     */
+    private void writeShards(Map<String, ClanSnapshot> snapshots, List<String> removed) {
+        long start = System.nanoTime();
+        
+        for (Map.Entry<String, ClanSnapshot> entry : snapshots.entrySet()) {
+            File target = getShardFile(entry.getKey());
+            File temp = new File(shardFolder, target.getName() + ".tmp");
+            try {
+                YamlConfiguration document = storageManager.serializeClan(entry.getValue());
+                Files.write(temp.toPath(), document.saveToString().getBytes(StandardCharsets.UTF_8));
+                moveIntoPlace(temp, target);
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.SEVERE, "Could not save clan shard " + target.getName(), e);
+            }
+        }
+        
+        for (String key : removed) {
+            File target = getShardFile(key);
+            if (target.exists() && !target.delete()) {
+                plugin.getLogger().warning("Could not delete clan shard " + target.getName());
+            }
+        }
+        
+        plugin.getLogger().fine("Wrote " + snapshots.size() + " clan shards and removed " + removed.size() +
+                                " in " + ((System.nanoTime() - start) / 1000000) + "ms");
+    }
+    
+    /**
+     * Replaces the target file with the temporary file, atomically where supported.
+     *
+     * @param temp The freshly written file
+     * @param target The file to replace
+     * @throws IOException If the file could not be moved
+     */
+    private void moveIntoPlace(File temp, File target) throws IOException {
+        try {
+            Files.move(temp.toPath(), target.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.models.Clan;
+import com.minecraft.clanplugin.models.ClanMember;
+import com.minecraft.clanplugin.models.ClanRole;
+import org.bukkit.Location;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Immutable copy of the persisted state of a clan.
+ * Built on the main thread and then serialized by a background writer,
+ * which never touches the live {@link Clan} or its collections.
+ */
+public final class ClanSnapshot {
+    
+    /**
+     * Immutable copy of a clan member.
+     */
+    public static final class Member {
+        
+        private final UUID playerUUID;
+        private final String playerName;
+        private final ClanRole role;
+        
+        /**
+         * Copies a clan member.
+         *
+         * @param member The member to copy
+         */
+        private Member(ClanMember member) {
+            this.playerUUID = member.getPlayerUUID();
+            this.playerName = member.getPlayerName();
+            this.role = member.getRole();
+        }
+        
+        /**
+         * Gets the UUID of the player.
+         *
+         * @return The player's UUID
+         */
+        public UUID getPlayerUUID() {
+            return playerUUID;
+        }
+        
+        /**
+         * Gets the name of the player.
+         *
+         * @return The player's name
+         */
+        public String getPlayerName() {
+            return playerName;
+        }
+        
+        /**
+         * Gets the role of the member.
+         *
+         * @return The member's role
+         */
+        public ClanRole getRole() {
+            return role;
+        }
+    }
+    
+    /**
+     * Immutable copy of a location that only keeps the world's name.
+     */
+    public static final class Position {
+        
+        private final String worldName;
+        private final double x;
+        private final double y;
+        private final double z;
+        private final float yaw;
+        private final float pitch;
+        
+        /**
+         * Copies a location.
+         *
+         * @param location The location to copy, its world must be set
+         */
+        private Position(Location location) {
+            this.worldName = location.getWorld().getName();
+            this.x = location.getX();
+            this.y = location.getY();
+            this.z = location.getZ();
+            this.yaw = location.getYaw();
+            this.pitch = location.getPitch();
+        }
+        
+        /**
+         * Copies a location if it can be stored.
+         *
+         * @param location The location, may be null
+         * @return The copy, or null if the location or its world is missing
+         */
+        static Position of(Location location) {
+            return location != null && location.getWorld() != null ? new Position(location) : null;
+        }
+        
+        /**
+         * Gets the name of the world.
+         *
+         * @return The world name
+         */
+        public String getWorldName() {
+            return worldName;
+        }
+        
+        /**
+         * Gets the X coordinate.
+         *
+         * @return The X coordinate
+         */
+        public double getX() {
+            return x;
+        }
+        
+        /**
+         * Gets the Y coordinate.
+         *
+         * @return The Y coordinate
+         */
+        public double getY() {
+            return y;
+        }
+        
+        /**
+         * Gets the Z coordinate.
+         *
+         * @return The Z coordinate
+         */
+        public double getZ() {
+            return z;
+        }
+        
+        /**
+         * Gets the yaw.
+         *
+         * @return The yaw
+         */
+        public float getYaw() {
+            return yaw;
+        }
+        
+        /**
+         * Gets the pitch.
+         *
+         * @return The pitch
+         */
+        public float getPitch() {
+            return pitch;
+        }
+    }
+    
+    private final String name;
+    private final String tag;
+    private final String color;
+    private final String description;
+    private final long creationTime;
+    private final int level;
+    private final int experience;
+    private final boolean coloredArmor;
+    private final int skillPoints;
+    private final int maxMembers;
+    private final int maxTerritories;
+    private final int incomeBoost;
+    private final int warWins;
+    private final int warLosses;
+    private final Map<String, Integer> stats;
+    private final Position home;
+    private final Map<String, Position> additionalHomes;
+    private final List<Member> members;
+    private final List<String> allies;
+    private final List<String> enemies;
+    private final List<UUID> invites;
+    
+    /**
+     * Copies a clan. Must be called on the main thread.
+     *
+     * @param clan The clan to copy
+     */
+    private ClanSnapshot(Clan clan) {
+        this.name = clan.getName();
+        this.tag = clan.getTag();
+        this.color = clan.getColor();
+        this.description = clan.getDescription();
+        this.creationTime = clan.getCreationTime();
+        this.level = clan.getLevel();
+        this.experience = clan.getExperience();
+        this.coloredArmor = clan.hasColoredArmor();
+        this.skillPoints = clan.getSkillPoints();
+        this.maxMembers = clan.getMaxMembers();
+        this.maxTerritories = clan.getMaxTerritories();
+        this.incomeBoost = clan.getIncomeBoost();
+        this.warWins = clan.getWarWins();
+        this.warLosses = clan.getWarLosses();
+        this.stats = Collections.unmodifiableMap(new LinkedHashMap<>(clan.getAllStats()));
+        this.home = Position.of(clan.getHome());
+        
+        Map<String, Position> homes = new LinkedHashMap<>();
+        for (Map.Entry<String, Location> additionalHome : clan.getAdditionalHomes().entrySet()) {
+            Position position = Position.of(additionalHome.getValue());
+            if (position != null) {
+                homes.put(additionalHome.getKey(), position);
+            }
+        }
+        this.additionalHomes = Collections.unmodifiableMap(homes);
+        
+        List<Member> memberCopies = new ArrayList<>(clan.getMembers().size());
+        for (ClanMember member : clan.getMembers()) {
+            memberCopies.add(new Member(member));
+        }
+        this.members = Collections.unmodifiableList(memberCopies);
+        
+        this.allies = Collections.unmodifiableList(new ArrayList<>(clan.getAlliances()));
+        this.enemies = Collections.unmodifiableList(new ArrayList<>(clan.getEnemies()));
+        this.invites = Collections.unmodifiableList(new ArrayList<>(clan.getInvitedPlayers()));
+    }
+    
+    /**
+     * Copies a clan. Must be called on the main thread.
+     *
+     * @param clan The clan to copy
+     * @return The snapshot
+     */
+    public static ClanSnapshot of(Clan clan) {
+        return new ClanSnapshot(clan);
+    }
+    
+    /**
+     * Gets the clan name.
+     *
+     * @return The clan name
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Gets the clan tag.
+     *
+     * @return The clan tag
+     */
+    public String getTag() {
+        return tag;
+    }
+    
+    /**
+     * Gets the clan color.
+     *
+     * @return The clan color
+     */
+    public String getColor() {
+        return color;
+    }
+    
+    /**
+     * Gets the clan description.
+     *
+     * @return The description
+     */
+    public String getDescription() {
+        return description;
+    }
+    
+    /**
+     * Gets the creation time.
+     *
+     * @return The creation time in milliseconds
+     */
+    public long getCreationTime() {
+        return creationTime;
+    }
+    
+    /**
+     * Gets the clan level.
+     *
+     * @return The level
+     */
+    public int getLevel() {
+        return level;
+    }
+    
+    /**
+     * Gets the clan experience.
+     *
+     * @return The experience
+     */
+    public int getExperience() {
+        return experience;
+    }
+    
+    /**
+     * Checks if members get colored armor.
+     *
+     * @return True if colored armor is enabled
+     */
+    public boolean hasColoredArmor() {
+        return coloredArmor;
+    }
+    
+    /**
+     * Gets the additional skill points.
+     *
+     * @return The skill points
+     */
+    public int getSkillPoints() {
+        return skillPoints;
+    }
+    
+    /**
+     * Gets the member limit.
+     *
+     * @return The maximum number of members
+     */
+    public int getMaxMembers() {
+        return maxMembers;
+    }
+    
+    /**
+     * Gets the territory limit.
+     *
+     * @return The maximum number of territories
+     */
+    public int getMaxTerritories() {
+        return maxTerritories;
+    }
+    
+    /**
+     * Gets the income boost.
+     *
+     * @return The income boost percentage
+     */
+    public int getIncomeBoost() {
+        return incomeBoost;
+    }
+    
+    /**
+     * Gets the number of wars won.
+     *
+     * @return The war wins
+     */
+    public int getWarWins() {
+        return warWins;
+    }
+    
+    /**
+     * Gets the number of wars lost.
+     *
+     * @return The war losses
+     */
+    public int getWarLosses() {
+        return warLosses;
+    }
+    
+    /**
+     * Gets the clan statistics.
+     *
+     * @return Unmodifiable map of statistic names to values
+     */
+    public Map<String, Integer> getStats() {
+        return stats;
+    }
+    
+    /**
+     * Gets the clan home.
+     *
+     * @return The home, or null if not set or its world was not loaded
+     */
+    public Position getHome() {
+        return home;
+    }
+    
+    /**
+     * Gets the additional homes.
+     *
+     * @return Unmodifiable map of home names to positions
+     */
+    public Map<String, Position> getAdditionalHomes() {
+        return additionalHomes;
+    }
+    
+    /**
+     * Gets the members.
+     *
+     * @return Unmodifiable list of members
+     */
+    public List<Member> getMembers() {
+        return members;
+    }
+    
+    /**
+     * Gets the names of allied clans.
+     *
+     * @return Unmodifiable list of ally names
+     */
+    public List<String> getAllies() {
+        return allies;
+    }
+    
+    /**
+     * Gets the names of enemy clans.
+     *
+     * @return Unmodifiable list of enemy names
+     */
+    public List<String> getEnemies() {
+        return enemies;
+    }
+    
+    /**
+     * Gets the invited players.
+     *
+     * @return Unmodifiable list of invited player UUIDs
+     */
+    public List<UUID> getInvites() {
+        return invites;
+    }
+}
@@ -0,0 +1,101 @@
+package com.minecraft.clanplugin.storage;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The chunk offsets within a radius of a center chunk, ordered from the
+ * center outwards. Masks are computed once per radius and shared, so walking
+ * a disc of chunks costs two array reads per chunk instead of a square root.
+ * Distance is measured between chunk coordinates, as in
+ * {@link TerritoryIndex#forEachInRadius}. Used on the main thread.
+ */
+public final class DiscMask {
+    
+    private static final Map<Integer, DiscMask> MASKS = new HashMap<>();
+    
+    private final int radius;
+    private final int[] offsetsX;
+    private final int[] offsetsZ;
+    
+    private DiscMask(int radius) {
+        this.radius = radius;
+        
+        // Sort the offsets by squared distance, packed above the index into the square
+        int side = radius * 2 + 1;
+        long radiusSquared = (long) radius * radius;
+        long[] order = new long[side * side];
+        int count = 0;
+        for (int dx = -radius; dx <= radius; dx++) {
+            for (int dz = -radius; dz <= radius; dz++) {
+                long distanceSquared = (long) dx * dx + (long) dz * dz;
+                if (distanceSquared <= radiusSquared) {
+                    order[count++] = (distanceSquared << 32) | ((dx + radius) * side + (dz + radius));
+                }
+            }
+        }
+        Arrays.sort(order, 0, count);
+        
+        this.offsetsX = new int[count];
+        this.offsetsZ = new int[count];
+        for (int i = 0; i < count; i++) {
+            int cell = (int) order[i];
+            offsetsX[i] = cell / side - radius;
+            offsetsZ[i] = cell % side - radius;
+        }
+    }
+    
+    /**
+     * Gets the mask for a radius, computing it the first time.
+     *
+     * @param radius The radius in chunks, at least 0
+     * @return The mask
+     */
+    public static DiscMask of(int radius) {
+        DiscMask mask = MASKS.get(radius);
+        if (mask == null) {
+            mask = new DiscMask(Math.max(0, radius));
+            MASKS.put(radius, mask);
+        }
+        return mask;
+    }
+    
+    /**
+     * Gets the radius of this mask.
+     *
+     * @return The radius in chunks
+     */
+    public int getRadius() {
+        return radius;
+    }
+    
+    /**
+     * Gets the number of chunks in the disc.
+     *
+     * @return The chunk count
+     */
+    public int size() {
+        return offsetsX.length;
+    }
+    
+    /**
+     * Gets the X offset of a chunk of the disc.
+     *
+     * @param index The chunk's index, from the center outwards
+     * @return The chunk X offset
+     */
+    public int getOffsetX(int index) {
+        return offsetsX[index];
+    }
+    
+    /**
+     * Gets the Z offset of a chunk of the disc.
+     *
+     * @param index The chunk's index, from the center outwards
+     * @return The chunk Z offset
+     */
+    public int getOffsetZ(int index) {
+        return offsetsZ[index];
+    }
+}
@@ -0,0 +1,285 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.models.Flag;
+import com.minecraft.clanplugin.models.Territory;
+import org.bukkit.Location;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Flag lookup by world and block position. Each world has its own
+ * open-addressing table keyed on the flag's block X/Y/Z packed into one long,
+ * holding the flag, its territory and its exact coordinates, so finding the
+ * flag at a broken banner probes a few slots instead of scanning the
+ * territory's flags. Several flags may share a block. Flags are indexed under
+ * their territory's world name, like {@link TerritoryIndex}. Not thread-safe;
+ * used on the main thread.
+ */
+public class FlagIndex {
+    
+    private final Map<String, FlagTable> worlds;
+    
+    /**
+     * Creates an empty index.
+     */
+    public FlagIndex() {
+        this.worlds = new HashMap<>();
+    }
+    
+    /**
+     * Packs block coordinates into one long: 26 bits each for X and Z and 12
+     * bits for Y, which covers the whole world border and build height.
+     *
+     * @param blockX The block X coordinate
+     * @param blockY The block Y coordinate
+     * @param blockZ The block Z coordinate
+     * @return The packed key
+     */
+    public static long pack(int blockX, int blockY, int blockZ) {
+        return ((long) (blockX & 0x3FFFFFF) << 38) | ((long) (blockZ & 0x3FFFFFF) << 12) | (blockY & 0xFFF);
+    }
+    
+    /**
+     * Adds every flag of a territory.
+     *
+     * @param territory The territory
+     */
+    public void addAll(Territory territory) {
+        for (Flag flag : territory.getFlags()) {
+            add(territory, flag);
+        }
+    }
+    
+    /**
+     * Removes every flag of a territory.
+     *
+     * @param territory The territory
+     */
+    public void removeAll(Territory territory) {
+        for (Flag flag : territory.getFlags()) {
+            remove(territory, flag);
+        }
+    }
+    
+    /**
+     * Adds a flag of a territory.
+     *
+     * @param territory The territory the flag belongs to
+     * @param flag The flag
+     */
+    public void add(Territory territory, Flag flag) {
+        FlagTable table = worlds.get(territory.getWorldName());
+        if (table == null) {
+            table = new FlagTable();
+            worlds.put(territory.getWorldName(), table);
+        }
+        Location location = flag.getLocation();
+        table.add(location.getX(), location.getY(), location.getZ(), flag, territory);
+    }
+    
+    /**
+     * Removes a flag of a territory.
+     *
+     * @param territory The territory the flag belongs to
+     * @param flag The flag
+     * @return True if the flag was indexed
+     */
+    public boolean remove(Territory territory, Flag flag) {
+        FlagTable table = worlds.get(territory.getWorldName());
+        if (table == null) {
+            return false;
+        }
+        Location location = flag.getLocation();
+        boolean removed = table.remove(location.getX(), location.getY(), location.getZ(), flag);
+        if (removed && table.size == 0) {
+            worlds.remove(territory.getWorldName());
+        }
+        return removed;
+    }
+    
+    /**
+     * Finds a flag of a territory less than one block away from a position.
+     *
+     * @param territory The territory the flag must belong to
+     * @param x The X coordinate
+     * @param y The Y coordinate
+     * @param z The Z coordinate
+     * @return The flag, or null if there is none
+     */
+    public Flag find(Territory territory, double x, double y, double z) {
+        FlagTable table = worlds.get(territory.getWorldName());
+        return table != null ? table.find(x, y, z, territory) : null;
+    }
+    
+    /**
+     * Gets the number of indexed flags.
+     *
+     * @return The flag count
+     */
+    public int size() {
+        int size = 0;
+        for (FlagTable table : worlds.values()) {
+            size += table.size;
+        }
+        return size;
+    }
+    
+    /**
+     * Removes every flag.
+     */
+    public void clear() {
+        worlds.clear();
+    }
+    
+    /**
+     * Open-addressing hash table from packed block keys to flags, with linear
+     * probing and backward-shift deletion. Entries with the same key sit in
+     * the same probe run, so a lookup collects every entry of its key until
+     * it reaches an empty slot.
+     */
+    private static final class FlagTable {
+        
+        private static final int INITIAL_CAPACITY = 16;
+        private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+        
+        private long[] keys;
+        private Flag[] flags;
+        private Territory[] owners;
+        private double[] xs;
+        private double[] ys;
+        private double[] zs;
+        private int mask;
+        private int shift;
+        int size;
+        
+        FlagTable() {
+            allocate(INITIAL_CAPACITY);
+        }
+        
+        void add(double x, double y, double z, Flag flag, Territory owner) {
+            if ((size + 1) * 2 > flags.length) {
+                rehash(flags.length * 2);
+            }
+            insert(key(x, y, z), x, y, z, flag, owner);
+            size++;
+        }
+        
+        boolean remove(double x, double y, double z, Flag flag) {
+            long key = key(x, y, z);
+            for (int slot = slot(key); flags[slot] != null; slot = (slot + 1) & mask) {
+                if (flags[slot] == flag) {
+                    shiftBack(slot);
+                    size--;
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        Flag find(double x, double y, double z, Territory owner) {
+            // A flag less than one block away lies in this block or one of its 26 neighbours
+            int blockX = (int) Math.floor(x);
+            int blockY = (int) Math.floor(y);
+            int blockZ = (int) Math.floor(z);
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dz = -1; dz <= 1; dz++) {
+                        long key = pack(blockX + dx, blockY + dy, blockZ + dz);
+                        for (int slot = slot(key); flags[slot] != null; slot = (slot + 1) & mask) {
+                            if (keys[slot] != key || owners[slot] != owner) {
+                                continue;
+                            }
+                            double ox = xs[slot] - x;
+                            double oy = ys[slot] - y;
+                            double oz = zs[slot] - z;
+                            if (ox * ox + oy * oy + oz * oz < 1.0) {
+                                return flags[slot];
+                            }
+                        }
+                    }
+                }
+            }
+            return null;
+        }
+        
+        /**
+         * Closes the gap left at a slot by moving later entries of the same
+         * probe run back, so every entry stays reachable from its home slot.
+         *
+         * @param gap The slot that was emptied
+         */
+        private void shiftBack(int gap) {
+            int slot = gap;
+            while (true) {
+                slot = (slot + 1) & mask;
+                if (flags[slot] == null) {
+                    break;
+                }
+                
+                // Move the entry unless its home slot lies cyclically in (gap, slot]
+                int home = slot(keys[slot]);
+                boolean homeBetween = gap <= slot ? (home > gap && home <= slot) : (home > gap || home <= slot);
+                if (!homeBetween) {
+                    keys[gap] = keys[slot];
+                    flags[gap] = flags[slot];
+                    owners[gap] = owners[slot];
+                    xs[gap] = xs[slot];
+                    ys[gap] = ys[slot];
+                    zs[gap] = zs[slot];
+                    gap = slot;
+                }
+            }
+            flags[gap] = null;
+            owners[gap] = null;
+        }
+        
+        private void insert(long key, double x, double y, double z, Flag flag, Territory owner) {
+            int slot = slot(key);
+            while (flags[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            flags[slot] = flag;
+            owners[slot] = owner;
+            xs[slot] = x;
+            ys[slot] = y;
+            zs[slot] = z;
+        }
+        
+        private static long key(double x, double y, double z) {
+            return pack((int) Math.floor(x), (int) Math.floor(y), (int) Math.floor(z));
+        }
+        
+        private int slot(long key) {
+            return (int) ((key * GOLDEN_RATIO) >>> shift);
+        }
+        
+        private void rehash(int capacity) {
+            long[] oldKeys = keys;
+            Flag[] oldFlags = flags;
+            Territory[] oldOwners = owners;
+            double[] oldXs = xs;
+            double[] oldYs = ys;
+            double[] oldZs = zs;
+            allocate(capacity);
+            
+            for (int i = 0; i < oldFlags.length; i++) {
+                if (oldFlags[i] != null) {
+                    insert(oldKeys[i], oldXs[i], oldYs[i], oldZs[i], oldFlags[i], oldOwners[i]);
+                }
+            }
+        }
+        
+        private void allocate(int capacity) {
+            keys = new long[capacity];
+            flags = new Flag[capacity];
+            owners = new Territory[capacity];
+            xs = new double[capacity];
+            ys = new double[capacity];
+            zs = new double[capacity];
+            mask = capacity - 1;
+            shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        }
+    }
+}
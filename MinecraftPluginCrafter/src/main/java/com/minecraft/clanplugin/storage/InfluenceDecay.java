@@ -0,0 +1,126 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.ClanPlugin;
+import com.minecraft.clanplugin.models.Territory;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Lowers the influence of territories whose clan is not maintaining them.
+ * Every decay interval the territories of those clans are queued, and a task
+ * running each tick works through the queue until the tick's time budget is
+ * spent, so a cycle over many thousands of chunks is spread over as many
+ * ticks as it needs instead of stalling one.
+ */
+final class InfluenceDecay {
+    
+    private final ClanPlugin plugin;
+    private final TerritoryManager territoryManager;
+    private final Set<String> unmaintainedClans;
+    private final ArrayDeque<Territory> queue;
+    private final int amount;
+    private final long budgetNanos;
+    private BukkitTask sliceTask;
+    private long cycleStart;
+    private int cycleTicks;
+    private int cycleDecayed;
+    
+    /**
+     * Creates the decay engine from the territory.influence.decay settings.
+     *
+     * @param plugin The plugin instance
+     * @param territoryManager The territory manager that applies the decay
+     */
+    InfluenceDecay(ClanPlugin plugin, TerritoryManager territoryManager) {
+        this.plugin = plugin;
+        this.territoryManager = territoryManager;
+        this.unmaintainedClans = new HashSet<>();
+        this.queue = new ArrayDeque<>();
+        this.amount = Math.max(0, plugin.getConfig().getInt("territory.influence.decay.amount", 5));
+        this.budgetNanos = Math.max(50, plugin.getConfig().getInt("territory.influence.decay.tick_budget_micros", 500)) * 1000L;
+    }
+    
+    /**
+     * Starts the decay cycles.
+     */
+    void start() {
+        int minutes = plugin.getConfig().getInt("territory.influence.decay.interval_minutes", 60);
+        if (minutes <= 0 || amount == 0) {
+            return;
+        }
+        long ticks = minutes * 60L * 20L;
+        plugin.getServer().getScheduler().runTaskTimer(plugin, this::startCycle, ticks, ticks);
+    }
+    
+    /**
+     * Marks whether a clan maintains its territory.
+     *
+     * @param clanName The clan name
+     * @param maintained Whether the clan's territory is kept from decaying
+     */
+    void setMaintained(String clanName, boolean maintained) {
+        if (maintained) {
+            unmaintainedClans.remove(clanName);
+        } else {
+            unmaintainedClans.add(clanName);
+        }
+    }
+    
+    /**
+     * Checks whether a clan maintains its territory.
+     *
+     * @param clanName The clan name
+     * @return True unless the clan was marked as not maintaining it
+     */
+    boolean isMaintained(String clanName) {
+        return !unmaintainedClans.contains(clanName);
+    }
+    
+    /**
+     * Queues the territories of every unmaintained clan and starts working
+     * through them. A cycle still running is left to finish first.
+     */
+    private void startCycle() {
+        if (sliceTask != null || unmaintainedClans.isEmpty()) {
+            return;
+        }
+        
+        for (String clanName : unmaintainedClans) {
+            queue.addAll(territoryManager.getClanTerritories(clanName));
+        }
+        if (queue.isEmpty()) {
+            return;
+        }
+        
+        cycleStart = System.nanoTime();
+        cycleTicks = 0;
+        cycleDecayed = 0;
+        sliceTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::runSlice, 1L, 1L);
+    }
+    
+    /**
+     * Decays queued territories until this tick's budget is spent.
+     */
+    private void runSlice() {
+        long deadline = System.nanoTime() + budgetNanos;
+        cycleTicks++;
+        
+        while (!queue.isEmpty()) {
+            if (territoryManager.decayTerritory(queue.poll(), amount)) {
+                cycleDecayed++;
+            }
+            if (System.nanoTime() >= deadline) {
+                return;
+            }
+        }
+        
+        sliceTask.cancel();
+        sliceTask = null;
+        plugin.getLogger().info("Influence decay: " + cycleDecayed + " territories of " + unmaintainedClans.size() +
+                                " unmaintained clans in " + cycleTicks + " ticks (" +
+                                ((System.nanoTime() - cycleStart) / 1000000) + "ms).");
+    }
+}
@@ -0,0 +1,177 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.models.Flag;
+import com.minecraft.clanplugin.models.Territory;
+
+import java.util.Set;
+
+/**
+ * Spreads the influence of flags into the clan's other chunks within the
+ * flag's radius, falling off linearly with the distance between the chunks
+ * as in {@link Flag#calculateInfluenceAtDistance(double)} and scaled by
+ * territory.influence.spread_percent. The sum for each territory is kept in
+ * the {@link TerritoryIndex} and changed only around a flag that is placed,
+ * removed or upgraded, so no change ever walks every territory.
+ * Only a flag's own chunk counts it in full, through the territory's flag
+ * totals. Used on the main thread.
+ */
+final class InfluenceField {
+    
+    private final TerritoryIndex territories;
+    private final int spreadPercent;
+    private int maxRadius;
+    
+    /**
+     * Creates a field over the indexed territories.
+     *
+     * @param territories The territory index
+     * @param spreadPercent How much of a flag's influence reaches other chunks, in percent
+     */
+    InfluenceField(TerritoryIndex territories, int spreadPercent) {
+        this.territories = territories;
+        this.spreadPercent = Math.max(0, spreadPercent);
+    }
+    
+    /**
+     * Spreads a new flag into the chunks around its territory.
+     *
+     * @param source The territory the flag stands in
+     * @param flag The flag
+     * @param changed Collects the territories whose field changed, or null
+     */
+    void addFlag(Territory source, Flag flag, Set<Territory> changed) {
+        spread(source, flag.getTier(), flag.getInfluenceRadius(), 1, changed);
+    }
+    
+    /**
+     * Takes a removed flag's influence back from the chunks around its territory.
+     *
+     * @param source The territory the flag stood in
+     * @param flag The flag
+     * @param changed Collects the territories whose field changed, or null
+     */
+    void removeFlag(Territory source, Flag flag, Set<Territory> changed) {
+        spread(source, flag.getTier(), flag.getInfluenceRadius(), -1, changed);
+    }
+    
+    /**
+     * Replaces the spread of a flag at its old tier and radius with its
+     * spread at the current ones.
+     *
+     * @param source The territory the flag stands in
+     * @param flag The upgraded flag
+     * @param oldTier The tier before the upgrade
+     * @param oldRadius The influence radius before the upgrade
+     * @param changed Collects the territories whose field changed, or null
+     */
+    void upgradeFlag(Territory source, Flag flag, int oldTier, int oldRadius, Set<Territory> changed) {
+        spread(source, oldTier, oldRadius, -1, changed);
+        spread(source, flag.getTier(), flag.getInfluenceRadius(), 1, changed);
+    }
+    
+    /**
+     * Spreads every flag of a territory, after the territory was claimed.
+     *
+     * @param source The territory
+     * @param changed Collects the territories whose field changed, or null
+     */
+    void addFlags(Territory source, Set<Territory> changed) {
+        for (Flag flag : source.getFlags()) {
+            addFlag(source, flag, changed);
+        }
+    }
+    
+    /**
+     * Takes back the spread of every flag of a territory, before the
+     * territory is unclaimed.
+     *
+     * @param source The territory
+     * @param changed Collects the territories whose field changed, or null
+     */
+    void removeFlags(Territory source, Set<Territory> changed) {
+        for (Flag flag : source.getFlags()) {
+            removeFlag(source, flag, changed);
+        }
+    }
+    
+    /**
+     * Recomputes one territory's field from the clan's flags around it, for
+     * a territory that was just claimed or changed owner.
+     *
+     * @param target The territory
+     */
+    void refresh(Territory target) {
+        int[] sum = new int[1];
+        territories.forEachInRadius(target.getWorldName(), target.getChunkX(), target.getChunkZ(), maxRadius, source -> {
+            if (source == target || !source.getClanName().equals(target.getClanName())) {
+                return;
+            }
+            double distance = distance(source, target);
+            for (Flag flag : source.getFlags()) {
+                sum[0] += contribution(flag.getTier(), flag.getInfluenceRadius(), distance);
+            }
+        });
+        territories.addFieldInfluence(target, sum[0] - territories.getFieldInfluence(target));
+    }
+    
+    /**
+     * Adds or takes away one flag's influence in the clan's chunks around
+     * its territory.
+     *
+     * @param source The territory the flag stands in
+     * @param tier The flag's tier
+     * @param radius The flag's influence radius in chunks
+     * @param sign 1 to add the influence, -1 to take it away
+     * @param changed Collects the territories whose field changed, or null
+     */
+    private void spread(Territory source, int tier, int radius, int sign, Set<Territory> changed) {
+        if (radius <= 0 || spreadPercent == 0) {
+            return;
+        }
+        maxRadius = Math.max(maxRadius, radius);
+        
+        territories.forEachInRadius(source.getWorldName(), source.getChunkX(), source.getChunkZ(), radius, target -> {
+            if (target == source || !target.getClanName().equals(source.getClanName())) {
+                return;
+            }
+            int amount = contribution(tier, radius, distance(source, target));
+            if (amount != 0) {
+                territories.addFieldInfluence(target, sign * amount);
+                if (changed != null) {
+                    changed.add(target);
+                }
+            }
+        });
+    }
+    
+    /**
+     * Gets the influence a flag adds to another chunk, following
+     * {@link Flag#calculateInfluenceAtDistance(double)}. Depends only on its
+     * arguments, so taking a flag back removes exactly what it added.
+     *
+     * @param tier The flag's tier
+     * @param radius The flag's influence radius in chunks
+     * @param distance The distance between the chunks
+     * @return The influence
+     */
+    private int contribution(int tier, int radius, double distance) {
+        if (distance <= 0 || distance > radius) {
+            return 0;
+        }
+        int influence = (int) ((40 + tier * 20) * (1.0 - distance / radius));
+        return influence * spreadPercent / 100;
+    }
+    
+    /**
+     * Gets the distance between two territories' chunks.
+     *
+     * @param a One territory
+     * @param b The other territory
+     * @return The distance in chunks
+     */
+    private static double distance(Territory a, Territory b) {
+        int dx = a.getChunkX() - b.getChunkX();
+        int dz = a.getChunkZ() - b.getChunkZ();
+        return Math.sqrt(dx * dx + dz * dz);
+    }
+}
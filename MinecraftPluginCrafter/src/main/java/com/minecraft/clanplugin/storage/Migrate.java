@@ -0,0 +1,533 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.storage.MigrationRecords.ClanRecord;
+import com.minecraft.clanplugin.storage.MigrationRecords.MemberRecord;
+import com.minecraft.clanplugin.storage.MigrationRecords.TerritoryRecord;
+import com.minecraft.clanplugin.storage.MigrationRecords.WarRecord;
+import com.minecraft.clanplugin.storage.StorageFormats.RecordSink;
+import com.minecraft.clanplugin.storage.StorageFormats.RecordWriter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Offline migration and validation tool for the plugin's data folder. Runs
+ * without a server:
+ * <pre>
+ * java -cp ClanPlugin.jar com.minecraft.clanplugin.storage.Migrate &lt;dataFolder&gt;
+ *      [--clans &lt;from&gt;[:&lt;to&gt;]] [--territories &lt;from&gt;[:&lt;to&gt;]] [--force] [--strict]
+ * </pre>
+ * Clan backends are yaml, sharded, snapshot and sqlite; territory backends are
+ * json and snapshot. Records are streamed one at a time, so memory only grows
+ * with the integrity index (clan names, member UUIDs and claimed chunks).
+ * Without a target the source is only validated. Every target is written to a
+ * temporary location and replaced only after all phases have finished.
+ */
+public final class Migrate {
+    
+    private static final List<String> CLAN_BACKENDS = Arrays.asList("yaml", "sharded", "snapshot", "sqlite");
+    private static final List<String> TERRITORY_BACKENDS = Arrays.asList("json", "snapshot");
+    private static final int MAX_REPORTED_ISSUES = 50;
+    
+    private final File dataFolder;
+    private String clanSource;
+    private String clanTarget;
+    private String territorySource;
+    private String territoryTarget;
+    private boolean force;
+    private boolean strict;
+    
+    private final Set<String> clanNames = new HashSet<>();
+    private final Map<UUID, String> memberClans = new HashMap<>();
+    private final List<RecordWriter<?>> writers = new ArrayList<>();
+    private int issues;
+    
+    private Migrate(File dataFolder) {
+        this.dataFolder = dataFolder;
+    }
+    
+    /**
+     * Runs the tool.
+     *
+     * @param args The command line arguments
+     */
+    public static void main(String[] args) {
+        Migrate migrate;
+        try {
+            migrate = parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: java -cp ClanPlugin.jar " + Migrate.class.getName() + " <dataFolder>"
+                               + " [--clans <from>[:<to>]] [--territories <from>[:<to>]] [--force] [--strict]");
+            System.err.println("  Clan backends:      " + String.join(", ", CLAN_BACKENDS));
+            System.err.println("  Territory backends: " + String.join(", ", TERRITORY_BACKENDS));
+            System.err.println("  Without <to> the source is only validated.");
+            System.exit(2);
+            return;
+        }
+        
+        int status;
+        try {
+            status = migrate.run();
+        } catch (IOException e) {
+            System.err.println("Migration failed, nothing was replaced: " + e.getMessage());
+            status = 1;
+        }
+        System.exit(status);
+    }
+    
+    /**
+     * Parses the command line.
+     *
+     * @param args The command line arguments
+     * @return The configured tool
+     * @throws IllegalArgumentException If the arguments are invalid
+     */
+    private static Migrate parse(String[] args) {
+        if (args.length == 0) {
+            throw new IllegalArgumentException("Missing data folder.");
+        }
+        File dataFolder = new File(args[0]);
+        if (!dataFolder.isDirectory()) {
+            throw new IllegalArgumentException("Data folder " + dataFolder + " does not exist.");
+        }
+        
+        Migrate migrate = new Migrate(dataFolder);
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--clans":
+                    String[] clans = backends(args, ++i, CLAN_BACKENDS);
+                    migrate.clanSource = clans[0];
+                    migrate.clanTarget = clans[1];
+                    break;
+                case "--territories":
+                    String[] territories = backends(args, ++i, TERRITORY_BACKENDS);
+                    migrate.territorySource = territories[0];
+                    migrate.territoryTarget = territories[1];
+                    break;
+                case "--force":
+                    migrate.force = true;
+                    break;
+                case "--strict":
+                    migrate.strict = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i] + ".");
+            }
+        }
+        
+        if (migrate.clanSource == null) {
+            migrate.clanSource = migrate.configuredClanBackend();
+        }
+        if (migrate.territorySource == null) {
+            migrate.territorySource = "json";
+        }
+        return migrate;
+    }
+    
+    /**
+     * Parses a "from[:to]" backend argument.
+     *
+     * @param args The command line arguments
+     * @param index The index of the argument
+     * @param known The valid backend names
+     * @return The source and the target, which is null when only validating
+     * @throws IllegalArgumentException If the argument is missing or invalid
+     */
+    private static String[] backends(String[] args, int index, List<String> known) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing backend after " + args[index - 1] + ".");
+        }
+        String[] parts = args[index].toLowerCase(Locale.ROOT).split(":", 2);
+        String from = parts[0];
+        String to = parts.length > 1 ? parts[1] : null;
+        for (String backend : new String[] {from, to}) {
+            if (backend != null && !known.contains(backend)) {
+                throw new IllegalArgumentException("Unknown backend '" + backend + "' for " + args[index - 1] + ".");
+            }
+        }
+        if (from.equals(to)) {
+            throw new IllegalArgumentException("Source and target of " + args[index - 1] + " are both " + from + ".");
+        }
+        return new String[] {from, to};
+    }
+    
+    /**
+     * Reads storage.clan_backend from the data folder's config.yml.
+     *
+     * @return The configured clan backend, yaml if none is configured
+     */
+    private String configuredClanBackend() {
+        File config = new File(dataFolder, "config.yml");
+        if (!config.isFile()) {
+            return "yaml";
+        }
+        try (BufferedReader input = Files.newBufferedReader(config.toPath(), StandardCharsets.UTF_8)) {
+            Map<String, Object> storage = YamlCodec.getSection(YamlCodec.readDocument(input), "storage");
+            String backend = YamlCodec.getString(storage, "clan_backend", "yaml").toLowerCase(Locale.ROOT);
+            return CLAN_BACKENDS.contains(backend) ? backend : "yaml";
+        } catch (IOException e) {
+            System.out.println("Could not read config.yml (" + e.getMessage() + "), assuming the yaml clan backend");
+            return "yaml";
+        }
+    }
+    
+    /**
+     * Runs every phase and commits the targets if validation allows it.
+     *
+     * @return The process exit status
+     * @throws IOException If a file could not be read or written
+     */
+    private int run() throws IOException {
+        System.out.println("Data folder: " + dataFolder.getAbsolutePath());
+        checkTargets();
+        
+        try {
+            indexClans();
+            convertClans();
+            convertTerritories();
+            validateWars();
+            
+            System.out.println();
+            System.out.printf("Heap in use: %.1f MB%n", usedHeap() / (1024.0 * 1024.0));
+            if (issues > 0) {
+                System.out.println(issues + " integrity issue(s) found.");
+            } else {
+                System.out.println("No integrity issues found.");
+            }
+            
+            if (writers.isEmpty()) {
+                return issues > 0 ? 1 : 0;
+            }
+            if (strict && issues > 0) {
+                System.out.println("--strict: nothing was replaced.");
+                return 1;
+            }
+            
+            for (RecordWriter<?> writer : writers) {
+                writer.commit();
+            }
+            printHints();
+            return 0;
+        } finally {
+            for (RecordWriter<?> writer : writers) {
+                writer.close();
+            }
+        }
+    }
+    
+    /**
+     * Refuses to overwrite existing targets unless --force was given.
+     *
+     * @throws IOException If a target already exists
+     */
+    private void checkTargets() throws IOException {
+        List<File> targets = new ArrayList<>();
+        if (clanTarget != null) {
+            targets.add(clanFile(clanTarget));
+        }
+        if (territoryTarget != null) {
+            targets.add(territoryFile(territoryTarget));
+        }
+        
+        for (File target : targets) {
+            boolean exists = target.isDirectory() ? hasFiles(target) : target.exists();
+            if (exists && !force) {
+                throw new IOException(target.getName() + " already exists, use --force to replace it");
+            }
+        }
+    }
+    
+    // ------------------------------------------------------------------
+    // Phases
+    // ------------------------------------------------------------------
+    
+    /**
+     * First pass over the clan source: collects clan names and memberships so
+     * relations, territories and wars can be checked while streaming.
+     *
+     * @throws IOException If the source could not be read
+     */
+    private void indexClans() throws IOException {
+        Phase phase = new Phase("Index clans (" + clanSource + ")", clanFile(clanSource));
+        readClans(clanSource, clan -> {
+            phase.records++;
+            if (!clanNames.add(clan.name.toLowerCase())) {
+                issue("Duplicate clan name '" + clan.name + "'");
+            }
+            for (MemberRecord member : clan.members) {
+                String previous = memberClans.put(member.playerUUID, clan.name);
+                if (previous != null && !previous.equals(clan.name)) {
+                    issue("Player " + member.playerName + " (" + member.playerUUID + ") is a member of both '"
+                          + previous + "' and '" + clan.name + "'");
+                }
+            }
+        }, false);
+        phase.finish();
+    }
+    
+    /**
+     * Second pass over the clan source: checks relations and writes the target.
+     *
+     * @throws IOException If the source could not be read or the target written
+     */
+    private void convertClans() throws IOException {
+        RecordWriter<ClanRecord> writer = clanTarget != null ? register(clanWriter(clanTarget)) : null;
+        String title = clanTarget != null ? "Clans " + clanSource + " -> " + clanTarget : "Validate clans (" + clanSource + ")";
+        Phase phase = new Phase(title, clanFile(clanSource));
+        
+        readClans(clanSource, clan -> {
+            phase.records++;
+            checkRelations(clan, clan.allies, "ally");
+            checkRelations(clan, clan.enemies, "enemy");
+            if (writer != null) {
+                writer.write(clan);
+            }
+        }, true);
+        phase.finish();
+    }
+    
+    /**
+     * Streams the territory source, checks owners and duplicate chunks, and
+     * writes the target.
+     *
+     * @throws IOException If the source could not be read or the target written
+     */
+    private void convertTerritories() throws IOException {
+        File source = territoryFile(territorySource);
+        if (!source.isFile()) {
+            if (territoryTarget != null) {
+                throw new IOException(source.getName() + " does not exist");
+            }
+            System.out.println("Skipping territories: no " + source.getName());
+            return;
+        }
+        
+        RecordWriter<TerritoryRecord> writer = territoryTarget != null ? register(territoryWriter(territoryTarget)) : null;
+        String title = territoryTarget != null ? "Territories " + territorySource + " -> " + territoryTarget
+                                               : "Validate territories (" + territorySource + ")";
+        Phase phase = new Phase(title, source);
+        Map<String, Set<Long>> claimedChunks = new HashMap<>();
+        
+        RecordSink<TerritoryRecord> sink = territory -> {
+            phase.records++;
+            String location = territory.worldName + " " + territory.chunkX + "," + territory.chunkZ;
+            if (territory.clanName == null || !clanNames.contains(territory.clanName.toLowerCase())) {
+                issue("Territory " + location + " belongs to missing clan '" + territory.clanName + "'");
+            }
+            long key = ((long) territory.chunkX << 32) | (territory.chunkZ & 0xFFFFFFFFL);
+            if (!claimedChunks.computeIfAbsent(territory.worldName, world -> new HashSet<>()).add(key)) {
+                issue("Territory " + location + " is claimed more than once");
+            }
+            if (writer != null) {
+                writer.write(territory);
+            }
+        };
+        
+        if ("json".equals(territorySource)) {
+            StorageFormats.readTerritoriesJson(source, sink, this::issue);
+        } else {
+            StorageFormats.readTerritoriesSnapshot(source, sink);
+        }
+        phase.finish();
+    }
+    
+    /**
+     * Streams wars.json and checks that both sides of every war exist.
+     *
+     * @throws IOException If wars.json could not be read
+     */
+    private void validateWars() throws IOException {
+        File source = new File(dataFolder, StorageFormats.WARS_JSON);
+        if (!source.isFile()) {
+            System.out.println("Skipping wars: no " + source.getName());
+            return;
+        }
+        
+        Phase phase = new Phase("Validate wars (json)", source);
+        StorageFormats.readWarsJson(source, (WarRecord war) -> {
+            phase.records++;
+            for (String clanName : new String[] {war.initiatingClan, war.targetClan}) {
+                if (!clanNames.contains(clanName.toLowerCase())) {
+                    issue((war.active ? "Active war " : "Past war ") + war.initiatingClan + " vs " + war.targetClan
+                          + " refers to missing clan '" + clanName + "'");
+                }
+            }
+        }, this::issue);
+        phase.finish();
+    }
+    
+    private void checkRelations(ClanRecord clan, List<String> others, String relation) {
+        for (String other : others) {
+            if (!clanNames.contains(other.toLowerCase())) {
+                issue("Clan '" + clan.name + "' has missing " + relation + " '" + other + "'");
+            }
+        }
+    }
+    
+    // ------------------------------------------------------------------
+    // Backends
+    // ------------------------------------------------------------------
+    
+    /**
+     * Streams the clans of a backend.
+     *
+     * @param backend The backend name
+     * @param sink Receives each clan
+     * @param reportProblems Whether read problems count as issues; false on the indexing pass so they are reported once
+     * @throws IOException If the backend could not be read
+     */
+    private void readClans(String backend, RecordSink<ClanRecord> sink, boolean reportProblems) throws IOException {
+        File source = clanFile(backend);
+        if (!source.exists()) {
+            throw new IOException("Clan source " + source.getName() + " does not exist");
+        }
+        
+        Consumer<String> problems = reportProblems ? this::issue : message -> { };
+        switch (backend) {
+            case "yaml":
+                StorageFormats.readClansYaml(source, sink, problems);
+                break;
+            case "sharded":
+                StorageFormats.readClanShards(source, sink, problems);
+                break;
+            case "snapshot":
+                StorageFormats.readClansSnapshot(source, sink);
+                break;
+            default:
+                StorageFormats.readClansSql(source, sink, problems);
+                break;
+        }
+    }
+    
+    private RecordWriter<ClanRecord> clanWriter(String backend) throws IOException {
+        File target = clanFile(backend);
+        switch (backend) {
+            case "yaml":
+                return StorageFormats.clansYamlWriter(target);
+            case "sharded":
+                return StorageFormats.clanShardWriter(target);
+            case "snapshot":
+                return StorageFormats.clansSnapshotWriter(target);
+            default:
+                return StorageFormats.clansSqlWriter(target);
+        }
+    }
+    
+    private RecordWriter<TerritoryRecord> territoryWriter(String backend) throws IOException {
+        File target = territoryFile(backend);
+        return "json".equals(backend) ? StorageFormats.territoriesJsonWriter(target)
+                                      : StorageFormats.territoriesSnapshotWriter(target);
+    }
+    
+    private File clanFile(String backend) {
+        switch (backend) {
+            case "yaml":
+                return new File(dataFolder, StorageFormats.CLANS_YAML);
+            case "sharded":
+                return new File(dataFolder, StorageFormats.CLAN_SHARDS);
+            case "snapshot":
+                return new File(dataFolder, StorageFormats.CLANS_SNAPSHOT);
+            default:
+                return new File(dataFolder, StorageFormats.CLAN_DATABASE);
+        }
+    }
+    
+    private File territoryFile(String backend) {
+        return new File(dataFolder, "json".equals(backend) ? StorageFormats.TERRITORIES_JSON
+                                                           : StorageFormats.TERRITORIES_SNAPSHOT);
+    }
+    
+    private <T> RecordWriter<T> register(RecordWriter<T> writer) {
+        writers.add(writer);
+        return writer;
+    }
+    
+    // ------------------------------------------------------------------
+    // Reporting
+    // ------------------------------------------------------------------
+    
+    private void issue(String message) {
+        issues++;
+        if (issues <= MAX_REPORTED_ISSUES) {
+            System.out.println("  ! " + message);
+        } else if (issues == MAX_REPORTED_ISSUES + 1) {
+            System.out.println("  ! ... further issues are counted but not listed");
+        }
+    }
+    
+    /**
+     * Tells the user which settings select the backends that were written.
+     */
+    private void printHints() {
+        System.out.println();
+        if ("snapshot".equals(clanTarget) || "snapshot".equals(territoryTarget)) {
+            System.out.println("Set storage.binary_snapshot.enabled: true in config.yml to load the snapshot.");
+        }
+        if (clanTarget != null && !"snapshot".equals(clanTarget)) {
+            System.out.println("Set storage.clan_backend: " + clanTarget + " in config.yml to use the new clan data.");
+        }
+    }
+    
+    private static boolean hasFiles(File folder) {
+        String[] names = folder.list();
+        return names != null && names.length > 0;
+    }
+    
+    private static long sizeOf(File file) {
+        if (!file.isDirectory()) {
+            return file.length();
+        }
+        long size = 0;
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                size += child.length();
+            }
+        }
+        return size;
+    }
+    
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+    
+    /**
+     * Times one pass over a source and prints its throughput.
+     */
+    private static final class Phase {
+        private final String title;
+        private final long bytes;
+        private final long start;
+        private long records;
+        
+        Phase(String title, File source) {
+            this.title = title;
+            this.bytes = sizeOf(source);
+            this.start = System.nanoTime();
+            System.out.println(title + "...");
+        }
+        
+        void finish() {
+            double seconds = Math.max(System.nanoTime() - start, 1) / 1_000_000_000.0;
+            double megabytes = bytes / (1024.0 * 1024.0);
+            System.out.printf("  %s: %d records, %.2f MB in %d ms (%.0f records/s, %.2f MB/s)%n",
+                              title, records, megabytes, (long) (seconds * 1000), records / seconds,
+                              megabytes / seconds);
+        }
+    }
+}
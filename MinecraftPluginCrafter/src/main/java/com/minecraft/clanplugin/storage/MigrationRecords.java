@@ -0,0 +1,201 @@
+package com.minecraft.clanplugin.storage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Plain records used by the offline {@link Migrate} tool. They hold exactly
+ * what the storage formats hold, without Bukkit types, so clans, territories
+ * and wars can be converted without a running server. Only one record of each
+ * kind is alive at a time while a file is streamed.
+ */
+final class MigrationRecords {
+    
+    private MigrationRecords() {
+    }
+    
+    /**
+     * A stored clan. Fields missing from the source keep the defaults of a new clan.
+     */
+    static final class ClanRecord {
+        String name;
+        String tag;
+        String color = "\u00A76";
+        String description = "A mighty clan of warriors";
+        long creationTime = System.currentTimeMillis();
+        int level = 1;
+        int experience;
+        boolean coloredArmor = true;
+        int skillPoints;
+        int maxMembers = 10;
+        int maxTerritories = 5;
+        int incomeBoost;
+        int warWins;
+        int warLosses;
+        final Map<String, Integer> stats = new LinkedHashMap<>();
+        HomeRecord home;
+        final Map<String, HomeRecord> additionalHomes = new LinkedHashMap<>();
+        final List<MemberRecord> members = new ArrayList<>();
+        final List<String> allies = new ArrayList<>();
+        final List<String> enemies = new ArrayList<>();
+        final List<UUID> invites = new ArrayList<>();
+        
+        /**
+         * Creates an empty clan record.
+         *
+         * @param name The clan name
+         */
+        ClanRecord(String name) {
+            this.name = name;
+            this.tag = name.substring(0, Math.min(3, name.length())).toUpperCase();
+        }
+    }
+    
+    /**
+     * A clan member.
+     */
+    static final class MemberRecord {
+        final UUID playerUUID;
+        final String playerName;
+        final String role;
+        
+        /**
+         * Creates a member record.
+         *
+         * @param playerUUID The player's UUID
+         * @param playerName The player's name
+         * @param role The name of the member's ClanRole
+         */
+        MemberRecord(UUID playerUUID, String playerName, String role) {
+            this.playerUUID = playerUUID;
+            this.playerName = playerName;
+            this.role = role;
+        }
+    }
+    
+    /**
+     * A clan home location.
+     */
+    static final class HomeRecord {
+        final String worldName;
+        final double x;
+        final double y;
+        final double z;
+        final float yaw;
+        final float pitch;
+        
+        /**
+         * Creates a home record.
+         *
+         * @param worldName The world name
+         * @param x The X coordinate
+         * @param y The Y coordinate
+         * @param z The Z coordinate
+         * @param yaw The yaw
+         * @param pitch The pitch
+         */
+        HomeRecord(String worldName, double x, double y, double z, float yaw, float pitch) {
+            this.worldName = worldName;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.yaw = yaw;
+            this.pitch = pitch;
+        }
+    }
+    
+    /**
+     * A claimed chunk and its flags.
+     */
+    static final class TerritoryRecord {
+        final int chunkX;
+        final int chunkZ;
+        final String worldName;
+        final String clanName;
+        final int influenceLevel;
+        final long claimTime;
+        final List<FlagRecord> flags = new ArrayList<>();
+        
+        /**
+         * Creates a territory record without flags.
+         *
+         * @param chunkX The chunk X coordinate
+         * @param chunkZ The chunk Z coordinate
+         * @param worldName The world name
+         * @param clanName The owning clan's name
+         * @param influenceLevel The influence level
+         * @param claimTime The claim time in milliseconds
+         */
+        TerritoryRecord(int chunkX, int chunkZ, String worldName, String clanName, int influenceLevel, long claimTime) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.worldName = worldName;
+            this.clanName = clanName;
+            this.influenceLevel = influenceLevel;
+            this.claimTime = claimTime;
+        }
+    }
+    
+    /**
+     * A flag placed in a territory.
+     */
+    static final class FlagRecord {
+        final double x;
+        final double y;
+        final double z;
+        final UUID placedBy;
+        final long placedTime;
+        final int tier;
+        final int influenceRadius;
+        final String name;
+        
+        /**
+         * Creates a flag record.
+         *
+         * @param x The X coordinate
+         * @param y The Y coordinate
+         * @param z The Z coordinate
+         * @param placedBy The UUID of the player who placed the flag
+         * @param placedTime The placement time in milliseconds
+         * @param tier The flag tier
+         * @param influenceRadius The influence radius in chunks
+         * @param name The flag name, may be null
+         */
+        FlagRecord(double x, double y, double z, UUID placedBy, long placedTime, int tier, int influenceRadius,
+                   String name) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.placedBy = placedBy;
+            this.placedTime = placedTime;
+            this.tier = tier;
+            this.influenceRadius = influenceRadius;
+            this.name = name;
+        }
+    }
+    
+    /**
+     * The clans taking part in a war, which is all integrity checks need.
+     */
+    static final class WarRecord {
+        final String initiatingClan;
+        final String targetClan;
+        final boolean active;
+        
+        /**
+         * Creates a war record.
+         *
+         * @param initiatingClan The name of the clan that declared the war
+         * @param targetClan The name of the clan war was declared on
+         * @param active True for an active war, false for a war in a clan's history
+         */
+        WarRecord(String initiatingClan, String targetClan, boolean active) {
+            this.initiatingClan = initiatingClan;
+            this.targetClan = targetClan;
+            this.active = active;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.ClanPlugin;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Runs independent data tasks, such as loading or saving a manager's file,
+ * concurrently on a bounded pool. The caller waits for every task with a
+ * deadline, after which a per-task timing report is logged.
+ */
+public class ParallelDataStage {
+    
+    /**
+     * A single unit of work in a stage.
+     */
+    public interface DataTask {
+        
+        /**
+         * Runs the task.
+         *
+         * @throws Exception If the task fails
+         */
+        void run() throws Exception;
+    }
+    
+    private final ClanPlugin plugin;
+    private final String stageName;
+    private final ExecutorService pool;
+    private final Map<String, Future<?>> tasks;
+    private final Map<String, Long> durations;
+    private final long startTime;
+    
+    /**
+     * Creates a new stage.
+     *
+     * @param plugin The plugin instance
+     * @param stageName The name used in thread names and the timing report
+     * @param threads The maximum number of tasks that run at the same time
+     */
+    public ParallelDataStage(ClanPlugin plugin, String stageName, int threads) {
+        this.plugin = plugin;
+        this.stageName = stageName;
+        this.tasks = new LinkedHashMap<>();
+        this.durations = new LinkedHashMap<>();
+        this.startTime = System.nanoTime();
+        
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "ClanPlugin-" + stageName + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Gets the default pool size for a stage from the configuration.
+     *
+     * @param plugin The plugin instance
+     * @return The number of threads to use
+     */
+    public static int getConfiguredThreads(ClanPlugin plugin) {
+        int configured = plugin.getConfig().getInt("storage.parallel_io.threads", 0);
+        if (configured > 0) {
+            return configured;
+        }
+        return Math.min(4, Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Queues a task.
+     *
+     * @param name The name shown in the timing report
+     * @param task The task to run
+     */
+    public void submit(String name, DataTask task) {
+        tasks.put(name, pool.submit(() -> {
+            long start = System.nanoTime();
+            try {
+                task.run();
+            } finally {
+                recordDuration(name, System.nanoTime() - start);
+            }
+            return null;
+        }));
+    }
+    
+    /**
+     * Waits for every queued task to finish and logs the timing report.
+     * Tasks still running when the timeout expires are interrupted.
+     *
+     * @param timeoutSeconds The maximum time to wait for the whole stage
+     * @return True if every task completed without an error
+     */
+    public boolean await(long timeoutSeconds) {
+        pool.shutdown();
+        long deadline = startTime + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        boolean success = true;
+        List<String> failed = new ArrayList<>();
+        
+        for (Map.Entry<String, Future<?>> entry : tasks.entrySet()) {
+            try {
+                entry.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                entry.getValue().cancel(true);
+                failed.add(entry.getKey() + " (timed out)");
+                success = false;
+            } catch (ExecutionException e) {
+                plugin.getLogger().log(Level.SEVERE, stageName + " task " + entry.getKey() + " failed", e.getCause());
+                failed.add(entry.getKey() + " (failed)");
+                success = false;
+            } catch (CancellationException e) {
+                failed.add(entry.getKey() + " (cancelled)");
+                success = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                pool.shutdownNow();
+                failed.add(entry.getKey() + " (interrupted)");
+                success = false;
+                break;
+            }
+        }
+        
+        logReport(failed);
+        return success;
+    }
+    
+    /**
+     * Records how long a task took.
+     *
+     * @param name The task name
+     * @param nanos The duration in nanoseconds
+     */
+    private synchronized void recordDuration(String name, long nanos) {
+        durations.put(name, nanos);
+    }
+    
+    /**
+     * Logs the wall-clock time of the stage followed by each task, slowest first.
+     *
+     * @param failed The tasks that did not complete
+     */
+    private synchronized void logReport(List<String> failed) {
+        long total = System.nanoTime() - startTime;
+        List<Map.Entry<String, Long>> sorted = new ArrayList<>(durations.entrySet());
+        sorted.sort(Comparator.comparing(Map.Entry<String, Long>::getValue).reversed());
+        
+        StringBuilder report = new StringBuilder();
+        report.append(stageName).append(" finished ").append(tasks.size()).append(" tasks in ")
+              .append(total / 1000000).append("ms:");
+        for (Map.Entry<String, Long> entry : sorted) {
+            report.append("\n  ").append(entry.getKey()).append(": ").append(entry.getValue() / 1000000).append("ms");
+        }
+        for (String name : failed) {
+            report.append("\n  ").append(name);
+        }
+        
+        if (failed.isEmpty()) {
+            plugin.getLogger().info(report.toString());
+        } else {
+            plugin.getLogger().warning(report.toString());
+        }
+    }
+}
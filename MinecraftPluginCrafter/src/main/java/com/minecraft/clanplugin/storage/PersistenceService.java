@@ -0,0 +1,594 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.ClanPlugin;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * Shared write-behind persistence for managers that keep their data in a
+ * single file. A manager registers its file once and marks it dirty on
+ * every change. On each flush the dirty files are snapshotted on the main
+ * thread and handed to one background I/O thread, so a burst of changes
+ * costs a single write per file. Snapshots are immutable copies, so all
+ * serialization happens on the I/O thread.
+ */
+public class PersistenceService {
+    
+    private static final long DRAIN_TIMEOUT_SECONDS = 30;
+    private static final int BENCHMARK_ROUNDS = 5;
+    
+    private final ClanPlugin plugin;
+    private final List<Registration> registrations;
+    private final AtomicInteger queueDepth;
+    private final ExecutorService writer;
+    private BukkitTask flushTask;
+    private int holds;
+    
+    /**
+     * A detached copy of a file's data. It must not refer to live objects, as
+     * it is serialized on the I/O thread while the game keeps running.
+     */
+    public interface Snapshot {
+        
+        /**
+         * Serializes the data. Called on the I/O thread.
+         *
+         * @param out The stream to write to; it is closed by the caller
+         * @throws IOException If the data could not be written
+         */
+        void writeTo(OutputStream out) throws IOException;
+    }
+    
+    /**
+     * A file registered with the service, together with its write metrics.
+     */
+    public static class Registration {
+        
+        private final String name;
+        private final File file;
+        private final Supplier<? extends Snapshot> snapshotter;
+        private volatile boolean dirty;
+        private Snapshot pending;
+        private long writes;
+        private long failures;
+        private long lastWriteNanos;
+        private long maxWriteNanos;
+        private long totalWriteNanos;
+        private long lastSnapshotNanos;
+        private long maxSnapshotNanos;
+        
+        /**
+         * Creates a new registration.
+         *
+         * @param name The name shown in metrics
+         * @param file The file to write
+         * @param snapshotter Builds a detached copy of the data
+         */
+        private Registration(String name, File file, Supplier<? extends Snapshot> snapshotter) {
+            this.name = name;
+            this.file = file;
+            this.snapshotter = snapshotter;
+        }
+        
+        /**
+         * Marks the file as changed so it is written on the next flush.
+         */
+        public void markDirty() {
+            dirty = true;
+        }
+        
+        /**
+         * Gets the name shown in metrics.
+         *
+         * @return The registration name
+         */
+        public String getName() {
+            return name;
+        }
+        
+        /**
+         * Checks whether the file has changes that are not yet snapshotted.
+         *
+         * @return True if the file is dirty
+         */
+        public boolean isDirty() {
+            return dirty;
+        }
+        
+        /**
+         * Gets the number of completed writes.
+         *
+         * @return The write count
+         */
+        public synchronized long getWrites() {
+            return writes;
+        }
+        
+        /**
+         * Gets the number of failed writes.
+         *
+         * @return The failure count
+         */
+        public synchronized long getFailures() {
+            return failures;
+        }
+        
+        /**
+         * Gets the duration of the most recent write.
+         *
+         * @return The latency in milliseconds
+         */
+        public synchronized double getLastWriteMillis() {
+            return lastWriteNanos / 1000000.0;
+        }
+        
+        /**
+         * Gets the longest write so far.
+         *
+         * @return The latency in milliseconds
+         */
+        public synchronized double getMaxWriteMillis() {
+            return maxWriteNanos / 1000000.0;
+        }
+        
+        /**
+         * Gets the average write duration.
+         *
+         * @return The latency in milliseconds
+         */
+        public synchronized double getAverageWriteMillis() {
+            return writes == 0 ? 0 : totalWriteNanos / (double) writes / 1000000.0;
+        }
+        
+        /**
+         * Gets the main-thread time spent on the most recent snapshot.
+         *
+         * @return The time in milliseconds
+         */
+        public synchronized double getLastSnapshotMillis() {
+            return lastSnapshotNanos / 1000000.0;
+        }
+        
+        /**
+         * Gets the longest main-thread time spent on a snapshot so far.
+         *
+         * @return The time in milliseconds
+         */
+        public synchronized double getMaxSnapshotMillis() {
+            return maxSnapshotNanos / 1000000.0;
+        }
+        
+        /**
+         * Records the main-thread time spent on a snapshot.
+         *
+         * @param nanos The snapshot duration in nanoseconds
+         */
+        private synchronized void recordSnapshot(long nanos) {
+            lastSnapshotNanos = nanos;
+            maxSnapshotNanos = Math.max(maxSnapshotNanos, nanos);
+        }
+        
+        /**
+         * Records a completed write.
+         *
+         * @param nanos The write duration in nanoseconds
+         */
+        private synchronized void recordWrite(long nanos) {
+            writes++;
+            lastWriteNanos = nanos;
+            maxWriteNanos = Math.max(maxWriteNanos, nanos);
+            totalWriteNanos += nanos;
+        }
+        
+        /**
+         * Records a failed snapshot or write.
+         */
+        private synchronized void recordFailure() {
+            failures++;
+        }
+    }
+    
+    /**
+     * Creates a new persistence service.
+     *
+     * @param plugin The plugin instance
+     */
+    public PersistenceService(ClanPlugin plugin) {
+        this.plugin = plugin;
+        this.registrations = new CopyOnWriteArrayList<>();
+        this.queueDepth = new AtomicInteger();
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ClanPlugin-Persistence");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Starts the periodic flush task.
+     */
+    public void start() {
+        int interval = Math.max(1, plugin.getConfig().getInt("storage.persistence.flush_interval_seconds", 10));
+        long ticks = interval * 20L;
+        flushTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::flush, ticks, ticks);
+    }
+    
+    /**
+     * Registers a YAML file. May be called from any thread.
+     *
+     * @param name The name shown in metrics
+     * @param file The file to write
+     * @param snapshotter Builds a detached copy of the data; called on the main thread
+     * @return The registration used to mark the file dirty
+     */
+    public Registration register(String name, File file, Supplier<YamlConfiguration> snapshotter) {
+        return registerSnapshot(name, file, () -> {
+            YamlConfiguration document = snapshotter.get();
+            return out -> out.write(document.saveToString().getBytes(StandardCharsets.UTF_8));
+        });
+    }
+    
+    /**
+     * Registers a file in any format. May be called from any thread.
+     * Files are flushed in the order they were registered.
+     *
+     * @param name The name shown in metrics
+     * @param file The file to write
+     * @param snapshotter Publishes an immutable snapshot of the data; called on the main thread
+     * @return The registration used to mark the file dirty
+     */
+    public Registration registerSnapshot(String name, File file, Supplier<? extends Snapshot> snapshotter) {
+        Registration registration = new Registration(name, file, snapshotter);
+        registrations.add(registration);
+        return registration;
+    }
+    
+    /**
+     * Gets all registered files.
+     *
+     * @return The registrations
+     */
+    public List<Registration> getRegistrations() {
+        return new ArrayList<>(registrations);
+    }
+    
+    /**
+     * Gets the number of snapshots waiting to be written.
+     *
+     * @return The queue depth
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+    
+    /**
+     * Snapshots every dirty file and queues it on the I/O thread.
+     * A file that still has a snapshot waiting is not queued twice; the
+     * waiting snapshot is replaced by the newer one instead. Does nothing
+     * while a {@link UnitOfWork} is being applied.
+     */
+    public void flush() {
+        if (holds > 0) {
+            return;
+        }
+        
+        for (Registration registration : registrations) {
+            Snapshot snapshot = takeSnapshot(registration);
+            if (snapshot == null) {
+                continue;
+            }
+            
+            boolean queued;
+            synchronized (registration) {
+                queued = registration.pending != null;
+                registration.pending = snapshot;
+            }
+            
+            if (!queued) {
+                queueDepth.incrementAndGet();
+                execute(() -> write(registration));
+            }
+        }
+    }
+    
+    /**
+     * Snapshots every dirty file and writes them together: every file is
+     * written to its temporary file first, and only when all of them succeeded
+     * are they moved into place, one after the other. A failed write leaves the
+     * previous version of every file, but the group is not crash-atomic: a
+     * crash while the files are being moved may leave a mix of old and new
+     * files. Used to commit a {@link UnitOfWork}.
+     */
+    public void flushGroup() {
+        if (holds > 0) {
+            return;
+        }
+        
+        Map<Registration, Snapshot> group = new LinkedHashMap<>();
+        for (Registration registration : registrations) {
+            Snapshot snapshot = takeSnapshot(registration);
+            if (snapshot == null) {
+                continue;
+            }
+            
+            // A snapshot still waiting in the queue is older, so the group replaces it
+            synchronized (registration) {
+                registration.pending = null;
+            }
+            group.put(registration, snapshot);
+        }
+        
+        if (!group.isEmpty()) {
+            queueDepth.incrementAndGet();
+            execute(() -> writeGroup(group));
+        }
+    }
+    
+    /**
+     * Holds back flushes until {@link #release()} is called, so no snapshot
+     * is taken while a unit of work is half applied. Main thread only.
+     */
+    void hold() {
+        holds++;
+    }
+    
+    /**
+     * Ends a {@link #hold()}. Main thread only.
+     */
+    void release() {
+        holds = Math.max(0, holds - 1);
+    }
+    
+    /**
+     * Runs a task on the I/O thread once every snapshot queued so far has been
+     * written. No registered file is written while the task runs, so it sees
+     * the files as they were at one point in time.
+     *
+     * @param task The task to run
+     * @return False if the I/O thread has already stopped and the task was not queued
+     */
+    public boolean runOnWriter(Runnable task) {
+        try {
+            writer.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Flushes all dirty files and waits for the I/O thread to finish. Must be
+     * called from the main thread, as the flush snapshots the files.
+     */
+    public void drain() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        
+        flush();
+        awaitWrites();
+    }
+    
+    /**
+     * Stops the I/O thread once every queued snapshot has been written and
+     * waits for it, without taking new snapshots. Used when the plugin is
+     * disabled, after the main thread has called {@link #flush()}; may be
+     * called from any thread.
+     */
+    public void awaitWrites() {
+        writer.shutdown();
+        
+        try {
+            if (!writer.awaitTermination(DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                plugin.getLogger().severe("Timed out with " + queueDepth.get() + " data files still waiting to be written!");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            plugin.getLogger().severe("Interrupted while waiting for data files to be written!");
+        }
+    }
+    
+    /**
+     * Measures the main-thread cost of saving every registered file, once with
+     * the old approach of serializing on the main thread and once with the
+     * snapshot that is published before the I/O thread serializes it, and logs
+     * the result. Must be called from the main thread.
+     */
+    public void benchmark() {
+        StringBuilder report = new StringBuilder("Main-thread save benchmark (average of ")
+                .append(BENCHMARK_ROUNDS).append(" rounds):");
+        
+        for (Registration registration : registrations) {
+            try {
+                long serializeNanos = 0;
+                long publishNanos = 0;
+                int bytes = 0;
+                for (int round = 0; round < BENCHMARK_ROUNDS; round++) {
+                    long start = System.nanoTime();
+                    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                    registration.snapshotter.get().writeTo(buffer);
+                    serializeNanos += System.nanoTime() - start;
+                    bytes = buffer.size();
+                    
+                    start = System.nanoTime();
+                    registration.snapshotter.get();
+                    publishNanos += System.nanoTime() - start;
+                }
+                
+                report.append(String.format("%n  %s (%dKB): before %.3fms (serialize), after %.3fms (publish snapshot)",
+                        registration.name, bytes / 1024,
+                        serializeNanos / (double) BENCHMARK_ROUNDS / 1000000.0,
+                        publishNanos / (double) BENCHMARK_ROUNDS / 1000000.0));
+            } catch (IOException | RuntimeException e) {
+                report.append("\n  ").append(registration.name).append(": failed (").append(e.getMessage()).append(")");
+            }
+        }
+        
+        plugin.getLogger().info(report.toString());
+    }
+    
+    /**
+     * Creates a detached copy of a configuration for use as a snapshot.
+     *
+     * @param source The configuration to copy
+     * @return The copy
+     */
+    public static YamlConfiguration copyOf(ConfigurationSection source) {
+        YamlConfiguration copy = new YamlConfiguration();
+        for (Map.Entry<String, Object> entry : source.getValues(true).entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof ConfigurationSection) {
+                if (((ConfigurationSection) value).getKeys(false).isEmpty()) {
+                    copy.createSection(entry.getKey());
+                }
+            } else if (value instanceof List) {
+                copy.set(entry.getKey(), new ArrayList<>((List<?>) value));
+            } else {
+                copy.set(entry.getKey(), value);
+            }
+        }
+        return copy;
+    }
+    
+    /**
+     * Takes a snapshot of a dirty file and clears its dirty flag.
+     *
+     * @param registration The file to snapshot
+     * @return The snapshot, or null if the file is not dirty or the snapshot failed
+     */
+    private Snapshot takeSnapshot(Registration registration) {
+        if (!registration.dirty) {
+            return null;
+        }
+        registration.dirty = false;
+        
+        long start = System.nanoTime();
+        try {
+            Snapshot snapshot = registration.snapshotter.get();
+            registration.recordSnapshot(System.nanoTime() - start);
+            return snapshot;
+        } catch (RuntimeException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not snapshot " + registration.name, e);
+            registration.recordFailure();
+            return null;
+        }
+    }
+    
+    /**
+     * Queues a task on the I/O thread, or runs it on the calling thread if the
+     * I/O thread has already stopped.
+     *
+     * @param task The task to run
+     */
+    private void execute(Runnable task) {
+        try {
+            writer.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+    
+    /**
+     * Writes a group of snapshots together. No file is replaced unless every
+     * snapshot was written, but the files are moved into place one at a time,
+     * so this is not crash-atomic. Runs on the I/O thread.
+     *
+     * @param group The files to write and their snapshots
+     */
+    private void writeGroup(Map<Registration, Snapshot> group) {
+        queueDepth.decrementAndGet();
+        
+        Map<Registration, File> temps = new LinkedHashMap<>();
+        Map<Registration, Long> durations = new HashMap<>();
+        try {
+            for (Map.Entry<Registration, Snapshot> entry : group.entrySet()) {
+                Registration registration = entry.getKey();
+                long start = System.nanoTime();
+                File temp = new File(registration.file.getParentFile(), registration.file.getName() + ".tmp");
+                temps.put(registration, temp);
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp.toPath()))) {
+                    entry.getValue().writeTo(out);
+                }
+                durations.put(registration, System.nanoTime() - start);
+            }
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not save " + group.size() + " data files as a group, keeping the previous versions", e);
+            for (Map.Entry<Registration, File> entry : temps.entrySet()) {
+                entry.getValue().delete();
+                entry.getKey().recordFailure();
+                // Written again on the next flush
+                entry.getKey().markDirty();
+            }
+            return;
+        }
+        
+        for (Map.Entry<Registration, File> entry : temps.entrySet()) {
+            Registration registration = entry.getKey();
+            long start = System.nanoTime();
+            try {
+                BinarySnapshot.moveIntoPlace(entry.getValue(), registration.file);
+                registration.recordWrite(durations.get(registration) + System.nanoTime() - start);
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.SEVERE, "Could not save " + registration.file.getName(), e);
+                registration.recordFailure();
+                registration.markDirty();
+            }
+        }
+    }
+    
+    /**
+     * Writes the latest snapshot of a file. Runs on the I/O thread.
+     *
+     * @param registration The file to write
+     */
+    private void write(Registration registration) {
+        Snapshot snapshot;
+        synchronized (registration) {
+            snapshot = registration.pending;
+            registration.pending = null;
+        }
+        queueDepth.decrementAndGet();
+        
+        if (snapshot == null) {
+            return;
+        }
+        
+        long start = System.nanoTime();
+        File temp = new File(registration.file.getParentFile(), registration.file.getName() + ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp.toPath()))) {
+                snapshot.writeTo(out);
+            }
+            BinarySnapshot.moveIntoPlace(temp, registration.file);
+            registration.recordWrite(System.nanoTime() - start);
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not save " + registration.file.getName(), e);
+            registration.recordFailure();
+            // Written again on the next flush
+            registration.markDirty();
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.ClanPlugin;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+
+/**
+ * Player-scoped storage with one small YAML file per UUID.
+ * Data is loaded in the background when a player connects, kept in memory
+ * while they are online, written individually when changed and evicted when
+ * they quit. Data for offline players is loaded on demand and kept in a
+ * small LRU cache.
+ *
+ * @param <T> The type of the per-player data
+ */
+public class PlayerDataStore<T> {
+    
+    /**
+     * Converts per-player data to and from YAML.
+     *
+     * @param <T> The type of the per-player data
+     */
+    public interface Codec<T> {
+        
+        /**
+         * Creates empty data for a player without a file.
+         *
+         * @param playerUuid The UUID of the player
+         * @return The new data
+         */
+        T create(UUID playerUuid);
+        
+        /**
+         * Reads a player's data.
+         *
+         * @param playerUuid The UUID of the player
+         * @param section The section holding the data
+         * @return The data
+         */
+        T read(UUID playerUuid, ConfigurationSection section);
+        
+        /**
+         * Writes a player's data. Called on the main thread.
+         *
+         * @param value The data to write
+         * @param section The empty section to write to
+         */
+        void write(T value, ConfigurationSection section);
+    }
+    
+    private static final long LOAD_TIMEOUT_SECONDS = 10;
+    private static final long DRAIN_TIMEOUT_SECONDS = 30;
+    
+    private final ClanPlugin plugin;
+    private final String name;
+    private final File folder;
+    private final Codec<T> codec;
+    private final int maxOfflineEntries;
+    private final LinkedHashMap<UUID, T> cache;
+    private final Set<UUID> online;
+    private final Set<UUID> dirty;
+    private final Map<UUID, YamlConfiguration> pendingWrites;
+    private final ExecutorService writer;
+    private BukkitTask flushTask;
+    
+    /**
+     * Creates a new player data store.
+     *
+     * @param plugin The plugin instance
+     * @param name The name used for the writer thread and log messages
+     * @param folder The folder holding one file per player
+     * @param codec Converts the data to and from YAML
+     */
+    public PlayerDataStore(ClanPlugin plugin, String name, File folder, Codec<T> codec) {
+        this.plugin = plugin;
+        this.name = name;
+        this.folder = folder;
+        this.codec = codec;
+        this.maxOfflineEntries = Math.max(0, plugin.getConfig().getInt("storage.player_data.offline_cache_size", 256));
+        this.cache = new LinkedHashMap<>(64, 0.75f, true);
+        this.online = new HashSet<>();
+        this.dirty = new HashSet<>();
+        this.pendingWrites = new HashMap<>();
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ClanPlugin-" + name + "Writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        folder.mkdirs();
+    }
+    
+    /**
+     * Starts the periodic flush of changed players.
+     */
+    public void start() {
+        int interval = Math.max(1, plugin.getConfig().getInt("storage.player_data.flush_interval_seconds", 30));
+        long ticks = interval * 20L;
+        flushTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::flush, ticks, ticks);
+    }
+    
+    /**
+     * Gets the file holding a player's data.
+     *
+     * @param playerUuid The UUID of the player
+     * @return The player's file
+     */
+    public File getFile(UUID playerUuid) {
+        return new File(folder, playerUuid.toString() + ".yml");
+    }
+    
+    /**
+     * Loads a connecting player's data and keeps it until they quit.
+     * Blocks until the data is read, so it must not be called on the main thread.
+     *
+     * @param playerUuid The UUID of the player
+     */
+    public void preload(UUID playerUuid) {
+        synchronized (this) {
+            online.add(playerUuid);
+            if (cache.containsKey(playerUuid)) {
+                return;
+            }
+        }
+        
+        // Read on the writer thread so the read is ordered after any queued write for this player
+        Future<T> future = writer.submit(() -> load(playerUuid));
+        try {
+            T value = future.get(LOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            synchronized (this) {
+                if (!cache.containsKey(playerUuid)) {
+                    cache.put(playerUuid, value);
+                }
+            }
+        } catch (TimeoutException | ExecutionException e) {
+            // Loaded on first access instead
+            plugin.getLogger().warning("Could not preload " + name + " data for " + playerUuid + ": " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Marks a player as online so their data is never evicted while they play.
+     * Used for players who were already online when the plugin was enabled.
+     *
+     * @param playerUuid The UUID of the player
+     */
+    public synchronized void markOnline(UUID playerUuid) {
+        online.add(playerUuid);
+    }
+    
+    /**
+     * Gets a player's data, loading it if it is not cached.
+     *
+     * @param playerUuid The UUID of the player
+     * @return The player's data
+     */
+    public T get(UUID playerUuid) {
+        synchronized (this) {
+            T value = cache.get(playerUuid);
+            if (value != null) {
+                return value;
+            }
+        }
+        
+        T loaded = load(playerUuid);
+        synchronized (this) {
+            T value = cache.get(playerUuid);
+            if (value == null) {
+                value = loaded;
+                cache.put(playerUuid, value);
+                trim();
+            }
+            return value;
+        }
+    }
+    
+    /**
+     * Marks a player's data as changed so it is written on the next flush.
+     *
+     * @param playerUuid The UUID of the player
+     */
+    public synchronized void markDirty(UUID playerUuid) {
+        if (cache.containsKey(playerUuid)) {
+            dirty.add(playerUuid);
+        }
+    }
+    
+    /**
+     * Writes a player's data if it changed and evicts it from memory.
+     * Called on the main thread when the player quits.
+     *
+     * @param playerUuid The UUID of the player
+     */
+    public void unload(UUID playerUuid) {
+        Map<UUID, YamlConfiguration> documents = new LinkedHashMap<>();
+        synchronized (this) {
+            online.remove(playerUuid);
+            T value = cache.remove(playerUuid);
+            if (value != null && dirty.remove(playerUuid)) {
+                documents.put(playerUuid, serialize(value));
+                pendingWrites.putAll(documents);
+            }
+        }
+        queueWrites(documents);
+    }
+    
+    /**
+     * Gets the number of players held in memory.
+     *
+     * @return The number of cached players
+     */
+    public synchronized int getCachedCount() {
+        return cache.size();
+    }
+    
+    /**
+     * Writes every changed player's data in the background.
+     * Must be called from the main thread.
+     */
+    public void flush() {
+        Map<UUID, YamlConfiguration> documents = new LinkedHashMap<>();
+        synchronized (this) {
+            for (UUID playerUuid : dirty) {
+                T value = cache.get(playerUuid);
+                if (value != null) {
+                    documents.put(playerUuid, serialize(value));
+                }
+            }
+            dirty.clear();
+            pendingWrites.putAll(documents);
+            trim();
+        }
+        queueWrites(documents);
+    }
+    
+    /**
+     * Writes a player's data immediately on the calling thread.
+     * Used when importing data from the old shared file.
+     *
+     * @param playerUuid The UUID of the player
+     * @param value The data to write
+     */
+    public void writeNow(UUID playerUuid, T value) {
+        Map<UUID, YamlConfiguration> documents = new LinkedHashMap<>();
+        documents.put(playerUuid, serialize(value));
+        writeFiles(documents);
+    }
+    
+    /**
+     * Flushes all changes and waits for the background writer to finish.
+     * Called when the plugin is disabled.
+     */
+    public void drain() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        
+        flush();
+        writer.shutdown();
+        
+        try {
+            if (!writer.awaitTermination(DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                plugin.getLogger().severe("Timed out waiting for " + name + " data to be written!");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            plugin.getLogger().severe("Interrupted while waiting for " + name + " data to be written!");
+        }
+    }
+    
+    /**
+     * Reads a player's data from a pending write or their file.
+     *
+     * @param playerUuid The UUID of the player
+     * @return The player's data, or new data if there is no file
+     */
+    private T load(UUID playerUuid) {
+        // A write that is still queued is newer than the file
+        YamlConfiguration pending;
+        synchronized (this) {
+            pending = pendingWrites.get(playerUuid);
+        }
+        if (pending != null) {
+            return codec.read(playerUuid, pending);
+        }
+        
+        File file = getFile(playerUuid);
+        if (!file.exists()) {
+            return codec.create(playerUuid);
+        }
+        
+        YamlConfiguration document = new YamlConfiguration();
+        try {
+            document.load(file);
+        } catch (IOException | InvalidConfigurationException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not read " + name + " data from " + file.getName(), e);
+            return codec.create(playerUuid);
+        }
+        return codec.read(playerUuid, document);
+    }
+    
+    /**
+     * Converts a player's data into a YAML document.
+     *
+     * @param value The data
+     * @return The document
+     */
+    private YamlConfiguration serialize(T value) {
+        YamlConfiguration document = new YamlConfiguration();
+        codec.write(value, document);
+        return document;
+    }
+    
+    /**
+     * Evicts the least recently used offline players that have nothing left to write.
+     */
+    private void trim() {
+        int excess = cache.size() - online.size() - maxOfflineEntries;
+        Iterator<UUID> iterator = cache.keySet().iterator();
+        while (excess > 0 && iterator.hasNext()) {
+            UUID playerUuid = iterator.next();
+            if (!online.contains(playerUuid) && !dirty.contains(playerUuid)) {
+                iterator.remove();
+                excess--;
+            }
+        }
+    }
+    
+    /**
+     * Hands documents to the background writer.
+     *
+     * @param documents The documents keyed by player UUID
+     */
+    private void queueWrites(Map<UUID, YamlConfiguration> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        
+        try {
+            writer.execute(() -> writeFiles(documents));
+        } catch (RejectedExecutionException e) {
+            // Writer already stopped, write on the calling thread instead
+            writeFiles(documents);
+        }
+    }
+    
+    /**
+     * Writes player files through a temporary file.
+     *
+     * @param documents The documents keyed by player UUID
+     */
+    private void writeFiles(Map<UUID, YamlConfiguration> documents) {
+        List<UUID> written = new ArrayList<>();
+        for (Map.Entry<UUID, YamlConfiguration> entry : documents.entrySet()) {
+            File target = getFile(entry.getKey());
+            File temp = new File(folder, target.getName() + ".tmp");
+            try {
+                Files.write(temp.toPath(), entry.getValue().saveToString().getBytes(StandardCharsets.UTF_8));
+                BinarySnapshot.moveIntoPlace(temp, target);
+                written.add(entry.getKey());
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.SEVERE, "Could not save " + name + " data to " + target.getName(), e);
+            }
+        }
+        
+        synchronized (this) {
+            for (UUID playerUuid : written) {
+                // Only forget the document if no newer one was queued meanwhile
+                pendingWrites.remove(playerUuid, documents.get(playerUuid));
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.minecraft.clanplugin.storage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Keeps the last immutable snapshot of each live object together with the
+ * object's version. Publishing only copies objects whose version changed, so
+ * a save after a single change costs one copy plus a version check for every
+ * other object. Only used from the main thread.
+ *
+ * @param <T> The type of the live objects
+ * @param <S> The type of the snapshots
+ */
+public class SnapshotCache<T, S> {
+    
+    private final Function<T, S> copier;
+    private final ToLongFunction<T> versioner;
+    private Map<T, Entry<S>> entries;
+    private int lastCopied;
+    
+    /**
+     * A snapshot and the version of the object it was copied from.
+     *
+     * @param <S> The type of the snapshot
+     */
+    private static final class Entry<S> {
+        private final long version;
+        private final S snapshot;
+        
+        Entry(long version, S snapshot) {
+            this.version = version;
+            this.snapshot = snapshot;
+        }
+    }
+    
+    /**
+     * Creates a new snapshot cache.
+     *
+     * @param copier Copies a live object into a snapshot
+     * @param versioner Reads the version of a live object
+     */
+    public SnapshotCache(Function<T, S> copier, ToLongFunction<T> versioner) {
+        this.copier = copier;
+        this.versioner = versioner;
+        this.entries = new IdentityHashMap<>();
+    }
+    
+    /**
+     * Publishes snapshots of the given objects, reusing the previous snapshot of
+     * every object whose version did not change. Objects that are no longer
+     * passed in are forgotten.
+     *
+     * @param live The current objects
+     * @return The snapshots, in the order of the given objects
+     */
+    public List<S> publish(Collection<T> live) {
+        Map<T, Entry<S>> published = new IdentityHashMap<>(live.size() * 2);
+        List<S> snapshots = new ArrayList<>(live.size());
+        int copied = 0;
+        
+        for (T object : live) {
+            long version = versioner.applyAsLong(object);
+            Entry<S> entry = entries.get(object);
+            if (entry == null || entry.version != version) {
+                entry = new Entry<>(version, copier.apply(object));
+                copied++;
+            }
+            published.put(object, entry);
+            snapshots.add(entry.snapshot);
+        }
+        
+        entries = published;
+        lastCopied = copied;
+        return snapshots;
+    }
+    
+    /**
+     * Gets the number of objects copied by the last publish.
+     *
+     * @return The number of new snapshots
+     */
+    public int getLastCopied() {
+        return lastCopied;
+    }
+}
@@ -0,0 +1,199 @@
+package com.minecraft.clanplugin.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Low-level encoding of the binary snapshot format: header, string table,
+ * varints, strings and UUIDs. Has no Bukkit dependencies, so it is shared by
+ * {@link BinarySnapshot} and the offline {@link Migrate} tool.
+ */
+final class SnapshotCodec {
+    
+    static final int VERSION = 1;
+    static final int CLAN_MAGIC = 0x434C4E53;      // "CLNS"
+    static final int TERRITORY_MAGIC = 0x54455252; // "TERR"
+    static final int BUFFER_SIZE = 64 * 1024;
+    
+    private SnapshotCodec() {
+    }
+    
+    /**
+     * Replaces the target file with the temporary file, atomically where supported.
+     *
+     * @param temp The freshly written file
+     * @param target The file to replace
+     * @throws IOException If the file could not be moved
+     */
+    static void moveIntoPlace(File temp, File target) throws IOException {
+        try {
+            Files.move(temp.toPath(), target.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /**
+     * Assigns each distinct string an index in the snapshot's string table.
+     */
+    static final class StringTable {
+        private final Map<String, Integer> indexes = new LinkedHashMap<>();
+        
+        void add(String value) {
+            if (!indexes.containsKey(value)) {
+                indexes.put(value, indexes.size());
+            }
+        }
+        
+        void addAll(Collection<String> values) {
+            for (String value : values) {
+                add(value);
+            }
+        }
+        
+        int indexOf(String value) {
+            return indexes.get(value);
+        }
+        
+        Collection<String> values() {
+            return indexes.keySet();
+        }
+    }
+    
+    /**
+     * Buffered snapshot writer over a stream.
+     */
+    static final class Output extends DataOutputStream {
+        
+        Output(OutputStream stream) {
+            super(new BufferedOutputStream(stream, BUFFER_SIZE));
+        }
+        
+        void writeHeader(int magic, StringTable table) throws IOException {
+            writeInt(magic);
+            writeVarInt(VERSION);
+            writeVarInt(table.values().size());
+            for (String value : table.values()) {
+                writeString(value);
+            }
+        }
+        
+        void writeVarInt(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+        
+        void writeSignedVarInt(int value) throws IOException {
+            writeVarInt((value << 1) ^ (value >> 31));
+        }
+        
+        void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+        
+        void writeString(String value) throws IOException {
+            byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            write(bytes);
+        }
+        
+        void writeUuid(UUID uuid) throws IOException {
+            writeLong(uuid.getMostSignificantBits());
+            writeLong(uuid.getLeastSignificantBits());
+        }
+    }
+    
+    /**
+     * Buffered snapshot reader over a file channel.
+     */
+    static final class Input extends DataInputStream {
+        
+        private Input(FileChannel channel) {
+            super(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE));
+        }
+        
+        static Input open(File file) throws IOException {
+            return new Input(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+        }
+        
+        String[] readHeader(int expectedMagic) throws IOException {
+            int magic = readInt();
+            if (magic != expectedMagic) {
+                throw new IOException("Not a clan plugin snapshot (bad magic number)");
+            }
+            int version = readVarInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            
+            String[] strings = new String[readVarInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString();
+            }
+            return strings;
+        }
+        
+        int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = readUnsignedByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+        
+        int readSignedVarInt() throws IOException {
+            int value = readVarInt();
+            return (value >>> 1) ^ -(value & 1);
+        }
+        
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 70; shift += 7) {
+                int b = readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varlong");
+        }
+        
+        String readString() throws IOException {
+            byte[] bytes = new byte[readVarInt()];
+            readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        
+        UUID readUuid() throws IOException {
+            return new UUID(readLong(), readLong());
+        }
+    }
+}
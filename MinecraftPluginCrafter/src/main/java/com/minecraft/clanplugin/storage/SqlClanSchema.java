@@ -0,0 +1,171 @@
+package com.minecraft.clanplugin.storage;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Schema and statements of the embedded SQLite clan database. Has no Bukkit
+ * dependencies, so it is shared by {@link SqlClanStorage} and the offline
+ * {@link Migrate} tool.
+ */
+final class SqlClanSchema {
+    
+    /** Home name used for a clan's main home in the clan_homes table. */
+    static final String MAIN_HOME = "";
+    
+    static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS clans (" +
+            "lower_name TEXT PRIMARY KEY, name TEXT NOT NULL, tag TEXT, color TEXT, " +
+            "level INTEGER NOT NULL DEFAULT 1, experience INTEGER NOT NULL DEFAULT 0, " +
+            "colored_armor INTEGER NOT NULL DEFAULT 1)",
+        "CREATE TABLE IF NOT EXISTS clan_members (" +
+            "player_uuid TEXT PRIMARY KEY, clan TEXT NOT NULL, player_name TEXT, role TEXT NOT NULL)",
+        "CREATE INDEX IF NOT EXISTS idx_clan_members_clan ON clan_members (clan)",
+        "CREATE TABLE IF NOT EXISTS clan_relations (" +
+            "clan TEXT NOT NULL, other_clan TEXT NOT NULL, relation TEXT NOT NULL, " +
+            "PRIMARY KEY (clan, other_clan))",
+        "CREATE TABLE IF NOT EXISTS clan_invites (" +
+            "clan TEXT NOT NULL, player_uuid TEXT NOT NULL, PRIMARY KEY (clan, player_uuid))",
+        "CREATE INDEX IF NOT EXISTS idx_clan_invites_player ON clan_invites (player_uuid)",
+        "CREATE TABLE IF NOT EXISTS clan_homes (" +
+            "clan TEXT NOT NULL, home TEXT NOT NULL, world TEXT NOT NULL, " +
+            "x REAL, y REAL, z REAL, yaw REAL, pitch REAL, PRIMARY KEY (clan, home))",
+        "CREATE TABLE IF NOT EXISTS clan_stats (" +
+            "clan TEXT NOT NULL, stat TEXT NOT NULL, value INTEGER NOT NULL, PRIMARY KEY (clan, stat))"
+    };
+    
+    /**
+     * Columns of the clans table that databases created by older versions
+     * lack. They are added when such a database is opened; the clans in it
+     * keep the defaults of a new clan until they are saved again.
+     */
+    static final String[][] ADDED_CLAN_COLUMNS = {
+        {"description", "TEXT"},
+        {"creation_time", "INTEGER"},
+        {"skill_points", "INTEGER NOT NULL DEFAULT 0"},
+        {"max_members", "INTEGER NOT NULL DEFAULT 10"},
+        {"max_territories", "INTEGER NOT NULL DEFAULT 5"},
+        {"income_boost", "INTEGER NOT NULL DEFAULT 0"},
+        {"war_wins", "INTEGER NOT NULL DEFAULT 0"},
+        {"war_losses", "INTEGER NOT NULL DEFAULT 0"}
+    };
+    
+    static final String SELECT_CLANS =
+        "SELECT lower_name, name, tag, color, level, experience, colored_armor, description, creation_time, " +
+        "skill_points, max_members, max_territories, income_boost, war_wins, war_losses FROM clans";
+    
+    static final String UPSERT_CLAN =
+        "INSERT INTO clans (lower_name, name, tag, color, level, experience, colored_armor, description, " +
+        "creation_time, skill_points, max_members, max_territories, income_boost, war_wins, war_losses) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT (lower_name) DO UPDATE SET " +
+        "name = excluded.name, tag = excluded.tag, color = excluded.color, level = excluded.level, " +
+        "experience = excluded.experience, colored_armor = excluded.colored_armor, " +
+        "description = excluded.description, creation_time = excluded.creation_time, " +
+        "skill_points = excluded.skill_points, max_members = excluded.max_members, " +
+        "max_territories = excluded.max_territories, income_boost = excluded.income_boost, " +
+        "war_wins = excluded.war_wins, war_losses = excluded.war_losses";
+    static final String INSERT_MEMBER =
+        "INSERT OR REPLACE INTO clan_members (player_uuid, clan, player_name, role) VALUES (?, ?, ?, ?)";
+    static final String INSERT_RELATION =
+        "INSERT INTO clan_relations (clan, other_clan, relation) VALUES (?, ?, ?)";
+    static final String INSERT_INVITE =
+        "INSERT INTO clan_invites (clan, player_uuid) VALUES (?, ?)";
+    static final String INSERT_HOME =
+        "INSERT INTO clan_homes (clan, home, world, x, y, z, yaw, pitch) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    static final String INSERT_STAT =
+        "INSERT INTO clan_stats (clan, stat, value) VALUES (?, ?, ?)";
+    static final String[] CHILD_TABLES = {"clan_members", "clan_relations", "clan_invites", "clan_homes", "clan_stats"};
+    
+    private SqlClanSchema() {
+    }
+    
+    /**
+     * Opens (or creates) a clan database and creates the schema if needed.
+     *
+     * @param databaseFile The SQLite database file
+     * @return The open connection
+     * @throws SQLException If the database could not be opened
+     */
+    static Connection open(File databaseFile) throws SQLException {
+        try {
+            // Older drivers do not register themselves automatically
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("SQLite driver not available", e);
+        }
+        
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA journal_mode = WAL");
+            statement.execute("PRAGMA synchronous = NORMAL");
+            for (String sql : SCHEMA) {
+                statement.execute(sql);
+            }
+            addMissingColumns(statement);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        return connection;
+    }
+    
+    /**
+     * Adds the columns in {@link #ADDED_CLAN_COLUMNS} that the clans table
+     * does not have yet.
+     *
+     * @param statement A statement on the open database
+     * @throws SQLException If the table could not be changed
+     */
+    private static void addMissingColumns(Statement statement) throws SQLException {
+        Set<String> columns = new HashSet<>();
+        try (ResultSet rs = statement.executeQuery("PRAGMA table_info(clans)")) {
+            while (rs.next()) {
+                columns.add(rs.getString("name"));
+            }
+        }
+        for (String[] column : ADDED_CLAN_COLUMNS) {
+            if (!columns.contains(column[0])) {
+                statement.execute("ALTER TABLE clans ADD COLUMN " + column[0] + " " + column[1]);
+            }
+        }
+    }
+    
+    /**
+     * Checks whether the SQLite library behind a connection supports
+     * VACUUM INTO, which was added in SQLite 3.27.0. Drivers bundled with
+     * older servers ship an older library.
+     *
+     * @param connection The open connection
+     * @return True if VACUUM INTO can be used
+     * @throws SQLException If the version could not be read
+     */
+    static boolean supportsVacuumInto(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT sqlite_version()")) {
+            String[] parts = rs.next() ? rs.getString(1).split("\\.") : new String[0];
+            int major = parts.length > 0 ? parseVersionPart(parts[0]) : 0;
+            int minor = parts.length > 1 ? parseVersionPart(parts[1]) : 0;
+            return major > 3 || (major == 3 && minor >= 27);
+        }
+    }
+    
+    /**
+     * Parses one part of a version number.
+     *
+     * @param part The part
+     * @return The number, or 0 if the part is not a number
+     */
+    private static int parseVersionPart(String part) {
+        try {
+            return Integer.parseInt(part);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
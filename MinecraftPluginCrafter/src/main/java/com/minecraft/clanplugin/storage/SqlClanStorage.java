@@ -0,0 +1,599 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.ClanPlugin;
+import com.minecraft.clanplugin.models.Clan;
+import com.minecraft.clanplugin.models.ClanMember;
+import com.minecraft.clanplugin.models.ClanRole;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Implementation of clan storage backed by an embedded SQLite database.
+ * Clans are kept in memory for lookups; each change is written as a row-level
+ * upsert of the affected clan from a single background thread.
+ */
+public class SqlClanStorage implements ClanStorage {
+    
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+    private final ClanPlugin plugin;
+    private final File databaseFile;
+    private final Map<String, Clan> clansByName;
+    private final Map<UUID, Clan> clansByPlayer;
+    private final Map<String, ClanRecord> pendingWrites;
+    private final ExecutorService writer;
+    private Connection connection;
+    private boolean flushScheduled;
+    
+    /**
+     * Opens (or creates) the clan database. The clans are read by {@link #load()}.
+     *
+     * @param plugin The plugin instance
+     * @param databaseFile The SQLite database file
+     * @throws SQLException If the database could not be opened
+     */
+    public SqlClanStorage(ClanPlugin plugin, File databaseFile) throws SQLException {
+        this.plugin = plugin;
+        this.databaseFile = databaseFile;
+        this.clansByName = new HashMap<>();
+        this.clansByPlayer = new HashMap<>();
+        this.pendingWrites = new LinkedHashMap<>();
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ClanPlugin-SqlWriter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        openConnection();
+    }
+    
+    /**
+     * Loads all clans. May run on a loader thread, before the storage is used.
+     *
+     * @throws SQLException If the data could not be read
+     */
+    public void load() throws SQLException {
+        loadClans();
+    }
+    
+    /**
+     * Opens the connection and creates the schema if needed.
+     *
+     * @throws SQLException If the database could not be opened
+     */
+    private void openConnection() throws SQLException {
+        connection = SqlClanSchema.open(databaseFile);
+    }
+    
+    /**
+     * Loads all clans and their members, relations, invites, homes and stats.
+     *
+     * @throws SQLException If the data could not be read
+     */
+    private void loadClans() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet rs = statement.executeQuery(SqlClanSchema.SELECT_CLANS)) {
+                while (rs.next()) {
+                    Clan clan = new Clan(rs.getString("name"));
+                    if (rs.getString("tag") != null) {
+                        clan.setTag(rs.getString("tag"));
+                    }
+                    if (rs.getString("color") != null) {
+                        clan.setColor(rs.getString("color"));
+                    }
+                    clan.setLevel(rs.getInt("level"));
+                    clan.setExperience(rs.getInt("experience"));
+                    clan.setColoredArmor(rs.getInt("colored_armor") != 0);
+                    if (rs.getString("description") != null) {
+                        clan.setDescription(rs.getString("description"));
+                    }
+                    long creationTime = rs.getLong("creation_time");
+                    if (!rs.wasNull()) {
+                        clan.setCreationTime(creationTime);
+                    }
+                    clan.setSkillPoints(rs.getInt("skill_points"));
+                    clan.setMaxMembers(rs.getInt("max_members"));
+                    clan.setMaxTerritories(rs.getInt("max_territories"));
+                    clan.setIncomeBoost(rs.getInt("income_boost"));
+                    clan.setWarWins(rs.getInt("war_wins"));
+                    clan.setWarLosses(rs.getInt("war_losses"));
+                    clansByName.put(clan.getName().toLowerCase(), clan);
+                }
+            }
+            
+            try (ResultSet rs = statement.executeQuery(
+                    "SELECT player_uuid, clan, player_name, role FROM clan_members")) {
+                while (rs.next()) {
+                    Clan clan = clansByName.get(rs.getString("clan"));
+                    if (clan == null) continue;
+                    
+                    UUID playerUUID = UUID.fromString(rs.getString("player_uuid"));
+                    String playerName = rs.getString("player_name");
+                    ClanRole role = ClanRole.valueOf(rs.getString("role"));
+                    clan.addMember(new ClanMember(playerUUID, playerName != null ? playerName : "Unknown", role));
+                    clansByPlayer.put(playerUUID, clan);
+                }
+            }
+            
+            try (ResultSet rs = statement.executeQuery("SELECT clan, other_clan, relation FROM clan_relations")) {
+                while (rs.next()) {
+                    Clan clan = clansByName.get(rs.getString("clan"));
+                    if (clan == null) continue;
+                    
+                    if ("ALLY".equals(rs.getString("relation"))) {
+                        clan.addAlliance(rs.getString("other_clan"));
+                    } else {
+                        clan.addEnemy(rs.getString("other_clan"));
+                    }
+                }
+            }
+            
+            try (ResultSet rs = statement.executeQuery("SELECT clan, player_uuid FROM clan_invites")) {
+                while (rs.next()) {
+                    Clan clan = clansByName.get(rs.getString("clan"));
+                    if (clan != null) {
+                        clan.addInvite(UUID.fromString(rs.getString("player_uuid")));
+                    }
+                }
+            }
+            
+            try (ResultSet rs = statement.executeQuery(
+                    "SELECT clan, home, world, x, y, z, yaw, pitch FROM clan_homes")) {
+                while (rs.next()) {
+                    Clan clan = clansByName.get(rs.getString("clan"));
+                    World world = Bukkit.getWorld(rs.getString("world"));
+                    if (clan == null || world == null) continue;
+                    
+                    Location location = new Location(world, rs.getDouble("x"), rs.getDouble("y"), rs.getDouble("z"),
+                                                     rs.getFloat("yaw"), rs.getFloat("pitch"));
+                    String home = rs.getString("home");
+                    if (SqlClanSchema.MAIN_HOME.equals(home)) {
+                        clan.setHome(location);
+                    } else {
+                        clan.setAdditionalHome(home, location);
+                    }
+                }
+            }
+            
+            try (ResultSet rs = statement.executeQuery("SELECT clan, stat, value FROM clan_stats")) {
+                while (rs.next()) {
+                    Clan clan = clansByName.get(rs.getString("clan"));
+                    if (clan != null) {
+                        clan.setStat(rs.getString("stat"), rs.getInt("value"));
+                    }
+                }
+            }
+        }
+        
+        plugin.getLogger().info("Loaded " + clansByName.size() + " clans from " + databaseFile.getName() + ".");
+    }
+    
+    /**
+     * Checks whether the database holds no clans yet.
+     *
+     * @return True if no clans have been stored
+     */
+    public boolean isEmpty() {
+        return clansByName.isEmpty();
+    }
+    
+    /**
+     * Imports clans loaded from another backend and writes them in one batch.
+     *
+     * @param clans The clans to import
+     */
+    public void importClans(Collection<Clan> clans) {
+        for (Clan clan : clans) {
+            cacheClan(clan);
+            queueWrite(clan.getName().toLowerCase(), new ClanRecord(clan));
+        }
+    }
+    
+    @Override
+    public void addClan(Clan clan) {
+        cacheClan(clan);
+        queueWrite(clan.getName().toLowerCase(), new ClanRecord(clan));
+    }
+    
+    @Override
+    public boolean removeClan(String clanName) {
+        Clan clan = clansByName.remove(clanName.toLowerCase());
+        if (clan == null) {
+            return false;
+        }
+        
+        for (ClanMember member : clan.getMembers()) {
+            clansByPlayer.remove(member.getPlayerUUID());
+        }
+        
+        queueWrite(clanName.toLowerCase(), null);
+        return true;
+    }
+    
+    @Override
+    public Clan getClan(String clanName) {
+        return clansByName.get(clanName.toLowerCase());
+    }
+    
+    @Override
+    public Clan getPlayerClan(UUID playerUUID) {
+        return clansByPlayer.get(playerUUID);
+    }
+    
+    @Override
+    public Set<Clan> getAllClans() {
+        return new HashSet<>(clansByName.values());
+    }
+    
+    @Override
+    public boolean saveClan(Clan clan) {
+        if (clan == null || !clansByName.containsKey(clan.getName().toLowerCase())) {
+            return false;
+        }
+        
+        cacheClan(clan);
+        queueWrite(clan.getName().toLowerCase(), new ClanRecord(clan));
+        return true;
+    }
+    
+    @Override
+    public String getPlayerClanName(UUID playerUUID) {
+        Clan clan = getPlayerClan(playerUUID);
+        return clan != null ? clan.getName() : null;
+    }
+    
+    /**
+     * Update player mappings when a player joins or leaves a clan.
+     *
+     * @param playerUUID The UUID of the player
+     * @param clan The clan to map to, or null to remove mapping
+     */
+    public void updatePlayerClan(UUID playerUUID, Clan clan) {
+        Clan previousClan = clan != null ? clansByPlayer.put(playerUUID, clan) : clansByPlayer.remove(playerUUID);
+        
+        if (previousClan != null && previousClan != clan) {
+            queueWrite(previousClan.getName().toLowerCase(), new ClanRecord(previousClan));
+        }
+        if (clan != null) {
+            queueWrite(clan.getName().toLowerCase(), new ClanRecord(clan));
+        }
+    }
+    
+    /**
+     * Queues every clan for writing.
+     */
+    public void saveAll() {
+        for (Map.Entry<String, Clan> entry : clansByName.entrySet()) {
+            queueWrite(entry.getKey(), new ClanRecord(entry.getValue()));
+        }
+    }
+    
+    /**
+     * Writes a consistent copy of the database to a file. The copy is taken on
+     * the writer thread after every change queued so far has been written.
+     * SQLite 3.27 and later write it with VACUUM INTO; with older libraries
+     * the write-ahead log is checkpointed and the database file copied, which
+     * is consistent because only the writer thread changes the database.
+     *
+     * @param target The file to create; it must not exist
+     * @return The result of the copy; completes exceptionally if it failed
+     */
+    public Future<?> exportTo(File target) {
+        return writer.submit(() -> {
+            flushPending();
+            if (SqlClanSchema.supportsVacuumInto(connection)) {
+                try (PreparedStatement statement = connection.prepareStatement("VACUUM INTO ?")) {
+                    statement.setString(1, target.getAbsolutePath());
+                    statement.execute();
+                }
+            } else {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+                }
+                Files.copy(databaseFile.toPath(), target.toPath());
+            }
+            return null;
+        });
+    }
+    
+    /**
+     * Writes pending changes and closes the database.
+     * Called when the plugin is disabled.
+     */
+    public void close() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                plugin.getLogger().severe("Timed out waiting for clan database writes!");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        // Anything queued after shutdown is written here
+        flushPending();
+        
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not close clan database", e);
+        }
+    }
+    
+    /**
+     * Adds a clan and its members to the lookup maps.
+     *
+     * @param clan The clan to cache
+     */
+    private void cacheClan(Clan clan) {
+        clansByName.put(clan.getName().toLowerCase(), clan);
+        for (ClanMember member : clan.getMembers()) {
+            clansByPlayer.put(member.getPlayerUUID(), clan);
+        }
+    }
+    
+    /**
+     * Queues a clan write. Repeated writes of the same clan before the writer
+     * runs are coalesced into one.
+     *
+     * @param key The lowercase clan name
+     * @param record The clan snapshot, or null to delete the clan
+     */
+    private void queueWrite(String key, ClanRecord record) {
+        synchronized (pendingWrites) {
+            pendingWrites.put(key, record);
+            if (flushScheduled || writer.isShutdown()) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        writer.execute(this::flushPending);
+    }
+    
+    /**
+     * Writes all queued clan changes in a single transaction.
+     */
+    private void flushPending() {
+        Map<String, ClanRecord> batch;
+        synchronized (pendingWrites) {
+            flushScheduled = false;
+            if (pendingWrites.isEmpty()) {
+                return;
+            }
+            batch = new LinkedHashMap<>(pendingWrites);
+            pendingWrites.clear();
+        }
+        
+        try {
+            writeBatch(batch);
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not save " + batch.size() + " clans to the database", e);
+        }
+    }
+    
+    /**
+     * Upserts or deletes the given clans using batched prepared statements.
+     *
+     * @param batch The clan snapshots keyed by lowercase name (null values are deletions)
+     * @throws SQLException If the transaction failed
+     */
+    private void writeBatch(Map<String, ClanRecord> batch) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        
+        try {
+            List<PreparedStatement> deleteChildren = new ArrayList<>();
+            for (String table : SqlClanSchema.CHILD_TABLES) {
+                deleteChildren.add(connection.prepareStatement("DELETE FROM " + table + " WHERE clan = ?"));
+            }
+            
+            try (PreparedStatement deleteClan = connection.prepareStatement("DELETE FROM clans WHERE lower_name = ?");
+                 PreparedStatement upsertClan = connection.prepareStatement(SqlClanSchema.UPSERT_CLAN);
+                 PreparedStatement insertMember = connection.prepareStatement(SqlClanSchema.INSERT_MEMBER);
+                 PreparedStatement insertRelation = connection.prepareStatement(SqlClanSchema.INSERT_RELATION);
+                 PreparedStatement insertInvite = connection.prepareStatement(SqlClanSchema.INSERT_INVITE);
+                 PreparedStatement insertHome = connection.prepareStatement(SqlClanSchema.INSERT_HOME);
+                 PreparedStatement insertStat = connection.prepareStatement(SqlClanSchema.INSERT_STAT)) {
+                
+                for (Map.Entry<String, ClanRecord> entry : batch.entrySet()) {
+                    String key = entry.getKey();
+                    for (PreparedStatement delete : deleteChildren) {
+                        delete.setString(1, key);
+                        delete.addBatch();
+                    }
+                    
+                    ClanRecord record = entry.getValue();
+                    if (record == null) {
+                        deleteClan.setString(1, key);
+                        deleteClan.addBatch();
+                        continue;
+                    }
+                    
+                    record.bind(key, upsertClan, insertMember, insertRelation, insertInvite, insertHome, insertStat);
+                }
+                
+                // Child rows must be cleared before the new rows are inserted
+                for (PreparedStatement delete : deleteChildren) {
+                    delete.executeBatch();
+                }
+                deleteClan.executeBatch();
+                upsertClan.executeBatch();
+                insertMember.executeBatch();
+                insertRelation.executeBatch();
+                insertInvite.executeBatch();
+                insertHome.executeBatch();
+                insertStat.executeBatch();
+            } finally {
+                for (PreparedStatement delete : deleteChildren) {
+                    delete.close();
+                }
+            }
+            
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+    
+    /**
+     * Immutable copy of the stored fields of a clan, taken on the main thread
+     * so the writer thread never reads live clan objects.
+     */
+    private static final class ClanRecord {
+        private final String name;
+        private final String tag;
+        private final String color;
+        private final int level;
+        private final int experience;
+        private final boolean coloredArmor;
+        private final String description;
+        private final long creationTime;
+        private final int skillPoints;
+        private final int maxMembers;
+        private final int maxTerritories;
+        private final int incomeBoost;
+        private final int warWins;
+        private final int warLosses;
+        private final Map<String, Integer> stats;
+        private final List<String[]> members;
+        private final List<String> allies;
+        private final List<String> enemies;
+        private final List<String> invites;
+        private final Map<String, Location> homes;
+        
+        ClanRecord(Clan clan) {
+            this.name = clan.getName();
+            this.tag = clan.getTag();
+            this.color = clan.getColor();
+            this.level = clan.getLevel();
+            this.experience = clan.getExperience();
+            this.coloredArmor = clan.hasColoredArmor();
+            this.description = clan.getDescription();
+            this.creationTime = clan.getCreationTime();
+            this.skillPoints = clan.getSkillPoints();
+            this.maxMembers = clan.getMaxMembers();
+            this.maxTerritories = clan.getMaxTerritories();
+            this.incomeBoost = clan.getIncomeBoost();
+            this.warWins = clan.getWarWins();
+            this.warLosses = clan.getWarLosses();
+            this.stats = new LinkedHashMap<>(clan.getAllStats());
+            this.members = new ArrayList<>();
+            for (ClanMember member : clan.getMembers()) {
+                members.add(new String[] {
+                    member.getPlayerUUID().toString(), member.getPlayerName(), member.getRole().name()
+                });
+            }
+            this.allies = new ArrayList<>(clan.getAlliances());
+            this.enemies = new ArrayList<>(clan.getEnemies());
+            this.invites = new ArrayList<>();
+            for (UUID invite : clan.getInvitedPlayers()) {
+                invites.add(invite.toString());
+            }
+            Map<String, Location> homeCopies = new LinkedHashMap<>();
+            if (clan.getHome() != null && clan.getHome().getWorld() != null) {
+                homeCopies.put(SqlClanSchema.MAIN_HOME, clan.getHome().clone());
+            }
+            for (Map.Entry<String, Location> home : clan.getAdditionalHomes().entrySet()) {
+                if (home.getValue() != null && home.getValue().getWorld() != null) {
+                    homeCopies.put(home.getKey(), home.getValue().clone());
+                }
+            }
+            this.homes = Collections.unmodifiableMap(homeCopies);
+        }
+        
+        void bind(String key, PreparedStatement upsertClan, PreparedStatement insertMember,
+                  PreparedStatement insertRelation, PreparedStatement insertInvite,
+                  PreparedStatement insertHome, PreparedStatement insertStat) throws SQLException {
+            upsertClan.setString(1, key);
+            upsertClan.setString(2, name);
+            upsertClan.setString(3, tag);
+            upsertClan.setString(4, color);
+            upsertClan.setInt(5, level);
+            upsertClan.setInt(6, experience);
+            upsertClan.setInt(7, coloredArmor ? 1 : 0);
+            upsertClan.setString(8, description);
+            upsertClan.setLong(9, creationTime);
+            upsertClan.setInt(10, skillPoints);
+            upsertClan.setInt(11, maxMembers);
+            upsertClan.setInt(12, maxTerritories);
+            upsertClan.setInt(13, incomeBoost);
+            upsertClan.setInt(14, warWins);
+            upsertClan.setInt(15, warLosses);
+            upsertClan.addBatch();
+            
+            for (String[] member : members) {
+                insertMember.setString(1, member[0]);
+                insertMember.setString(2, key);
+                insertMember.setString(3, member[1]);
+                insertMember.setString(4, member[2]);
+                insertMember.addBatch();
+            }
+            
+            for (String ally : allies) {
+                insertRelation.setString(1, key);
+                insertRelation.setString(2, ally);
+                insertRelation.setString(3, "ALLY");
+                insertRelation.addBatch();
+            }
+            
+            for (String enemy : enemies) {
+                insertRelation.setString(1, key);
+                insertRelation.setString(2, enemy);
+                insertRelation.setString(3, "ENEMY");
+                insertRelation.addBatch();
+            }
+            
+            for (String invite : invites) {
+                insertInvite.setString(1, key);
+                insertInvite.setString(2, invite);
+                insertInvite.addBatch();
+            }
+            
+            for (Map.Entry<String, Location> home : homes.entrySet()) {
+                Location location = home.getValue();
+                insertHome.setString(1, key);
+                insertHome.setString(2, home.getKey());
+                insertHome.setString(3, location.getWorld().getName());
+                insertHome.setDouble(4, location.getX());
+                insertHome.setDouble(5, location.getY());
+                insertHome.setDouble(6, location.getZ());
+                insertHome.setFloat(7, location.getYaw());
+                insertHome.setFloat(8, location.getPitch());
+                insertHome.addBatch();
+            }
+            
+            for (Map.Entry<String, Integer> stat : stats.entrySet()) {
+                insertStat.setString(1, key);
+                insertStat.setString(2, stat.getKey());
+                insertStat.setInt(3, stat.getValue());
+                insertStat.addBatch();
+            }
+        }
+    }
+}
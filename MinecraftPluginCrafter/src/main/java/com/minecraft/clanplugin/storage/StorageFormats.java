@@ -0,0 +1,1325 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.models.ClanRole;
+import com.minecraft.clanplugin.storage.MigrationRecords.ClanRecord;
+import com.minecraft.clanplugin.storage.MigrationRecords.FlagRecord;
+import com.minecraft.clanplugin.storage.MigrationRecords.HomeRecord;
+import com.minecraft.clanplugin.storage.MigrationRecords.MemberRecord;
+import com.minecraft.clanplugin.storage.MigrationRecords.TerritoryRecord;
+import com.minecraft.clanplugin.storage.MigrationRecords.WarRecord;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Bukkit-free readers and writers for the on-disk layout of every storage
+ * backend: clans.yml, per-clan shards, binary snapshots, the SQLite database,
+ * territories.json and wars.json. Readers stream one record at a time and
+ * writers write to temporary files that only replace the target on commit.
+ */
+final class StorageFormats {
+    
+    static final String CLANS_YAML = "clans.yml";
+    static final String CLANS_SNAPSHOT = "clans.dat";
+    static final String CLAN_SHARDS = "clans";
+    static final String CLAN_DATABASE = "clans.db";
+    static final String TERRITORIES_JSON = "territories.json";
+    static final String TERRITORIES_SNAPSHOT = "territories.dat";
+    static final String WARS_JSON = "wars.json";
+    
+    private static final int SQL_BATCH_SIZE = 500;
+    private static final ClanRole[] ROLES = ClanRole.values();
+    
+    private StorageFormats() {
+    }
+    
+    /**
+     * Receives records from a reader one at a time.
+     *
+     * @param <T> The record type
+     */
+    interface RecordSink<T> {
+        
+        /**
+         * Handles one record.
+         *
+         * @param record The record; not used by the reader afterwards
+         * @throws IOException If the record could not be handled
+         */
+        void accept(T record) throws IOException;
+    }
+    
+    /**
+     * Writes records to a temporary location. Nothing is replaced until
+     * {@link #commit()}; closing without committing discards the output.
+     *
+     * @param <T> The record type
+     */
+    interface RecordWriter<T> extends Closeable {
+        
+        /**
+         * Writes one record.
+         *
+         * @param record The record
+         * @throws IOException If the record could not be written
+         */
+        void write(T record) throws IOException;
+        
+        /**
+         * Replaces the target with everything written so far.
+         *
+         * @throws IOException If the target could not be replaced
+         */
+        void commit() throws IOException;
+    }
+    
+    /**
+     * Converts a clan name into the name of its shard file. Characters outside
+     * [a-z0-9_-] are hex-escaped so distinct names never collide.
+     *
+     * @param clanName The clan name
+     * @return The file name, including the .yml extension
+     */
+    static String shardFileName(String clanName) {
+        String key = clanName.toLowerCase();
+        StringBuilder builder = new StringBuilder(key.length() + 4);
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_' || c == '-') {
+                builder.append(c);
+            } else {
+                builder.append('%').append(Integer.toHexString(c));
+            }
+        }
+        return builder.append(".yml").toString();
+    }
+    
+    // ------------------------------------------------------------------
+    // clans.yml and clan shards
+    // ------------------------------------------------------------------
+    
+    /**
+     * Streams the clans of a clans.yml file.
+     *
+     * @param file The clans.yml file
+     * @param sink Receives each clan
+     * @param problems Receives a message for every record that could not be read as stored
+     * @throws IOException If the file could not be read or is malformed
+     */
+    static void readClansYaml(File file, RecordSink<ClanRecord> sink, Consumer<String> problems) throws IOException {
+        try (BufferedReader input = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            YamlCodec.streamSection(input, "clans", (name, value) -> {
+                if (!(value instanceof Map)) {
+                    problems.accept("Clan '" + name + "' in " + file.getName() + " is not a section");
+                    return;
+                }
+                @SuppressWarnings("unchecked")
+                Map<String, Object> section = (Map<String, Object>) value;
+                sink.accept(readClan(name, section, problems));
+            });
+        }
+    }
+    
+    /**
+     * Reads every shard file of a shard folder.
+     *
+     * @param folder The shard folder
+     * @param sink Receives each clan
+     * @param problems Receives a message for every record that could not be read as stored
+     * @throws IOException If a shard could not be read or is malformed
+     */
+    static void readClanShards(File folder, RecordSink<ClanRecord> sink, Consumer<String> problems) throws IOException {
+        String[] names = folder.list((dir, name) -> name.endsWith(".yml"));
+        if (names == null) {
+            throw new IOException("Shard folder " + folder + " does not exist");
+        }
+        Arrays.sort(names);
+        
+        for (String fileName : names) {
+            File shard = new File(folder, fileName);
+            Map<String, Object> document;
+            try (BufferedReader input = Files.newBufferedReader(shard.toPath(), StandardCharsets.UTF_8)) {
+                document = YamlCodec.readDocument(input);
+            } catch (IOException e) {
+                throw new IOException(fileName + ": " + e.getMessage(), e);
+            }
+            
+            String clanName = YamlCodec.getString(document, "name", null);
+            if (clanName == null) {
+                problems.accept("Skipping clan shard without a name: " + fileName);
+                continue;
+            }
+            sink.accept(readClan(clanName, document, problems));
+        }
+    }
+    
+    /**
+     * Converts a parsed clan section, with the same defaults as StorageManager.
+     *
+     * @param name The clan name
+     * @param section The clan's section
+     * @param problems Receives a message for every value that could not be read
+     * @return The clan
+     */
+    private static ClanRecord readClan(String name, Map<String, Object> section, Consumer<String> problems) {
+        ClanRecord clan = new ClanRecord(name);
+        clan.tag = YamlCodec.getString(section, "tag", clan.tag);
+        clan.color = YamlCodec.getString(section, "color", clan.color);
+        clan.level = YamlCodec.getInt(section, "level", clan.level);
+        clan.experience = YamlCodec.getInt(section, "experience", clan.experience);
+        clan.coloredArmor = YamlCodec.getBoolean(section, "coloredArmor", clan.coloredArmor);
+        clan.description = YamlCodec.getString(section, "description", clan.description);
+        clan.creationTime = YamlCodec.getLong(section, "creationTime", clan.creationTime);
+        clan.skillPoints = YamlCodec.getInt(section, "skillPoints", clan.skillPoints);
+        clan.maxMembers = YamlCodec.getInt(section, "maxMembers", clan.maxMembers);
+        clan.maxTerritories = YamlCodec.getInt(section, "maxTerritories", clan.maxTerritories);
+        clan.incomeBoost = YamlCodec.getInt(section, "incomeBoost", clan.incomeBoost);
+        clan.warWins = YamlCodec.getInt(section, "warWins", 0);
+        clan.warLosses = YamlCodec.getInt(section, "warLosses", 0);
+        
+        Map<String, Object> stats = YamlCodec.getSection(section, "stats");
+        for (String stat : stats.keySet()) {
+            clan.stats.put(stat, YamlCodec.getInt(stats, stat, 0));
+        }
+        
+        clan.home = readHome(YamlCodec.getSection(section, "home"));
+        Map<String, Object> homes = YamlCodec.getSection(section, "additionalHomes");
+        for (String homeName : homes.keySet()) {
+            HomeRecord home = readHome(YamlCodec.getSection(homes, homeName));
+            if (home != null) {
+                clan.additionalHomes.put(homeName, home);
+            }
+        }
+        
+        Map<String, Object> members = YamlCodec.getSection(section, "members");
+        for (String uuidString : members.keySet()) {
+            Map<String, Object> member = YamlCodec.getSection(members, uuidString);
+            UUID playerUUID = parseUuid(uuidString);
+            if (playerUUID == null) {
+                problems.accept("Clan '" + name + "' has a member with an invalid UUID: " + uuidString);
+                continue;
+            }
+            clan.members.add(new MemberRecord(playerUUID, YamlCodec.getString(member, "name", "Unknown"),
+                                              checkRole(name, YamlCodec.getString(member, "role", "MEMBER"), problems)));
+        }
+        
+        clan.allies.addAll(YamlCodec.getStringList(section, "allies"));
+        clan.enemies.addAll(YamlCodec.getStringList(section, "enemies"));
+        for (String invite : YamlCodec.getStringList(section, "invites")) {
+            UUID playerUUID = parseUuid(invite);
+            if (playerUUID != null) {
+                clan.invites.add(playerUUID);
+            } else {
+                problems.accept("Clan '" + name + "' has an invite with an invalid UUID: " + invite);
+            }
+        }
+        return clan;
+    }
+    
+    /**
+     * Converts a parsed location section.
+     *
+     * @param section The section, empty if missing
+     * @return The home, or null if the section has no world
+     */
+    private static HomeRecord readHome(Map<String, Object> section) {
+        String world = YamlCodec.getString(section, "world", null);
+        if (world == null) {
+            return null;
+        }
+        return new HomeRecord(world, YamlCodec.getDouble(section, "x", 0), YamlCodec.getDouble(section, "y", 0),
+                              YamlCodec.getDouble(section, "z", 0), (float) YamlCodec.getDouble(section, "yaw", 0),
+                              (float) YamlCodec.getDouble(section, "pitch", 0));
+    }
+    
+    /**
+     * Opens a writer that streams clans into a new clans.yml.
+     *
+     * @param file The clans.yml file to replace
+     * @return The writer
+     * @throws IOException If the temporary file could not be created
+     */
+    static RecordWriter<ClanRecord> clansYamlWriter(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        Writer output = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(temp.toPath()),
+                                                                  StandardCharsets.UTF_8));
+        output.write("clans:\n");
+        
+        return new RecordWriter<ClanRecord>() {
+            private boolean empty = true;
+            private boolean committed;
+            
+            @Override
+            public void write(ClanRecord clan) throws IOException {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put(clan.name, clanSection(clan));
+                YamlCodec.write(output, entry, 2);
+                empty = false;
+            }
+            
+            @Override
+            public void commit() throws IOException {
+                if (empty) {
+                    output.write("  {}\n");
+                }
+                output.close();
+                SnapshotCodec.moveIntoPlace(temp, file);
+                committed = true;
+            }
+            
+            @Override
+            public void close() throws IOException {
+                if (!committed) {
+                    output.close();
+                    Files.deleteIfExists(temp.toPath());
+                }
+            }
+        };
+    }
+    
+    /**
+     * Opens a writer that writes one shard file per clan. Shards are written
+     * to a staging folder and moved into the shard folder on commit, and
+     * shards of clans that were not written are then deleted.
+     *
+     * @param folder The shard folder
+     * @return The writer
+     * @throws IOException If the staging folder could not be created
+     */
+    static RecordWriter<ClanRecord> clanShardWriter(File folder) throws IOException {
+        File staging = new File(folder.getPath() + ".migrating");
+        deleteFolder(staging);
+        Files.createDirectories(staging.toPath());
+        
+        return new RecordWriter<ClanRecord>() {
+            private final Set<String> written = new HashSet<>();
+            private boolean committed;
+            
+            @Override
+            public void write(ClanRecord clan) throws IOException {
+                String fileName = shardFileName(clan.name);
+                try (Writer output = Files.newBufferedWriter(new File(staging, fileName).toPath(),
+                                                             StandardCharsets.UTF_8)) {
+                    Map<String, Object> document = new LinkedHashMap<>();
+                    document.put("name", clan.name);
+                    document.putAll(clanSection(clan));
+                    YamlCodec.write(output, document, 0);
+                }
+                written.add(fileName);
+            }
+            
+            @Override
+            public void commit() throws IOException {
+                Files.createDirectories(folder.toPath());
+                for (String fileName : written) {
+                    SnapshotCodec.moveIntoPlace(new File(staging, fileName), new File(folder, fileName));
+                }
+                
+                String[] existing = folder.list((dir, name) -> name.endsWith(".yml"));
+                if (existing != null) {
+                    for (String fileName : existing) {
+                        if (!written.contains(fileName)) {
+                            Files.deleteIfExists(new File(folder, fileName).toPath());
+                        }
+                    }
+                }
+                deleteFolder(staging);
+                committed = true;
+            }
+            
+            @Override
+            public void close() {
+                if (!committed) {
+                    deleteFolder(staging);
+                }
+            }
+        };
+    }
+    
+    /**
+     * Builds the keys of a clan section in the order StorageManager writes them.
+     *
+     * @param clan The clan
+     * @return The clan's section
+     */
+    private static Map<String, Object> clanSection(ClanRecord clan) {
+        Map<String, Object> section = new LinkedHashMap<>();
+        section.put("tag", clan.tag);
+        section.put("color", clan.color);
+        section.put("level", clan.level);
+        section.put("experience", clan.experience);
+        section.put("coloredArmor", clan.coloredArmor);
+        section.put("description", clan.description);
+        section.put("creationTime", clan.creationTime);
+        section.put("skillPoints", clan.skillPoints);
+        section.put("maxMembers", clan.maxMembers);
+        section.put("maxTerritories", clan.maxTerritories);
+        section.put("incomeBoost", clan.incomeBoost);
+        section.put("warWins", clan.warWins);
+        section.put("warLosses", clan.warLosses);
+        section.put("stats", new LinkedHashMap<>(clan.stats));
+        
+        if (clan.home != null) {
+            section.put("home", homeSection(clan.home));
+        }
+        
+        Map<String, Object> homes = new LinkedHashMap<>();
+        for (Map.Entry<String, HomeRecord> home : clan.additionalHomes.entrySet()) {
+            homes.put(home.getKey(), homeSection(home.getValue()));
+        }
+        section.put("additionalHomes", homes);
+        
+        Map<String, Object> members = new LinkedHashMap<>();
+        for (MemberRecord member : clan.members) {
+            Map<String, Object> memberSection = new LinkedHashMap<>();
+            memberSection.put("name", member.playerName);
+            memberSection.put("role", member.role);
+            members.put(member.playerUUID.toString(), memberSection);
+        }
+        section.put("members", members);
+        
+        section.put("allies", new ArrayList<>(clan.allies));
+        section.put("enemies", new ArrayList<>(clan.enemies));
+        
+        List<String> invites = new ArrayList<>(clan.invites.size());
+        for (UUID invite : clan.invites) {
+            invites.add(invite.toString());
+        }
+        section.put("invites", invites);
+        return section;
+    }
+    
+    private static Map<String, Object> homeSection(HomeRecord home) {
+        Map<String, Object> section = new LinkedHashMap<>();
+        section.put("world", home.worldName);
+        section.put("x", home.x);
+        section.put("y", home.y);
+        section.put("z", home.z);
+        section.put("yaw", (double) home.yaw);
+        section.put("pitch", (double) home.pitch);
+        return section;
+    }
+    
+    // ------------------------------------------------------------------
+    // Binary snapshots
+    // ------------------------------------------------------------------
+    
+    /**
+     * Streams the clans of a clans.dat snapshot.
+     *
+     * @param file The snapshot file
+     * @param sink Receives each clan
+     * @throws IOException If the file is missing, corrupt or of an unknown version
+     */
+    static void readClansSnapshot(File file, RecordSink<ClanRecord> sink) throws IOException {
+        try (SnapshotCodec.Input in = SnapshotCodec.Input.open(file)) {
+            String[] strings = in.readHeader(SnapshotCodec.CLAN_MAGIC);
+            int count = in.readVarInt();
+            for (int i = 0; i < count; i++) {
+                ClanRecord clan = new ClanRecord(strings[in.readVarInt()]);
+                clan.tag = in.readString();
+                clan.color = in.readString();
+                clan.description = in.readString();
+                clan.creationTime = in.readVarLong();
+                clan.level = in.readVarInt();
+                clan.experience = in.readVarInt();
+                clan.coloredArmor = in.readBoolean();
+                clan.skillPoints = in.readVarInt();
+                clan.maxMembers = in.readVarInt();
+                clan.maxTerritories = in.readVarInt();
+                clan.incomeBoost = in.readVarInt();
+                clan.warWins = in.readVarInt();
+                clan.warLosses = in.readVarInt();
+                
+                int statCount = in.readVarInt();
+                for (int s = 0; s < statCount; s++) {
+                    clan.stats.put(in.readString(), in.readSignedVarInt());
+                }
+                
+                if (in.readBoolean()) {
+                    clan.home = readHome(in, strings);
+                }
+                int homeCount = in.readVarInt();
+                for (int h = 0; h < homeCount; h++) {
+                    String homeName = in.readString();
+                    clan.additionalHomes.put(homeName, readHome(in, strings));
+                }
+                
+                int memberCount = in.readVarInt();
+                for (int m = 0; m < memberCount; m++) {
+                    UUID playerUUID = in.readUuid();
+                    String playerName = in.readString();
+                    clan.members.add(new MemberRecord(playerUUID, playerName, ROLES[in.readVarInt()].name()));
+                }
+                
+                int allyCount = in.readVarInt();
+                for (int a = 0; a < allyCount; a++) {
+                    clan.allies.add(strings[in.readVarInt()]);
+                }
+                int enemyCount = in.readVarInt();
+                for (int e = 0; e < enemyCount; e++) {
+                    clan.enemies.add(strings[in.readVarInt()]);
+                }
+                int inviteCount = in.readVarInt();
+                for (int v = 0; v < inviteCount; v++) {
+                    clan.invites.add(in.readUuid());
+                }
+                
+                sink.accept(clan);
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Corrupt snapshot " + file.getName() + ": string or role index out of range", e);
+        }
+    }
+    
+    private static HomeRecord readHome(SnapshotCodec.Input in, String[] strings) throws IOException {
+        return new HomeRecord(strings[in.readVarInt()], in.readDouble(), in.readDouble(), in.readDouble(),
+                              in.readFloat(), in.readFloat());
+    }
+    
+    /**
+     * Opens a writer that streams clans into a new clans.dat snapshot. Records
+     * go to a body file first, because the string table and record count come
+     * before the records; commit writes the header and appends the body.
+     *
+     * @param file The snapshot file to replace
+     * @return The writer
+     * @throws IOException If the temporary file could not be created
+     */
+    static RecordWriter<ClanRecord> clansSnapshotWriter(File file) throws IOException {
+        return new SnapshotWriter<ClanRecord>(file, SnapshotCodec.CLAN_MAGIC) {
+            @Override
+            void writeRecord(SnapshotCodec.Output out, SnapshotCodec.StringTable table, ClanRecord clan)
+                    throws IOException {
+                out.writeVarInt(intern(table, clan.name));
+                out.writeString(clan.tag);
+                out.writeString(clan.color);
+                out.writeString(clan.description);
+                out.writeVarLong(clan.creationTime);
+                out.writeVarInt(clan.level);
+                out.writeVarInt(clan.experience);
+                out.writeBoolean(clan.coloredArmor);
+                out.writeVarInt(clan.skillPoints);
+                out.writeVarInt(clan.maxMembers);
+                out.writeVarInt(clan.maxTerritories);
+                out.writeVarInt(clan.incomeBoost);
+                out.writeVarInt(clan.warWins);
+                out.writeVarInt(clan.warLosses);
+                
+                out.writeVarInt(clan.stats.size());
+                for (Map.Entry<String, Integer> stat : clan.stats.entrySet()) {
+                    out.writeString(stat.getKey());
+                    out.writeSignedVarInt(stat.getValue());
+                }
+                
+                out.writeBoolean(clan.home != null);
+                if (clan.home != null) {
+                    writeHome(out, table, clan.home);
+                }
+                out.writeVarInt(clan.additionalHomes.size());
+                for (Map.Entry<String, HomeRecord> home : clan.additionalHomes.entrySet()) {
+                    out.writeString(home.getKey());
+                    writeHome(out, table, home.getValue());
+                }
+                
+                out.writeVarInt(clan.members.size());
+                for (MemberRecord member : clan.members) {
+                    out.writeUuid(member.playerUUID);
+                    out.writeString(member.playerName);
+                    out.writeVarInt(ClanRole.valueOf(member.role).ordinal());
+                }
+                
+                out.writeVarInt(clan.allies.size());
+                for (String ally : clan.allies) {
+                    out.writeVarInt(intern(table, ally));
+                }
+                out.writeVarInt(clan.enemies.size());
+                for (String enemy : clan.enemies) {
+                    out.writeVarInt(intern(table, enemy));
+                }
+                out.writeVarInt(clan.invites.size());
+                for (UUID invite : clan.invites) {
+                    out.writeUuid(invite);
+                }
+            }
+        };
+    }
+    
+    private static void writeHome(SnapshotCodec.Output out, SnapshotCodec.StringTable table, HomeRecord home)
+            throws IOException {
+        out.writeVarInt(intern(table, home.worldName));
+        out.writeDouble(home.x);
+        out.writeDouble(home.y);
+        out.writeDouble(home.z);
+        out.writeFloat(home.yaw);
+        out.writeFloat(home.pitch);
+    }
+    
+    /**
+     * Streams the territories of a territories.dat snapshot.
+     *
+     * @param file The snapshot file
+     * @param sink Receives each territory
+     * @throws IOException If the file is missing, corrupt or of an unknown version
+     */
+    static void readTerritoriesSnapshot(File file, RecordSink<TerritoryRecord> sink) throws IOException {
+        try (SnapshotCodec.Input in = SnapshotCodec.Input.open(file)) {
+            String[] strings = in.readHeader(SnapshotCodec.TERRITORY_MAGIC);
+            int count = in.readVarInt();
+            for (int i = 0; i < count; i++) {
+                String worldName = strings[in.readVarInt()];
+                int chunkX = in.readSignedVarInt();
+                int chunkZ = in.readSignedVarInt();
+                String clanName = strings[in.readVarInt()];
+                TerritoryRecord territory = new TerritoryRecord(chunkX, chunkZ, worldName, clanName,
+                                                                in.readVarInt(), in.readVarLong());
+                
+                int flagCount = in.readVarInt();
+                for (int f = 0; f < flagCount; f++) {
+                    double x = in.readDouble();
+                    double y = in.readDouble();
+                    double z = in.readDouble();
+                    UUID placedBy = in.readUuid();
+                    long placedTime = in.readVarLong();
+                    int tier = in.readVarInt();
+                    int influenceRadius = in.readVarInt();
+                    String name = in.readBoolean() ? in.readString() : null;
+                    territory.flags.add(new FlagRecord(x, y, z, placedBy, placedTime, tier, influenceRadius, name));
+                }
+                sink.accept(territory);
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Corrupt snapshot " + file.getName() + ": string index out of range", e);
+        }
+    }
+    
+    /**
+     * Opens a writer that streams territories into a new territories.dat snapshot.
+     *
+     * @param file The snapshot file to replace
+     * @return The writer
+     * @throws IOException If the temporary file could not be created
+     */
+    static RecordWriter<TerritoryRecord> territoriesSnapshotWriter(File file) throws IOException {
+        return new SnapshotWriter<TerritoryRecord>(file, SnapshotCodec.TERRITORY_MAGIC) {
+            @Override
+            void writeRecord(SnapshotCodec.Output out, SnapshotCodec.StringTable table, TerritoryRecord territory)
+                    throws IOException {
+                out.writeVarInt(intern(table, territory.worldName));
+                out.writeSignedVarInt(territory.chunkX);
+                out.writeSignedVarInt(territory.chunkZ);
+                out.writeVarInt(intern(table, territory.clanName));
+                out.writeVarInt(territory.influenceLevel);
+                out.writeVarLong(territory.claimTime);
+                
+                out.writeVarInt(territory.flags.size());
+                for (FlagRecord flag : territory.flags) {
+                    out.writeDouble(flag.x);
+                    out.writeDouble(flag.y);
+                    out.writeDouble(flag.z);
+                    out.writeUuid(flag.placedBy);
+                    out.writeVarLong(flag.placedTime);
+                    out.writeVarInt(flag.tier);
+                    out.writeVarInt(flag.influenceRadius);
+                    out.writeBoolean(flag.name != null);
+                    if (flag.name != null) {
+                        out.writeString(flag.name);
+                    }
+                }
+            }
+        };
+    }
+    
+    private static int intern(SnapshotCodec.StringTable table, String value) {
+        table.add(value);
+        return table.indexOf(value);
+    }
+    
+    /**
+     * Streams snapshot records into a body file, then writes the header,
+     * record count and body into the target on commit.
+     *
+     * @param <T> The record type
+     */
+    private abstract static class SnapshotWriter<T> implements RecordWriter<T> {
+        
+        private final File file;
+        private final File body;
+        private final int magic;
+        private final SnapshotCodec.StringTable table;
+        private final SnapshotCodec.Output out;
+        private int count;
+        private boolean committed;
+        
+        SnapshotWriter(File file, int magic) throws IOException {
+            this.file = file;
+            this.body = new File(file.getPath() + ".body");
+            this.magic = magic;
+            this.table = new SnapshotCodec.StringTable();
+            this.out = new SnapshotCodec.Output(Files.newOutputStream(body.toPath()));
+        }
+        
+        abstract void writeRecord(SnapshotCodec.Output out, SnapshotCodec.StringTable table, T record)
+                throws IOException;
+        
+        @Override
+        public void write(T record) throws IOException {
+            writeRecord(out, table, record);
+            count++;
+        }
+        
+        @Override
+        public void commit() throws IOException {
+            out.close();
+            File temp = new File(file.getPath() + ".tmp");
+            try (OutputStream stream = Files.newOutputStream(temp.toPath())) {
+                SnapshotCodec.Output header = new SnapshotCodec.Output(stream);
+                header.writeHeader(magic, table);
+                header.writeVarInt(count);
+                header.flush();
+                Files.copy(body.toPath(), stream);
+            }
+            SnapshotCodec.moveIntoPlace(temp, file);
+            Files.deleteIfExists(body.toPath());
+            committed = true;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                out.close();
+                Files.deleteIfExists(body.toPath());
+            }
+        }
+    }
+    
+    // ------------------------------------------------------------------
+    // SQLite
+    // ------------------------------------------------------------------
+    
+    /**
+     * Streams the clans of a clan database. Every table is read in clan order
+     * and merged, so only one clan is assembled at a time. Needs the SQLite
+     * JDBC driver on the classpath.
+     *
+     * @param file The database file
+     * @param sink Receives each clan
+     * @param problems Receives a message for every row that belongs to no clan
+     * @throws IOException If the database could not be read
+     */
+    static void readClansSql(File file, RecordSink<ClanRecord> sink, Consumer<String> problems) throws IOException {
+        try (Connection connection = SqlClanSchema.open(file);
+             Statement clanQuery = connection.createStatement();
+             Statement memberQuery = connection.createStatement();
+             Statement relationQuery = connection.createStatement();
+             Statement inviteQuery = connection.createStatement();
+             Statement homeQuery = connection.createStatement();
+             Statement statQuery = connection.createStatement()) {
+            
+            ChildRows members = new ChildRows("clan_members", memberQuery.executeQuery(
+                "SELECT clan, player_uuid, player_name, role FROM clan_members ORDER BY clan"));
+            ChildRows relations = new ChildRows("clan_relations", relationQuery.executeQuery(
+                "SELECT clan, other_clan, relation FROM clan_relations ORDER BY clan"));
+            ChildRows invites = new ChildRows("clan_invites", inviteQuery.executeQuery(
+                "SELECT clan, player_uuid FROM clan_invites ORDER BY clan"));
+            ChildRows homes = new ChildRows("clan_homes", homeQuery.executeQuery(
+                "SELECT clan, home, world, x, y, z, yaw, pitch FROM clan_homes ORDER BY clan"));
+            ChildRows stats = new ChildRows("clan_stats", statQuery.executeQuery(
+                "SELECT clan, stat, value FROM clan_stats ORDER BY clan"));
+            
+            try (ResultSet rs = clanQuery.executeQuery(SqlClanSchema.SELECT_CLANS + " ORDER BY lower_name")) {
+                while (rs.next()) {
+                    String key = rs.getString("lower_name");
+                    ClanRecord clan = new ClanRecord(rs.getString("name"));
+                    if (rs.getString("tag") != null) {
+                        clan.tag = rs.getString("tag");
+                    }
+                    if (rs.getString("color") != null) {
+                        clan.color = rs.getString("color");
+                    }
+                    clan.level = rs.getInt("level");
+                    clan.experience = rs.getInt("experience");
+                    clan.coloredArmor = rs.getInt("colored_armor") != 0;
+                    if (rs.getString("description") != null) {
+                        clan.description = rs.getString("description");
+                    }
+                    long creationTime = rs.getLong("creation_time");
+                    if (!rs.wasNull()) {
+                        clan.creationTime = creationTime;
+                    }
+                    clan.skillPoints = rs.getInt("skill_points");
+                    clan.maxMembers = rs.getInt("max_members");
+                    clan.maxTerritories = rs.getInt("max_territories");
+                    clan.incomeBoost = rs.getInt("income_boost");
+                    clan.warWins = rs.getInt("war_wins");
+                    clan.warLosses = rs.getInt("war_losses");
+                    
+                    for (ResultSet row = members.seek(key, problems); row != null; row = members.nextFor(key)) {
+                        UUID playerUUID = parseUuid(row.getString("player_uuid"));
+                        if (playerUUID == null) {
+                            problems.accept("Clan '" + clan.name + "' has a member with an invalid UUID");
+                            continue;
+                        }
+                        String playerName = row.getString("player_name");
+                        clan.members.add(new MemberRecord(playerUUID, playerName != null ? playerName : "Unknown",
+                                                          checkRole(clan.name, row.getString("role"), problems)));
+                    }
+                    for (ResultSet row = relations.seek(key, problems); row != null; row = relations.nextFor(key)) {
+                        if ("ALLY".equals(row.getString("relation"))) {
+                            clan.allies.add(row.getString("other_clan"));
+                        } else {
+                            clan.enemies.add(row.getString("other_clan"));
+                        }
+                    }
+                    for (ResultSet row = invites.seek(key, problems); row != null; row = invites.nextFor(key)) {
+                        UUID playerUUID = parseUuid(row.getString("player_uuid"));
+                        if (playerUUID != null) {
+                            clan.invites.add(playerUUID);
+                        }
+                    }
+                    for (ResultSet row = homes.seek(key, problems); row != null; row = homes.nextFor(key)) {
+                        HomeRecord home = new HomeRecord(row.getString("world"), row.getDouble("x"), row.getDouble("y"),
+                                                         row.getDouble("z"), row.getFloat("yaw"), row.getFloat("pitch"));
+                        if (SqlClanSchema.MAIN_HOME.equals(row.getString("home"))) {
+                            clan.home = home;
+                        } else {
+                            clan.additionalHomes.put(row.getString("home"), home);
+                        }
+                    }
+                    for (ResultSet row = stats.seek(key, problems); row != null; row = stats.nextFor(key)) {
+                        clan.stats.put(row.getString("stat"), row.getInt("value"));
+                    }
+                    
+                    sink.accept(clan);
+                }
+            }
+            
+            // Rows left over belong to clans that sort after the last clan
+            for (ChildRows rows : Arrays.asList(members, relations, invites, homes, stats)) {
+                rows.seek(null, problems);
+            }
+        } catch (SQLException e) {
+            throw new IOException("Could not read " + file.getName() + ": " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Cursor over a child table sorted by clan, merged with the clan rows.
+     */
+    private static final class ChildRows {
+        
+        private final String table;
+        private final ResultSet rows;
+        private boolean hasRow;
+        
+        ChildRows(String table, ResultSet rows) throws SQLException {
+            this.table = table;
+            this.rows = rows;
+            this.hasRow = rows.next();
+        }
+        
+        /**
+         * Skips rows of clans that sort before the given clan, which have no
+         * clan row, and positions on the first row of the given clan.
+         *
+         * @param key The lowercase clan name, or null to skip all remaining rows
+         * @param problems Receives a message for every skipped row
+         * @return The cursor on the clan's first row, or null if it has none
+         * @throws SQLException If the rows could not be read
+         */
+        ResultSet seek(String key, Consumer<String> problems) throws SQLException {
+            while (hasRow && (key == null || compareUtf8(rows.getString("clan"), key) < 0)) {
+                problems.accept("Row in " + table + " refers to missing clan '" + rows.getString("clan") + "'");
+                hasRow = rows.next();
+            }
+            return hasRow && key != null && key.equals(rows.getString("clan")) ? rows : null;
+        }
+        
+        /**
+         * Moves to the next row of the same clan.
+         *
+         * @param key The lowercase clan name
+         * @return The cursor on the next row, or null if the clan has no more rows
+         * @throws SQLException If the rows could not be read
+         */
+        ResultSet nextFor(String key) throws SQLException {
+            hasRow = rows.next();
+            return hasRow && key.equals(rows.getString("clan")) ? rows : null;
+        }
+    }
+    
+    /**
+     * Compares strings in SQLite's default BINARY order, which is the order of
+     * their UTF-8 bytes and therefore of their code points.
+     *
+     * @param a The first string
+     * @param b The second string
+     * @return A negative number, zero or a positive number
+     */
+    private static int compareUtf8(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(j);
+            if (ca != cb) {
+                return Integer.compare(ca, cb);
+            }
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+    
+    /**
+     * Opens a writer that inserts clans into a new clan database, committing
+     * in batches.
+     *
+     * @param file The database file to replace
+     * @return The writer
+     * @throws IOException If the new database could not be created
+     */
+    static RecordWriter<ClanRecord> clansSqlWriter(File file) throws IOException {
+        File temp = new File(file.getPath() + ".migrating");
+        try {
+            Files.deleteIfExists(temp.toPath());
+            Connection connection = SqlClanSchema.open(temp);
+            connection.setAutoCommit(false);
+            
+            return new RecordWriter<ClanRecord>() {
+                private final PreparedStatement upsertClan = connection.prepareStatement(SqlClanSchema.UPSERT_CLAN);
+                private final PreparedStatement insertMember = connection.prepareStatement(SqlClanSchema.INSERT_MEMBER);
+                private final PreparedStatement insertRelation = connection.prepareStatement(SqlClanSchema.INSERT_RELATION);
+                private final PreparedStatement insertInvite = connection.prepareStatement(SqlClanSchema.INSERT_INVITE);
+                private final PreparedStatement insertHome = connection.prepareStatement(SqlClanSchema.INSERT_HOME);
+                private final PreparedStatement insertStat = connection.prepareStatement(SqlClanSchema.INSERT_STAT);
+                private int batched;
+                private boolean committed;
+                
+                @Override
+                public void write(ClanRecord clan) throws IOException {
+                    try {
+                        bind(clan);
+                        if (++batched >= SQL_BATCH_SIZE) {
+                            executeBatches();
+                        }
+                    } catch (SQLException e) {
+                        throw new IOException("Could not write clan '" + clan.name + "': " + e.getMessage(), e);
+                    }
+                }
+                
+                @Override
+                public void commit() throws IOException {
+                    try {
+                        executeBatches();
+                        connection.close();
+                    } catch (SQLException e) {
+                        throw new IOException("Could not write " + file.getName() + ": " + e.getMessage(), e);
+                    }
+                    
+                    // A stale write-ahead log would be replayed into the new database
+                    Files.deleteIfExists(new File(file.getPath() + "-wal").toPath());
+                    Files.deleteIfExists(new File(file.getPath() + "-shm").toPath());
+                    SnapshotCodec.moveIntoPlace(temp, file);
+                    committed = true;
+                }
+                
+                @Override
+                public void close() throws IOException {
+                    if (committed) {
+                        return;
+                    }
+                    try {
+                        connection.close();
+                    } catch (SQLException ignored) {
+                        // The database is discarded anyway
+                    }
+                    Files.deleteIfExists(temp.toPath());
+                    Files.deleteIfExists(new File(temp.getPath() + "-wal").toPath());
+                    Files.deleteIfExists(new File(temp.getPath() + "-shm").toPath());
+                }
+                
+                private void bind(ClanRecord clan) throws SQLException {
+                    String key = clan.name.toLowerCase();
+                    upsertClan.setString(1, key);
+                    upsertClan.setString(2, clan.name);
+                    upsertClan.setString(3, clan.tag);
+                    upsertClan.setString(4, clan.color);
+                    upsertClan.setInt(5, clan.level);
+                    upsertClan.setInt(6, clan.experience);
+                    upsertClan.setInt(7, clan.coloredArmor ? 1 : 0);
+                    upsertClan.setString(8, clan.description);
+                    upsertClan.setLong(9, clan.creationTime);
+                    upsertClan.setInt(10, clan.skillPoints);
+                    upsertClan.setInt(11, clan.maxMembers);
+                    upsertClan.setInt(12, clan.maxTerritories);
+                    upsertClan.setInt(13, clan.incomeBoost);
+                    upsertClan.setInt(14, clan.warWins);
+                    upsertClan.setInt(15, clan.warLosses);
+                    upsertClan.addBatch();
+                    
+                    for (MemberRecord member : clan.members) {
+                        insertMember.setString(1, member.playerUUID.toString());
+                        insertMember.setString(2, key);
+                        insertMember.setString(3, member.playerName);
+                        insertMember.setString(4, member.role);
+                        insertMember.addBatch();
+                    }
+                    bindRelations(key, clan.allies, "ALLY");
+                    bindRelations(key, clan.enemies, "ENEMY");
+                    for (UUID invite : clan.invites) {
+                        insertInvite.setString(1, key);
+                        insertInvite.setString(2, invite.toString());
+                        insertInvite.addBatch();
+                    }
+                    if (clan.home != null) {
+                        bindHome(key, SqlClanSchema.MAIN_HOME, clan.home);
+                    }
+                    for (Map.Entry<String, HomeRecord> home : clan.additionalHomes.entrySet()) {
+                        bindHome(key, home.getKey(), home.getValue());
+                    }
+                    for (Map.Entry<String, Integer> stat : clan.stats.entrySet()) {
+                        insertStat.setString(1, key);
+                        insertStat.setString(2, stat.getKey());
+                        insertStat.setInt(3, stat.getValue());
+                        insertStat.addBatch();
+                    }
+                }
+                
+                private void bindRelations(String key, List<String> others, String relation) throws SQLException {
+                    for (String other : others) {
+                        insertRelation.setString(1, key);
+                        insertRelation.setString(2, other);
+                        insertRelation.setString(3, relation);
+                        insertRelation.addBatch();
+                    }
+                }
+                
+                private void bindHome(String key, String name, HomeRecord home) throws SQLException {
+                    insertHome.setString(1, key);
+                    insertHome.setString(2, name);
+                    insertHome.setString(3, home.worldName);
+                    insertHome.setDouble(4, home.x);
+                    insertHome.setDouble(5, home.y);
+                    insertHome.setDouble(6, home.z);
+                    insertHome.setFloat(7, home.yaw);
+                    insertHome.setFloat(8, home.pitch);
+                    insertHome.addBatch();
+                }
+                
+                private void executeBatches() throws SQLException {
+                    upsertClan.executeBatch();
+                    insertMember.executeBatch();
+                    insertRelation.executeBatch();
+                    insertInvite.executeBatch();
+                    insertHome.executeBatch();
+                    insertStat.executeBatch();
+                    connection.commit();
+                    batched = 0;
+                }
+            };
+        } catch (SQLException e) {
+            throw new IOException("Could not create " + temp.getName() + ": " + e.getMessage(), e);
+        }
+    }
+    
+    // ------------------------------------------------------------------
+    // territories.json and wars.json
+    // ------------------------------------------------------------------
+    
+    /**
+     * Streams the territories of a territories.json file.
+     *
+     * @param file The territories.json file
+     * @param sink Receives each territory
+     * @param problems Receives a message for every territory that could not be read
+     * @throws IOException If the file could not be read or is not valid JSON
+     */
+    static void readTerritoriesJson(File file, RecordSink<TerritoryRecord> sink, Consumer<String> problems)
+            throws IOException {
+        // Territory objects sit at depth 3: root object, "territories" array, territory
+        streamArrayElements(file, 3, 3, territoryObj -> {
+            try {
+                TerritoryRecord territory = new TerritoryRecord(
+                    ((Long) territoryObj.get("chunkX")).intValue(), ((Long) territoryObj.get("chunkZ")).intValue(),
+                    (String) territoryObj.get("worldName"), (String) territoryObj.get("clanName"),
+                    ((Long) territoryObj.get("influenceLevel")).intValue(), (Long) territoryObj.get("claimTime"));
+                
+                JSONArray flags = (JSONArray) territoryObj.get("flags");
+                if (flags != null) {
+                    for (Object element : flags) {
+                        JSONObject flag = (JSONObject) element;
+                        territory.flags.add(new FlagRecord(
+                            ((Number) flag.get("x")).doubleValue(), ((Number) flag.get("y")).doubleValue(),
+                            ((Number) flag.get("z")).doubleValue(), UUID.fromString((String) flag.get("placedBy")),
+                            (Long) flag.get("placedTime"), ((Long) flag.get("tier")).intValue(),
+                            ((Long) flag.get("influenceRadius")).intValue(), null));
+                    }
+                }
+                sink.accept(territory);
+            } catch (ClassCastException | NullPointerException | IllegalArgumentException e) {
+                problems.accept("Skipping malformed territory " + territoryObj.toJSONString());
+            }
+        });
+    }
+    
+    /**
+     * Opens a writer that streams territories into a new territories.json.
+     *
+     * @param file The territories.json file to replace
+     * @return The writer
+     * @throws IOException If the temporary file could not be created
+     */
+    @SuppressWarnings("unchecked")
+    static RecordWriter<TerritoryRecord> territoriesJsonWriter(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        // Same default charset as the FileReader TerritoryManager loads with
+        Writer output = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(temp.toPath())));
+        output.write("{\"territories\":[");
+        
+        return new RecordWriter<TerritoryRecord>() {
+            private boolean first = true;
+            private boolean committed;
+            
+            @Override
+            public void write(TerritoryRecord territory) throws IOException {
+                JSONObject territoryObj = new JSONObject();
+                territoryObj.put("chunkX", territory.chunkX);
+                territoryObj.put("chunkZ", territory.chunkZ);
+                territoryObj.put("worldName", territory.worldName);
+                territoryObj.put("clanName", territory.clanName);
+                territoryObj.put("influenceLevel", territory.influenceLevel);
+                territoryObj.put("claimTime", territory.claimTime);
+                
+                JSONArray flagsArray = new JSONArray();
+                for (FlagRecord flag : territory.flags) {
+                    JSONObject flagObj = new JSONObject();
+                    flagObj.put("x", flag.x);
+                    flagObj.put("y", flag.y);
+                    flagObj.put("z", flag.z);
+                    flagObj.put("world", territory.worldName);
+                    flagObj.put("placedBy", flag.placedBy.toString());
+                    flagObj.put("placedTime", flag.placedTime);
+                    flagObj.put("tier", flag.tier);
+                    flagObj.put("influenceRadius", flag.influenceRadius);
+                    flagsArray.add(flagObj);
+                }
+                territoryObj.put("flags", flagsArray);
+                
+                if (!first) {
+                    output.write(',');
+                }
+                output.write(territoryObj.toJSONString());
+                first = false;
+            }
+            
+            @Override
+            public void commit() throws IOException {
+                output.write("]}");
+                output.close();
+                SnapshotCodec.moveIntoPlace(temp, file);
+                committed = true;
+            }
+            
+            @Override
+            public void close() throws IOException {
+                if (!committed) {
+                    output.close();
+                    Files.deleteIfExists(temp.toPath());
+                }
+            }
+        };
+    }
+    
+    /**
+     * Streams the wars of a wars.json file, both active wars and every
+     * clan's war history.
+     *
+     * @param file The wars.json file
+     * @param sink Receives each war
+     * @param problems Receives a message for every war that could not be read
+     * @throws IOException If the file could not be read or is not valid JSON
+     */
+    static void readWarsJson(File file, RecordSink<WarRecord> sink, Consumer<String> problems) throws IOException {
+        // Active wars sit at depth 3 (root, "active_wars", war) and past wars at
+        // depth 4 (root, "war_history", clan array, war)
+        streamArrayElements(file, 3, 4, warObj -> {
+            Object initiating = warObj.get("initiating_clan");
+            Object target = warObj.get("target_clan");
+            if (!(initiating instanceof String) || !(target instanceof String)) {
+                problems.accept("Skipping malformed war " + warObj.toJSONString());
+                return;
+            }
+            sink.accept(new WarRecord((String) initiating, (String) target, "ACTIVE".equals(warObj.get("status"))));
+        });
+    }
+    
+    /**
+     * Parses a JSON file with a streaming parser and hands every object that
+     * is an array element at the given depths to the sink. Emitted objects
+     * are not kept, so memory use does not grow with the number of elements.
+     *
+     * @param file The JSON file
+     * @param minDepth The smallest container depth to emit, where the root is 1
+     * @param maxDepth The largest container depth to emit
+     * @param sink Receives each object
+     * @throws IOException If the file could not be read or is not valid JSON
+     */
+    private static void streamArrayElements(File file, int minDepth, int maxDepth, RecordSink<JSONObject> sink)
+            throws IOException {
+        try (Reader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file.toPath())))) {
+            new JSONParser().parse(reader, new ArrayElementHandler(minDepth, maxDepth, sink));
+        } catch (ParseException e) {
+            throw new IOException("Invalid JSON in " + file.getName() + ": " + e, e);
+        }
+    }
+    
+    /**
+     * Builds JSON values from parser events, but passes array elements at the
+     * requested depths to a sink instead of attaching them to their array.
+     */
+    private static final class ArrayElementHandler implements ContentHandler {
+        
+        private final int minDepth;
+        private final int maxDepth;
+        private final RecordSink<JSONObject> sink;
+        private final Deque<Object> containers = new ArrayDeque<>();
+        private final Deque<String> keys = new ArrayDeque<>();
+        
+        ArrayElementHandler(int minDepth, int maxDepth, RecordSink<JSONObject> sink) {
+            this.minDepth = minDepth;
+            this.maxDepth = maxDepth;
+            this.sink = sink;
+        }
+        
+        @Override
+        public void startJSON() {
+            containers.clear();
+            keys.clear();
+        }
+        
+        @Override
+        public void endJSON() {
+        }
+        
+        @Override
+        public boolean startObject() {
+            containers.push(new JSONObject());
+            return true;
+        }
+        
+        @Override
+        public boolean endObject() throws IOException {
+            JSONObject object = (JSONObject) containers.pop();
+            int depth = containers.size() + 1;
+            if (containers.peek() instanceof JSONArray && depth >= minDepth && depth <= maxDepth) {
+                sink.accept(object);
+            } else {
+                attach(object);
+            }
+            return true;
+        }
+        
+        @Override
+        public boolean startObjectEntry(String key) {
+            keys.push(key);
+            return true;
+        }
+        
+        @Override
+        public boolean endObjectEntry() {
+            keys.pop();
+            return true;
+        }
+        
+        @Override
+        public boolean startArray() {
+            containers.push(new JSONArray());
+            return true;
+        }
+        
+        @Override
+        public boolean endArray() {
+            attach(containers.pop());
+            return true;
+        }
+        
+        @Override
+        public boolean primitive(Object value) {
+            attach(value);
+            return true;
+        }
+        
+        @SuppressWarnings("unchecked")
+        private void attach(Object value) {
+            Object parent = containers.peek();
+            if (parent instanceof JSONArray) {
+                ((JSONArray) parent).add(value);
+            } else if (parent instanceof JSONObject) {
+                ((JSONObject) parent).put(keys.peek(), value);
+            }
+        }
+    }
+    
+    // ------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------
+    
+    private static UUID parseUuid(String value) {
+        try {
+            return value != null ? UUID.fromString(value) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+    
+    private static String checkRole(String clanName, String role, Consumer<String> problems) {
+        try {
+            return ClanRole.valueOf(role).name();
+        } catch (IllegalArgumentException | NullPointerException e) {
+            problems.accept("Clan '" + clanName + "' has a member with unknown role '" + role + "', using MEMBER");
+            return ClanRole.MEMBER.name();
+        }
+    }
+    
+    private static void deleteFolder(File folder) {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+}
@@ -13,6 +13,9 @@ import org.bukkit.configuration.file.YamlConfiguration;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -32,6 +35,13 @@ public class StorageManager implements ClanStorage {
     private final Map<UUID, Clan> clansByPlayer;
     private final TerritoryManager territoryManager;
     private final File clanDataFile;
+    private final File clanSnapshotFile;
+    private final boolean useSnapshot;
+    private final ClanShardWriter shardWriter;
+    private final SqlClanStorage sqlStorage;
+    private final SnapshotCache<Clan, ClanSnapshot> clanSnapshots;
+    private final PersistenceService.Registration yamlRegistration;
+    private final PersistenceService.Registration snapshotRegistration;
 
     public StorageManager(ClanPlugin plugin) {
         this.plugin = plugin;
@@ -39,12 +49,92 @@ public class StorageManager implements ClanStorage {
         this.clansByPlayer = new HashMap<>();
         this.territoryManager = new TerritoryManager(plugin);
         this.clanDataFile = new File(plugin.getDataFolder(), "clans.yml");
+        this.clanSnapshotFile = new File(plugin.getDataFolder(), "clans.dat");
+        this.useSnapshot = plugin.getConfig().getBoolean("storage.binary_snapshot.enabled", false);
         
         // Ensure plugin data folder exists
         plugin.getDataFolder().mkdirs();
         
+        // Use one file per clan with background writes when sharded storage is enabled,
+        // or hand all clan storage to the embedded database
+        String backend = plugin.getConfig().getString("storage.clan_backend", "yaml");
+        this.shardWriter = "sharded".equalsIgnoreCase(backend)
+            ? new ClanShardWriter(plugin, this, new File(plugin.getDataFolder(), "clans"))
+            : null;
+        this.sqlStorage = "sqlite".equalsIgnoreCase(backend) ? openSqlStorage() : null;
+        this.clanSnapshots = new SnapshotCache<>(ClanSnapshot::of, Clan::getVersion);
+        
+        // With a single clans.yml the clans are published as snapshots and written by the
+        // persistence service. clans.yml is registered first, so on shutdown it is queued
+        // before the binary snapshot and the snapshot stays the newer file.
+        if (shardWriter == null && sqlStorage == null) {
+            PersistenceService persistence = plugin.getPersistenceService();
+            this.yamlRegistration = persistence.registerSnapshot("Clans", clanDataFile, () -> {
+                List<ClanSnapshot> snapshots = publishClans();
+                return out -> writeClansYaml(snapshots, out);
+            });
+            this.snapshotRegistration = useSnapshot
+                ? persistence.registerSnapshot("ClanSnapshot", clanSnapshotFile, () -> {
+                    List<ClanSnapshot> snapshots = publishClans();
+                    return out -> BinarySnapshot.writeClans(out, snapshots);
+                })
+                : null;
+        } else {
+            this.yamlRegistration = null;
+            this.snapshotRegistration = null;
+        }
+    }
+    
+    /**
+     * Reads the clans and territories. Runs on a loader thread while the
+     * plugin is enabled, after the constructor registered the files on the
+     * main thread.
+     * 
+     * @throws SQLException If the clan database could not be read
+     */
+    public void load() throws SQLException {
+        territoryManager.load();
+        
         // Load clans from file
-        loadClans();
+        if (shardWriter != null) {
+            loadClanShards();
+        } else if (sqlStorage != null) {
+            sqlStorage.load();
+            if (sqlStorage.isEmpty() && clanDataFile.exists()) {
+                plugin.getLogger().info("Importing clans.yml into the clan database...");
+                loadClans();
+                sqlStorage.importClans(clansByName.values());
+                clansByName.clear();
+                clansByPlayer.clear();
+            }
+        } else {
+            loadClansPreferringSnapshot();
+        }
+    }
+    
+    /**
+     * Starts the background writers and scheduled storage tasks. Must be
+     * called on the main thread, once the data is loaded.
+     */
+    public void start() {
+        territoryManager.start();
+        if (shardWriter != null) {
+            shardWriter.start(plugin.getConfig().getInt("storage.write_behind.flush_interval_seconds", 5));
+        }
+    }
+    
+    /**
+     * Open the embedded clan database.
+     * 
+     * @return The database storage, or null if it could not be opened (YAML is used instead)
+     */
+    private SqlClanStorage openSqlStorage() {
+        try {
+            return new SqlClanStorage(plugin, new File(plugin.getDataFolder(), "clans.db"));
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not open clan database, falling back to clans.yml", e);
+            return null;
+        }
     }
     
     /**
@@ -53,7 +143,7 @@ public class StorageManager implements ClanStorage {
      * @return The clan storage interface
      */
     public ClanStorage getClanStorage() {
-        return this;
+        return sqlStorage != null ? sqlStorage : this;
     }
     
     /**
@@ -82,152 +172,414 @@ public class StorageManager implements ClanStorage {
             ConfigurationSection clanSection = clansSection.getConfigurationSection(clanName);
             if (clanSection == null) continue;
             
-            // Create clan object
-            Clan clan = new Clan(clanName);
-            String tag = clanSection.getString("tag", clanName.substring(0, Math.min(3, clanName.length())).toUpperCase());
-            clan.setTag(tag);
-            
-            // Set clan properties
-            if (clanSection.contains("color")) {
-                clan.setColor(clanSection.getString("color"));
-            }
-            
-            if (clanSection.contains("level")) {
-                clan.setLevel(clanSection.getInt("level", 1));
-            }
-            
-            if (clanSection.contains("experience")) {
-                clan.setExperience(clanSection.getInt("experience", 0));
-            }
-            
-            if (clanSection.contains("coloredArmor")) {
-                clan.setColoredArmor(clanSection.getBoolean("coloredArmor", false));
+            registerClan(readClan(clanName, clanSection));
+        }
+        
+        plugin.getLogger().info("Loaded " + clansByName.size() + " clans from storage.");
+    }
+    
+    /**
+     * Load clans from the binary snapshot when it is at least as new as clans.yml,
+     * otherwise from clans.yml.
+     */
+    private void loadClansPreferringSnapshot() {
+        if (useSnapshot && plugin.getConfig().getBoolean("storage.binary_snapshot.benchmark_on_load", false)) {
+            benchmarkClanLoad();
+        }
+        
+        if (useSnapshot && BinarySnapshot.isUsable(clanSnapshotFile, clanDataFile)) {
+            try {
+                long start = System.nanoTime();
+                for (Clan clan : BinarySnapshot.readClans(clanSnapshotFile)) {
+                    registerClan(clan);
+                }
+                plugin.getLogger().info("Loaded " + clansByName.size() + " clans from snapshot in " +
+                                        ((System.nanoTime() - start) / 1000000) + "ms.");
+                return;
+            } catch (IOException e) {
+                plugin.getLogger().warning("Could not read clan snapshot, loading clans.yml instead: " + e.getMessage());
+                clansByName.clear();
+                clansByPlayer.clear();
             }
-            
-            // Load home location if exists
-            if (clanSection.contains("home")) {
-                ConfigurationSection homeSection = clanSection.getConfigurationSection("home");
-                if (homeSection != null) {
-                    String worldName = homeSection.getString("world");
-                    double x = homeSection.getDouble("x");
-                    double y = homeSection.getDouble("y");
-                    double z = homeSection.getDouble("z");
-                    float yaw = (float) homeSection.getDouble("yaw");
-                    float pitch = (float) homeSection.getDouble("pitch");
-                    
-                    if (worldName != null && Bukkit.getWorld(worldName) != null) {
-                        Location home = new Location(Bukkit.getWorld(worldName), x, y, z, yaw, pitch);
-                        clan.setHome(home);
-                    }
+        }
+        
+        loadClans();
+    }
+    
+    /**
+     * Compare the time needed to load clans.yml with the time needed to load the
+     * same clans from a binary snapshot, and log the result.
+     */
+    private void benchmarkClanLoad() {
+        if (!clanDataFile.exists()) {
+            return;
+        }
+        
+        long yamlStart = System.nanoTime();
+        List<Clan> clans = new ArrayList<>();
+        ConfigurationSection clansSection = YamlConfiguration.loadConfiguration(clanDataFile).getConfigurationSection("clans");
+        if (clansSection != null) {
+            for (String clanName : clansSection.getKeys(false)) {
+                ConfigurationSection clanSection = clansSection.getConfigurationSection(clanName);
+                if (clanSection != null) {
+                    clans.add(readClan(clanName, clanSection));
                 }
             }
+        }
+        long yamlNanos = System.nanoTime() - yamlStart;
+        
+        File benchmarkFile = new File(plugin.getDataFolder(), "clans.dat.benchmark");
+        try {
+            List<ClanSnapshot> snapshots = new ArrayList<>(clans.size());
+            for (Clan clan : clans) {
+                snapshots.add(ClanSnapshot.of(clan));
+            }
+            BinarySnapshot.writeClans(benchmarkFile, snapshots);
+            long snapshotStart = System.nanoTime();
+            BinarySnapshot.readClans(benchmarkFile);
+            long snapshotNanos = System.nanoTime() - snapshotStart;
             
-            // Load members
-            ConfigurationSection membersSection = clanSection.getConfigurationSection("members");
-            if (membersSection != null) {
-                for (String uuidString : membersSection.getKeys(false)) {
-                    ConfigurationSection memberSection = membersSection.getConfigurationSection(uuidString);
-                    if (memberSection == null) continue;
-                    
-                    UUID playerUUID = UUID.fromString(uuidString);
-                    String playerName = memberSection.getString("name", "Unknown");
-                    String roleString = memberSection.getString("role", "MEMBER");
-                    ClanRole role = ClanRole.valueOf(roleString);
-                    
-                    ClanMember member = new ClanMember(playerUUID, playerName, role);
-                    clan.addMember(member);
+            plugin.getLogger().info(String.format("Clan load benchmark (%d clans): YAML %.1fms / %dKB, snapshot %.1fms / %dKB",
+                    clans.size(), yamlNanos / 1000000.0, clanDataFile.length() / 1024,
+                    snapshotNanos / 1000000.0, benchmarkFile.length() / 1024));
+        } catch (IOException e) {
+            plugin.getLogger().warning("Clan load benchmark failed: " + e.getMessage());
+        } finally {
+            benchmarkFile.delete();
+        }
+    }
+    
+    /**
+     * Publish immutable snapshots of all clans. Clans that did not change since
+     * the last publish reuse their previous snapshot. Must be called on the main thread.
+     * 
+     * @return The clan snapshots
+     */
+    private List<ClanSnapshot> publishClans() {
+        return clanSnapshots.publish(clansByName.values());
+    }
+    
+    /**
+     * Load clans from the per-clan shard files. On the first start with sharded
+     * storage the existing clans.yml is imported and written out as shards.
+     */
+    private void loadClanShards() {
+        File[] shardFiles = shardWriter.getShardFolder().listFiles((dir, name) -> name.endsWith(".yml"));
+        
+        if (shardFiles == null || shardFiles.length == 0) {
+            if (clanDataFile.exists()) {
+                plugin.getLogger().info("Migrating clans.yml to per-clan shard files...");
+                loadClans();
+                for (Clan clan : clansByName.values()) {
+                    shardWriter.markDirty(clan.getName());
                 }
+                shardWriter.flush();
+            } else {
+                plugin.getLogger().info("No clan shards found, starting with empty clan storage.");
             }
-            
-            // Load alliance list
-            List<String> allies = clanSection.getStringList("allies");
-            for (String ally : allies) {
-                clan.addAlliance(ally);
+            return;
+        }
+        
+        for (File shardFile : shardFiles) {
+            FileConfiguration data = YamlConfiguration.loadConfiguration(shardFile);
+            String clanName = data.getString("name");
+            if (clanName == null) {
+                plugin.getLogger().warning("Skipping clan shard without a name: " + shardFile.getName());
+                continue;
             }
             
-            // Load enemy list
-            List<String> enemies = clanSection.getStringList("enemies");
-            for (String enemy : enemies) {
-                clan.addEnemy(enemy);
+            registerClan(readClan(clanName, data));
+        }
+        
+        plugin.getLogger().info("Loaded " + clansByName.size() + " clans from " + shardFiles.length + " shard files.");
+    }
+    
+    /**
+     * Read a clan from its configuration section.
+     * 
+     * @param clanName The name of the clan
+     * @param clanSection The section holding the clan data
+     * @return The loaded clan
+     */
+    private Clan readClan(String clanName, ConfigurationSection clanSection) {
+        // Create clan object
+        Clan clan = new Clan(clanName);
+        String tag = clanSection.getString("tag", clanName.substring(0, Math.min(3, clanName.length())).toUpperCase());
+        clan.setTag(tag);
+        
+        // Set clan properties
+        if (clanSection.contains("color")) {
+            clan.setColor(clanSection.getString("color"));
+        }
+        
+        if (clanSection.contains("level")) {
+            clan.setLevel(clanSection.getInt("level", 1));
+        }
+        
+        if (clanSection.contains("experience")) {
+            clan.setExperience(clanSection.getInt("experience", 0));
+        }
+        
+        if (clanSection.contains("coloredArmor")) {
+            clan.setColoredArmor(clanSection.getBoolean("coloredArmor", false));
+        }
+        
+        if (clanSection.contains("description")) {
+            clan.setDescription(clanSection.getString("description"));
+        }
+        
+        if (clanSection.contains("creationTime")) {
+            clan.setCreationTime(clanSection.getLong("creationTime"));
+        }
+        
+        clan.setSkillPoints(clanSection.getInt("skillPoints", clan.getSkillPoints()));
+        clan.setMaxMembers(clanSection.getInt("maxMembers", clan.getMaxMembers()));
+        clan.setMaxTerritories(clanSection.getInt("maxTerritories", clan.getMaxTerritories()));
+        clan.setIncomeBoost(clanSection.getInt("incomeBoost", clan.getIncomeBoost()));
+        clan.setWarWins(clanSection.getInt("warWins", 0));
+        clan.setWarLosses(clanSection.getInt("warLosses", 0));
+        
+        // Load statistics
+        ConfigurationSection statsSection = clanSection.getConfigurationSection("stats");
+        if (statsSection != null) {
+            for (String statName : statsSection.getKeys(false)) {
+                clan.setStat(statName, statsSection.getInt(statName));
             }
-            
-            // Load invites
-            List<String> invitesList = clanSection.getStringList("invites");
-            for (String inviteUuidString : invitesList) {
-                clan.addInvite(UUID.fromString(inviteUuidString));
+        }
+        
+        // Load home location if exists
+        Location home = readLocation(clanSection.getConfigurationSection("home"));
+        if (home != null) {
+            clan.setHome(home);
+        }
+        
+        // Load additional homes
+        ConfigurationSection homesSection = clanSection.getConfigurationSection("additionalHomes");
+        if (homesSection != null) {
+            for (String homeName : homesSection.getKeys(false)) {
+                Location additionalHome = readLocation(homesSection.getConfigurationSection(homeName));
+                if (additionalHome != null) {
+                    clan.setAdditionalHome(homeName, additionalHome);
+                }
             }
-            
-            // Add clan to maps
-            clansByName.put(clanName.toLowerCase(), clan);
-            for (ClanMember member : clan.getMembers()) {
-                clansByPlayer.put(member.getPlayerUUID(), clan);
+        }
+        
+        // Load members
+        ConfigurationSection membersSection = clanSection.getConfigurationSection("members");
+        if (membersSection != null) {
+            for (String uuidString : membersSection.getKeys(false)) {
+                ConfigurationSection memberSection = membersSection.getConfigurationSection(uuidString);
+                if (memberSection == null) continue;
+                
+                UUID playerUUID = UUID.fromString(uuidString);
+                String playerName = memberSection.getString("name", "Unknown");
+                String roleString = memberSection.getString("role", "MEMBER");
+                ClanRole role = ClanRole.valueOf(roleString);
+                
+                ClanMember member = new ClanMember(playerUUID, playerName, role);
+                clan.addMember(member);
             }
         }
         
-        plugin.getLogger().info("Loaded " + clansByName.size() + " clans from storage.");
+        // Load alliance list
+        List<String> allies = clanSection.getStringList("allies");
+        for (String ally : allies) {
+            clan.addAlliance(ally);
+        }
+        
+        // Load enemy list
+        List<String> enemies = clanSection.getStringList("enemies");
+        for (String enemy : enemies) {
+            clan.addEnemy(enemy);
+        }
+        
+        // Load invites
+        List<String> invitesList = clanSection.getStringList("invites");
+        for (String inviteUuidString : invitesList) {
+            clan.addInvite(UUID.fromString(inviteUuidString));
+        }
+        
+        return clan;
+    }
+    
+    /**
+     * Read a location written by {@link #writeLocation}.
+     * 
+     * @param section The section holding the location, may be null
+     * @return The location, or null if missing or its world is not loaded
+     */
+    private Location readLocation(ConfigurationSection section) {
+        if (section == null) {
+            return null;
+        }
+        
+        String worldName = section.getString("world");
+        if (worldName == null || Bukkit.getWorld(worldName) == null) {
+            return null;
+        }
+        
+        return new Location(Bukkit.getWorld(worldName), section.getDouble("x"), section.getDouble("y"),
+                            section.getDouble("z"), (float) section.getDouble("yaw"), (float) section.getDouble("pitch"));
+    }
+    
+    /**
+     * Write a location into a new child section.
+     * 
+     * @param parent The parent section
+     * @param key The key of the child section
+     * @param location The location to write
+     */
+    private void writeLocation(ConfigurationSection parent, String key, ClanSnapshot.Position location) {
+        ConfigurationSection section = parent.createSection(key);
+        section.set("world", location.getWorldName());
+        section.set("x", location.getX());
+        section.set("y", location.getY());
+        section.set("z", location.getZ());
+        section.set("yaw", location.getYaw());
+        section.set("pitch", location.getPitch());
+    }
+    
+    /**
+     * Add a loaded clan to the lookup maps without saving.
+     * 
+     * @param clan The clan to register
+     */
+    private void registerClan(Clan clan) {
+        clansByName.put(clan.getName().toLowerCase(), clan);
+        for (ClanMember member : clan.getMembers()) {
+            clansByPlayer.put(member.getPlayerUUID(), clan);
+        }
     }
 
     /**
      * Saves all clan data to file.
+     * With sharded storage every clan is marked dirty and flushed to its shard.
+     * Otherwise clans.yml, or only the binary snapshot when enabled, is marked
+     * changed and written by the next persistence flush.
      */
     public void saveAllData() {
+        if (sqlStorage != null) {
+            sqlStorage.saveAll();
+            return;
+        }
+        
+        if (shardWriter != null) {
+            for (Clan clan : clansByName.values()) {
+                shardWriter.markDirty(clan.getName());
+            }
+            shardWriter.flush();
+            return;
+        }
+        
+        // The snapshot is much cheaper to write; clans.yml is refreshed on shutdown
+        if (snapshotRegistration != null) {
+            snapshotRegistration.markDirty();
+        } else {
+            yamlRegistration.markDirty();
+        }
+    }
+    
+    /**
+     * Write clans in the clans.yml format. Runs on the persistence I/O thread.
+     * 
+     * @param snapshots The clans to write
+     * @param out The stream to write to
+     * @throws IOException If the data could not be written
+     */
+    private void writeClansYaml(List<ClanSnapshot> snapshots, OutputStream out) throws IOException {
         FileConfiguration data = new YamlConfiguration();
         ConfigurationSection clansSection = data.createSection("clans");
         
-        for (Clan clan : clansByName.values()) {
-            ConfigurationSection clanSection = clansSection.createSection(clan.getName());
-            
-            // Save basic clan info
-            clanSection.set("tag", clan.getTag());
-            clanSection.set("color", clan.getColor());
-            clanSection.set("level", clan.getLevel());
-            clanSection.set("experience", clan.getExperience());
-            clanSection.set("coloredArmor", clan.hasColoredArmor());
-            
-            // Save home location if exists
-            Location home = clan.getHome();
-            if (home != null) {
-                ConfigurationSection homeSection = clanSection.createSection("home");
-                homeSection.set("world", home.getWorld().getName());
-                homeSection.set("x", home.getX());
-                homeSection.set("y", home.getY());
-                homeSection.set("z", home.getZ());
-                homeSection.set("yaw", home.getYaw());
-                homeSection.set("pitch", home.getPitch());
-            }
-            
-            // Save members
-            ConfigurationSection membersSection = clanSection.createSection("members");
-            for (ClanMember member : clan.getMembers()) {
-                ConfigurationSection memberSection = membersSection.createSection(member.getPlayerUUID().toString());
-                memberSection.set("name", member.getPlayerName());
-                memberSection.set("role", member.getRole().name());
-            }
-            
-            // Save alliance list
-            clanSection.set("allies", new ArrayList<>(clan.getAlliances()));
-            
-            // Save enemy list
-            clanSection.set("enemies", new ArrayList<>(clan.getEnemies()));
-            
-            // Save invites
-            List<String> invitesList = new ArrayList<>();
-            for (UUID invitedPlayer : clan.getInvitedPlayers()) {
-                invitesList.add(invitedPlayer.toString());
-            }
-            clanSection.set("invites", invitesList);
+        for (ClanSnapshot clan : snapshots) {
+            writeClan(clansSection.createSection(clan.getName()), clan);
         }
         
-        try {
-            data.save(clanDataFile);
-            plugin.getLogger().info("Saved " + clansByName.size() + " clans to storage.");
-        } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "Could not save clan data", e);
+        out.write(data.saveToString().getBytes(StandardCharsets.UTF_8));
+        plugin.getLogger().info("Saved " + snapshots.size() + " clans to storage.");
+    }
+    
+    /**
+     * Build a standalone shard document for a clan. Only reads the snapshot,
+     * so it can run on the background writer.
+     * 
+     * @param clan The clan to serialize
+     * @return The shard document
+     */
+    YamlConfiguration serializeClan(ClanSnapshot clan) {
+        YamlConfiguration data = new YamlConfiguration();
+        data.set("name", clan.getName());
+        writeClan(data, clan);
+        return data;
+    }
+    
+    /**
+     * Write a clan into a configuration section.
+     * 
+     * @param clanSection The section to write to
+     * @param clan The clan to write
+     */
+    private void writeClan(ConfigurationSection clanSection, ClanSnapshot clan) {
+        // Save basic clan info
+        clanSection.set("tag", clan.getTag());
+        clanSection.set("color", clan.getColor());
+        clanSection.set("level", clan.getLevel());
+        clanSection.set("experience", clan.getExperience());
+        clanSection.set("coloredArmor", clan.hasColoredArmor());
+        clanSection.set("description", clan.getDescription());
+        clanSection.set("creationTime", clan.getCreationTime());
+        clanSection.set("skillPoints", clan.getSkillPoints());
+        clanSection.set("maxMembers", clan.getMaxMembers());
+        clanSection.set("maxTerritories", clan.getMaxTerritories());
+        clanSection.set("incomeBoost", clan.getIncomeBoost());
+        clanSection.set("warWins", clan.getWarWins());
+        clanSection.set("warLosses", clan.getWarLosses());
+        
+        // Save statistics
+        ConfigurationSection statsSection = clanSection.createSection("stats");
+        for (Map.Entry<String, Integer> stat : clan.getStats().entrySet()) {
+            statsSection.set(stat.getKey(), stat.getValue());
         }
+        
+        // Save home location if exists
+        if (clan.getHome() != null) {
+            writeLocation(clanSection, "home", clan.getHome());
+        }
+        
+        // Save additional homes (the snapshot only holds homes whose world was loaded)
+        ConfigurationSection homesSection = clanSection.createSection("additionalHomes");
+        for (Map.Entry<String, ClanSnapshot.Position> additionalHome : clan.getAdditionalHomes().entrySet()) {
+            writeLocation(homesSection, additionalHome.getKey(), additionalHome.getValue());
+        }
+        
+        // Save members
+        ConfigurationSection membersSection = clanSection.createSection("members");
+        for (ClanSnapshot.Member member : clan.getMembers()) {
+            ConfigurationSection memberSection = membersSection.createSection(member.getPlayerUUID().toString());
+            memberSection.set("name", member.getPlayerName());
+            memberSection.set("role", member.getRole().name());
+        }
+        
+        // Save alliance list
+        clanSection.set("allies", new ArrayList<>(clan.getAllies()));
+        
+        // Save enemy list
+        clanSection.set("enemies", new ArrayList<>(clan.getEnemies()));
+        
+        // Save invites
+        List<String> invitesList = new ArrayList<>();
+        for (UUID invitedPlayer : clan.getInvites()) {
+            invitesList.add(invitedPlayer.toString());
+        }
+        clanSection.set("invites", invitesList);
     }
 
     @Override
     public void addClan(Clan clan) {
+        if (sqlStorage != null) {
+            sqlStorage.addClan(clan);
+            return;
+        }
+        
         clansByName.put(clan.getName().toLowerCase(), clan);
         
         // Map all players to this clan
@@ -236,11 +588,15 @@ public class StorageManager implements ClanStorage {
         }
         
         // Save changes to file
-        saveAllData();
+        persistClan(clan);
     }
 
     @Override
     public boolean removeClan(String clanName) {
+        if (sqlStorage != null) {
+            return sqlStorage.removeClan(clanName);
+        }
+        
         Clan clan = clansByName.remove(clanName.toLowerCase());
         
         if (clan != null) {
@@ -250,7 +606,11 @@ public class StorageManager implements ClanStorage {
             }
             
             // Save changes to file
-            saveAllData();
+            if (shardWriter != null) {
+                shardWriter.markRemoved(clan.getName());
+            } else {
+                saveAllData();
+            }
             return true;
         }
         
@@ -259,11 +619,17 @@ public class StorageManager implements ClanStorage {
 
     @Override
     public Clan getClan(String clanName) {
+        if (sqlStorage != null) {
+            return sqlStorage.getClan(clanName);
+        }
         return clansByName.get(clanName.toLowerCase());
     }
 
     @Override
     public Clan getPlayerClan(UUID playerUUID) {
+        if (sqlStorage != null) {
+            return sqlStorage.getPlayerClan(playerUUID);
+        }
         return clansByPlayer.get(playerUUID);
     }
     
@@ -277,7 +643,7 @@ public class StorageManager implements ClanStorage {
         if (clanName == null) {
             return null;
         }
-        return clansByName.get(clanName.toLowerCase());
+        return getClan(clanName);
     }
 
     @Override
@@ -288,6 +654,9 @@ public class StorageManager implements ClanStorage {
 
     @Override
     public Set<Clan> getAllClans() {
+        if (sqlStorage != null) {
+            return sqlStorage.getAllClans();
+        }
         return new HashSet<>(clansByName.values());
     }
     
@@ -297,6 +666,10 @@ public class StorageManager implements ClanStorage {
             return false;
         }
         
+        if (sqlStorage != null) {
+            return sqlStorage.saveClan(clan);
+        }
+        
         // Check if the clan already exists
         if (clansByName.containsKey(clan.getName().toLowerCase())) {
             // Update the clan in storage
@@ -308,7 +681,7 @@ public class StorageManager implements ClanStorage {
             }
             
             // Save changes to file
-            saveAllData();
+            persistClan(clan);
             return true;
         }
         
@@ -322,14 +695,88 @@ public class StorageManager implements ClanStorage {
      * @param clan The clan to map to, or null to remove mapping
      */
     public void updatePlayerClan(UUID playerUUID, Clan clan) {
+        if (sqlStorage != null) {
+            sqlStorage.updatePlayerClan(playerUUID, clan);
+            return;
+        }
+        
+        Clan previousClan;
         if (clan != null) {
-            clansByPlayer.put(playerUUID, clan);
+            previousClan = clansByPlayer.put(playerUUID, clan);
         } else {
-            clansByPlayer.remove(playerUUID);
+            previousClan = clansByPlayer.remove(playerUUID);
         }
         
         // Save changes to file
-        saveAllData();
+        if (shardWriter != null) {
+            if (previousClan != null && previousClan != clan) {
+                shardWriter.markDirty(previousClan.getName());
+            }
+            if (clan != null) {
+                shardWriter.markDirty(clan.getName());
+            }
+        } else {
+            saveAllData();
+        }
+    }
+    
+    /**
+     * Persist a single changed clan. With sharded storage the clan is only marked
+     * dirty and written by the next background flush.
+     * 
+     * @param clan The clan that changed
+     */
+    private void persistClan(Clan clan) {
+        if (shardWriter != null) {
+            shardWriter.markDirty(clan.getName());
+        } else {
+            saveAllData();
+        }
+    }
+    
+    /**
+     * Mark clans.yml and the binary snapshot as changed so the persistence
+     * service writes them on its shutdown flush. Every clan is written, because
+     * some callers change clans without calling saveClan. Must be called on the
+     * main thread before that flush.
+     */
+    public void prepareShutdown() {
+        if (yamlRegistration != null) {
+            yamlRegistration.markDirty();
+            if (snapshotRegistration != null) {
+                snapshotRegistration.markDirty();
+            }
+        }
+    }
+    
+    /**
+     * Write all clans and stop background writes. Every clan is written, not only
+     * the dirty ones, because some callers change clans without calling saveClan.
+     * Called when the plugin is disabled; clans.yml is written by the persistence
+     * service after {@link #prepareShutdown()}.
+     */
+    public void shutdown() {
+        if (sqlStorage != null) {
+            sqlStorage.saveAll();
+            sqlStorage.close();
+        } else if (shardWriter != null) {
+            for (Clan clan : clansByName.values()) {
+                shardWriter.markDirty(clan.getName());
+            }
+            shardWriter.drain();
+        }
+    }
+    
+    /**
+     * Queue pending clan shard changes right away instead of waiting for the
+     * next periodic flush. Called when a {@link UnitOfWork} commits; the other
+     * backends are written by the persistence service or already queue every
+     * change. Must be called on the main thread.
+     */
+    public void flushClans() {
+        if (shardWriter != null) {
+            shardWriter.flush();
+        }
     }
     
     /**
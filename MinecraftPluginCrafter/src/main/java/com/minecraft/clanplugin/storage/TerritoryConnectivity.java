@@ -0,0 +1,402 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.models.Territory;
+
+import java.util.Arrays;
+
+/**
+ * Decides whether unclaiming a chunk would split a clan's territory, using
+ * only the chunks around it. Claims touch when they share an edge or a
+ * corner. The remaining claims stay connected exactly when the clan's claims
+ * among the eight neighbours of the removed chunk stay connected, so:
+ * <ul>
+ *   <li>if those neighbours form one group around the ring, the answer is
+ *       known without looking further, which is the usual case for chunks
+ *       on the edge of a territory;</li>
+ *   <li>otherwise a search is started from every group in turn, one chunk at
+ *       a time each. It ends as soon as one search reaches the other groups,
+ *       or one search runs out of chunks, so the cost is bounded by the
+ *       smaller side of a split or the length of the detour around the
+ *       removed chunk rather than by the size of the clan.</li>
+ * </ul>
+ * Unclaiming several chunks at once works the same way, with the chunks
+ * being unclaimed and the clan's claims around them in place of the ring: only
+ * claims that were connected through the selection have to stay connected, so
+ * pieces that were already apart do not block the unclaim.
+ * Ownership is read from the {@link TerritoryIndex}, which is kept up to date
+ * by every claim and unclaim, so no per-clan graph has to be rebuilt.
+ */
+final class TerritoryConnectivity {
+    
+    /** Neighbour offsets, in order around the ring. */
+    private static final int[] RING_DX = {-1, 0, 1, 1, 1, 0, -1, -1};
+    private static final int[] RING_DZ = {-1, -1, -1, 0, 1, 1, 1, 0};
+    
+    private TerritoryConnectivity() {
+    }
+    
+    /**
+     * Checks whether unclaiming a chunk would leave the clan's remaining
+     * claims around it in more than one piece.
+     *
+     * @param index The territory index
+     * @param worldName The world name
+     * @param chunkX The X coordinate of the chunk being unclaimed
+     * @param chunkZ The Z coordinate of the chunk being unclaimed
+     * @param clanName The clan that owns the chunk
+     * @return True if unclaiming would disconnect territories
+     */
+    static boolean wouldDisconnect(TerritoryIndex index, String worldName, int chunkX, int chunkZ, String clanName) {
+        // Group the clan's neighbours by adjacency among themselves
+        int[] group = new int[RING_DX.length];
+        int groups = 0;
+        for (int i = 0; i < RING_DX.length; i++) {
+            group[i] = -1;
+            if (!isOwned(index, worldName, chunkX + RING_DX[i], chunkZ + RING_DZ[i], clanName)) {
+                continue;
+            }
+            group[i] = groups++;
+            for (int j = 0; j < i; j++) {
+                if (group[j] >= 0 && Math.abs(RING_DX[i] - RING_DX[j]) <= 1 && Math.abs(RING_DZ[i] - RING_DZ[j]) <= 1
+                        && group[j] != group[i]) {
+                    groups = merge(group, group[i], group[j], groups);
+                }
+            }
+        }
+        if (groups <= 1) {
+            return false;
+        }
+        
+        // Start one search from a chunk of each group
+        long[] starts = new long[groups];
+        for (int i = 0; i < RING_DX.length; i++) {
+            if (group[i] >= 0) {
+                starts[group[i]] = TerritoryIndex.pack(chunkX + RING_DX[i], chunkZ + RING_DZ[i]);
+            }
+        }
+        ChunkSet removed = new ChunkSet();
+        removed.add(TerritoryIndex.pack(chunkX, chunkZ));
+        return isSplit(index, worldName, starts, groups, removed, clanName);
+    }
+    
+    /**
+     * Checks whether unclaiming several chunks at once would split a piece of
+     * the clan's territory. The clan's remaining claims next to the selection
+     * are grouped by what connects them now, through the selection or
+     * directly; a group that was only held together by the selection is then
+     * searched like the ring of a single chunk. Claims that were not
+     * connected before the unclaim are never compared.
+     *
+     * @param index The territory index
+     * @param worldName The world name
+     * @param chunks The packed keys of the chunks being unclaimed, all owned by the clan
+     * @param clanName The clan that owns the chunks
+     * @return True if unclaiming would disconnect territories
+     */
+    static boolean wouldDisconnect(TerritoryIndex index, String worldName, long[] chunks, String clanName) {
+        ChunkSet removed = new ChunkSet();
+        for (long chunk : chunks) {
+            removed.add(chunk);
+        }
+        
+        // The clan's remaining claims touching the selection
+        ChunkSet border = new ChunkSet();
+        for (int i = 0; i < removed.size(); i++) {
+            long chunk = removed.get(i);
+            int x = (int) (chunk >> 32);
+            int z = (int) chunk;
+            for (int n = 0; n < RING_DX.length; n++) {
+                long neighbour = TerritoryIndex.pack(x + RING_DX[n], z + RING_DZ[n]);
+                if (removed.indexOf(neighbour) < 0
+                        && isOwned(index, worldName, x + RING_DX[n], z + RING_DZ[n], clanName)) {
+                    border.add(neighbour);
+                }
+            }
+        }
+        if (border.size() <= 1) {
+            return false;
+        }
+        
+        // Group the selection and its border by adjacency before the unclaim
+        // (connected), and the border alone by adjacency after it (around)
+        int offset = removed.size();
+        int[] connected = new int[offset + border.size()];
+        int[] around = new int[border.size()];
+        for (int i = 0; i < connected.length; i++) {
+            connected[i] = i;
+        }
+        for (int i = 0; i < around.length; i++) {
+            around[i] = i;
+        }
+        for (int i = 0; i < connected.length; i++) {
+            long chunk = i < offset ? removed.get(i) : border.get(i - offset);
+            int x = (int) (chunk >> 32);
+            int z = (int) chunk;
+            for (int n = 0; n < RING_DX.length; n++) {
+                long neighbour = TerritoryIndex.pack(x + RING_DX[n], z + RING_DZ[n]);
+                int other = removed.indexOf(neighbour);
+                if (other < 0) {
+                    other = border.indexOf(neighbour);
+                    if (other < 0) {
+                        continue;
+                    }
+                    if (i >= offset) {
+                        union(around, i - offset, other);
+                    }
+                    other += offset;
+                }
+                union(connected, i, other);
+            }
+        }
+        
+        // A group with border pieces that only met through the selection has
+        // to be searched; one start for each piece
+        boolean[] checked = new boolean[border.size()];
+        long[] starts = new long[8];
+        int[] pieces = new int[8];
+        for (int i = 0; i < border.size(); i++) {
+            if (checked[i]) {
+                continue;
+            }
+            int groupRoot = find(connected, offset + i);
+            int count = 0;
+            for (int j = i; j < border.size(); j++) {
+                if (checked[j] || find(connected, offset + j) != groupRoot) {
+                    continue;
+                }
+                checked[j] = true;
+                int piece = find(around, j);
+                boolean seen = false;
+                for (int k = 0; k < count && !seen; k++) {
+                    seen = pieces[k] == piece;
+                }
+                if (seen) {
+                    continue;
+                }
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                    pieces = Arrays.copyOf(pieces, count * 2);
+                }
+                starts[count] = border.get(j);
+                pieces[count++] = piece;
+            }
+            if (count > 1 && isSplit(index, worldName, starts, count, removed, clanName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Searches from several chunks at once, one chunk at a time each, until
+     * one search reaches all the other starts or one runs out of chunks.
+     *
+     * @param index The territory index
+     * @param worldName The world name
+     * @param starts The chunks to start from
+     * @param groups The number of starts in use
+     * @param removed The chunks being unclaimed, which no search enters
+     * @param clanName The clan that owns the chunks
+     * @return True if the starts are not all connected without the removed chunks
+     */
+    private static boolean isSplit(TerritoryIndex index, String worldName, long[] starts, int groups,
+            ChunkSet removed, String clanName) {
+        Search[] searches = new Search[groups];
+        for (int i = 0; i < groups; i++) {
+            searches[i] = new Search(starts[i]);
+        }
+        
+        while (true) {
+            for (int i = 0; i < groups; i++) {
+                Search search = searches[i];
+                if (!search.hasNext()) {
+                    // This piece is fully explored and does not hold every group
+                    return true;
+                }
+                
+                long chunk = search.next();
+                int x = (int) (chunk >> 32);
+                int z = (int) chunk;
+                for (int n = 0; n < RING_DX.length; n++) {
+                    long neighbour = TerritoryIndex.pack(x + RING_DX[n], z + RING_DZ[n]);
+                    if (removed.indexOf(neighbour) >= 0 || search.isVisited(neighbour)
+                            || !isOwned(index, worldName, x + RING_DX[n], z + RING_DZ[n], clanName)) {
+                        continue;
+                    }
+                    search.visit(neighbour);
+                    for (int other = 0; other < groups; other++) {
+                        if (other != i && starts[other] == neighbour) {
+                            search.found++;
+                        }
+                    }
+                    if (search.found == groups - 1) {
+                        return false;
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Finds the representative of an element in a union-find forest.
+     *
+     * @param parent The parent of each element
+     * @param element The element
+     * @return The representative
+     */
+    private static int find(int[] parent, int element) {
+        while (parent[element] != element) {
+            parent[element] = parent[parent[element]];
+            element = parent[element];
+        }
+        return element;
+    }
+    
+    /**
+     * Joins the sets of two elements in a union-find forest.
+     *
+     * @param parent The parent of each element
+     * @param a One element
+     * @param b The other element
+     */
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) {
+            parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+    
+    /**
+     * Merges two ring groups and renumbers the groups above the removed one.
+     *
+     * @param group The group of each ring position, or -1
+     * @param a One group
+     * @param b The other group
+     * @param groups The number of groups
+     * @return The number of groups after the merge
+     */
+    private static int merge(int[] group, int a, int b, int groups) {
+        int keep = Math.min(a, b);
+        int drop = Math.max(a, b);
+        for (int i = 0; i < group.length; i++) {
+            if (group[i] == drop) {
+                group[i] = keep;
+            } else if (group[i] > drop) {
+                group[i]--;
+            }
+        }
+        return groups - 1;
+    }
+    
+    /**
+     * Checks whether a chunk is claimed by a clan.
+     *
+     * @param index The territory index
+     * @param worldName The world name
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @param clanName The clan name
+     * @return True if the clan owns the chunk
+     */
+    private static boolean isOwned(TerritoryIndex index, String worldName, int chunkX, int chunkZ, String clanName) {
+        Territory territory = index.get(worldName, chunkX, chunkZ);
+        return territory != null && territory.getClanName().equals(clanName);
+    }
+    
+    /**
+     * Breadth-first search over packed chunk keys. The visited chunks are kept
+     * in the order they were found, which doubles as the queue.
+     */
+    private static final class Search {
+        
+        private final ChunkSet visited = new ChunkSet();
+        private int head;
+        int found;
+        
+        Search(long start) {
+            visit(start);
+        }
+        
+        boolean hasNext() {
+            return head < visited.size();
+        }
+        
+        long next() {
+            return visited.get(head++);
+        }
+        
+        boolean isVisited(long chunk) {
+            return visited.indexOf(chunk) >= 0;
+        }
+        
+        void visit(long chunk) {
+            visited.add(chunk);
+        }
+    }
+    
+    /**
+     * Set of packed chunk keys held in primitive arrays. Chunks are numbered
+     * in the order they were added, with an open-addressing table from key to
+     * number.
+     */
+    private static final class ChunkSet {
+        
+        private long[] chunks = new long[32];
+        private int size;
+        private int[] slots = new int[64];
+        
+        int size() {
+            return size;
+        }
+        
+        long get(int number) {
+            return chunks[number];
+        }
+        
+        int indexOf(long chunk) {
+            int mask = slots.length - 1;
+            for (int slot = slot(chunk, mask); slots[slot] != 0; slot = (slot + 1) & mask) {
+                if (chunks[slots[slot] - 1] == chunk) {
+                    return slots[slot] - 1;
+                }
+            }
+            return -1;
+        }
+        
+        int add(long chunk) {
+            int existing = indexOf(chunk);
+            if (existing >= 0) {
+                return existing;
+            }
+            if (size == chunks.length) {
+                long[] grown = new long[chunks.length * 2];
+                System.arraycopy(chunks, 0, grown, 0, size);
+                chunks = grown;
+            }
+            chunks[size++] = chunk;
+            
+            if (size * 2 > slots.length) {
+                slots = new int[slots.length * 2];
+                for (int number = 0; number < size - 1; number++) {
+                    insert(number);
+                }
+            }
+            insert(size - 1);
+            return size - 1;
+        }
+        
+        private void insert(int number) {
+            int mask = slots.length - 1;
+            int slot = slot(chunks[number], mask);
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = number + 1;
+        }
+        
+        private static int slot(long chunk, int mask) {
+            return (int) ((chunk * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        }
+    }
+}
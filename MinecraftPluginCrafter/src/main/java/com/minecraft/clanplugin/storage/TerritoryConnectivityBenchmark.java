@@ -0,0 +1,263 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.models.Territory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * Compares the unclaim disconnect check of {@link TerritoryConnectivity} with
+ * the all-pairs search it replaced, for clans of 10 to 5000 chunks. Two
+ * shapes are measured: a filled square, where unclaims are mostly decided by
+ * the ring around the chunk, and a one-chunk-wide line unclaimed in the
+ * middle, the worst case, where half the territory is searched. Both checks
+ * must agree on the first few checked chunks. Enabled with
+ * storage.territory_index.connectivity_benchmark_on_start.
+ */
+public class TerritoryConnectivityBenchmark {
+    
+    private static final int[] CLAIM_COUNTS = {10, 100, 1000, 5000};
+    private static final String WORLD_NAME = "world";
+    private static final String CLAN_NAME = "Benchmark";
+    private static final long TARGET_NANOS = 200000000L;
+    private static final int MAX_CHECKS = 100000;
+    
+    private final Logger logger;
+    
+    /**
+     * Creates a new benchmark.
+     *
+     * @param logger The logger the results are written to
+     */
+    public TerritoryConnectivityBenchmark(Logger logger) {
+        this.logger = logger;
+    }
+    
+    /**
+     * Runs the benchmark for every claim count and shape and logs the results.
+     */
+    public void run() {
+        StringBuilder report = new StringBuilder("Unclaim disconnect check benchmark (time per check):");
+        for (int claims : CLAIM_COUNTS) {
+            report.append(runFor("square", claims, square(claims)));
+            report.append(runFor("line", claims, line(claims)));
+        }
+        logger.info(report.toString());
+    }
+    
+    /**
+     * Indexes one clan's claims and times both checks on them.
+     *
+     * @param shape The shape name, for the report
+     * @param claims The number of claims
+     * @param territories The claims
+     * @return The report line
+     */
+    private String runFor(String shape, int claims, List<Territory> territories) {
+        TerritoryIndex index = new TerritoryIndex();
+        for (Territory territory : territories) {
+            index.put(territory);
+        }
+        
+        // Square: random chunks; line: the middle chunk
+        Random random = new Random(claims);
+        int[] targets = new int[64];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = shape.equals("line") ? claims / 2 : random.nextInt(claims);
+        }
+        
+        // The old check takes seconds on large clans, so only a few chunks are compared
+        for (int i = 0; i < 4; i++) {
+            Territory territory = territories.get(targets[i]);
+            boolean expected = legacyWouldDisconnect(territories, territory.getChunkX(), territory.getChunkZ());
+            boolean actual = TerritoryConnectivity.wouldDisconnect(index, WORLD_NAME,
+                    territory.getChunkX(), territory.getChunkZ(), CLAN_NAME);
+            if (expected != actual) {
+                return String.format("%n  %s, %d chunks: checks disagree at %d,%d", shape, claims,
+                        territory.getChunkX(), territory.getChunkZ());
+            }
+        }
+        
+        double legacyNanos = measure(targets, target -> {
+            Territory territory = territories.get(target);
+            return legacyWouldDisconnect(territories, territory.getChunkX(), territory.getChunkZ());
+        });
+        double indexNanos = measure(targets, target -> {
+            Territory territory = territories.get(target);
+            return TerritoryConnectivity.wouldDisconnect(index, WORLD_NAME,
+                    territory.getChunkX(), territory.getChunkZ(), CLAN_NAME);
+        });
+        
+        return String.format("%n  %s, %d chunks: all-pairs search %s, connectivity check %s",
+                shape, claims, formatNanos(legacyNanos), formatNanos(indexNanos));
+    }
+    
+    /**
+     * Runs a check repeatedly until enough time has passed.
+     *
+     * @param targets The claims to check, by position in the claim list
+     * @param check The check
+     * @return The average nanoseconds per check
+     */
+    private double measure(int[] targets, Check check) {
+        int disconnects = 0;
+        int checks = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            if (check.run(targets[checks % targets.length])) {
+                disconnects++;
+            }
+            checks++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < TARGET_NANOS && checks < MAX_CHECKS);
+        
+        // Keeps the results alive so the checks are not optimized away
+        if (disconnects < 0) {
+            logger.info("unreachable");
+        }
+        return elapsed / (double) checks;
+    }
+    
+    /**
+     * Formats a duration in the most readable unit.
+     *
+     * @param nanos The duration in nanoseconds
+     * @return The formatted duration
+     */
+    private String formatNanos(double nanos) {
+        if (nanos >= 1000000.0) {
+            return String.format("%.1fms", nanos / 1000000.0);
+        }
+        if (nanos >= 1000.0) {
+            return String.format("%.1fus", nanos / 1000.0);
+        }
+        return String.format("%.0fns", nanos);
+    }
+    
+    /**
+     * Creates claims filling a square row by row.
+     *
+     * @param claims The number of claims
+     * @return The claims
+     */
+    private static List<Territory> square(int claims) {
+        int side = (int) Math.ceil(Math.sqrt(claims));
+        List<Territory> territories = new ArrayList<>(claims);
+        for (int i = 0; i < claims; i++) {
+            territories.add(claim(i % side, i / side));
+        }
+        return territories;
+    }
+    
+    /**
+     * Creates claims in a straight line.
+     *
+     * @param claims The number of claims
+     * @return The claims
+     */
+    private static List<Territory> line(int claims) {
+        List<Territory> territories = new ArrayList<>(claims);
+        for (int i = 0; i < claims; i++) {
+            territories.add(claim(i, 0));
+        }
+        return territories;
+    }
+    
+    /**
+     * Creates one claim of the benchmark clan.
+     *
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @return The claim
+     */
+    private static Territory claim(int chunkX, int chunkZ) {
+        return new Territory(chunkX, chunkZ, WORLD_NAME, CLAN_NAME, 100, null, 0L);
+    }
+    
+    /**
+     * The disconnect check TerritoryManager used before
+     * {@link TerritoryConnectivity}: builds the adjacency of every pair of
+     * claims, then walks it with list-based breadth-first search.
+     *
+     * @param clanTerrs The clan's claims
+     * @param chunkX The X coordinate of the chunk being unclaimed
+     * @param chunkZ The Z coordinate of the chunk being unclaimed
+     * @return True if unclaiming would disconnect territories
+     */
+    private static boolean legacyWouldDisconnect(List<Territory> clanTerrs, int chunkX, int chunkZ) {
+        if (clanTerrs.size() <= 1) {
+            return false;
+        }
+        
+        Map<String, List<String>> connections = new HashMap<>();
+        for (Territory t : clanTerrs) {
+            connections.put(t.getWorldName() + "_" + t.getChunkX() + "_" + t.getChunkZ(), new ArrayList<>());
+        }
+        
+        for (Territory t1 : clanTerrs) {
+            String key1 = t1.getWorldName() + "_" + t1.getChunkX() + "_" + t1.getChunkZ();
+            if (t1.getChunkX() == chunkX && t1.getChunkZ() == chunkZ && t1.getWorldName().equals(WORLD_NAME)) {
+                continue;
+            }
+            
+            for (Territory t2 : clanTerrs) {
+                if (t2.getChunkX() == chunkX && t2.getChunkZ() == chunkZ && t2.getWorldName().equals(WORLD_NAME)) {
+                    continue;
+                }
+                
+                String key2 = t2.getWorldName() + "_" + t2.getChunkX() + "_" + t2.getChunkZ();
+                if (key1.equals(key2)) {
+                    continue;
+                }
+                
+                int dx = Math.abs(t1.getChunkX() - t2.getChunkX());
+                int dz = Math.abs(t1.getChunkZ() - t2.getChunkZ());
+                if (t1.getWorldName().equals(t2.getWorldName()) && dx <= 1 && dz <= 1 && (dx + dz <= 2)) {
+                    connections.get(key1).add(key2);
+                }
+            }
+        }
+        
+        List<String> visited = new ArrayList<>();
+        List<String> queue = new ArrayList<>();
+        for (Territory t : clanTerrs) {
+            if (t.getChunkX() != chunkX || t.getChunkZ() != chunkZ || !t.getWorldName().equals(WORLD_NAME)) {
+                String startKey = t.getWorldName() + "_" + t.getChunkX() + "_" + t.getChunkZ();
+                queue.add(startKey);
+                visited.add(startKey);
+                break;
+            }
+        }
+        
+        while (!queue.isEmpty()) {
+            String current = queue.remove(0);
+            for (String neighbor : connections.get(current)) {
+                if (!visited.contains(neighbor)) {
+                    visited.add(neighbor);
+                    queue.add(neighbor);
+                }
+            }
+        }
+        
+        return visited.size() < clanTerrs.size() - 1;
+    }
+    
+    /**
+     * A timed disconnect check.
+     */
+    private interface Check {
+        
+        /**
+         * Runs the check for one claim.
+         *
+         * @param target The claim's position in the claim list
+         * @return The check's result
+         */
+        boolean run(int target);
+    }
+}
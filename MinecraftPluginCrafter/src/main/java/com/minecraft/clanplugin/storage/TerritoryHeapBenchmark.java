@@ -0,0 +1,163 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.models.Flag;
+import com.minecraft.clanplugin.models.Territory;
+import org.bukkit.Location;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Compares the heap taken by claimed chunks as territories are kept now with
+ * the layout they used to have, where every territory held its own copies of
+ * the world and clan names and an empty flag list, and was kept under a
+ * "world_x_z" string key and in a per-clan list. Names are copied per claim
+ * as they are when read from a file. Claims are spread over 1000 clans and
+ * one in ten has a flag. Enabled with
+ * storage.territory_index.heap_benchmark_on_start; needs about 300MB of heap
+ * for the largest claim count.
+ */
+public class TerritoryHeapBenchmark {
+    
+    private static final int[] CLAIM_COUNTS = {100000, 1000000};
+    private static final int CLANS = 1000;
+    private static final String WORLD_NAME = "world";
+    
+    private final Logger logger;
+    
+    /**
+     * Creates a new benchmark.
+     *
+     * @param logger The logger the results are written to
+     */
+    public TerritoryHeapBenchmark(Logger logger) {
+        this.logger = logger;
+    }
+    
+    /**
+     * Runs the benchmark for every claim count and logs the results.
+     */
+    public void run() {
+        StringBuilder report = new StringBuilder("Territory heap benchmark (")
+                .append(CLANS).append(" clans, 10% of claims flagged):");
+        
+        for (int claims : CLAIM_COUNTS) {
+            try {
+                report.append(runFor(claims));
+            } catch (OutOfMemoryError e) {
+                report.append(String.format("%n  %d claims: not enough heap", claims));
+            }
+        }
+        
+        logger.info(report.toString());
+    }
+    
+    /**
+     * Builds the same claims in both layouts, one after the other, and
+     * measures the heap each takes.
+     *
+     * @param claims The number of claimed chunks
+     * @return The report line
+     */
+    private String runFor(int claims) {
+        int side = (int) Math.ceil(Math.sqrt(claims * 2.0));
+        Flag flag = new Flag(new Location(null, 0, 64, 0), new UUID(0, 0), 0L, 1, 1);
+        
+        long heapBefore = usedHeap();
+        Map<String, LegacyTerritory> legacy = new ConcurrentHashMap<>();
+        Map<String, List<LegacyTerritory>> legacyByClan = new ConcurrentHashMap<>();
+        Random random = new Random(claims);
+        for (int i = 0; legacy.size() < claims; i++) {
+            int x = random.nextInt(side) - side / 2;
+            int z = random.nextInt(side) - side / 2;
+            String key = WORLD_NAME + "_" + x + "_" + z;
+            if (legacy.containsKey(key)) {
+                continue;
+            }
+            LegacyTerritory territory = new LegacyTerritory(x, z, new String(WORLD_NAME), "Clan" + (i % CLANS));
+            if (i % 10 == 0) {
+                territory.flags.add(flag);
+            }
+            legacy.put(key, territory);
+            legacyByClan.computeIfAbsent(territory.clanName, clan -> new ArrayList<>()).add(territory);
+        }
+        long legacyHeap = usedHeap() - heapBefore;
+        
+        // Used after measuring so the collector cannot free them early
+        int legacyClans = legacyByClan.size();
+        legacy = null;
+        legacyByClan = null;
+        
+        heapBefore = usedHeap();
+        TerritoryIndex index = new TerritoryIndex();
+        Map<String, List<Territory>> byClan = new HashMap<>();
+        random = new Random(claims);
+        for (int i = 0; index.size() < claims; i++) {
+            int x = random.nextInt(side) - side / 2;
+            int z = random.nextInt(side) - side / 2;
+            if (index.get(WORLD_NAME, x, z) != null) {
+                continue;
+            }
+            List<Flag> flags = null;
+            if (i % 10 == 0) {
+                flags = new ArrayList<>(1);
+                flags.add(flag);
+            }
+            Territory territory = new Territory(x, z, new String(WORLD_NAME), "Clan" + (i % CLANS), 100, flags, 0L);
+            index.put(territory);
+            byClan.computeIfAbsent(territory.getClanName(), clan -> new ArrayList<>()).add(territory);
+        }
+        long compactHeap = usedHeap() - heapBefore;
+        
+        if (byClan.size() != legacyClans || index.size() != claims) {
+            return String.format("%n  %d claims: layouts disagree", claims);
+        }
+        
+        return String.format("%n  %d claims: string keys and copied names ~%dMB (%dB/claim); compact ~%dMB (%dB/claim)",
+                claims, legacyHeap / (1024 * 1024), legacyHeap / claims,
+                compactHeap / (1024 * 1024), compactHeap / claims);
+    }
+    
+    /**
+     * Gets the used heap after requesting a garbage collection. Only a rough
+     * estimate, as the collection is not guaranteed to run.
+     *
+     * @return The used heap in bytes
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+    
+    /**
+     * The fields a territory used to have.
+     */
+    private static final class LegacyTerritory {
+        
+        final int chunkX;
+        final int chunkZ;
+        final String worldName;
+        final String clanName;
+        int influenceLevel;
+        final List<Flag> flags;
+        long claimTime;
+        long modCount;
+        int flagTierSum;
+        
+        LegacyTerritory(int chunkX, int chunkZ, String worldName, String clanName) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.worldName = worldName;
+            this.clanName = clanName;
+            this.influenceLevel = 100;
+            this.flags = new ArrayList<>();
+        }
+    }
+}
@@ -0,0 +1,651 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.models.Territory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Territory lookup by world and chunk coordinates. Each world has its own
+ * open-addressing table keyed on the chunk X/Z packed into one long, so a
+ * lookup hashes a primitive and allocates nothing. Worlds are keyed by name,
+ * the same key territories are stored under, so territories of worlds that
+ * are not loaded are kept as well. Not thread-safe; used on the main thread.
+ * <p>
+ * For area, radius and nearest-claim queries each world also keeps an
+ * occupancy bitmap per 32x32-chunk region, so a query only visits regions
+ * that hold claims and, inside them, only the claimed chunks.
+ * <p>
+ * Next to each territory the table keeps a word of bookkeeping that is not
+ * stored with the claim: the influence spread into the chunk by nearby flags,
+ * the influence decay and raids took, and a stamp that changes whenever the
+ * flag list changes. Keeping it here leaves {@link Territory} with only what
+ * is saved. It is dropped when the chunk is unclaimed.
+ */
+public class TerritoryIndex {
+    
+    private static final int REGION_SHIFT = 5;
+    private static final int REGION_SIZE = 1 << REGION_SHIFT;
+    
+    // Layout of the bookkeeping word: stamp in bits 0-31, field influence in 32-55, loss in 56-62
+    private static final long STAMP_MASK = 0xFFFFFFFFL;
+    private static final int FIELD_SHIFT = 32;
+    private static final int FIELD_BITS = 24;
+    private static final int LOSS_SHIFT = 56;
+    
+    private final Map<String, ChunkTable> worlds;
+    private String lastWorldName;
+    private ChunkTable lastTable;
+    private int size;
+    private int nextStamp;
+    
+    /**
+     * Creates an empty index.
+     */
+    public TerritoryIndex() {
+        this.worlds = new HashMap<>();
+    }
+    
+    /**
+     * Packs chunk coordinates into one long.
+     *
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @return The packed key
+     */
+    public static long pack(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * Gets the territory at a chunk.
+     *
+     * @param worldName The world name
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @return The territory, or null if the chunk is not claimed
+     */
+    public Territory get(String worldName, int chunkX, int chunkZ) {
+        ChunkTable table = table(worldName);
+        return table != null ? table.get(pack(chunkX, chunkZ)) : null;
+    }
+    
+    /**
+     * Adds a territory, replacing any territory at the same chunk.
+     *
+     * @param territory The territory
+     * @return The replaced territory, or null if the chunk was not claimed
+     */
+    public Territory put(Territory territory) {
+        return put(territory.getWorldName(), territory.getChunkX(), territory.getChunkZ(), territory);
+    }
+    
+    /**
+     * Adds a value at explicit coordinates. Used by the benchmark to index
+     * many chunks without creating a territory for each one.
+     *
+     * @param worldName The world name
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @param territory The territory
+     * @return The replaced territory, or null if the chunk was not claimed
+     */
+    Territory put(String worldName, int chunkX, int chunkZ, Territory territory) {
+        ChunkTable table = table(worldName);
+        if (table == null) {
+            table = new ChunkTable();
+            worlds.put(worldName, table);
+            lastWorldName = worldName;
+            lastTable = table;
+        }
+        
+        Territory previous = table.put(pack(chunkX, chunkZ), territory, ++nextStamp & STAMP_MASK);
+        if (previous == null) {
+            table.setOccupied(chunkX, chunkZ, true);
+            size++;
+        }
+        return previous;
+    }
+    
+    /**
+     * Removes the territory at a chunk.
+     *
+     * @param worldName The world name
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @return The removed territory, or null if the chunk was not claimed
+     */
+    public Territory remove(String worldName, int chunkX, int chunkZ) {
+        ChunkTable table = table(worldName);
+        if (table == null) {
+            return null;
+        }
+        
+        Territory removed = table.remove(pack(chunkX, chunkZ));
+        if (removed != null) {
+            table.setOccupied(chunkX, chunkZ, false);
+            size--;
+        }
+        return removed;
+    }
+    
+    /**
+     * Gets the influence spread into a territory by the clan's flags in
+     * nearby chunks.
+     *
+     * @param territory The territory
+     * @return The field influence, or 0 if the territory is not indexed
+     */
+    int getFieldInfluence(Territory territory) {
+        long state = getState(territory);
+        return (int) (state << (64 - FIELD_SHIFT - FIELD_BITS) >> (64 - FIELD_BITS));
+    }
+    
+    /**
+     * Changes the influence spread into a territory by nearby flags. The
+     * influence level is not recalculated.
+     *
+     * @param territory The territory
+     * @param delta The change
+     */
+    void addFieldInfluence(Territory territory, int delta) {
+        int field = getFieldInfluence(territory) + delta;
+        int limit = (1 << (FIELD_BITS - 1)) - 1;
+        field = Math.max(-limit, Math.min(limit, field));
+        long fieldMask = ((1L << FIELD_BITS) - 1) << FIELD_SHIFT;
+        setState(territory, (getState(territory) & ~fieldMask) | (((long) field << FIELD_SHIFT) & fieldMask));
+    }
+    
+    /**
+     * Gets the influence decay and raids took from a territory. Every
+     * recalculation of the influence level subtracts it.
+     *
+     * @param territory The territory
+     * @return The influence lost, from 0-100
+     */
+    int getInfluenceLoss(Territory territory) {
+        return (int) (getState(territory) >>> LOSS_SHIFT);
+    }
+    
+    /**
+     * Sets the influence decay and raids took from a territory. The influence
+     * level is not recalculated.
+     *
+     * @param territory The territory
+     * @param loss The influence lost (0-100)
+     */
+    void setInfluenceLoss(Territory territory, int loss) {
+        long clamped = Math.max(0, Math.min(100, loss));
+        setState(territory, (getState(territory) & ~(0xFFL << LOSS_SHIFT)) | (clamped << LOSS_SHIFT));
+    }
+    
+    /**
+     * Gets a stamp that changes whenever the territory is indexed again or
+     * its flag list changes. Stamps are never handed out twice, so a stamp
+     * seen before means nothing changed.
+     *
+     * @param territory The territory
+     * @return The stamp, or 0 if the territory is not indexed
+     */
+    int getStamp(Territory territory) {
+        return (int) getState(territory);
+    }
+    
+    /**
+     * Gives a territory a new stamp, after its flag list changed.
+     *
+     * @param territory The territory
+     */
+    void touch(Territory territory) {
+        setState(territory, (getState(territory) & ~STAMP_MASK) | (++nextStamp & STAMP_MASK));
+    }
+    
+    /**
+     * Reads the bookkeeping word of an indexed territory.
+     *
+     * @param territory The territory
+     * @return The word, or 0 if this territory is not the one indexed at its chunk
+     */
+    private long getState(Territory territory) {
+        ChunkTable table = table(territory.getWorldName());
+        if (table == null) {
+            return 0;
+        }
+        int slot = table.find(pack(territory.getChunkX(), territory.getChunkZ()));
+        return slot >= 0 && table.values[slot] == territory ? table.states[slot] : 0;
+    }
+    
+    /**
+     * Writes the bookkeeping word of an indexed territory. Nothing is written
+     * if the territory is not the one indexed at its chunk.
+     *
+     * @param territory The territory
+     * @param state The word
+     */
+    private void setState(Territory territory, long state) {
+        ChunkTable table = table(territory.getWorldName());
+        if (table == null) {
+            return;
+        }
+        int slot = table.find(pack(territory.getChunkX(), territory.getChunkZ()));
+        if (slot >= 0 && table.values[slot] == territory) {
+            table.states[slot] = state;
+        }
+    }
+    
+    /**
+     * Gets the number of territories.
+     *
+     * @return The territory count
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Removes every territory.
+     */
+    public void clear() {
+        worlds.clear();
+        lastWorldName = null;
+        lastTable = null;
+        size = 0;
+    }
+    
+    /**
+     * Copies every territory into a new list.
+     *
+     * @return The territories
+     */
+    public List<Territory> values() {
+        List<Territory> values = new ArrayList<>(size);
+        for (ChunkTable table : worlds.values()) {
+            table.addValuesTo(values);
+        }
+        return values;
+    }
+    
+    /**
+     * Passes every territory in a rectangle of chunks to an action, in no
+     * particular order. Only chunks that are claimed are visited.
+     *
+     * @param worldName The world name
+     * @param minX The lowest chunk X coordinate, inclusive
+     * @param minZ The lowest chunk Z coordinate, inclusive
+     * @param maxX The highest chunk X coordinate, inclusive
+     * @param maxZ The highest chunk Z coordinate, inclusive
+     * @param action The action to run for each territory
+     */
+    public void forEachInArea(String worldName, int minX, int minZ, int maxX, int maxZ, Consumer<Territory> action) {
+        ChunkTable table = table(worldName);
+        if (table == null || minX > maxX || minZ > maxZ) {
+            return;
+        }
+        
+        int minRegionX = minX >> REGION_SHIFT;
+        int minRegionZ = minZ >> REGION_SHIFT;
+        int maxRegionX = maxX >> REGION_SHIFT;
+        int maxRegionZ = maxZ >> REGION_SHIFT;
+        long regionsInArea = (long) (maxRegionX - minRegionX + 1) * (maxRegionZ - minRegionZ + 1);
+        
+        if (regionsInArea > table.regions.size()) {
+            // Large areas: walk the occupied regions instead of the area
+            for (Map.Entry<Long, long[]> region : table.regions.entrySet()) {
+                long key = region.getKey();
+                int regionX = (int) (key >> 32);
+                int regionZ = (int) key;
+                if (regionX >= minRegionX && regionX <= maxRegionX && regionZ >= minRegionZ && regionZ <= maxRegionZ) {
+                    visitRegion(table, regionX, regionZ, region.getValue(), minX, minZ, maxX, maxZ, action);
+                }
+            }
+            return;
+        }
+        
+        for (int regionZ = minRegionZ; regionZ <= maxRegionZ; regionZ++) {
+            for (int regionX = minRegionX; regionX <= maxRegionX; regionX++) {
+                long[] occupancy = table.regions.get(pack(regionX, regionZ));
+                if (occupancy != null) {
+                    visitRegion(table, regionX, regionZ, occupancy, minX, minZ, maxX, maxZ, action);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Passes every territory within a distance of a chunk to an action, in no
+     * particular order. Distance is measured between chunk coordinates.
+     *
+     * @param worldName The world name
+     * @param chunkX The center chunk X coordinate
+     * @param chunkZ The center chunk Z coordinate
+     * @param radius The radius in chunks
+     * @param action The action to run for each territory
+     */
+    public void forEachInRadius(String worldName, int chunkX, int chunkZ, int radius, Consumer<Territory> action) {
+        long radiusSquared = (long) radius * radius;
+        forEachInArea(worldName, chunkX - radius, chunkZ - radius, chunkX + radius, chunkZ + radius, territory -> {
+            long dx = territory.getChunkX() - chunkX;
+            long dz = territory.getChunkZ() - chunkZ;
+            if (dx * dx + dz * dz <= radiusSquared) {
+                action.accept(territory);
+            }
+        });
+    }
+    
+    /**
+     * Collects the territories in a rectangle of chunks.
+     *
+     * @param worldName The world name
+     * @param minX The lowest chunk X coordinate, inclusive
+     * @param minZ The lowest chunk Z coordinate, inclusive
+     * @param maxX The highest chunk X coordinate, inclusive
+     * @param maxZ The highest chunk Z coordinate, inclusive
+     * @return The territories, in no particular order
+     */
+    public List<Territory> getInArea(String worldName, int minX, int minZ, int maxX, int maxZ) {
+        List<Territory> result = new ArrayList<>();
+        forEachInArea(worldName, minX, minZ, maxX, maxZ, result::add);
+        return result;
+    }
+    
+    /**
+     * Collects the territories within a distance of a chunk.
+     *
+     * @param worldName The world name
+     * @param chunkX The center chunk X coordinate
+     * @param chunkZ The center chunk Z coordinate
+     * @param radius The radius in chunks
+     * @return The territories, in no particular order
+     */
+    public List<Territory> getInRadius(String worldName, int chunkX, int chunkZ, int radius) {
+        List<Territory> result = new ArrayList<>();
+        forEachInRadius(worldName, chunkX, chunkZ, radius, result::add);
+        return result;
+    }
+    
+    /**
+     * Finds the territory closest to a chunk. Regions are searched in rings
+     * around the chunk, and the search stops once no unsearched region can
+     * hold anything closer than the best match.
+     *
+     * @param worldName The world name
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @param maxRadius The largest distance to search, in chunks
+     * @param filter Which territories count, or null for all
+     * @return The closest matching territory, or null if there is none within the radius
+     */
+    public Territory findNearest(String worldName, int chunkX, int chunkZ, int maxRadius, Predicate<Territory> filter) {
+        ChunkTable table = table(worldName);
+        if (table == null) {
+            return null;
+        }
+        
+        long maxSquared = (long) maxRadius * maxRadius;
+        Territory[] best = new Territory[1];
+        long[] bestSquared = {Long.MAX_VALUE};
+        Consumer<Territory> consider = territory -> {
+            long dx = territory.getChunkX() - chunkX;
+            long dz = territory.getChunkZ() - chunkZ;
+            long distance = dx * dx + dz * dz;
+            if (distance <= maxSquared && distance < bestSquared[0] && (filter == null || filter.test(territory))) {
+                best[0] = territory;
+                bestSquared[0] = distance;
+            }
+        };
+        
+        int centerRegionX = chunkX >> REGION_SHIFT;
+        int centerRegionZ = chunkZ >> REGION_SHIFT;
+        int maxRing = (maxRadius >> REGION_SHIFT) + 1;
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // Every chunk in this ring is at least this far away
+            long nearest = Math.max(0, (long) (ring - 1) * REGION_SIZE + 1);
+            if (nearest * nearest > Math.min(bestSquared[0], maxSquared)) {
+                break;
+            }
+            
+            for (int regionZ = centerRegionZ - ring; regionZ <= centerRegionZ + ring; regionZ++) {
+                boolean edgeRow = regionZ == centerRegionZ - ring || regionZ == centerRegionZ + ring;
+                int step = edgeRow ? 1 : Math.max(1, 2 * ring);
+                for (int regionX = centerRegionX - ring; regionX <= centerRegionX + ring; regionX += step) {
+                    long[] occupancy = table.regions.get(pack(regionX, regionZ));
+                    if (occupancy != null) {
+                        visitRegion(table, regionX, regionZ, occupancy, Integer.MIN_VALUE, Integer.MIN_VALUE,
+                                Integer.MAX_VALUE, Integer.MAX_VALUE, consider);
+                    }
+                }
+            }
+        }
+        return best[0];
+    }
+    
+    /**
+     * Passes the claimed chunks of one region that lie in a rectangle to an action.
+     *
+     * @param table The world's table
+     * @param regionX The region X coordinate
+     * @param regionZ The region Z coordinate
+     * @param occupancy The region's occupancy bitmap
+     * @param minX The lowest chunk X coordinate, inclusive
+     * @param minZ The lowest chunk Z coordinate, inclusive
+     * @param maxX The highest chunk X coordinate, inclusive
+     * @param maxZ The highest chunk Z coordinate, inclusive
+     * @param action The action to run for each territory
+     */
+    private static void visitRegion(ChunkTable table, int regionX, int regionZ, long[] occupancy,
+                                    int minX, int minZ, int maxX, int maxZ, Consumer<Territory> action) {
+        int baseX = regionX << REGION_SHIFT;
+        int baseZ = regionZ << REGION_SHIFT;
+        int fromX = Math.max(minX, baseX) - baseX;
+        int toX = Math.min(maxX, baseX + REGION_SIZE - 1) - baseX;
+        int fromZ = Math.max(minZ, baseZ) - baseZ;
+        int toZ = Math.min(maxZ, baseZ + REGION_SIZE - 1) - baseZ;
+        
+        // Bits fromX..toX of a row
+        long columns = (-1L >>> (63 - toX)) & (-1L << fromX);
+        for (int localZ = fromZ; localZ <= toZ; localZ++) {
+            long row = (occupancy[localZ >> 1] >>> ((localZ & 1) << 5)) & 0xFFFFFFFFL & columns;
+            while (row != 0) {
+                int localX = Long.numberOfTrailingZeros(row);
+                row &= row - 1;
+                action.accept(table.get(pack(baseX + localX, baseZ + localZ)));
+            }
+        }
+    }
+    
+    /**
+     * Finds the table of a world. Lookups usually hit the same world many
+     * times in a row, and world names are the same String instance each
+     * time, so the last table is remembered.
+     *
+     * @param worldName The world name
+     * @return The world's table, or null if it has no territories
+     */
+    private ChunkTable table(String worldName) {
+        if (worldName == lastWorldName) {
+            return lastTable;
+        }
+        
+        ChunkTable table = worlds.get(worldName);
+        if (table != null) {
+            lastWorldName = worldName;
+            lastTable = table;
+        }
+        return table;
+    }
+    
+    /**
+     * Open-addressing hash table from packed chunk keys to territories and
+     * their bookkeeping words, with linear probing and backward-shift
+     * deletion so no tombstones build up. Kept at most half full, as most
+     * lookups are for unclaimed chunks and a miss has to probe until it
+     * reaches an empty slot.
+     */
+    private static final class ChunkTable {
+        
+        private static final int INITIAL_CAPACITY = 64;
+        private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+        
+        /** Occupancy of each region with claims; bit (z * 32 + x) is set for a claimed chunk. */
+        final Map<Long, long[]> regions = new HashMap<>();
+        
+        private long[] keys;
+        private Territory[] values;
+        private long[] states;
+        private int mask;
+        private int shift;
+        private int size;
+        
+        ChunkTable() {
+            allocate(INITIAL_CAPACITY);
+        }
+        
+        Territory get(long key) {
+            int slot = find(key);
+            return slot >= 0 ? values[slot] : null;
+        }
+        
+        int find(long key) {
+            for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+                if (values[slot] == null) {
+                    return -1;
+                }
+                if (keys[slot] == key) {
+                    return slot;
+                }
+            }
+        }
+        
+        Territory put(long key, Territory territory, long stamp) {
+            if ((size + 1) * 2 > values.length) {
+                rehash(values.length * 2);
+            }
+            
+            for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+                Territory value = values[slot];
+                if (value == null) {
+                    keys[slot] = key;
+                    values[slot] = territory;
+                    states[slot] = stamp;
+                    size++;
+                    return null;
+                }
+                if (keys[slot] == key) {
+                    if (value != territory) {
+                        values[slot] = territory;
+                        states[slot] = stamp;
+                    }
+                    return value;
+                }
+            }
+        }
+        
+        Territory remove(long key) {
+            int slot = slot(key);
+            while (true) {
+                Territory value = values[slot];
+                if (value == null) {
+                    return null;
+                }
+                if (keys[slot] == key) {
+                    shiftBack(slot);
+                    size--;
+                    return value;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+        
+        void setOccupied(int chunkX, int chunkZ, boolean occupied) {
+            long regionKey = pack(chunkX >> REGION_SHIFT, chunkZ >> REGION_SHIFT);
+            int bit = ((chunkZ & (REGION_SIZE - 1)) << REGION_SHIFT) | (chunkX & (REGION_SIZE - 1));
+            long[] occupancy = regions.get(regionKey);
+            if (occupied) {
+                if (occupancy == null) {
+                    occupancy = new long[REGION_SIZE * REGION_SIZE / 64];
+                    regions.put(regionKey, occupancy);
+                }
+                occupancy[bit >> 6] |= 1L << bit;
+            } else if (occupancy != null) {
+                occupancy[bit >> 6] &= ~(1L << bit);
+                for (long word : occupancy) {
+                    if (word != 0) {
+                        return;
+                    }
+                }
+                regions.remove(regionKey);
+            }
+        }
+        
+        void addValuesTo(List<Territory> list) {
+            for (Territory value : values) {
+                if (value != null) {
+                    list.add(value);
+                }
+            }
+        }
+        
+        /**
+         * Closes the gap left at a slot by moving later entries of the same
+         * probe run back, so every entry stays reachable from its home slot.
+         *
+         * @param gap The slot that was emptied
+         */
+        private void shiftBack(int gap) {
+            int slot = gap;
+            while (true) {
+                slot = (slot + 1) & mask;
+                Territory value = values[slot];
+                if (value == null) {
+                    break;
+                }
+                
+                // Move the entry unless its home slot lies cyclically in (gap, slot]
+                int home = slot(keys[slot]);
+                boolean homeBetween = gap <= slot ? (home > gap && home <= slot) : (home > gap || home <= slot);
+                if (!homeBetween) {
+                    keys[gap] = keys[slot];
+                    values[gap] = value;
+                    states[gap] = states[slot];
+                    gap = slot;
+                }
+            }
+            values[gap] = null;
+        }
+        
+        private int slot(long key) {
+            return (int) ((key * GOLDEN_RATIO) >>> shift);
+        }
+        
+        private void rehash(int capacity) {
+            long[] oldKeys = keys;
+            Territory[] oldValues = values;
+            long[] oldStates = states;
+            allocate(capacity);
+            
+            for (int i = 0; i < oldValues.length; i++) {
+                if (oldValues[i] != null) {
+                    int slot = slot(oldKeys[i]);
+                    while (values[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                    states[slot] = oldStates[i];
+                }
+            }
+        }
+        
+        private void allocate(int capacity) {
+            keys = new long[capacity];
+            values = new Territory[capacity];
+            states = new long[capacity];
+            mask = capacity - 1;
+            shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        }
+    }
+}
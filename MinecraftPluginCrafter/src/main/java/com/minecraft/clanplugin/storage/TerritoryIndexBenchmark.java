@@ -0,0 +1,201 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.models.Territory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Compares chunk lookups in {@link TerritoryIndex} with the string-keyed map
+ * territories used to be stored in, where every lookup built a
+ * "world_x_z" key. Claims are placed at random in a square sized so that
+ * about half of the looked-up chunks are claimed, as players move between
+ * claimed land and wilderness. Enabled with
+ * storage.territory_index.benchmark_on_start; needs about 200MB of heap
+ * for the largest claim count.
+ */
+public class TerritoryIndexBenchmark {
+    
+    private static final int[] CLAIM_COUNTS = {100000, 1000000};
+    private static final int LOOKUPS = 1000000;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final String WORLD_NAME = "world";
+    
+    private final Logger logger;
+    
+    /**
+     * Creates a new benchmark.
+     *
+     * @param logger The logger the results are written to
+     */
+    public TerritoryIndexBenchmark(Logger logger) {
+        this.logger = logger;
+    }
+    
+    /**
+     * Runs the benchmark for every claim count and logs the results.
+     */
+    public void run() {
+        StringBuilder report = new StringBuilder("Territory lookup benchmark (")
+                .append(LOOKUPS).append(" lookups, ~50% claimed, average of ")
+                .append(MEASURED_ROUNDS).append(" rounds):");
+        
+        for (int claims : CLAIM_COUNTS) {
+            try {
+                report.append(runFor(claims));
+            } catch (OutOfMemoryError e) {
+                report.append(String.format("%n  %d claims: not enough heap", claims));
+            }
+        }
+        
+        logger.info(report.toString());
+    }
+    
+    /**
+     * Fills both maps with the same claims and times lookups in each.
+     *
+     * @param claims The number of claimed chunks
+     * @return The report lines
+     */
+    private String runFor(int claims) {
+        Random random = new Random(claims);
+        int side = (int) Math.ceil(Math.sqrt(claims * 2.0));
+        Territory territory = new Territory(0, 0, WORLD_NAME, "Benchmark", 100, null, 0L);
+        
+        long heapBefore = usedHeap();
+        Map<String, Territory> legacy = new ConcurrentHashMap<>();
+        while (legacy.size() < claims) {
+            int x = random.nextInt(side) - side / 2;
+            int z = random.nextInt(side) - side / 2;
+            legacy.put(WORLD_NAME + "_" + x + "_" + z, territory);
+        }
+        long legacyHeap = usedHeap() - heapBefore;
+        
+        heapBefore = usedHeap();
+        TerritoryIndex index = new TerritoryIndex();
+        for (String key : legacy.keySet()) {
+            int first = key.indexOf('_');
+            int second = key.indexOf('_', first + 1);
+            index.put(WORLD_NAME, Integer.parseInt(key.substring(first + 1, second)),
+                    Integer.parseInt(key.substring(second + 1)), territory);
+        }
+        long indexHeap = usedHeap() - heapBefore;
+        
+        int[] xs = new int[LOOKUPS];
+        int[] zs = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            xs[i] = random.nextInt(side) - side / 2;
+            zs[i] = random.nextInt(side) - side / 2;
+        }
+        
+        long[] legacyResult = measure(() -> {
+            int hits = 0;
+            for (int i = 0; i < LOOKUPS; i++) {
+                if (legacy.get(WORLD_NAME + "_" + xs[i] + "_" + zs[i]) != null) {
+                    hits++;
+                }
+            }
+            return hits;
+        });
+        long[] indexResult = measure(() -> {
+            int hits = 0;
+            for (int i = 0; i < LOOKUPS; i++) {
+                if (index.get(WORLD_NAME, xs[i], zs[i]) != null) {
+                    hits++;
+                }
+            }
+            return hits;
+        });
+        
+        if (legacyResult[2] != indexResult[2]) {
+            return String.format("%n  %d claims: maps disagree (%d vs %d hits)", claims, legacyResult[2], indexResult[2]);
+        }
+        
+        return String.format("%n  %d claims: string map %.1fns/op, %s, ~%dMB; packed index %.1fns/op, %s, ~%dMB",
+                claims,
+                legacyResult[0] / (double) LOOKUPS, formatAllocation(legacyResult[1]), legacyHeap / (1024 * 1024),
+                indexResult[0] / (double) LOOKUPS, formatAllocation(indexResult[1]), indexHeap / (1024 * 1024));
+    }
+    
+    /**
+     * Runs a lookup loop for the warmup rounds, then times the measured rounds.
+     *
+     * @param loop The lookup loop, returning its hit count
+     * @return The average nanoseconds per round, the average bytes allocated
+     *         per round (or -1 if unknown) and the hit count
+     */
+    private long[] measure(LookupLoop loop) {
+        int hits = 0;
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            hits = loop.run();
+        }
+        
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            hits = loop.run();
+        }
+        long nanos = System.nanoTime() - start;
+        long allocatedAfter = allocatedBytes();
+        
+        long allocated = allocatedBefore < 0 || allocatedAfter < 0 ? -1 : (allocatedAfter - allocatedBefore) / MEASURED_ROUNDS;
+        return new long[] {nanos / MEASURED_ROUNDS, allocated, hits};
+    }
+    
+    /**
+     * Formats the bytes allocated per round as bytes per lookup.
+     *
+     * @param allocated The bytes allocated per round, or -1 if unknown
+     * @return The formatted value
+     */
+    private String formatAllocation(long allocated) {
+        return allocated < 0 ? "allocation unknown" : String.format("%.1fB/op", allocated / (double) LOOKUPS);
+    }
+    
+    /**
+     * Gets the number of bytes the current thread has allocated, where the
+     * JVM reports it.
+     *
+     * @return The allocated bytes, or -1 if not supported
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+            if (sunThreads.isThreadAllocatedMemorySupported() && sunThreads.isThreadAllocatedMemoryEnabled()) {
+                return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Gets the used heap after requesting a garbage collection. Only a rough
+     * estimate, as the collection is not guaranteed to run.
+     *
+     * @return The used heap in bytes
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+    
+    /**
+     * A timed lookup loop.
+     */
+    private interface LookupLoop {
+        
+        /**
+         * Runs every lookup once.
+         *
+         * @return The number of lookups that found a territory
+         */
+        int run();
+    }
+}
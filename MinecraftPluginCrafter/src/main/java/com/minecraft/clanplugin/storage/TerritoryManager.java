@@ -2,23 +2,37 @@ package com.minecraft.clanplugin.storage;
 
 import com.minecraft.clanplugin.ClanPlugin;
 import com.minecraft.clanplugin.models.Clan;
+import com.minecraft.clanplugin.models.ClanRelation;
 import com.minecraft.clanplugin.models.Flag;
 import com.minecraft.clanplugin.models.Territory;
+import com.minecraft.clanplugin.models.TerritoryPermission;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
 import org.bukkit.entity.Player;
 
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
@@ -31,9 +45,23 @@ import org.json.simple.parser.ParseException;
 public class TerritoryManager {
     
     private final ClanPlugin plugin;
-    private final Map<String, Territory> territories;
-    private final Map<String, List<String>> clanTerritories;
+    private final TerritoryIndex territories;
+    private final FlagIndex flagIndex;
+    private final Map<String, List<Territory>> clanTerritories;
     private final File territoryFile;
+    private final File territorySnapshotFile;
+    private final boolean useSnapshot;
+    private final SnapshotCache<Territory, TerritorySnapshot> territorySnapshots;
+    private final PersistenceService.Registration jsonRegistration;
+    private final PersistenceService.Registration snapshotRegistration;
+    private final TerritoryRegionStore regionStore;
+    private final InfluenceField influenceField;
+    private final Set<Territory> fieldChanged;
+    private final InfluenceDecay influenceDecay;
+    private final Map<String, Long> clanRevisions;
+    private final ClanRelationCache relationCache;
+    private final TerritoryPermissionManager permissionManager;
+    private long revision;
     
     /**
      * Creates a new TerritoryManager
@@ -42,14 +70,64 @@ public class TerritoryManager {
      */
     public TerritoryManager(ClanPlugin plugin) {
         this.plugin = plugin;
-        this.territories = new ConcurrentHashMap<>();
+        this.territories = new TerritoryIndex();
+        this.flagIndex = new FlagIndex();
         this.clanTerritories = new ConcurrentHashMap<>();
         this.territoryFile = new File(plugin.getDataFolder(), "territories.json");
+        this.territorySnapshotFile = new File(plugin.getDataFolder(), "territories.dat");
+        this.useSnapshot = plugin.getConfig().getBoolean("storage.binary_snapshot.enabled", false);
+        this.territorySnapshots = new SnapshotCache<>(TerritorySnapshot::of, this::getVersion);
+        this.influenceField = new InfluenceField(territories, plugin.getConfig().getInt("territory.influence.spread_percent", 50));
+        this.fieldChanged = new LinkedHashSet<>();
+        this.clanRevisions = new HashMap<>();
+        this.relationCache = new ClanRelationCache(plugin);
+        this.permissionManager = new TerritoryPermissionManager(plugin);
+        this.influenceDecay = new InfluenceDecay(plugin, this);
+        
+        if ("regions".equalsIgnoreCase(plugin.getConfig().getString("storage.territory_backend", "json"))) {
+            // Every change is written to its region file, so the whole-file saves are not registered
+            this.regionStore = new TerritoryRegionStore(plugin, new File(plugin.getDataFolder(), "territories"));
+            this.jsonRegistration = null;
+            this.snapshotRegistration = null;
+        } else {
+            // territories.json is registered first, so on shutdown it is queued before the binary snapshot
+            PersistenceService persistence = plugin.getPersistenceService();
+            this.regionStore = null;
+            this.jsonRegistration = persistence.registerSnapshot("Territories", territoryFile, () -> {
+                List<TerritorySnapshot> snapshots = publishTerritories();
+                return out -> writeTerritoriesJson(snapshots, out);
+            });
+            this.snapshotRegistration = useSnapshot
+                ? persistence.registerSnapshot("TerritorySnapshot", territorySnapshotFile, () -> {
+                    List<TerritorySnapshot> snapshots = publishTerritories();
+                    return out -> BinarySnapshot.writeTerritories(out, snapshots);
+                })
+                : null;
+        }
         
-        // Load territories from file
+    }
+    
+    /**
+     * Reads the territories and permission rules. Runs on a loader thread
+     * while the plugin is enabled, after the constructor registered the files
+     * on the main thread.
+     */
+    public void load() {
+        permissionManager.load();
         loadTerritories();
     }
     
+    /**
+     * Starts the region writer and the influence decay. Must be called on the
+     * main thread, once the territories are loaded.
+     */
+    public void start() {
+        if (regionStore != null) {
+            regionStore.start();
+        }
+        influenceDecay.start();
+    }
+    
     /**
      * Claims a territory for a clan
      * 
@@ -59,9 +137,54 @@ public class TerritoryManager {
      * @return True if the claim was successful
      */
     public boolean claimTerritory(Chunk chunk, String clanName, Player player) {
+        // Create a flag at the player's location
+        Flag flag = new Flag(player.getLocation(), player.getUniqueId());
+        return claimTerritory(chunk.getWorld().getName(), chunk.getX(), chunk.getZ(), clanName, flag);
+    }
+    
+    /**
+     * Claims a territory for a clan by chunk coordinates, without loading the chunk
+     * 
+     * @param worldName The world name
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @param clanName The name of the clan
+     * @param flag The flag that marks the claim
+     * @return True if the claim was successful
+     */
+    public boolean claimTerritory(String worldName, int chunkX, int chunkZ, String clanName, Flag flag) {
+        if (!canClaim(worldName, chunkX, chunkZ, clanName)) {
+            return false;
+        }
+        
+        // Create the territory
+        Territory territory = new Territory(chunkX, chunkZ, worldName, clanName, 100, null, System.currentTimeMillis());
+        territory.addFlag(flag);
+        
+        // Add to maps; the new chunk's level takes in the clan's flags nearby when saved
+        registerTerritory(territory);
+        fieldChanged.add(territory);
+        
+        // Save to file
+        storeTerritory(territory);
+        
+        return true;
+    }
+    
+    /**
+     * Checks whether a clan may claim a chunk: it is unclaimed, the clan is
+     * below its claim limit, and the chunk touches the clan's existing
+     * territory unless it is the first claim
+     * 
+     * @param worldName The world name
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @param clanName The name of the clan
+     * @return True if the chunk can be claimed
+     */
+    public boolean canClaim(String worldName, int chunkX, int chunkZ, String clanName) {
         // Check if the territory is already claimed
-        String territoryKey = getTerritoryKey(chunk);
-        if (territories.containsKey(territoryKey)) {
+        if (territories.get(worldName, chunkX, chunkZ) != null) {
             return false;
         }
         
@@ -81,29 +204,10 @@ public class TerritoryManager {
         // Check if the claim is adjacent to existing territory (except first claim)
         if (clanTerritories.containsKey(clanName) && 
             !clanTerritories.get(clanName).isEmpty() && 
-            !isAdjacentToExistingTerritory(chunk, clanName)) {
+            !isAdjacentToExistingTerritory(worldName, chunkX, chunkZ, clanName)) {
             return false;
         }
         
-        // Create the territory
-        Territory territory = new Territory(chunk, clanName);
-        
-        // Create and add a flag at the player's location
-        Flag flag = new Flag(player.getLocation(), player.getUniqueId());
-        territory.addFlag(flag);
-        
-        // Add to maps
-        territories.put(territoryKey, territory);
-        
-        // Add to clan territories list
-        if (!clanTerritories.containsKey(clanName)) {
-            clanTerritories.put(clanName, new ArrayList<>());
-        }
-        clanTerritories.get(clanName).add(territoryKey);
-        
-        // Save to file
-        saveTerritories();
-        
         return true;
     }
     
@@ -115,28 +219,251 @@ public class TerritoryManager {
      * @return True if the unclaim was successful
      */
     public boolean unclaimTerritory(Chunk chunk, String clanName) {
-        String territoryKey = getTerritoryKey(chunk);
-        
-        Territory territory = territories.get(territoryKey);
+        return unclaimTerritory(chunk.getWorld().getName(), chunk.getX(), chunk.getZ(), clanName);
+    }
+    
+    /**
+     * Unclaims a territory by chunk coordinates, without loading the chunk
+     * 
+     * @param worldName The world name
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @param clanName The name of the clan (for verification)
+     * @return True if the unclaim was successful
+     */
+    public boolean unclaimTerritory(String worldName, int chunkX, int chunkZ, String clanName) {
+        Territory territory = territories.get(worldName, chunkX, chunkZ);
         if (territory == null || !territory.getClanName().equals(clanName)) {
             return false;
         }
         
         // Check if unclaiming this would disconnect other territories
-        if (wouldDisconnectTerritory(chunk, clanName)) {
+        if (wouldDisconnectTerritory(worldName, chunkX, chunkZ, clanName)) {
             return false;
         }
         
         // Remove from maps
-        territories.remove(territoryKey);
-        clanTerritories.get(clanName).remove(territoryKey);
+        unregisterTerritory(territory);
+        clanTerritories.get(clanName).remove(territory);
         
         // Save to file
-        saveTerritories();
+        forgetTerritory(territory);
         
         return true;
     }
     
+    /**
+     * Selects the chunks of a rectangle, starting at its first corner
+     * 
+     * @param x1 The X coordinate of one corner chunk
+     * @param z1 The Z coordinate of one corner chunk
+     * @param x2 The X coordinate of the opposite corner chunk
+     * @param z2 The Z coordinate of the opposite corner chunk
+     * @return The packed chunk keys
+     */
+    public static long[] selectRectangle(int x1, int z1, int x2, int z2) {
+        int stepX = x2 >= x1 ? 1 : -1;
+        int stepZ = z2 >= z1 ? 1 : -1;
+        long[] chunks = new long[(Math.abs(x2 - x1) + 1) * (Math.abs(z2 - z1) + 1)];
+        int count = 0;
+        for (int z = z1; z != z2 + stepZ; z += stepZ) {
+            for (int x = x1; x != x2 + stepX; x += stepX) {
+                chunks[count++] = TerritoryIndex.pack(x, z);
+            }
+        }
+        return chunks;
+    }
+    
+    /**
+     * Selects the chunks within a distance of a chunk, starting at the center
+     * 
+     * @param chunkX The center chunk X coordinate
+     * @param chunkZ The center chunk Z coordinate
+     * @param radius The radius in chunks
+     * @return The packed chunk keys
+     */
+    public static long[] selectRadius(int chunkX, int chunkZ, int radius) {
+        List<Long> chunks = new ArrayList<>();
+        chunks.add(TerritoryIndex.pack(chunkX, chunkZ));
+        for (int dz = -radius; dz <= radius; dz++) {
+            for (int dx = -radius; dx <= radius; dx++) {
+                if ((dx != 0 || dz != 0) && dx * dx + dz * dz <= radius * radius) {
+                    chunks.add(TerritoryIndex.pack(chunkX + dx, chunkZ + dz));
+                }
+            }
+        }
+        return toArray(chunks);
+    }
+    
+    /**
+     * Selects the chunks connected to a chunk by their sides that have the
+     * same owner, nearest first: unclaimed land when no clan is given,
+     * otherwise the clan's territory
+     * 
+     * @param worldName The world name
+     * @param chunkX The starting chunk X coordinate
+     * @param chunkZ The starting chunk Z coordinate
+     * @param clanName The owner to fill, or null for unclaimed chunks
+     * @param limit The largest number of chunks to select
+     * @return The packed chunk keys
+     */
+    public long[] selectFlood(String worldName, int chunkX, int chunkZ, String clanName, int limit) {
+        List<Long> chunks = new ArrayList<>();
+        if (limit <= 0 || !hasOwner(worldName, chunkX, chunkZ, clanName)) {
+            return new long[0];
+        }
+        
+        Set<Long> reached = new HashSet<>();
+        ArrayDeque<Long> queue = new ArrayDeque<>();
+        long start = TerritoryIndex.pack(chunkX, chunkZ);
+        reached.add(start);
+        queue.add(start);
+        while (!queue.isEmpty() && chunks.size() < limit) {
+            long chunk = queue.poll();
+            chunks.add(chunk);
+            int x = (int) (chunk >> 32);
+            int z = (int) chunk;
+            for (int side = 0; side < 4; side++) {
+                int nx = x + (side == 0 ? 1 : side == 1 ? -1 : 0);
+                int nz = z + (side == 2 ? 1 : side == 3 ? -1 : 0);
+                long neighbour = TerritoryIndex.pack(nx, nz);
+                if (!reached.contains(neighbour) && hasOwner(worldName, nx, nz, clanName)) {
+                    reached.add(neighbour);
+                    queue.add(neighbour);
+                }
+            }
+        }
+        return toArray(chunks);
+    }
+    
+    /**
+     * Claims many chunks for a clan at once. The selection is checked in one
+     * pass: already claimed chunks are skipped, and the rest are taken outwards
+     * from the clan's territory (or from the first selected chunk for a clan
+     * without territory), so every claimed chunk touches the territory, until
+     * the clan's claim limit is reached. Chunks that cannot be reached that way
+     * are skipped. The result is saved and shown on maps once.
+     * 
+     * @param worldName The world name
+     * @param chunks The packed chunk keys, see {@link TerritoryIndex#pack(int, int)}
+     * @param clanName The name of the clan
+     * @param flag The flag that marks the claim, placed in the chunk it stands in, or null
+     * @param ignoreLimit Whether the clan's claim limit is ignored, for admin imports
+     * @return The number of claimed and skipped chunks
+     */
+    public BulkResult claimTerritories(String worldName, long[] chunks, String clanName, Flag flag, boolean ignoreLimit) {
+        Clan clan = plugin.getStorageManager().getClanStorage().getClan(clanName);
+        if (clan == null) {
+            return new BulkResult(0, chunks.length, false);
+        }
+        
+        // The unclaimed chunks of the selection
+        Set<Long> candidates = new LinkedHashSet<>();
+        for (long chunk : chunks) {
+            if (territories.get(worldName, (int) (chunk >> 32), (int) chunk) == null) {
+                candidates.add(chunk);
+            }
+        }
+        
+        List<Territory> owned = clanTerritories.get(clanName);
+        boolean firstClaim = owned == null || owned.isEmpty();
+        int capacity = ignoreLimit ? Integer.MAX_VALUE : calculateMaxClaims(clan) - (firstClaim ? 0 : owned.size());
+        
+        // Start from the chunks touching the territory, then grow through the selection
+        Set<Long> reached = new HashSet<>();
+        ArrayDeque<Long> queue = new ArrayDeque<>();
+        for (long chunk : candidates) {
+            if (firstClaim || isAdjacentToExistingTerritory(worldName, (int) (chunk >> 32), (int) chunk, clanName)) {
+                reached.add(chunk);
+                queue.add(chunk);
+                if (firstClaim) {
+                    break;
+                }
+            }
+        }
+        
+        List<Long> accepted = new ArrayList<>();
+        while (!queue.isEmpty() && accepted.size() < capacity) {
+            long chunk = queue.poll();
+            accepted.add(chunk);
+            int x = (int) (chunk >> 32);
+            int z = (int) chunk;
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    long neighbour = TerritoryIndex.pack(x + dx, z + dz);
+                    if (candidates.contains(neighbour) && reached.add(neighbour)) {
+                        queue.add(neighbour);
+                    }
+                }
+            }
+        }
+        
+        // Create the territories; only the chunk the flag stands in gets the flag
+        long now = System.currentTimeMillis();
+        List<Territory> claimed = new ArrayList<>(accepted.size());
+        for (long chunk : accepted) {
+            int x = (int) (chunk >> 32);
+            int z = (int) chunk;
+            Territory territory = new Territory(x, z, worldName, clanName, 100, null, now);
+            if (flag != null && flag.getLocation().getBlockX() >> 4 == x && flag.getLocation().getBlockZ() >> 4 == z) {
+                territory.addFlag(flag);
+            } else {
+                territory.setInfluenceLevel(calculateTerritoryInfluence(territory));
+            }
+            registerTerritory(territory);
+            fieldChanged.add(territory);
+            claimed.add(territory);
+        }
+        
+        if (!claimed.isEmpty()) {
+            storeTerritories(claimed);
+        }
+        return new BulkResult(claimed.size(), chunks.length - claimed.size(), false);
+    }
+    
+    /**
+     * Unclaims many chunks of a clan at once. Chunks the clan does not own are
+     * skipped. Connectivity is checked once for the whole selection, and
+     * nothing is unclaimed if the rest of the clan's territory around it would
+     * fall apart. The result is saved and shown on maps once.
+     * 
+     * @param worldName The world name
+     * @param chunks The packed chunk keys, see {@link TerritoryIndex#pack(int, int)}
+     * @param clanName The name of the clan
+     * @return The number of unclaimed and skipped chunks, or whether the unclaim would disconnect territories
+     */
+    public BulkResult unclaimTerritories(String worldName, long[] chunks, String clanName) {
+        Set<Long> selected = new LinkedHashSet<>();
+        for (long chunk : chunks) {
+            if (isClaimedBy(worldName, (int) (chunk >> 32), (int) chunk, clanName)) {
+                selected.add(chunk);
+            }
+        }
+        
+        if (selected.isEmpty()) {
+            return new BulkResult(0, chunks.length, false);
+        }
+        long[] removed = new long[selected.size()];
+        int count = 0;
+        for (long chunk : selected) {
+            removed[count++] = chunk;
+        }
+        if (wouldDisconnectTerritories(worldName, removed, clanName)) {
+            return new BulkResult(0, chunks.length, true);
+        }
+        
+        List<Territory> unclaimed = new ArrayList<>(selected.size());
+        for (long chunk : selected) {
+            Territory territory = territories.get(worldName, (int) (chunk >> 32), (int) chunk);
+            unregisterTerritory(territory);
+            unclaimed.add(territory);
+        }
+        clanTerritories.get(clanName).removeAll(new HashSet<>(unclaimed));
+        
+        forgetTerritories(unclaimed);
+        return new BulkResult(unclaimed.size(), chunks.length - unclaimed.size(), false);
+    }
+    
     /**
      * Gets the territory at a specific chunk
      * 
@@ -144,7 +471,140 @@ public class TerritoryManager {
      * @return The territory, or null if not claimed
      */
     public Territory getTerritory(Chunk chunk) {
-        return territories.get(getTerritoryKey(chunk));
+        return territories.get(chunk.getWorld().getName(), chunk.getX(), chunk.getZ());
+    }
+    
+    /**
+     * Gets the territory at chunk coordinates, without loading the chunk
+     * 
+     * @param world The world
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @return The territory, or null if not claimed
+     */
+    public Territory getTerritory(World world, int chunkX, int chunkZ) {
+        return territories.get(world.getName(), chunkX, chunkZ);
+    }
+    
+    /**
+     * Gets the territory at chunk coordinates in a world that may not be loaded
+     * 
+     * @param worldName The world name
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @return The territory, or null if not claimed
+     */
+    public Territory getTerritory(String worldName, int chunkX, int chunkZ) {
+        return territories.get(worldName, chunkX, chunkZ);
+    }
+    
+    /**
+     * Gets the territory containing a location, without loading its chunk
+     * 
+     * @param location The location
+     * @return The territory, or null if not claimed
+     */
+    public Territory getTerritoryAt(Location location) {
+        return territories.get(location.getWorld().getName(), location.getBlockX() >> 4, location.getBlockZ() >> 4);
+    }
+    
+    /**
+     * Checks if a chunk is claimed by a specific clan, without loading the chunk
+     * 
+     * @param worldName The world name
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @param clanName The name of the clan
+     * @return True if the chunk is claimed by the clan
+     */
+    public boolean isClaimedBy(String worldName, int chunkX, int chunkZ, String clanName) {
+        Territory territory = territories.get(worldName, chunkX, chunkZ);
+        return territory != null && territory.getClanName().equals(clanName);
+    }
+    
+    /**
+     * Runs an action for every territory in a rectangle of chunks. Only
+     * claimed chunks are visited, so the cost depends on the number of claims
+     * in the area rather than its size.
+     * 
+     * @param worldName The world name
+     * @param minX The lowest chunk X coordinate, inclusive
+     * @param minZ The lowest chunk Z coordinate, inclusive
+     * @param maxX The highest chunk X coordinate, inclusive
+     * @param maxZ The highest chunk Z coordinate, inclusive
+     * @param action The action to run for each territory
+     */
+    public void forEachTerritoryInArea(String worldName, int minX, int minZ, int maxX, int maxZ, Consumer<Territory> action) {
+        territories.forEachInArea(worldName, minX, minZ, maxX, maxZ, action);
+    }
+    
+    /**
+     * Gets the territories in a rectangle of chunks
+     * 
+     * @param worldName The world name
+     * @param minX The lowest chunk X coordinate, inclusive
+     * @param minZ The lowest chunk Z coordinate, inclusive
+     * @param maxX The highest chunk X coordinate, inclusive
+     * @param maxZ The highest chunk Z coordinate, inclusive
+     * @return The territories, in no particular order
+     */
+    public List<Territory> getTerritoriesInArea(String worldName, int minX, int minZ, int maxX, int maxZ) {
+        return territories.getInArea(worldName, minX, minZ, maxX, maxZ);
+    }
+    
+    /**
+     * Gets the territories within a distance of a chunk
+     * 
+     * @param worldName The world name
+     * @param chunkX The center chunk X coordinate
+     * @param chunkZ The center chunk Z coordinate
+     * @param radius The radius in chunks
+     * @return The territories, in no particular order
+     */
+    public List<Territory> getTerritoriesInRadius(String worldName, int chunkX, int chunkZ, int radius) {
+        return territories.getInRadius(worldName, chunkX, chunkZ, radius);
+    }
+    
+    /**
+     * Gets the flags within a horizontal distance of a block. Only the claimed
+     * chunks the radius overlaps are visited, as flags are kept with the
+     * territory of the chunk they stand in.
+     * 
+     * @param worldName The world name
+     * @param blockX The center block X coordinate
+     * @param blockZ The center block Z coordinate
+     * @param radius The radius in blocks
+     * @return The flags, in no particular order
+     */
+    public List<Flag> getFlagsInRadius(String worldName, int blockX, int blockZ, int radius) {
+        List<Flag> result = new ArrayList<>();
+        double radiusSquared = (double) radius * radius;
+        territories.forEachInArea(worldName, (blockX - radius) >> 4, (blockZ - radius) >> 4,
+                (blockX + radius) >> 4, (blockZ + radius) >> 4, territory -> {
+            for (Flag flag : territory.getFlags()) {
+                Location location = flag.getLocation();
+                double dx = location.getX() - blockX;
+                double dz = location.getZ() - blockZ;
+                if (dx * dx + dz * dz <= radiusSquared) {
+                    result.add(flag);
+                }
+            }
+        });
+        return result;
+    }
+    
+    /**
+     * Gets the territory closest to a chunk
+     * 
+     * @param worldName The world name
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @param maxRadius The largest distance to search, in chunks
+     * @param filter Which territories count, or null for all
+     * @return The closest territory, or null if there is none within the radius
+     */
+    public Territory getNearestTerritory(String worldName, int chunkX, int chunkZ, int maxRadius, Predicate<Territory> filter) {
+        return territories.findNearest(worldName, chunkX, chunkZ, maxRadius, filter);
     }
     
     /**
@@ -158,9 +618,7 @@ public class TerritoryManager {
             return new ArrayList<>();
         }
         
-        return clanTerritories.get(clanName).stream()
-            .map(territories::get)
-            .collect(Collectors.toList());
+        return new ArrayList<>(clanTerritories.get(clanName));
     }
     
     /**
@@ -177,6 +635,40 @@ public class TerritoryManager {
         return clanTerritories.get(clanName).size();
     }
     
+    /**
+     * Gets the sum of the flag tiers over all territories of a clan
+     * 
+     * @param clanName The name of the clan
+     * @return The flag tier sum
+     */
+    public int getClanFlagTierSum(String clanName) {
+        List<Territory> owned = clanTerritories.get(clanName);
+        if (owned == null) {
+            return 0;
+        }
+        
+        int sum = 0;
+        for (Territory territory : owned) {
+            sum += territory.getFlagTierSum();
+        }
+        return sum;
+    }
+    
+    /**
+     * Gets the names of the clans that own territory
+     * 
+     * @return The clan names
+     */
+    public List<String> getClaimingClans() {
+        List<String> clans = new ArrayList<>();
+        for (Map.Entry<String, List<Territory>> entry : clanTerritories.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                clans.add(entry.getKey());
+            }
+        }
+        return clans;
+    }
+    
     /**
      * Adds a flag to a territory
      * 
@@ -186,17 +678,33 @@ public class TerritoryManager {
      * @return True if the flag was added successfully
      */
     public boolean addFlag(Chunk chunk, Flag flag, String clanName) {
-        String territoryKey = getTerritoryKey(chunk);
-        
-        Territory territory = territories.get(territoryKey);
+        return addFlag(chunk.getWorld().getName(), chunk.getX(), chunk.getZ(), flag, clanName);
+    }
+    
+    /**
+     * Adds a flag to a territory by chunk coordinates, without loading the chunk
+     * 
+     * @param worldName The world name
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @param flag The flag to add
+     * @param clanName The name of the clan (for verification)
+     * @return True if the flag was added successfully
+     */
+    public boolean addFlag(String worldName, int chunkX, int chunkZ, Flag flag, String clanName) {
+        Territory territory = territories.get(worldName, chunkX, chunkZ);
         if (territory == null || !territory.getClanName().equals(clanName)) {
             return false;
         }
         
         territory.addFlag(flag);
+        territories.touch(territory);
+        territory.setInfluenceLevel(calculateTerritoryInfluence(territory));
+        flagIndex.add(territory, flag);
+        influenceField.addFlag(territory, flag, fieldChanged);
         
         // Save to file
-        saveTerritories();
+        storeTerritory(territory);
         
         return true;
     }
@@ -209,22 +717,13 @@ public class TerritoryManager {
      * @return True if the flag was removed successfully
      */
     public boolean removeFlag(Location location, String clanName) {
-        String territoryKey = getTerritoryKey(location.getChunk());
-        
-        Territory territory = territories.get(territoryKey);
+        Territory territory = getTerritoryAt(location);
         if (territory == null || !territory.getClanName().equals(clanName)) {
             return false;
         }
         
         // Find the flag at the location
-        Flag flagToRemove = null;
-        for (Flag flag : territory.getFlags()) {
-            if (flag.getLocation().distance(location) < 1.0) {
-                flagToRemove = flag;
-                break;
-            }
-        }
-        
+        Flag flagToRemove = flagIndex.find(territory, location.getX(), location.getY(), location.getZ());
         if (flagToRemove == null) {
             return false;
         }
@@ -232,8 +731,13 @@ public class TerritoryManager {
         // Remove the flag
         boolean removed = territory.removeFlag(flagToRemove);
         if (removed) {
+            territories.touch(territory);
+            territory.setInfluenceLevel(calculateTerritoryInfluence(territory));
+            flagIndex.remove(territory, flagToRemove);
+            influenceField.removeFlag(territory, flagToRemove, fieldChanged);
+            
             // Save to file
-            saveTerritories();
+            storeTerritory(territory);
         }
         
         return removed;
@@ -247,34 +751,29 @@ public class TerritoryManager {
      * @return True if the flag was upgraded successfully
      */
     public boolean upgradeFlag(Location location, String clanName) {
-        String territoryKey = getTerritoryKey(location.getChunk());
-        
-        Territory territory = territories.get(territoryKey);
+        Territory territory = getTerritoryAt(location);
         if (territory == null || !territory.getClanName().equals(clanName)) {
             return false;
         }
         
         // Find the flag at the location
-        Flag flagToUpgrade = null;
-        for (Flag flag : territory.getFlags()) {
-            if (flag.getLocation().distance(location) < 1.0) {
-                flagToUpgrade = flag;
-                break;
-            }
-        }
-        
+        Flag flagToUpgrade = flagIndex.find(territory, location.getX(), location.getY(), location.getZ());
         if (flagToUpgrade == null) {
             return false;
         }
         
         // Upgrade the flag
+        int oldTier = flagToUpgrade.getTier();
+        int oldRadius = flagToUpgrade.getInfluenceRadius();
         boolean upgraded = flagToUpgrade.upgrade();
         if (upgraded) {
+            influenceField.upgradeFlag(territory, flagToUpgrade, oldTier, oldRadius, fieldChanged);
+            
             // Recalculate influence
             territory.setInfluenceLevel(calculateTerritoryInfluence(territory));
             
             // Save to file
-            saveTerritories();
+            storeTerritory(territory);
         }
         
         return upgraded;
@@ -304,12 +803,94 @@ public class TerritoryManager {
     }
     
     /**
-     * Loads territories from the territories.json file
+     * Loads territories from the region files when the regions backend is used,
+     * otherwise from the binary snapshot when it is at least as new as
+     * territories.json, otherwise from territories.json
      */
     public void loadTerritories() {
         territories.clear();
+        flagIndex.clear();
         clanTerritories.clear();
         
+        if (regionStore != null) {
+            loadTerritoryRegions();
+        } else {
+            loadTerritoryFiles();
+        }
+        
+        // Loaded influence levels already include the spread of nearby flags; what
+        // they fall short of the calculated level is what decay and raids took
+        fieldChanged.clear();
+        for (Territory territory : territories.values()) {
+            territories.setInfluenceLoss(territory, calculateTerritoryInfluence(territory) - territory.getInfluenceLevel());
+        }
+    }
+    
+    /**
+     * Loads territories from the binary snapshot when it is at least as new as
+     * territories.json, otherwise from territories.json
+     */
+    private void loadTerritoryFiles() {
+        if (useSnapshot && plugin.getConfig().getBoolean("storage.binary_snapshot.benchmark_on_load", false)) {
+            benchmarkTerritoryLoad();
+        }
+        
+        if (useSnapshot && BinarySnapshot.isUsable(territorySnapshotFile, territoryFile)) {
+            try {
+                long start = System.nanoTime();
+                for (Territory territory : BinarySnapshot.readTerritories(territorySnapshotFile)) {
+                    registerTerritory(territory);
+                }
+                plugin.getLogger().info("Loaded " + territories.size() + " territories from snapshot in " +
+                                        ((System.nanoTime() - start) / 1000000) + "ms.");
+                return;
+            } catch (IOException e) {
+                plugin.getLogger().warning("Could not read territory snapshot, loading territories.json instead: " + e.getMessage());
+                territories.clear();
+                flagIndex.clear();
+                clanTerritories.clear();
+            }
+        }
+        
+        loadTerritoriesJson();
+    }
+    
+    /**
+     * Loads territories from the region files. On the first start with the
+     * regions backend, territories from territories.json or the binary snapshot
+     * are imported into region files instead; the old files are left in place.
+     */
+    private void loadTerritoryRegions() {
+        long start = System.nanoTime();
+        
+        if (!regionStore.hasRegionFiles() && (territoryFile.exists() || territorySnapshotFile.exists())) {
+            loadTerritoryFiles();
+            for (Territory territory : territories.values()) {
+                regionStore.write(territory);
+            }
+            regionStore.flush();
+            plugin.getLogger().info("Imported " + territories.size() + " territories into " +
+                                    regionStore.getRegionCount() + " region files in " +
+                                    ((System.nanoTime() - start) / 1000000) + "ms.");
+            return;
+        }
+        
+        try {
+            for (Territory territory : regionStore.loadAll()) {
+                registerTerritory(territory);
+            }
+            plugin.getLogger().info("Loaded " + territories.size() + " territories from " +
+                                    regionStore.getRegionCount() + " region files in " +
+                                    ((System.nanoTime() - start) / 1000000) + "ms.");
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to load territory regions: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Loads territories from the territories.json file
+     */
+    private void loadTerritoriesJson() {
         if (!territoryFile.exists()) {
             return;
         }
@@ -353,17 +934,8 @@ public class TerritoryManager {
                     flags.add(new Flag(location, placedBy, placedTime, tier, influenceRadius));
                 }
                 
-                Territory territory = new Territory(chunkX, chunkZ, worldName, clanName, 
-                                                   influenceLevel, flags, claimTime);
-                
-                String territoryKey = worldName + "_" + chunkX + "_" + chunkZ;
-                territories.put(territoryKey, territory);
-                
-                // Update clan territories map
-                if (!clanTerritories.containsKey(clanName)) {
-                    clanTerritories.put(clanName, new ArrayList<>());
-                }
-                clanTerritories.get(clanName).add(territoryKey);
+                registerTerritory(new Territory(chunkX, chunkZ, worldName, clanName, 
+                                                influenceLevel, flags, claimTime));
             }
             
         } catch (IOException | ParseException e) {
@@ -372,14 +944,284 @@ public class TerritoryManager {
     }
     
     /**
-     * Saves territories to the territories.json file
+     * Adds a territory to the lookup maps
+     * 
+     * @param territory The territory to add
      */
-    @SuppressWarnings("unchecked")
-    public void saveTerritories() {
-        JSONObject jsonObject = new JSONObject();
-        JSONArray territoriesArray = new JSONArray();
+    private void registerTerritory(Territory territory) {
+        Territory replaced = territories.put(territory);
+        if (replaced != null) {
+            flagIndex.removeAll(replaced);
+            influenceField.removeFlags(replaced, fieldChanged);
+        }
+        flagIndex.addAll(territory);
+        influenceField.refresh(territory);
+        influenceField.addFlags(territory, fieldChanged);
+        if (replaced != null) {
+            clanRevisions.merge(replaced.getClanName(), 1L, Long::sum);
+        }
+        clanRevisions.merge(territory.getClanName(), 1L, Long::sum);
         
-        for (Territory territory : territories.values()) {
+        // Update clan territories map
+        if (!clanTerritories.containsKey(territory.getClanName())) {
+            clanTerritories.put(territory.getClanName(), new ArrayList<>());
+        }
+        clanTerritories.get(territory.getClanName()).add(territory);
+    }
+    
+    /**
+     * Removes a territory and its flags from the lookup maps and takes the
+     * flags' influence back from the chunks around it. The caller updates the
+     * clan's territory list.
+     * 
+     * @param territory The territory to remove
+     */
+    private void unregisterTerritory(Territory territory) {
+        if (territories.remove(territory.getWorldName(), territory.getChunkX(), territory.getChunkZ()) != null) {
+            flagIndex.removeAll(territory);
+            influenceField.removeFlags(territory, fieldChanged);
+            clanRevisions.merge(territory.getClanName(), 1L, Long::sum);
+            permissionManager.forgetTerritory(territory);
+        }
+    }
+    
+    /**
+     * Compares the time needed to load territories.json with the time needed to
+     * load the same territories from a binary snapshot, and logs the result
+     */
+    private void benchmarkTerritoryLoad() {
+        if (!territoryFile.exists()) {
+            return;
+        }
+        
+        long jsonStart = System.nanoTime();
+        loadTerritoriesJson();
+        long jsonNanos = System.nanoTime() - jsonStart;
+        
+        File benchmarkFile = new File(plugin.getDataFolder(), "territories.dat.benchmark");
+        try {
+            List<TerritorySnapshot> snapshots = new ArrayList<>(territories.size());
+            for (Territory territory : territories.values()) {
+                snapshots.add(TerritorySnapshot.of(territory));
+            }
+            BinarySnapshot.writeTerritories(benchmarkFile, snapshots);
+            long snapshotStart = System.nanoTime();
+            BinarySnapshot.readTerritories(benchmarkFile);
+            long snapshotNanos = System.nanoTime() - snapshotStart;
+            
+            plugin.getLogger().info(String.format("Territory load benchmark (%d territories): JSON %.1fms / %dKB, snapshot %.1fms / %dKB",
+                    territories.size(), jsonNanos / 1000000.0, territoryFile.length() / 1024,
+                    snapshotNanos / 1000000.0, benchmarkFile.length() / 1024));
+        } catch (IOException e) {
+            plugin.getLogger().warning("Territory load benchmark failed: " + e.getMessage());
+        } finally {
+            benchmarkFile.delete();
+            territories.clear();
+            flagIndex.clear();
+            clanTerritories.clear();
+        }
+    }
+    
+    /**
+     * Saves territories. The file is marked changed and written by the next
+     * persistence flush. With binary snapshots enabled only the snapshot is
+     * written; territories.json is refreshed on shutdown. With the regions
+     * backend every change is already in its region file, so nothing is done.
+     */
+    public void saveTerritories() {
+        if (regionStore != null) {
+            return;
+        }
+        if (snapshotRegistration != null) {
+            snapshotRegistration.markDirty();
+        } else {
+            jsonRegistration.markDirty();
+        }
+    }
+    
+    /**
+     * Saves one added or changed territory: its slot in the region file with
+     * the regions backend, otherwise the whole territory file.
+     * 
+     * @param territory The territory
+     */
+    private void storeTerritory(Territory territory) {
+        revision++;
+        if (regionStore != null) {
+            regionStore.write(territory);
+        } else {
+            saveTerritories();
+        }
+        settleField();
+    }
+    
+    /**
+     * Saves several added or changed territories.
+     * 
+     * @param changed The territories
+     */
+    private void storeTerritories(List<Territory> changed) {
+        revision++;
+        if (regionStore != null) {
+            for (Territory territory : changed) {
+                regionStore.write(territory);
+            }
+        } else {
+            saveTerritories();
+        }
+        settleField();
+    }
+    
+    /**
+     * Saves the removal of a territory: clears its slot in the region file with
+     * the regions backend, otherwise saves the whole territory file.
+     * 
+     * @param territory The removed territory
+     */
+    private void forgetTerritory(Territory territory) {
+        revision++;
+        if (regionStore != null) {
+            regionStore.clear(territory.getWorldName(), territory.getChunkX(), territory.getChunkZ());
+        } else {
+            saveTerritories();
+        }
+        settleField();
+    }
+    
+    /**
+     * Saves the removal of several territories.
+     * 
+     * @param removed The removed territories
+     */
+    private void forgetTerritories(List<Territory> removed) {
+        revision++;
+        if (regionStore != null) {
+            for (Territory territory : removed) {
+                regionStore.clear(territory.getWorldName(), territory.getChunkX(), territory.getChunkZ());
+            }
+        } else {
+            saveTerritories();
+        }
+        settleField();
+    }
+    
+    /**
+     * Recalculates the influence level of the territories whose field changed
+     * since the last save and saves those whose level moved. Territories that
+     * were unclaimed in the meantime are skipped.
+     */
+    private void settleField() {
+        if (fieldChanged.isEmpty()) {
+            return;
+        }
+        
+        List<Territory> settled = new ArrayList<>();
+        for (Territory territory : fieldChanged) {
+            if (territories.get(territory.getWorldName(), territory.getChunkX(), territory.getChunkZ()) != territory) {
+                continue;
+            }
+            int level = calculateTerritoryInfluence(territory);
+            if (level != territory.getInfluenceLevel()) {
+                territory.setInfluenceLevel(level);
+                settled.add(territory);
+            }
+        }
+        fieldChanged.clear();
+        
+        if (regionStore != null) {
+            for (Territory territory : settled) {
+                regionStore.write(territory);
+            }
+        }
+    }
+    
+    /**
+     * Marks whether a clan maintains its territory. The territory of a clan
+     * that does not loses influence every territory.influence.decay interval.
+     * 
+     * @param clanName The clan name
+     * @param maintained Whether the clan's territory is kept from decaying
+     */
+    public void setClanMaintained(String clanName, boolean maintained) {
+        influenceDecay.setMaintained(clanName, maintained);
+    }
+    
+    /**
+     * Checks whether a clan maintains its territory.
+     * 
+     * @param clanName The clan name
+     * @return True unless the clan was marked as not maintaining it
+     */
+    public boolean isClanMaintained(String clanName) {
+        return influenceDecay.isMaintained(clanName);
+    }
+    
+    /**
+     * Lowers the influence of one territory of an unmaintained clan. Called
+     * by the decay cycle, which may reach a territory after it was unclaimed
+     * or after its clan paid again.
+     * 
+     * @param territory The territory
+     * @param amount The influence to take away
+     * @return True if the territory was decayed
+     */
+    boolean decayTerritory(Territory territory, int amount) {
+        if (territories.get(territory.getWorldName(), territory.getChunkX(), territory.getChunkZ()) != territory
+                || influenceDecay.isMaintained(territory.getClanName()) || territory.getInfluenceLevel() == 0) {
+            return false;
+        }
+        weaken(territory, amount);
+        storeTerritory(territory);
+        return true;
+    }
+    
+    /**
+     * Gets a number that changes whenever territories are claimed, unclaimed or
+     * changed. Maps compare it to decide whether to redraw. Bulk operations
+     * change it once.
+     * 
+     * @return The current revision
+     */
+    public long getRevision() {
+        return revision;
+    }
+    
+    /**
+     * Gets a number that changes whenever a clan claims or loses a chunk.
+     * Unlike {@link #getRevision()} it stays the same when only flags or
+     * influence change, so it suits caches of a clan's claimed area.
+     * 
+     * @param clanName The name of the clan
+     * @return The clan's current claim revision
+     */
+    public long getClanRevision(String clanName) {
+        return clanRevisions.getOrDefault(clanName, 0L);
+    }
+    
+    /**
+     * Publishes immutable snapshots of all territories. Territories that did not
+     * change since the last publish reuse their previous snapshot. Must be called
+     * on the main thread.
+     * 
+     * @return The territory snapshots
+     */
+    private List<TerritorySnapshot> publishTerritories() {
+        return territorySnapshots.publish(territories.values());
+    }
+    
+    /**
+     * Writes territories in the territories.json format. Runs on the persistence I/O thread.
+     * 
+     * @param snapshots The territories to write
+     * @param out The stream to write to
+     * @throws IOException If the data could not be written
+     */
+    @SuppressWarnings("unchecked")
+    private void writeTerritoriesJson(List<TerritorySnapshot> snapshots, OutputStream out) throws IOException {
+        JSONObject jsonObject = new JSONObject();
+        JSONArray territoriesArray = new JSONArray();
+        
+        for (TerritorySnapshot territory : snapshots) {
             JSONObject territoryObj = new JSONObject();
             
             territoryObj.put("chunkX", territory.getChunkX());
@@ -391,14 +1233,13 @@ public class TerritoryManager {
             
             JSONArray flagsArray = new JSONArray();
             
-            for (Flag flag : territory.getFlags()) {
+            for (TerritorySnapshot.FlagSnapshot flag : territory.getFlags()) {
                 JSONObject flagObj = new JSONObject();
                 
-                Location loc = flag.getLocation();
-                flagObj.put("x", loc.getX());
-                flagObj.put("y", loc.getY());
-                flagObj.put("z", loc.getZ());
-                flagObj.put("world", loc.getWorld().getName());
+                flagObj.put("x", flag.getX());
+                flagObj.put("y", flag.getY());
+                flagObj.put("z", flag.getZ());
+                flagObj.put("world", flag.getWorldName());
                 flagObj.put("placedBy", flag.getPlacedBy().toString());
                 flagObj.put("placedTime", flag.getPlacedTime());
                 flagObj.put("tier", flag.getTier());
@@ -413,20 +1254,30 @@ public class TerritoryManager {
         
         jsonObject.put("territories", territoriesArray);
         
-        try (FileWriter writer = new FileWriter(territoryFile)) {
-            writer.write(jsonObject.toJSONString());
-        } catch (IOException e) {
-            plugin.getLogger().warning("Failed to save territories: " + e.getMessage());
-        }
+        // Same default charset as the FileReader used when loading
+        Writer writer = new OutputStreamWriter(out);
+        writer.write(jsonObject.toJSONString());
+        writer.flush();
     }
     
     /**
      * Public method to save all territories.
-     * This is called when the server is shutting down.
+     * This is called on the main thread when the server is shutting down,
+     * before the persistence service writes the changed files.
      */
     public void saveAllTerritories() {
         plugin.getLogger().info("Saving all territory data...");
-        saveTerritories();
+        if (regionStore != null) {
+            // Queued on the persistence thread, so the regions are forced before it stops
+            regionStore.close();
+            return;
+        }
+        jsonRegistration.markDirty();
+        
+        // Queued after territories.json so the snapshot is the newer file on the next start
+        if (snapshotRegistration != null) {
+            snapshotRegistration.markDirty();
+        }
     }
     
     /**
@@ -436,7 +1287,7 @@ public class TerritoryManager {
      * @return The protection level, or null if not in a territory
      */
     public String getProtectionLevel(Location location) {
-        Territory territory = getTerritory(location.getChunk());
+        Territory territory = getTerritoryAt(location);
         if (territory == null) {
             return null;
         }
@@ -452,42 +1303,14 @@ public class TerritoryManager {
      * @return True if the player can build
      */
     public boolean canBuild(Player player, Location location) {
-        Territory territory = getTerritory(location.getChunk());
+        Territory territory = getTerritoryAt(location);
         if (territory == null) {
             // Not claimed, can build
             return true;
         }
         
-        String clanName = territory.getClanName();
-        Clan clan = plugin.getStorageManager().getClanStorage().getClan(clanName);
-        
-        // Clan members can always build
-        if (clan.isMember(player.getUniqueId())) {
-            return true;
-        }
-        
-        // Check protection level
-        String protectionLevel = territory.getProtectionLevel();
-        if (protectionLevel.equals("Core") || protectionLevel.equals("Secure")) {
-            // Only members can build in Core or Secure territories
-            return false;
-        } else if (protectionLevel.equals("Contested")) {
-            // In Contested territories, allies can build
-            String playerClanName = plugin.getStorageManager().getClanStorage().getPlayerClanName(player.getUniqueId());
-            if (playerClanName != null) {
-                Clan playerClan = plugin.getStorageManager().getClanStorage().getClan(playerClanName);
-                return playerClan.isAlly(clanName);
-            }
-            return false;
-        } else {
-            // In Frontier territories, anyone except enemies can build
-            String playerClanName = plugin.getStorageManager().getClanStorage().getPlayerClanName(player.getUniqueId());
-            if (playerClanName != null) {
-                Clan playerClan = plugin.getStorageManager().getClanStorage().getClan(playerClanName);
-                return !playerClan.isEnemy(clanName);
-            }
-            return true;
-        }
+        ClanRelation relation = relationCache.getRelation(player.getUniqueId(), territory.getClanName());
+        return territory.getProtectionTier().allowsBuild(relation);
     }
     
     /**
@@ -498,42 +1321,44 @@ public class TerritoryManager {
      * @return True if the player can interact
      */
     public boolean canInteract(Player player, Location location) {
-        Territory territory = getTerritory(location.getChunk());
+        Territory territory = getTerritoryAt(location);
         if (territory == null) {
             // Not claimed, can interact
             return true;
         }
         
-        String clanName = territory.getClanName();
-        Clan clan = plugin.getStorageManager().getClanStorage().getClan(clanName);
-        
-        // Clan members can always interact
-        if (clan.isMember(player.getUniqueId())) {
+        ClanRelation relation = relationCache.getRelation(player.getUniqueId(), territory.getClanName());
+        return territory.getProtectionTier().allowsInteract(relation);
+    }
+    
+    /**
+     * Checks if a player can use something needing a territory permission at
+     * a location, such as a container, a door or an animal
+     * 
+     * @param player The player
+     * @param location The location
+     * @param permission The permission needed
+     * @return True if the player can use it
+     */
+    public boolean canUse(Player player, Location location, TerritoryPermission permission) {
+        Territory territory = getTerritoryAt(location);
+        if (territory == null) {
+            // Not claimed, can use
             return true;
         }
         
-        // Check protection level
-        String protectionLevel = territory.getProtectionLevel();
-        if (protectionLevel.equals("Core")) {
-            // Only members can interact in Core territories
-            return false;
-        } else if (protectionLevel.equals("Secure") || protectionLevel.equals("Contested")) {
-            // In Secure or Contested territories, allies can interact
-            String playerClanName = plugin.getStorageManager().getClanStorage().getPlayerClanName(player.getUniqueId());
-            if (playerClanName != null) {
-                Clan playerClan = plugin.getStorageManager().getClanStorage().getClan(playerClanName);
-                return playerClan.isAlly(clanName);
-            }
-            return false;
-        } else {
-            // In Frontier territories, anyone except enemies can interact
-            String playerClanName = plugin.getStorageManager().getClanStorage().getPlayerClanName(player.getUniqueId());
-            if (playerClanName != null) {
-                Clan playerClan = plugin.getStorageManager().getClanStorage().getClan(playerClanName);
-                return !playerClan.isEnemy(clanName);
-            }
-            return true;
-        }
+        ClanRelation relation = relationCache.getRelation(player.getUniqueId(), territory.getClanName());
+        boolean tierAllows = territory.getProtectionTier().allowsInteract(relation);
+        return permissionManager.allows(territory, relation, tierAllows, player.getUniqueId(), permission);
+    }
+    
+    /**
+     * Gets the manager of the clans' territory permission rules
+     * 
+     * @return The permission manager
+     */
+    public TerritoryPermissionManager getPermissionManager() {
+        return permissionManager;
     }
     
     /**
@@ -543,35 +1368,119 @@ public class TerritoryManager {
      * @return True if PvP is enabled
      */
     public boolean isPvpEnabled(Location location) {
-        Territory territory = getTerritory(location.getChunk());
+        Territory territory = getTerritoryAt(location);
         if (territory == null) {
             // Not claimed, use server settings
             return true;
         }
         
-        // PvP is only enabled in Contested and Frontier territories
-        String protectionLevel = territory.getProtectionLevel();
-        return protectionLevel.equals("Contested") || protectionLevel.equals("Frontier");
+        return territory.getProtectionTier().isPvpEnabled();
+    }
+    
+    /**
+     * Gets the clan owning the land a block change comes from
+     * 
+     * @param location The location the change comes from
+     * @return The clan name, or null if the land is not claimed
+     */
+    public String getOwnerAt(Location location) {
+        Territory territory = getTerritoryAt(location);
+        return territory != null ? territory.getClanName() : null;
+    }
+    
+    /**
+     * Removes from a list the blocks in land claimed by another clan than the
+     * one a change comes from, such as the blocks of an explosion. The owner
+     * of each chunk is looked up once however many of the blocks it holds.
+     * 
+     * @param blocks The blocks, all in one world; filtered in place
+     * @param sourceClanName The clan owning the land the change comes from, or null for unclaimed land
+     * @return The number of blocks removed
+     */
+    public int filterProtected(List<Block> blocks, String sourceClanName) {
+        int size = blocks.size();
+        if (size == 0) {
+            return 0;
+        }
+        
+        ChunkVerdicts verdicts = new ChunkVerdicts(blocks.get(0).getWorld().getName(), sourceClanName);
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            Block block = blocks.get(i);
+            if (!verdicts.isProtected(block.getX() >> 4, block.getZ() >> 4)) {
+                blocks.set(kept++, block);
+            }
+        }
+        blocks.subList(kept, size).clear();
+        return size - kept;
+    }
+    
+    /**
+     * Checks whether blocks moved one step in a direction, such as by a
+     * piston, would leave or enter land claimed by another clan than the one
+     * the change comes from.
+     * 
+     * @param blocks The moved blocks, all in one world
+     * @param direction The direction they move in
+     * @param sourceClanName The clan owning the land the change comes from, or null for unclaimed land
+     * @return True if any block or its destination is protected
+     */
+    public boolean isAnyProtected(List<Block> blocks, BlockFace direction, String sourceClanName) {
+        if (blocks.isEmpty()) {
+            return false;
+        }
+        
+        ChunkVerdicts verdicts = new ChunkVerdicts(blocks.get(0).getWorld().getName(), sourceClanName);
+        for (Block block : blocks) {
+            if (verdicts.isProtected(block.getX() >> 4, block.getZ() >> 4) ||
+                verdicts.isProtected((block.getX() + direction.getModX()) >> 4, (block.getZ() + direction.getModZ()) >> 4)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Checks whether a change spreading from one block to another, such as
+     * flowing fluid or fire, would cross into land claimed by another clan.
+     * 
+     * @param from The block the change comes from
+     * @param to The block it reaches
+     * @return True if the change must be stopped
+     */
+    public boolean isProtectedFrom(Block from, Block to) {
+        int toChunkX = to.getX() >> 4;
+        int toChunkZ = to.getZ() >> 4;
+        if ((from.getX() >> 4) == toChunkX && (from.getZ() >> 4) == toChunkZ) {
+            // Spreading within a chunk never crosses a border
+            return false;
+        }
+        
+        String worldName = to.getWorld().getName();
+        Territory target = territories.get(worldName, toChunkX, toChunkZ);
+        if (target == null) {
+            return false;
+        }
+        Territory source = territories.get(worldName, from.getX() >> 4, from.getZ() >> 4);
+        return source == null || !source.getClanName().equals(target.getClanName());
     }
     
     /**
      * Checks if a chunk is adjacent to an existing territory owned by the clan
      * 
-     * @param chunk The chunk to check
+     * @param worldName The world name
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
      * @param clanName The name of the clan
      * @return True if the chunk is adjacent to existing territory
      */
-    private boolean isAdjacentToExistingTerritory(Chunk chunk, String clanName) {
+    private boolean isAdjacentToExistingTerritory(String worldName, int chunkX, int chunkZ, String clanName) {
         // Check all 8 surrounding chunks
         for (int dx = -1; dx <= 1; dx++) {
             for (int dz = -1; dz <= 1; dz++) {
                 if (dx == 0 && dz == 0) continue;
                 
-                Chunk adjacent = chunk.getWorld().getChunkAt(chunk.getX() + dx, chunk.getZ() + dz);
-                String adjacentKey = getTerritoryKey(adjacent);
-                
-                Territory adjacentTerritory = territories.get(adjacentKey);
-                if (adjacentTerritory != null && adjacentTerritory.getClanName().equals(clanName)) {
+                if (isClaimedBy(worldName, chunkX + dx, chunkZ + dz, clanName)) {
                     return true;
                 }
             }
@@ -581,94 +1490,59 @@ public class TerritoryManager {
     }
     
     /**
-     * Checks if unclaiming a chunk would disconnect other territories
+     * Checks whether unclaiming several chunks at once would disconnect the
+     * clan's territory: claims that are connected now, through the selection
+     * or around it, must still reach each other afterwards. Claims that were
+     * already apart do not count.
      * 
-     * @param chunk The chunk to unclaim
+     * @param worldName The world name
+     * @param removed The packed keys of the chunks being unclaimed
      * @param clanName The name of the clan
      * @return True if unclaiming would disconnect territories
      */
-    private boolean wouldDisconnectTerritory(Chunk chunk, String clanName) {
-        // Get all territories owned by the clan
-        List<Territory> clanTerrs = getClanTerritories(clanName);
-        if (clanTerrs.size() <= 1) {
-            // Only one territory, can't disconnect
-            return false;
-        }
-        
-        // Create a map of connected chunks
-        Map<String, List<String>> connections = new HashMap<>();
-        for (Territory t : clanTerrs) {
-            String key = t.getWorldName() + "_" + t.getChunkX() + "_" + t.getChunkZ();
-            connections.put(key, new ArrayList<>());
-        }
-        
-        // Populate connections
-        for (Territory t1 : clanTerrs) {
-            String key1 = t1.getWorldName() + "_" + t1.getChunkX() + "_" + t1.getChunkZ();
-            
-            // Skip the chunk we're unclaiming
-            if (t1.getChunkX() == chunk.getX() && t1.getChunkZ() == chunk.getZ() && 
-                t1.getWorldName().equals(chunk.getWorld().getName())) {
-                continue;
-            }
-            
-            for (Territory t2 : clanTerrs) {
-                // Skip the chunk we're unclaiming
-                if (t2.getChunkX() == chunk.getX() && t2.getChunkZ() == chunk.getZ() && 
-                    t2.getWorldName().equals(chunk.getWorld().getName())) {
-                    continue;
-                }
-                
-                String key2 = t2.getWorldName() + "_" + t2.getChunkX() + "_" + t2.getChunkZ();
-                
-                // Skip self
-                if (key1.equals(key2)) {
-                    continue;
-                }
-                
-                // Check if adjacent
-                int dx = Math.abs(t1.getChunkX() - t2.getChunkX());
-                int dz = Math.abs(t1.getChunkZ() - t2.getChunkZ());
-                
-                if (t1.getWorldName().equals(t2.getWorldName()) && 
-                    dx <= 1 && dz <= 1 && (dx + dz <= 2)) {
-                    connections.get(key1).add(key2);
-                }
-            }
-        }
-        
-        // Check if all territories are still connected using BFS
-        List<String> visited = new ArrayList<>();
-        List<String> queue = new ArrayList<>();
-        
-        // Start from the first territory (that's not the one being unclaimed)
-        for (Territory t : clanTerrs) {
-            if (t.getChunkX() != chunk.getX() || t.getChunkZ() != chunk.getZ() || 
-                !t.getWorldName().equals(chunk.getWorld().getName())) {
-                String startKey = t.getWorldName() + "_" + t.getChunkX() + "_" + t.getChunkZ();
-                queue.add(startKey);
-                visited.add(startKey);
-                break;
-            }
-        }
-        
-        // BFS through connected territories
-        while (!queue.isEmpty()) {
-            String current = queue.remove(0);
-            
-            for (String neighbor : connections.get(current)) {
-                if (!visited.contains(neighbor)) {
-                    visited.add(neighbor);
-                    queue.add(neighbor);
-                }
-            }
+    private boolean wouldDisconnectTerritories(String worldName, long[] removed, String clanName) {
+        return TerritoryConnectivity.wouldDisconnect(territories, worldName, removed, clanName);
+    }
+    
+    /**
+     * Checks whether a chunk has an owner
+     * 
+     * @param worldName The world name
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @param clanName The clan that must own the chunk, or null if it must be unclaimed
+     * @return True if the chunk has that owner
+     */
+    private boolean hasOwner(String worldName, int chunkX, int chunkZ, String clanName) {
+        return clanName == null ? territories.get(worldName, chunkX, chunkZ) == null
+                                : isClaimedBy(worldName, chunkX, chunkZ, clanName);
+    }
+    
+    /**
+     * Copies packed chunk keys into an array
+     * 
+     * @param chunks The packed chunk keys
+     * @return The array
+     */
+    private static long[] toArray(List<Long> chunks) {
+        long[] array = new long[chunks.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = chunks.get(i);
         }
-        
-        // Count how many territories should be connected
-        int shouldVisit = clanTerrs.size() - 1; // -1 for the one being unclaimed
-        
-        // If we didn't visit all territories, unclaiming would disconnect them
-        return visited.size() < shouldVisit;
+        return array;
+    }
+    
+    /**
+     * Checks if unclaiming a chunk would disconnect other territories
+     * 
+     * @param worldName The world name
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @param clanName The name of the clan
+     * @return True if unclaiming would disconnect territories
+     */
+    private boolean wouldDisconnectTerritory(String worldName, int chunkX, int chunkZ, String clanName) {
+        return TerritoryConnectivity.wouldDisconnect(territories, worldName, chunkX, chunkZ, clanName);
     }
     
     /**
@@ -681,47 +1555,144 @@ public class TerritoryManager {
         // Base influence is 50
         int baseInfluence = 50;
         
-        // Add influence from flags
-        int flagInfluence = 0;
-        for (Flag flag : territory.getFlags()) {
-            // Direct flag influence is tier-based
-            flagInfluence += 10 + (flag.getTier() * 5);
-        }
+        // Add influence from flags, which is tier-based, and from the clan's flags nearby
+        int flagInfluence = territory.getFlagInfluence() + territories.getFieldInfluence(territory);
         
-        // Cap at 100
-        return Math.min(100, baseInfluence + flagInfluence);
+        // Cap at 100, then take away what decay and raids took
+        return Math.max(0, Math.min(100, baseInfluence + flagInfluence) - territories.getInfluenceLoss(territory));
+    }
+    
+    /**
+     * Lowers the influence level of a territory for decay or a raid. Unlike
+     * setting the level, the loss is remembered, so adding or removing flags
+     * and changes to nearby flags do not restore it.
+     * 
+     * @param territory The territory
+     * @param amount The influence to take away
+     */
+    private void weaken(Territory territory, int amount) {
+        int taken = Math.min(territory.getInfluenceLevel(), Math.max(0, amount));
+        territory.setInfluenceLevel(territory.getInfluenceLevel() - taken);
+        territories.setInfluenceLoss(territory, territories.getInfluenceLoss(territory) + taken);
     }
     
     /**
-     * Gets a unique key for a territory based on world and coordinates
+     * Gets a version number that changes whenever the influence level, the flag
+     * list or one of the flags of a territory changes. Storage uses it to reuse
+     * the snapshot of a territory that did not change since the last save.
      * 
-     * @param chunk The chunk
-     * @return A unique key string
+     * @param territory The territory
+     * @return The current version
      */
-    private String getTerritoryKey(Chunk chunk) {
-        return chunk.getWorld().getName() + "_" + chunk.getX() + "_" + chunk.getZ();
+    private long getVersion(Territory territory) {
+        long flagVersions = 0;
+        for (Flag flag : territory.getFlags()) {
+            flagVersions += flag.getVersion();
+        }
+        // The level is 0-100 and fits in 7 bits below the stamp
+        return ((long) territories.getStamp(territory) << 32) | ((long) territory.getInfluenceLevel() << 25)
+                | (flagVersions & 0x1FFFFFFL);
     }
     
     /**
      * Clears all territories owned by a clan
      * 
      * @param clanName The name of the clan
+     * @return An action that restores the cleared territories, used to roll back a {@link UnitOfWork}
      */
-    public void clearClanTerritories(String clanName) {
-        if (!clanTerritories.containsKey(clanName)) {
-            return;
+    public Runnable clearClanTerritories(String clanName) {
+        List<Territory> removed = clanTerritories.remove(clanName);
+        if (removed == null) {
+            return () -> { };
         }
         
-        List<String> territoryKeys = new ArrayList<>(clanTerritories.get(clanName));
+        int[] losses = getInfluenceLosses(removed);
+        for (Territory territory : removed) {
+            unregisterTerritory(territory);
+        }
+        
+        // Save to file
+        forgetTerritories(removed);
         
-        for (String key : territoryKeys) {
-            territories.remove(key);
+        return () -> restoreTerritories(removed, losses);
+    }
+    
+    /**
+     * Transfers all territories of one clan to another, keeping their flags,
+     * influence and claim times. Rules the giving clan set for single chunks
+     * are dropped. Used when clans are merged.
+     * 
+     * @param fromClan The name of the clan giving up its territories
+     * @param toClan The name of the clan receiving them
+     * @return An action that gives the territories back, used to roll back a {@link UnitOfWork}
+     */
+    public Runnable transferTerritories(String fromClan, String toClan) {
+        List<Territory> original = clanTerritories.remove(fromClan);
+        if (original == null) {
+            return () -> { };
         }
         
-        clanTerritories.remove(clanName);
+        List<Territory> transferred = new ArrayList<>(original.size());
+        int[] losses = getInfluenceLosses(original);
+        Map<Territory, int[]> ownRules = new HashMap<>();
+        for (Territory territory : original) {
+            // The copy replaces the original in the index, so its rules are dropped here
+            int[] masks = permissionManager.forgetTerritory(territory);
+            if (masks != null) {
+                ownRules.put(territory, masks);
+            }
+            Territory copy = new Territory(territory.getChunkX(), territory.getChunkZ(), territory.getWorldName(),
+                    toClan, territory.getInfluenceLevel(), new ArrayList<>(territory.getFlags()), territory.getClaimTime());
+            registerTerritory(copy);
+            territories.setInfluenceLoss(copy, losses[transferred.size()]);
+            transferred.add(copy);
+        }
         
         // Save to file
-        saveTerritories();
+        storeTerritories(transferred);
+        
+        return () -> {
+            List<Territory> received = clanTerritories.get(toClan);
+            for (Territory territory : transferred) {
+                unregisterTerritory(territory);
+                if (received != null) {
+                    received.remove(territory);
+                }
+            }
+            restoreTerritories(original, losses);
+            for (Map.Entry<Territory, int[]> entry : ownRules.entrySet()) {
+                permissionManager.restoreTerritory(entry.getKey(), entry.getValue());
+            }
+        };
+    }
+    
+    /**
+     * Puts removed territories back, undoing a clear or a transfer
+     * 
+     * @param restored The territories to put back
+     * @param losses The influence decay and raids had taken from each, see {@link #getInfluenceLosses(List)}
+     */
+    private void restoreTerritories(List<Territory> restored, int[] losses) {
+        for (int i = 0; i < restored.size(); i++) {
+            registerTerritory(restored.get(i));
+            territories.setInfluenceLoss(restored.get(i), losses[i]);
+        }
+        storeTerritories(restored);
+    }
+    
+    /**
+     * Gets the influence decay and raids took from territories that are about
+     * to leave the index, which drops it with them.
+     * 
+     * @param owned The territories
+     * @return The loss of each territory, in the order of the list
+     */
+    private int[] getInfluenceLosses(List<Territory> owned) {
+        int[] losses = new int[owned.size()];
+        for (int i = 0; i < losses.length; i++) {
+            losses[i] = territories.getInfluenceLoss(owned.get(i));
+        }
+        return losses;
     }
     
     /**
@@ -732,70 +1703,149 @@ public class TerritoryManager {
      * @return A list of affected territories
      */
     public List<Territory> getTerritoriesInRaidRadius(Location location, int raidRadius) {
-        int chunkX = location.getBlockX() >> 4;
-        int chunkZ = location.getBlockZ() >> 4;
-        String worldName = location.getWorld().getName();
-        
-        List<Territory> affectedTerritories = new ArrayList<>();
-        
-        // Check all chunks in the radius
-        for (int dx = -raidRadius; dx <= raidRadius; dx++) {
-            for (int dz = -raidRadius; dz <= raidRadius; dz++) {
-                // Calculate distance (in chunks)
-                double distance = Math.sqrt(dx * dx + dz * dz);
-                if (distance > raidRadius) {
-                    continue;
-                }
-                
-                String key = worldName + "_" + (chunkX + dx) + "_" + (chunkZ + dz);
-                Territory territory = territories.get(key);
-                
-                if (territory != null) {
-                    affectedTerritories.add(territory);
-                }
-            }
+        return getTerritoriesInRadius(location.getWorld().getName(),
+                location.getBlockX() >> 4, location.getBlockZ() >> 4, raidRadius);
+    }
+    
+    /**
+     * Weakens the territory at a chunk during a raid, if the raided clan owns
+     * it. The change is not saved here; the raid saves every territory it
+     * weakened once it ends, see {@link #saveRaidedTerritories(Collection)}.
+     * 
+     * @param worldName The world name
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @param targetClanName The name of the clan being raided
+     * @param lossPercent The share of the territory's influence the raid takes, in percent
+     * @return The weakened territory, or null if the chunk is not claimed by the raided clan
+     */
+    public Territory raidTerritory(String worldName, int chunkX, int chunkZ, String targetClanName, int lossPercent) {
+        Territory territory = territories.get(worldName, chunkX, chunkZ);
+        if (territory == null || !territory.getClanName().equalsIgnoreCase(targetClanName)) {
+            return null;
         }
         
-        return affectedTerritories;
+        weaken(territory, territory.getInfluenceLevel() * lossPercent / 100);
+        return territory;
     }
     
     /**
-     * Initiates a raid on a territory
+     * Saves the territories a raid weakened, once, when the raid ends.
+     * Territories unclaimed during the raid are skipped.
      * 
-     * @param location The raid beacon location
-     * @param raidingClanName The name of the raiding clan
-     * @param raidRadius The raid radius in chunks
-     * @return True if the raid was initiated successfully
+     * @param raided The weakened territories
      */
-    public boolean initiateRaid(Location location, String raidingClanName, int raidRadius) {
-        List<Territory> affectedTerritories = getTerritoriesInRaidRadius(location, raidRadius);
-        
-        if (affectedTerritories.isEmpty()) {
-            return false;
+    public void saveRaidedTerritories(Collection<Territory> raided) {
+        List<Territory> changed = new ArrayList<>(raided.size());
+        for (Territory territory : raided) {
+            if (territories.get(territory.getWorldName(), territory.getChunkX(), territory.getChunkZ()) == territory) {
+                changed.add(territory);
+            }
         }
         
-        // Group territories by clan
-        Map<String, List<Territory>> territoriesByClan = new HashMap<>();
+        if (!changed.isEmpty()) {
+            storeTerritories(changed);
+        }
+    }
+    
+    /**
+     * Whether the chunks touched by one block change are protected from it,
+     * looked up once per chunk. A change touches few chunks, so they are kept
+     * in a short list with the last chunk checked first.
+     */
+    private final class ChunkVerdicts {
+        
+        private final String worldName;
+        private final String sourceClanName;
+        private long[] keys = new long[8];
+        private boolean[] verdicts = new boolean[8];
+        private int count;
+        private int last = -1;
+        
+        ChunkVerdicts(String worldName, String sourceClanName) {
+            this.worldName = worldName;
+            this.sourceClanName = sourceClanName;
+        }
         
-        for (Territory t : affectedTerritories) {
-            if (!territoriesByClan.containsKey(t.getClanName())) {
-                territoriesByClan.put(t.getClanName(), new ArrayList<>());
+        /**
+         * Checks whether a chunk is claimed by another clan than the source.
+         *
+         * @param chunkX The chunk X coordinate
+         * @param chunkZ The chunk Z coordinate
+         * @return True if the chunk is protected
+         */
+        boolean isProtected(int chunkX, int chunkZ) {
+            long key = TerritoryIndex.pack(chunkX, chunkZ);
+            if (last >= 0 && keys[last] == key) {
+                return verdicts[last];
+            }
+            for (int i = 0; i < count; i++) {
+                if (keys[i] == key) {
+                    last = i;
+                    return verdicts[i];
+                }
+            }
+            
+            Territory territory = territories.get(worldName, chunkX, chunkZ);
+            boolean verdict = territory != null && !territory.getClanName().equals(sourceClanName);
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+                verdicts = Arrays.copyOf(verdicts, count * 2);
             }
-            territoriesByClan.get(t.getClanName()).add(t);
+            keys[count] = key;
+            verdicts[count] = verdict;
+            last = count++;
+            return verdict;
+        }
+    }
+    
+    /**
+     * The outcome of a bulk claim or unclaim.
+     */
+    public static final class BulkResult {
+        
+        private final int changed;
+        private final int skipped;
+        private final boolean disconnected;
+        
+        /**
+         * Creates a result.
+         * 
+         * @param changed The number of chunks claimed or unclaimed
+         * @param skipped The number of selected chunks left as they were
+         * @param disconnected Whether nothing was unclaimed because it would disconnect territories
+         */
+        BulkResult(int changed, int skipped, boolean disconnected) {
+            this.changed = changed;
+            this.skipped = skipped;
+            this.disconnected = disconnected;
         }
         
-        // Reduce influence in all affected territories
-        for (List<Territory> territories : territoriesByClan.values()) {
-            for (Territory t : territories) {
-                // Reduce influence by 25%
-                int newInfluence = (int)(t.getInfluenceLevel() * 0.75);
-                t.setInfluenceLevel(newInfluence);
-            }
+        /**
+         * Gets the number of chunks claimed or unclaimed.
+         * 
+         * @return The changed chunk count
+         */
+        public int getChanged() {
+            return changed;
         }
         
-        // Save changes
-        saveTerritories();
+        /**
+         * Gets the number of selected chunks left as they were.
+         * 
+         * @return The skipped chunk count
+         */
+        public int getSkipped() {
+            return skipped;
+        }
         
-        return true;
+        /**
+         * Checks whether the unclaim was refused because it would disconnect territories.
+         * 
+         * @return True if the unclaim would disconnect territories
+         */
+        public boolean isDisconnected() {
+            return disconnected;
+        }
     }
-}
\ No newline at end of file
+}
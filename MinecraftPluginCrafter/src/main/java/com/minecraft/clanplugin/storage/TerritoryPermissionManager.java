@@ -0,0 +1,442 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.ClanPlugin;
+import com.minecraft.clanplugin.models.ClanRelation;
+import com.minecraft.clanplugin.models.Territory;
+import com.minecraft.clanplugin.models.TerritoryPermission;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Clan rules for what players may use in territory: containers, doors,
+ * redstone, buckets, vehicles, animals and item frames. Rules are kept as
+ * allow and deny masks per role: the four {@link ClanRelation}s plus trusted
+ * players. A clan's masks apply to all of its territory unless a chunk has
+ * masks of its own, which start as a copy of the clan's. Without a rule the
+ * territory's protection tier decides, as for any other interaction.
+ * Saved to territory_permissions.yml. Used on the main thread.
+ */
+public class TerritoryPermissionManager {
+    
+    /** The mask index of trusted players, after the four clan relations. */
+    public static final int TRUSTED = 4;
+    
+    /** The role names used in commands and in the file, by mask index. */
+    public static final String[] ROLE_NAMES = {"member", "ally", "neutral", "enemy", "trusted"};
+    
+    private final Map<String, ClanRules> rulesByClan;
+    private final File file;
+    private final PersistenceService.Registration persistence;
+    
+    /**
+     * Creates the permission manager. The saved rules are read by {@link #load()}.
+     *
+     * @param plugin The plugin instance
+     */
+    public TerritoryPermissionManager(ClanPlugin plugin) {
+        this.rulesByClan = new HashMap<>();
+        this.file = new File(plugin.getDataFolder(), "territory_permissions.yml");
+        
+        // Changes are written in the background
+        this.persistence = plugin.getPersistenceService().register("TerritoryPermissions", file, this::snapshot);
+    }
+    
+    /**
+     * Reads the saved rules. May run on a loader thread, before the rules are used.
+     */
+    void load() {
+        if (file.exists()) {
+            load(YamlConfiguration.loadConfiguration(file));
+        }
+    }
+    
+    /**
+     * Checks whether a player may use something needing a permission in a
+     * territory. Called on every protected interaction.
+     *
+     * @param territory The territory
+     * @param relation The player's relation to the owning clan
+     * @param tierAllows Whether the territory's protection tier lets the player interact
+     * @param playerUUID The UUID of the player
+     * @param permission The permission needed
+     * @return True if the player may use it
+     */
+    public boolean allows(Territory territory, ClanRelation relation, boolean tierAllows, UUID playerUUID,
+                          TerritoryPermission permission) {
+        ClanRules rules = rulesByClan.get(territory.getClanName());
+        if (rules == null) {
+            return tierAllows;
+        }
+        
+        int[] masks = rules.masksFor(territory);
+        int role = relation.ordinal();
+        int mask = tierAllows ? ~masks[ROLE_NAMES.length + role] : masks[role];
+        if ((mask & permission.getBit()) != 0) {
+            return true;
+        }
+        
+        // Trusted players may use everything their clan does not deny them
+        return (masks[ROLE_NAMES.length + TRUSTED] & permission.getBit()) == 0 && rules.trusted.contains(playerUUID);
+    }
+    
+    /**
+     * Sets a rule for a role, for a clan's whole territory or for one chunk.
+     *
+     * @param clanName The name of the clan
+     * @param territory The chunk to set the rule for, or null for the whole territory
+     * @param role The role's mask index, see {@link #ROLE_NAMES}
+     * @param mask The permissions to change
+     * @param allowed True to allow, false to deny, null to leave it to the protection tier
+     *                (trusted players have no tier, so null allows them as true does)
+     */
+    public void setRule(String clanName, Territory territory, int role, int mask, Boolean allowed) {
+        ClanRules rules = rulesByClan.computeIfAbsent(clanName, name -> new ClanRules());
+        int[] masks = territory != null ? rules.ownMasksFor(territory) : rules.masks;
+        
+        masks[role] &= ~mask;
+        masks[ROLE_NAMES.length + role] &= ~mask;
+        // Trusted players are allowed unless denied, so only their deny mask is kept
+        if (allowed != null && !(allowed && role == TRUSTED)) {
+            masks[allowed ? role : ROLE_NAMES.length + role] |= mask;
+        }
+        persistence.markDirty();
+    }
+    
+    /**
+     * Gets the allow and deny masks in effect for a chunk.
+     *
+     * @param territory The territory
+     * @return A copy of the masks: allow masks by role, then deny masks by role
+     */
+    public int[] getMasks(Territory territory) {
+        ClanRules rules = rulesByClan.get(territory.getClanName());
+        return rules != null ? rules.masksFor(territory).clone() : new int[ROLE_NAMES.length * 2];
+    }
+    
+    /**
+     * Checks whether a chunk has rules of its own.
+     *
+     * @param territory The territory
+     * @return True if the chunk does not follow the clan's rules
+     */
+    public boolean hasOwnRules(Territory territory) {
+        ClanRules rules = rulesByClan.get(territory.getClanName());
+        return rules != null && rules.masksFor(territory) != rules.masks;
+    }
+    
+    /**
+     * Lets a chunk follow its clan's rules again.
+     *
+     * @param territory The territory
+     * @return True if the chunk had rules of its own
+     */
+    public boolean clearOwnRules(Territory territory) {
+        ClanRules rules = rulesByClan.get(territory.getClanName());
+        if (rules == null || rules.removeMasks(territory) == null) {
+            return false;
+        }
+        persistence.markDirty();
+        return true;
+    }
+    
+    /**
+     * Trusts a player in a clan's territory.
+     *
+     * @param clanName The name of the clan
+     * @param playerUUID The UUID of the player
+     * @return True if the player was not trusted yet
+     */
+    public boolean trust(String clanName, UUID playerUUID) {
+        if (!rulesByClan.computeIfAbsent(clanName, name -> new ClanRules()).trusted.add(playerUUID)) {
+            return false;
+        }
+        persistence.markDirty();
+        return true;
+    }
+    
+    /**
+     * Stops trusting a player in a clan's territory.
+     *
+     * @param clanName The name of the clan
+     * @param playerUUID The UUID of the player
+     * @return True if the player was trusted
+     */
+    public boolean untrust(String clanName, UUID playerUUID) {
+        ClanRules rules = rulesByClan.get(clanName);
+        if (rules == null || !rules.trusted.remove(playerUUID)) {
+            return false;
+        }
+        persistence.markDirty();
+        return true;
+    }
+    
+    /**
+     * Gets the players trusted in a clan's territory.
+     *
+     * @param clanName The name of the clan
+     * @return The trusted players' UUIDs
+     */
+    public Set<UUID> getTrusted(String clanName) {
+        ClanRules rules = rulesByClan.get(clanName);
+        return rules != null ? Collections.unmodifiableSet(rules.trusted) : Collections.<UUID>emptySet();
+    }
+    
+    /**
+     * Drops the rules of a chunk that left its clan.
+     *
+     * @param territory The territory
+     * @return The chunk's own masks, or null if it had none
+     */
+    int[] forgetTerritory(Territory territory) {
+        ClanRules rules = rulesByClan.get(territory.getClanName());
+        int[] masks = rules != null ? rules.removeMasks(territory) : null;
+        if (masks != null) {
+            persistence.markDirty();
+        }
+        return masks;
+    }
+    
+    /**
+     * Gives a chunk back the rules {@link #forgetTerritory(Territory)} dropped.
+     *
+     * @param territory The territory
+     * @param masks The chunk's own masks, or null if it had none
+     */
+    void restoreTerritory(Territory territory, int[] masks) {
+        if (masks == null) {
+            return;
+        }
+        rulesByClan.computeIfAbsent(territory.getClanName(), name -> new ClanRules())
+                .putMasks(territory.getWorldName(), TerritoryIndex.pack(territory.getChunkX(), territory.getChunkZ()), masks);
+        persistence.markDirty();
+    }
+    
+    /**
+     * Drops all rules and trusted players of a clan that is deleted or merged
+     * away, so a clan created later with the same name starts without them.
+     *
+     * @param clanName The name of the clan
+     * @return An action that gives the clan its rules back, used to roll back a {@link UnitOfWork}
+     */
+    public Runnable forgetClan(String clanName) {
+        ClanRules rules = rulesByClan.remove(clanName);
+        if (rules == null) {
+            return () -> { };
+        }
+        persistence.markDirty();
+        
+        return () -> {
+            rulesByClan.put(clanName, rules);
+            persistence.markDirty();
+        };
+    }
+    
+    /**
+     * Names the permissions in a mask.
+     *
+     * @param mask The mask
+     * @return The lower-case permission names
+     */
+    public static List<String> namesOf(int mask) {
+        List<String> names = new ArrayList<>();
+        for (TerritoryPermission permission : TerritoryPermission.values()) {
+            if ((mask & permission.getBit()) != 0) {
+                names.add(permission.name().toLowerCase());
+            }
+        }
+        return names;
+    }
+    
+    /**
+     * Builds a mask from permission names, skipping unknown names.
+     *
+     * @param names The permission names
+     * @return The mask
+     */
+    private static int maskOf(List<String> names) {
+        int mask = 0;
+        for (String name : names) {
+            TerritoryPermission permission = TerritoryPermission.fromName(name);
+            if (permission != null) {
+                mask |= permission.getBit();
+            }
+        }
+        return mask;
+    }
+    
+    /**
+     * Reads the rules from the file.
+     *
+     * @param config The loaded file
+     */
+    private void load(YamlConfiguration config) {
+        ConfigurationSection clans = config.getConfigurationSection("clans");
+        if (clans == null) {
+            return;
+        }
+        
+        for (String clanName : clans.getKeys(false)) {
+            ConfigurationSection section = clans.getConfigurationSection(clanName);
+            ClanRules rules = new ClanRules();
+            readMasks(section, rules.masks);
+            for (String uuid : section.getStringList("trusted")) {
+                try {
+                    rules.trusted.add(UUID.fromString(uuid));
+                } catch (IllegalArgumentException e) {
+                    // Skip malformed entries
+                }
+            }
+            
+            ConfigurationSection chunks = section.getConfigurationSection("chunks");
+            if (chunks != null) {
+                for (String key : chunks.getKeys(false)) {
+                    // Keys are world;x;z
+                    String[] parts = key.split(";");
+                    if (parts.length != 3) {
+                        continue;
+                    }
+                    try {
+                        int[] masks = new int[ROLE_NAMES.length * 2];
+                        readMasks(chunks.getConfigurationSection(key), masks);
+                        rules.putMasks(parts[0], TerritoryIndex.pack(Integer.parseInt(parts[1]), Integer.parseInt(parts[2])), masks);
+                    } catch (NumberFormatException e) {
+                        // Skip malformed entries
+                    }
+                }
+            }
+            rulesByClan.put(clanName, rules);
+        }
+    }
+    
+    /**
+     * Builds a copy of the rules for the background writer.
+     *
+     * @return The rules to write
+     */
+    private YamlConfiguration snapshot() {
+        YamlConfiguration config = new YamlConfiguration();
+        for (Map.Entry<String, ClanRules> entry : rulesByClan.entrySet()) {
+            ClanRules rules = entry.getValue();
+            String path = "clans." + entry.getKey();
+            writeMasks(config, path, rules.masks);
+            
+            List<String> trusted = new ArrayList<>();
+            for (UUID uuid : rules.trusted) {
+                trusted.add(uuid.toString());
+            }
+            config.set(path + ".trusted", trusted);
+            
+            for (Map.Entry<String, Map<Long, int[]>> world : rules.chunkMasks.entrySet()) {
+                for (Map.Entry<Long, int[]> chunk : world.getValue().entrySet()) {
+                    long key = chunk.getKey();
+                    writeMasks(config, path + ".chunks." + world.getKey() + ";" + (int) (key >> 32) + ";" + (int) key,
+                            chunk.getValue());
+                }
+            }
+        }
+        return config;
+    }
+    
+    /**
+     * Reads allow and deny masks, listed as permission names per role.
+     *
+     * @param section The section holding the allow and deny lists
+     * @param masks Receives the masks
+     */
+    private static void readMasks(ConfigurationSection section, int[] masks) {
+        for (int role = 0; role < ROLE_NAMES.length; role++) {
+            masks[role] = maskOf(section.getStringList("allow." + ROLE_NAMES[role]));
+            masks[ROLE_NAMES.length + role] = maskOf(section.getStringList("deny." + ROLE_NAMES[role]));
+        }
+    }
+    
+    /**
+     * Writes allow and deny masks as permission names per role, leaving out empty ones.
+     *
+     * @param config The file being written
+     * @param path The path of the section
+     * @param masks The masks
+     */
+    private static void writeMasks(YamlConfiguration config, String path, int[] masks) {
+        for (int role = 0; role < ROLE_NAMES.length; role++) {
+            if (masks[role] != 0) {
+                config.set(path + ".allow." + ROLE_NAMES[role], namesOf(masks[role]));
+            }
+            if (masks[ROLE_NAMES.length + role] != 0) {
+                config.set(path + ".deny." + ROLE_NAMES[role], namesOf(masks[ROLE_NAMES.length + role]));
+            }
+        }
+    }
+    
+    /**
+     * One clan's rules.
+     */
+    private static final class ClanRules {
+        
+        final int[] masks = new int[ROLE_NAMES.length * 2];
+        final Set<UUID> trusted = new LinkedHashSet<>();
+        final Map<String, Map<Long, int[]>> chunkMasks = new HashMap<>();
+        
+        /**
+         * Gets the masks in effect for a chunk.
+         *
+         * @param territory The territory
+         * @return The chunk's own masks, or the clan's
+         */
+        int[] masksFor(Territory territory) {
+            if (chunkMasks.isEmpty()) {
+                return masks;
+            }
+            Map<Long, int[]> world = chunkMasks.get(territory.getWorldName());
+            int[] own = world != null ? world.get(TerritoryIndex.pack(territory.getChunkX(), territory.getChunkZ())) : null;
+            return own != null ? own : masks;
+        }
+        
+        /**
+         * Gets a chunk's own masks, copying the clan's the first time.
+         *
+         * @param territory The territory
+         * @return The chunk's masks
+         */
+        int[] ownMasksFor(Territory territory) {
+            return chunkMasks.computeIfAbsent(territory.getWorldName(), world -> new HashMap<>())
+                    .computeIfAbsent(TerritoryIndex.pack(territory.getChunkX(), territory.getChunkZ()), key -> masks.clone());
+        }
+        
+        /**
+         * Stores a chunk's own masks.
+         *
+         * @param worldName The world name
+         * @param key The packed chunk coordinates
+         * @param chunk The masks
+         */
+        void putMasks(String worldName, long key, int[] chunk) {
+            chunkMasks.computeIfAbsent(worldName, world -> new HashMap<>()).put(key, chunk);
+        }
+        
+        /**
+         * Drops a chunk's own masks.
+         *
+         * @param territory The territory
+         * @return The chunk's masks, or null if it had none of its own
+         */
+        int[] removeMasks(Territory territory) {
+            Map<Long, int[]> world = chunkMasks.get(territory.getWorldName());
+            int[] removed = world != null ? world.remove(TerritoryIndex.pack(territory.getChunkX(), territory.getChunkZ())) : null;
+            if (removed != null && world.isEmpty()) {
+                chunkMasks.remove(territory.getWorldName());
+            }
+            return removed;
+        }
+    }
+}
@@ -0,0 +1,539 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.ClanPlugin;
+import com.minecraft.clanplugin.models.Flag;
+import com.minecraft.clanplugin.models.Territory;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stores territories in memory-mapped region files, one per 32x32 chunks of
+ * a world, under territories/&lt;world&gt;/r.&lt;x&gt;.&lt;z&gt;.dat. Every
+ * chunk of a region has a fixed-size slot, and flags are fixed-size records
+ * chained from their slot, so claiming, unclaiming or changing a territory
+ * writes only that territory's bytes in one mapped file. Changed regions are
+ * forced to disk on the persistence I/O thread at the persistence flush
+ * interval and on shutdown.
+ * <p>
+ * File layout (big-endian):
+ * <pre>
+ * header  64 bytes    magic, version, region x/z, flag capacity, free flag list head, claimed count
+ * slots   1024 x 128  state, clan name (length + up to 96 bytes UTF-8), influence, claim time,
+ *                     flag count, first flag record
+ * flags   n x 64      next record, x/y/z, placed by, placed time, tier, influence radius
+ * </pre>
+ * Flags are stored in the territory's world, as they are always placed
+ * inside the claimed chunk. Updated on the main thread only.
+ */
+public class TerritoryRegionStore {
+    
+    private static final int MAGIC = 0x43545247; // "CTRG"
+    private static final int VERSION = 1;
+    private static final int REGION_SHIFT = 5;
+    private static final int REGION_SIZE = 1 << REGION_SHIFT;
+    private static final int SLOT_COUNT = REGION_SIZE * REGION_SIZE;
+    
+    private static final int HEADER_SIZE = 64;
+    private static final int HEADER_FLAG_CAPACITY = 16;
+    private static final int HEADER_FREE_FLAG = 20;
+    private static final int HEADER_CLAIMED = 24;
+    
+    private static final int SLOT_SIZE = 128;
+    private static final int SLOT_STATE = 0;
+    private static final int SLOT_NAME_LENGTH = 1;
+    private static final int SLOT_NAME = 2;
+    private static final int MAX_NAME_BYTES = 96;
+    private static final int SLOT_INFLUENCE = 98;
+    private static final int SLOT_CLAIM_TIME = 102;
+    private static final int SLOT_FLAG_COUNT = 110;
+    private static final int SLOT_FIRST_FLAG = 112;
+    
+    private static final int FLAG_SIZE = 64;
+    private static final int FLAG_NEXT = 0;
+    private static final int FLAG_X = 4;
+    private static final int FLAG_Y = 12;
+    private static final int FLAG_Z = 20;
+    private static final int FLAG_UUID_MOST = 28;
+    private static final int FLAG_UUID_LEAST = 36;
+    private static final int FLAG_PLACED_TIME = 44;
+    private static final int FLAG_TIER = 52;
+    private static final int FLAG_RADIUS = 56;
+    
+    private static final int FLAGS_OFFSET = HEADER_SIZE + SLOT_COUNT * SLOT_SIZE;
+    private static final int MIN_FLAG_GROWTH = 64;
+    private static final int NO_FLAG = -1;
+    
+    private static final Pattern REGION_FILE = Pattern.compile("r\\.(-?\\d+)\\.(-?\\d+)\\.dat");
+    
+    private final ClanPlugin plugin;
+    private final File directory;
+    private final Map<String, Map<Long, RegionFile>> regions;
+    private final Set<RegionFile> dirty;
+    private boolean closed;
+    
+    /**
+     * Creates a store for the region files in a directory.
+     *
+     * @param plugin The plugin instance
+     * @param directory The directory holding one folder per world
+     */
+    public TerritoryRegionStore(ClanPlugin plugin, File directory) {
+        this.plugin = plugin;
+        this.directory = directory;
+        this.regions = new HashMap<>();
+        this.dirty = new LinkedHashSet<>();
+    }
+    
+    /**
+     * Checks whether any region files exist yet.
+     *
+     * @return True if at least one region file exists
+     */
+    public boolean hasRegionFiles() {
+        File[] worlds = directory.listFiles(File::isDirectory);
+        if (worlds == null) {
+            return false;
+        }
+        for (File world : worlds) {
+            File[] files = world.listFiles((dir, name) -> REGION_FILE.matcher(name).matches());
+            if (files != null && files.length > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Maps every region file and reads the territories in it.
+     *
+     * @return The stored territories
+     * @throws IOException If a region file cannot be read
+     */
+    public List<Territory> loadAll() throws IOException {
+        List<Territory> territories = new ArrayList<>();
+        File[] worlds = directory.listFiles(File::isDirectory);
+        if (worlds == null) {
+            return territories;
+        }
+        
+        for (File worldDirectory : worlds) {
+            String worldName = worldDirectory.getName();
+            World world = plugin.getServer().getWorld(worldName);
+            File[] files = worldDirectory.listFiles();
+            if (files == null) {
+                continue;
+            }
+            
+            for (File file : files) {
+                Matcher matcher = REGION_FILE.matcher(file.getName());
+                if (!matcher.matches()) {
+                    continue;
+                }
+                int regionX = Integer.parseInt(matcher.group(1));
+                int regionZ = Integer.parseInt(matcher.group(2));
+                RegionFile region = open(worldName, regionX, regionZ);
+                region.readInto(world, territories);
+            }
+        }
+        return territories;
+    }
+    
+    /**
+     * Writes a territory into its slot, replacing what was stored there.
+     *
+     * @param territory The territory
+     */
+    public void write(Territory territory) {
+        try {
+            RegionFile region = open(territory.getWorldName(),
+                    territory.getChunkX() >> REGION_SHIFT, territory.getChunkZ() >> REGION_SHIFT);
+            region.write(slot(territory.getChunkX(), territory.getChunkZ()), territory);
+            dirty.add(region);
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not store territory " + territory.getUniqueHash() +
+                    " in its region file", e);
+        }
+    }
+    
+    /**
+     * Empties the slot of a chunk.
+     *
+     * @param worldName The world name
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     */
+    public void clear(String worldName, int chunkX, int chunkZ) {
+        RegionFile region = getOpen(worldName, chunkX >> REGION_SHIFT, chunkZ >> REGION_SHIFT);
+        if (region == null) {
+            return;
+        }
+        region.clear(slot(chunkX, chunkZ));
+        dirty.add(region);
+    }
+    
+    /**
+     * Starts forcing changed regions to disk at the persistence flush interval.
+     */
+    public void start() {
+        int interval = Math.max(1, plugin.getConfig().getInt("storage.persistence.flush_interval_seconds", 10));
+        long ticks = interval * 20L;
+        plugin.getServer().getScheduler().runTaskTimer(plugin, this::flush, ticks, ticks);
+    }
+    
+    /**
+     * Hands the mappings of every changed region to the persistence I/O
+     * thread, which forces them to disk. Main thread only.
+     */
+    public void flush() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        
+        List<RegionFile> changed = new ArrayList<>(dirty);
+        List<MappedByteBuffer> buffers = new ArrayList<>(changed.size());
+        for (RegionFile region : changed) {
+            buffers.add(region.buffer);
+        }
+        dirty.clear();
+        
+        Runnable force = () -> {
+            for (int i = 0; i < buffers.size(); i++) {
+                try {
+                    buffers.get(i).force();
+                } catch (RuntimeException e) {
+                    plugin.getLogger().log(Level.WARNING, "Could not force territory region " +
+                            changed.get(i).file.getName() + " to disk", e);
+                }
+            }
+        };
+        if (!plugin.getPersistenceService().runOnWriter(force)) {
+            force.run();
+        }
+    }
+    
+    /**
+     * Forces every changed region to disk and closes the files. Queued behind
+     * the pending writes of the persistence I/O thread. Called on shutdown.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        flush();
+        
+        List<RegionFile> open = new ArrayList<>();
+        for (Map<Long, RegionFile> worldRegions : regions.values()) {
+            open.addAll(worldRegions.values());
+        }
+        regions.clear();
+        
+        Runnable closeAll = () -> {
+            for (RegionFile region : open) {
+                try {
+                    region.channel.close();
+                } catch (IOException e) {
+                    plugin.getLogger().warning("Could not close territory region " + region.file.getName() +
+                            ": " + e.getMessage());
+                }
+            }
+        };
+        if (!plugin.getPersistenceService().runOnWriter(closeAll)) {
+            closeAll.run();
+        }
+    }
+    
+    /**
+     * Gets the number of mapped region files.
+     *
+     * @return The region count
+     */
+    public int getRegionCount() {
+        int count = 0;
+        for (Map<Long, RegionFile> worldRegions : regions.values()) {
+            count += worldRegions.size();
+        }
+        return count;
+    }
+    
+    /**
+     * Gets an already mapped region.
+     *
+     * @param worldName The world name
+     * @param regionX The region X coordinate
+     * @param regionZ The region Z coordinate
+     * @return The region, or null if it has not been mapped
+     */
+    private RegionFile getOpen(String worldName, int regionX, int regionZ) {
+        Map<Long, RegionFile> worldRegions = regions.get(worldName);
+        return worldRegions != null ? worldRegions.get(TerritoryIndex.pack(regionX, regionZ)) : null;
+    }
+    
+    /**
+     * Gets a mapped region, creating its file if needed.
+     *
+     * @param worldName The world name
+     * @param regionX The region X coordinate
+     * @param regionZ The region Z coordinate
+     * @return The region
+     * @throws IOException If the file cannot be created or mapped
+     */
+    private RegionFile open(String worldName, int regionX, int regionZ) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Territory region store is closed");
+        }
+        
+        RegionFile region = getOpen(worldName, regionX, regionZ);
+        if (region == null) {
+            File worldDirectory = new File(directory, worldName);
+            if (!worldDirectory.isDirectory() && !worldDirectory.mkdirs()) {
+                throw new IOException("Could not create " + worldDirectory);
+            }
+            region = new RegionFile(new File(worldDirectory, "r." + regionX + "." + regionZ + ".dat"),
+                    worldName, regionX, regionZ);
+            regions.computeIfAbsent(worldName, name -> new HashMap<>()).put(TerritoryIndex.pack(regionX, regionZ), region);
+        }
+        return region;
+    }
+    
+    /**
+     * Gets the slot of a chunk within its region.
+     *
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @return The slot number
+     */
+    private static int slot(int chunkX, int chunkZ) {
+        return ((chunkZ & (REGION_SIZE - 1)) << REGION_SHIFT) | (chunkX & (REGION_SIZE - 1));
+    }
+    
+    /**
+     * One mapped region file.
+     */
+    private static final class RegionFile {
+        
+        private final File file;
+        private final String worldName;
+        private final int regionX;
+        private final int regionZ;
+        private final FileChannel channel;
+        private MappedByteBuffer buffer;
+        
+        RegionFile(File file, String worldName, int regionX, int regionZ) throws IOException {
+            this.file = file;
+            this.worldName = worldName;
+            this.regionX = regionX;
+            this.regionZ = regionZ;
+            
+            boolean created = !file.exists() || file.length() == 0;
+            this.channel = new RandomAccessFile(file, "rw").getChannel();
+            try {
+                if (created) {
+                    channel.truncate(0);
+                    map(FLAGS_OFFSET + (long) MIN_FLAG_GROWTH * FLAG_SIZE);
+                    buffer.putInt(0, MAGIC);
+                    buffer.putInt(4, VERSION);
+                    buffer.putInt(8, regionX);
+                    buffer.putInt(12, regionZ);
+                    buffer.putInt(HEADER_FLAG_CAPACITY, 0);
+                    buffer.putInt(HEADER_FREE_FLAG, NO_FLAG);
+                    buffer.putInt(HEADER_CLAIMED, 0);
+                    growFlags(MIN_FLAG_GROWTH);
+                } else {
+                    map(channel.size());
+                    validate();
+                }
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+        
+        private void validate() throws IOException {
+            if (channel.size() < FLAGS_OFFSET || buffer.getInt(0) != MAGIC) {
+                throw new IOException(file + " is not a territory region file");
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new IOException(file + " has unsupported version " + buffer.getInt(4));
+            }
+            if (buffer.getInt(8) != regionX || buffer.getInt(12) != regionZ) {
+                throw new IOException(file + " holds region " + buffer.getInt(8) + "," + buffer.getInt(12));
+            }
+            long flagCapacity = buffer.getInt(HEADER_FLAG_CAPACITY);
+            if (channel.size() < FLAGS_OFFSET + flagCapacity * FLAG_SIZE) {
+                throw new IOException(file + " is truncated");
+            }
+        }
+        
+        private void map(long size) throws IOException {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        
+        void readInto(World world, List<Territory> territories) throws IOException {
+            int baseX = regionX << REGION_SHIFT;
+            int baseZ = regionZ << REGION_SHIFT;
+            int flagCapacity = buffer.getInt(HEADER_FLAG_CAPACITY);
+            
+            for (int slot = 0; slot < SLOT_COUNT; slot++) {
+                int offset = HEADER_SIZE + slot * SLOT_SIZE;
+                if (buffer.get(offset + SLOT_STATE) == 0) {
+                    continue;
+                }
+                
+                int nameLength = buffer.get(offset + SLOT_NAME_LENGTH) & 0xFF;
+                if (nameLength > MAX_NAME_BYTES) {
+                    throw new IOException(file + " has a corrupt slot " + slot);
+                }
+                byte[] name = new byte[nameLength];
+                for (int i = 0; i < nameLength; i++) {
+                    name[i] = buffer.get(offset + SLOT_NAME + i);
+                }
+                
+                List<Flag> flags = new ArrayList<>();
+                int record = buffer.getInt(offset + SLOT_FIRST_FLAG);
+                int flagCount = buffer.getShort(offset + SLOT_FLAG_COUNT);
+                for (int i = 0; i < flagCount; i++) {
+                    if (record < 0 || record >= flagCapacity) {
+                        throw new IOException(file + " has a corrupt flag chain in slot " + slot);
+                    }
+                    int flagOffset = FLAGS_OFFSET + record * FLAG_SIZE;
+                    Location location = new Location(world, buffer.getDouble(flagOffset + FLAG_X),
+                            buffer.getDouble(flagOffset + FLAG_Y), buffer.getDouble(flagOffset + FLAG_Z));
+                    UUID placedBy = new UUID(buffer.getLong(flagOffset + FLAG_UUID_MOST),
+                            buffer.getLong(flagOffset + FLAG_UUID_LEAST));
+                    flags.add(new Flag(location, placedBy, buffer.getLong(flagOffset + FLAG_PLACED_TIME),
+                            buffer.getInt(flagOffset + FLAG_TIER), buffer.getInt(flagOffset + FLAG_RADIUS)));
+                    record = buffer.getInt(flagOffset + FLAG_NEXT);
+                }
+                
+                territories.add(new Territory(baseX + (slot & (REGION_SIZE - 1)), baseZ + (slot >> REGION_SHIFT),
+                        worldName, new String(name, StandardCharsets.UTF_8),
+                        buffer.getInt(offset + SLOT_INFLUENCE), flags, buffer.getLong(offset + SLOT_CLAIM_TIME)));
+            }
+        }
+        
+        void write(int slot, Territory territory) throws IOException {
+            byte[] name = territory.getClanName().getBytes(StandardCharsets.UTF_8);
+            if (name.length > MAX_NAME_BYTES) {
+                throw new IllegalArgumentException("Clan name is longer than " + MAX_NAME_BYTES + " bytes");
+            }
+            List<Flag> flags = territory.getFlags();
+            if (flags.size() > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many flags in one territory");
+            }
+            
+            int offset = HEADER_SIZE + slot * SLOT_SIZE;
+            boolean wasClaimed = buffer.get(offset + SLOT_STATE) != 0;
+            if (wasClaimed) {
+                freeFlags(buffer.getInt(offset + SLOT_FIRST_FLAG), buffer.getShort(offset + SLOT_FLAG_COUNT));
+            }
+            
+            // Flags are chained back to front, so the first flag ends up first in the chain
+            int first = NO_FLAG;
+            for (int i = flags.size() - 1; i >= 0; i--) {
+                Flag flag = flags.get(i);
+                int record = allocateFlag();
+                int flagOffset = FLAGS_OFFSET + record * FLAG_SIZE;
+                Location location = flag.getLocation();
+                buffer.putInt(flagOffset + FLAG_NEXT, first);
+                buffer.putDouble(flagOffset + FLAG_X, location.getX());
+                buffer.putDouble(flagOffset + FLAG_Y, location.getY());
+                buffer.putDouble(flagOffset + FLAG_Z, location.getZ());
+                buffer.putLong(flagOffset + FLAG_UUID_MOST, flag.getPlacedBy().getMostSignificantBits());
+                buffer.putLong(flagOffset + FLAG_UUID_LEAST, flag.getPlacedBy().getLeastSignificantBits());
+                buffer.putLong(flagOffset + FLAG_PLACED_TIME, flag.getPlacedTime());
+                buffer.putInt(flagOffset + FLAG_TIER, flag.getTier());
+                buffer.putInt(flagOffset + FLAG_RADIUS, flag.getInfluenceRadius());
+                first = record;
+            }
+            
+            buffer.put(offset + SLOT_NAME_LENGTH, (byte) name.length);
+            for (int i = 0; i < name.length; i++) {
+                buffer.put(offset + SLOT_NAME + i, name[i]);
+            }
+            buffer.putInt(offset + SLOT_INFLUENCE, territory.getInfluenceLevel());
+            buffer.putLong(offset + SLOT_CLAIM_TIME, territory.getClaimTime());
+            buffer.putShort(offset + SLOT_FLAG_COUNT, (short) flags.size());
+            buffer.putInt(offset + SLOT_FIRST_FLAG, first);
+            
+            // The slot only counts as claimed once its fields are complete
+            if (!wasClaimed) {
+                buffer.put(offset + SLOT_STATE, (byte) 1);
+                buffer.putInt(HEADER_CLAIMED, buffer.getInt(HEADER_CLAIMED) + 1);
+            }
+        }
+        
+        void clear(int slot) {
+            int offset = HEADER_SIZE + slot * SLOT_SIZE;
+            if (buffer.get(offset + SLOT_STATE) == 0) {
+                return;
+            }
+            buffer.put(offset + SLOT_STATE, (byte) 0);
+            buffer.putInt(HEADER_CLAIMED, buffer.getInt(HEADER_CLAIMED) - 1);
+            freeFlags(buffer.getInt(offset + SLOT_FIRST_FLAG), buffer.getShort(offset + SLOT_FLAG_COUNT));
+            buffer.putShort(offset + SLOT_FLAG_COUNT, (short) 0);
+            buffer.putInt(offset + SLOT_FIRST_FLAG, NO_FLAG);
+        }
+        
+        private int allocateFlag() throws IOException {
+            int record = buffer.getInt(HEADER_FREE_FLAG);
+            if (record == NO_FLAG) {
+                growFlags(Math.max(MIN_FLAG_GROWTH, buffer.getInt(HEADER_FLAG_CAPACITY)));
+                record = buffer.getInt(HEADER_FREE_FLAG);
+            }
+            buffer.putInt(HEADER_FREE_FLAG, buffer.getInt(FLAGS_OFFSET + record * FLAG_SIZE + FLAG_NEXT));
+            return record;
+        }
+        
+        private void freeFlags(int record, int count) {
+            for (int i = 0; i < count && record != NO_FLAG; i++) {
+                int flagOffset = FLAGS_OFFSET + record * FLAG_SIZE;
+                int next = buffer.getInt(flagOffset + FLAG_NEXT);
+                buffer.putInt(flagOffset + FLAG_NEXT, buffer.getInt(HEADER_FREE_FLAG));
+                buffer.putInt(HEADER_FREE_FLAG, record);
+                record = next;
+            }
+        }
+        
+        /**
+         * Adds flag records to the end of the file and puts them on the free
+         * list. The file is mapped again at its new size; a mapping still
+         * being forced by the I/O thread stays valid for the old size.
+         *
+         * @param added The number of records to add
+         * @throws IOException If the file cannot be grown
+         */
+        private void growFlags(int added) throws IOException {
+            int capacity = buffer.getInt(HEADER_FLAG_CAPACITY);
+            int newCapacity = capacity + added;
+            if (buffer.capacity() < FLAGS_OFFSET + (long) newCapacity * FLAG_SIZE) {
+                MappedByteBuffer previous = buffer;
+                map(FLAGS_OFFSET + (long) newCapacity * FLAG_SIZE);
+                previous.force();
+            }
+            
+            for (int record = newCapacity - 1; record >= capacity; record--) {
+                buffer.putInt(FLAGS_OFFSET + record * FLAG_SIZE + FLAG_NEXT, buffer.getInt(HEADER_FREE_FLAG));
+                buffer.putInt(HEADER_FREE_FLAG, record);
+            }
+            buffer.putInt(HEADER_FLAG_CAPACITY, newCapacity);
+        }
+    }
+}
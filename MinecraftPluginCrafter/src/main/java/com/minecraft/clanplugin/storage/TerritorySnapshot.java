@@ -0,0 +1,234 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.models.Flag;
+import com.minecraft.clanplugin.models.Territory;
+import org.bukkit.Location;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Immutable copy of the persisted state of a territory and its flags.
+ * Built on the main thread and then serialized by a background writer.
+ */
+public final class TerritorySnapshot {
+    
+    /**
+     * Immutable copy of a flag.
+     */
+    public static final class FlagSnapshot {
+        
+        private final String worldName;
+        private final double x;
+        private final double y;
+        private final double z;
+        private final UUID placedBy;
+        private final long placedTime;
+        private final int tier;
+        private final int influenceRadius;
+        private final String name;
+        
+        /**
+         * Copies a flag.
+         *
+         * @param flag The flag to copy
+         * @param territoryWorld The territory's world, used when the flag's world is not loaded
+         */
+        private FlagSnapshot(Flag flag, String territoryWorld) {
+            Location location = flag.getLocation();
+            this.worldName = location.getWorld() != null ? location.getWorld().getName() : territoryWorld;
+            this.x = location.getX();
+            this.y = location.getY();
+            this.z = location.getZ();
+            this.placedBy = flag.getPlacedBy();
+            this.placedTime = flag.getPlacedTime();
+            this.tier = flag.getTier();
+            this.influenceRadius = flag.getInfluenceRadius();
+            this.name = flag.getName();
+        }
+        
+        /**
+         * Gets the name of the flag's world.
+         *
+         * @return The world name
+         */
+        public String getWorldName() {
+            return worldName;
+        }
+        
+        /**
+         * Gets the X coordinate.
+         *
+         * @return The X coordinate
+         */
+        public double getX() {
+            return x;
+        }
+        
+        /**
+         * Gets the Y coordinate.
+         *
+         * @return The Y coordinate
+         */
+        public double getY() {
+            return y;
+        }
+        
+        /**
+         * Gets the Z coordinate.
+         *
+         * @return The Z coordinate
+         */
+        public double getZ() {
+            return z;
+        }
+        
+        /**
+         * Gets the player who placed the flag.
+         *
+         * @return The placer's UUID
+         */
+        public UUID getPlacedBy() {
+            return placedBy;
+        }
+        
+        /**
+         * Gets the time the flag was placed.
+         *
+         * @return The placement time in milliseconds
+         */
+        public long getPlacedTime() {
+            return placedTime;
+        }
+        
+        /**
+         * Gets the flag tier.
+         *
+         * @return The tier
+         */
+        public int getTier() {
+            return tier;
+        }
+        
+        /**
+         * Gets the influence radius.
+         *
+         * @return The radius in chunks
+         */
+        public int getInfluenceRadius() {
+            return influenceRadius;
+        }
+        
+        /**
+         * Gets the flag name.
+         *
+         * @return The name, or null if not set
+         */
+        public String getName() {
+            return name;
+        }
+    }
+    
+    private final int chunkX;
+    private final int chunkZ;
+    private final String worldName;
+    private final String clanName;
+    private final int influenceLevel;
+    private final long claimTime;
+    private final List<FlagSnapshot> flags;
+    
+    /**
+     * Copies a territory. Must be called on the main thread.
+     *
+     * @param territory The territory to copy
+     */
+    private TerritorySnapshot(Territory territory) {
+        this.chunkX = territory.getChunkX();
+        this.chunkZ = territory.getChunkZ();
+        this.worldName = territory.getWorldName();
+        this.clanName = territory.getClanName();
+        this.influenceLevel = territory.getInfluenceLevel();
+        this.claimTime = territory.getClaimTime();
+        
+        List<FlagSnapshot> flagCopies = new ArrayList<>(territory.getFlags().size());
+        for (Flag flag : territory.getFlags()) {
+            flagCopies.add(new FlagSnapshot(flag, worldName));
+        }
+        this.flags = Collections.unmodifiableList(flagCopies);
+    }
+    
+    /**
+     * Copies a territory. Must be called on the main thread.
+     *
+     * @param territory The territory to copy
+     * @return The snapshot
+     */
+    public static TerritorySnapshot of(Territory territory) {
+        return new TerritorySnapshot(territory);
+    }
+    
+    /**
+     * Gets the chunk's X coordinate.
+     *
+     * @return The X coordinate
+     */
+    public int getChunkX() {
+        return chunkX;
+    }
+    
+    /**
+     * Gets the chunk's Z coordinate.
+     *
+     * @return The Z coordinate
+     */
+    public int getChunkZ() {
+        return chunkZ;
+    }
+    
+    /**
+     * Gets the world name.
+     *
+     * @return The world name
+     */
+    public String getWorldName() {
+        return worldName;
+    }
+    
+    /**
+     * Gets the owning clan's name.
+     *
+     * @return The clan name
+     */
+    public String getClanName() {
+        return clanName;
+    }
+    
+    /**
+     * Gets the influence level.
+     *
+     * @return The influence level
+     */
+    public int getInfluenceLevel() {
+        return influenceLevel;
+    }
+    
+    /**
+     * Gets the claim time.
+     *
+     * @return The claim time in milliseconds
+     */
+    public long getClaimTime() {
+        return claimTime;
+    }
+    
+    /**
+     * Gets the flags.
+     *
+     * @return Unmodifiable list of flags
+     */
+    public List<FlagSnapshot> getFlags() {
+        return flags;
+    }
+}
@@ -0,0 +1,130 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.ClanPlugin;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.logging.Level;
+
+/**
+ * Groups changes that span several managers, such as deleting a clan, so they
+ * are applied together and saved together. Steps run in order on the main
+ * thread while background flushes are held back, so no half-applied state is
+ * ever written. If a step fails, the steps already applied are undone in
+ * reverse order. On success every file the steps marked dirty is written in
+ * one group by {@link PersistenceService#flushGroup()}.
+ */
+public class UnitOfWork {
+    
+    /**
+     * One change in a unit of work.
+     */
+    public interface Step {
+        
+        /**
+         * Applies the change.
+         *
+         * @return An action that reverts the change; a step with nothing to
+         *         revert returns an empty action, never null
+         */
+        Runnable apply();
+    }
+    
+    private final ClanPlugin plugin;
+    private final String description;
+    private final List<String> stepNames;
+    private final List<Step> steps;
+    private boolean committed;
+    
+    /**
+     * Creates a new, empty unit of work.
+     *
+     * @param plugin The plugin instance
+     * @param description What the unit does, used in log messages
+     */
+    public UnitOfWork(ClanPlugin plugin, String description) {
+        this.plugin = plugin;
+        this.description = description;
+        this.stepNames = new ArrayList<>();
+        this.steps = new ArrayList<>();
+    }
+    
+    /**
+     * Adds a step. Steps are applied in the order they were added.
+     *
+     * @param name The step name, used in log messages
+     * @param step The change to apply
+     * @return This unit of work
+     */
+    public UnitOfWork step(String name, Step step) {
+        stepNames.add(name);
+        steps.add(step);
+        return this;
+    }
+    
+    /**
+     * Applies every step and saves the result. Must be called on the main
+     * thread, and only once.
+     *
+     * @return True if every step was applied, false if the unit was rolled back
+     */
+    public boolean commit() {
+        if (committed) {
+            throw new IllegalStateException("Unit of work '" + description + "' was already committed");
+        }
+        committed = true;
+        
+        PersistenceService persistence = plugin.getPersistenceService();
+        Deque<Runnable> undoActions = new ArrayDeque<>();
+        Deque<String> applied = new ArrayDeque<>();
+        
+        persistence.hold();
+        try {
+            for (int i = 0; i < steps.size(); i++) {
+                String name = stepNames.get(i);
+                Runnable undo;
+                try {
+                    undo = steps.get(i).apply();
+                    if (undo == null) {
+                        throw new IllegalStateException("Step '" + name + "' returned no undo action");
+                    }
+                } catch (RuntimeException e) {
+                    plugin.getLogger().log(Level.SEVERE, "Could not " + description + ": step '" + name +
+                            "' failed, rolling back", e);
+                    rollback(undoActions, applied);
+                    return false;
+                }
+                undoActions.push(undo);
+                applied.push(name);
+            }
+        } finally {
+            persistence.release();
+        }
+        
+        persistence.flushGroup();
+        plugin.getStorageManager().flushClans();
+        return true;
+    }
+    
+    /**
+     * Reverts the applied steps, newest first. A failing undo action is
+     * logged and the remaining ones still run.
+     *
+     * @param undoActions The undo actions, newest first
+     * @param applied The names of the applied steps, newest first
+     */
+    private void rollback(Deque<Runnable> undoActions, Deque<String> applied) {
+        while (!undoActions.isEmpty()) {
+            Runnable undo = undoActions.pop();
+            String name = applied.pop();
+            try {
+                undo.run();
+            } catch (RuntimeException e) {
+                plugin.getLogger().log(Level.SEVERE, "Could not undo step '" + name + "' of " + description +
+                        "; data may be inconsistent until an admin fixes it", e);
+            }
+        }
+    }
+}
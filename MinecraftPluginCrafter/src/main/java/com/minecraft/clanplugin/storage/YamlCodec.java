@@ -0,0 +1,360 @@
+package com.minecraft.clanplugin.storage;
+
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.AliasEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.MappingEndEvent;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.events.SequenceEndEvent;
+import org.yaml.snakeyaml.events.SequenceStartEvent;
+import org.yaml.snakeyaml.events.StreamEndEvent;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes the YAML files of the clan backends with SnakeYAML, the
+ * library Bukkit's YamlConfiguration is built on. SnakeYAML is shaded into
+ * the plugin jar, so the offline {@link Migrate} tool runs without a server.
+ * <p>
+ * Documents are read from SnakeYAML's parser events rather than loaded whole,
+ * so one section can be streamed an entry at a time. Maps are read into
+ * {@link LinkedHashMap}s, lists into {@link List}s and every scalar into a
+ * String (or null), so callers convert values themselves.
+ */
+final class YamlCodec {
+    
+    private static final Resolver RESOLVER = new Resolver();
+    
+    private YamlCodec() {
+    }
+    
+    /**
+     * Receives the entries of a streamed section one at a time.
+     */
+    interface EntryConsumer {
+        
+        /**
+         * Handles one entry.
+         *
+         * @param key The entry's key
+         * @param value The entry's value: a map, a list, a string or null
+         * @throws IOException If the entry could not be handled
+         */
+        void accept(String key, Object value) throws IOException;
+    }
+    
+    /**
+     * Reads a whole document.
+     *
+     * @param input The document to read; closed by the caller
+     * @return The top-level map, empty if the document is empty
+     * @throws IOException If the document could not be read or is malformed
+     */
+    static Map<String, Object> readDocument(Reader input) throws IOException {
+        try {
+            Iterator<Event> events = parser().parse(input).iterator();
+            Event root = firstNode(events);
+            if (root == null) {
+                return new LinkedHashMap<>();
+            }
+            Object document = readValue(events, root);
+            if (!(document instanceof Map)) {
+                throw new IOException("expected a map at the top level");
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, Object> map = (Map<String, Object>) document;
+            return map;
+        } catch (YAMLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Streams the entries of one top-level section, so only one entry is
+     * held in memory at a time. Other top-level keys are skipped.
+     *
+     * @param input The document to read; closed by the caller
+     * @param sectionKey The top-level key of the section
+     * @param consumer Receives each entry of the section
+     * @return The number of entries read
+     * @throws IOException If the document could not be read or is malformed
+     */
+    static int streamSection(Reader input, String sectionKey, EntryConsumer consumer) throws IOException {
+        int count = 0;
+        try {
+            Iterator<Event> events = parser().parse(input).iterator();
+            Event root = firstNode(events);
+            if (root == null) {
+                return 0;
+            }
+            if (!(root instanceof MappingStartEvent)) {
+                throw new IOException("expected a map at the top level");
+            }
+            
+            for (Event key = events.next(); !(key instanceof MappingEndEvent); key = events.next()) {
+                boolean wanted = sectionKey.equals(String.valueOf(readValue(events, key)));
+                Event value = events.next();
+                if (!wanted || !(value instanceof MappingStartEvent)) {
+                    readValue(events, value);
+                    continue;
+                }
+                for (Event entry = events.next(); !(entry instanceof MappingEndEvent); entry = events.next()) {
+                    String entryKey = String.valueOf(readValue(events, entry));
+                    consumer.accept(entryKey, readValue(events, events.next()));
+                    count++;
+                }
+            }
+            return count;
+        } catch (YAMLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Writes a map in the block style Bukkit's YamlConfiguration uses.
+     *
+     * @param output The output
+     * @param map The map
+     * @param indent The number of spaces added in front of every line
+     * @throws IOException If the output could not be written
+     */
+    static void write(Writer output, Map<String, Object> map, int indent) throws IOException {
+        String text = dumper().dump(map);
+        if (indent == 0) {
+            output.write(text);
+            return;
+        }
+        
+        char[] prefix = new char[indent];
+        Arrays.fill(prefix, ' ');
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf('\n', start) + 1;
+            if (end == 0) {
+                end = text.length();
+            }
+            output.write(prefix);
+            output.write(text, start, end - start);
+            start = end;
+        }
+    }
+    
+    /**
+     * Creates a parser without a limit on the document size, as clans.yml of
+     * a large server is well beyond SnakeYAML's default.
+     *
+     * @return The parser
+     */
+    private static Yaml parser() {
+        LoaderOptions options = new LoaderOptions();
+        options.setCodePointLimit(Integer.MAX_VALUE);
+        return new Yaml(options);
+    }
+    
+    /**
+     * Creates a dumper with the options Bukkit's YamlConfiguration uses.
+     *
+     * @return The dumper
+     */
+    private static Yaml dumper() {
+        DumperOptions options = new DumperOptions();
+        options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+        options.setIndent(2);
+        return new Yaml(options);
+    }
+    
+    /**
+     * Skips the stream and document start events.
+     *
+     * @param events The parser events
+     * @return The first event of the document's root node, or null if the stream is empty
+     */
+    private static Event firstNode(Iterator<Event> events) {
+        while (events.hasNext()) {
+            Event event = events.next();
+            if (event instanceof StreamEndEvent) {
+                return null;
+            }
+            if (event instanceof ScalarEvent || event instanceof MappingStartEvent
+                    || event instanceof SequenceStartEvent || event instanceof AliasEvent) {
+                return event;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Builds the value that starts with an event, consuming its events.
+     *
+     * @param events The parser events
+     * @param first The value's first event
+     * @return A map, a list, a string or null
+     * @throws IOException If the value uses anchors and aliases, which Bukkit never writes
+     */
+    private static Object readValue(Iterator<Event> events, Event first) throws IOException {
+        if (first instanceof ScalarEvent) {
+            ScalarEvent scalar = (ScalarEvent) first;
+            boolean plain = scalar.getImplicit().canOmitTagInPlainScalar();
+            if (plain && RESOLVER.resolve(NodeId.scalar, scalar.getValue(), true).equals(Tag.NULL)) {
+                return null;
+            }
+            return scalar.getValue();
+        }
+        if (first instanceof MappingStartEvent) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            for (Event key = events.next(); !(key instanceof MappingEndEvent); key = events.next()) {
+                map.put(String.valueOf(readValue(events, key)), readValue(events, events.next()));
+            }
+            return map;
+        }
+        if (first instanceof SequenceStartEvent) {
+            List<Object> list = new ArrayList<>();
+            for (Event element = events.next(); !(element instanceof SequenceEndEvent); element = events.next()) {
+                list.add(readValue(events, element));
+            }
+            return list;
+        }
+        throw new IOException("unexpected " + first + " at line " + (first.getStartMark().getLine() + 1));
+    }
+    
+    /**
+     * Reads a string value from a parsed map.
+     *
+     * @param map The map
+     * @param key The key
+     * @param fallback The value to use if the key is missing or not a scalar
+     * @return The value
+     */
+    static String getString(Map<String, Object> map, String key, String fallback) {
+        Object value = map.get(key);
+        return value instanceof String ? (String) value : fallback;
+    }
+    
+    /**
+     * Reads an integer value from a parsed map.
+     *
+     * @param map The map
+     * @param key The key
+     * @param fallback The value to use if the key is missing or not a number
+     * @return The value
+     */
+    static int getInt(Map<String, Object> map, String key, int fallback) {
+        return (int) getLong(map, key, fallback);
+    }
+    
+    /**
+     * Reads a long value from a parsed map.
+     *
+     * @param map The map
+     * @param key The key
+     * @param fallback The value to use if the key is missing or not a number
+     * @return The value
+     */
+    static long getLong(Map<String, Object> map, String key, long fallback) {
+        Object value = map.get(key);
+        if (!(value instanceof String)) {
+            return fallback;
+        }
+        try {
+            return Long.parseLong(((String) value).replace("_", ""));
+        } catch (NumberFormatException e) {
+            try {
+                return (long) Double.parseDouble((String) value);
+            } catch (NumberFormatException ignored) {
+                return fallback;
+            }
+        }
+    }
+    
+    /**
+     * Reads a decimal value from a parsed map.
+     *
+     * @param map The map
+     * @param key The key
+     * @param fallback The value to use if the key is missing or not a number
+     * @return The value
+     */
+    static double getDouble(Map<String, Object> map, String key, double fallback) {
+        Object value = map.get(key);
+        if (!(value instanceof String)) {
+            return fallback;
+        }
+        try {
+            return Double.parseDouble((String) value);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+    
+    /**
+     * Reads a boolean value from a parsed map, accepting YAML 1.1 spellings.
+     *
+     * @param map The map
+     * @param key The key
+     * @param fallback The value to use if the key is missing or not a boolean
+     * @return The value
+     */
+    static boolean getBoolean(Map<String, Object> map, String key, boolean fallback) {
+        String value = getString(map, key, null);
+        if (value == null) {
+            return fallback;
+        }
+        switch (value.toLowerCase()) {
+            case "true": case "yes": case "on": case "y":
+                return true;
+            case "false": case "no": case "off": case "n":
+                return false;
+            default:
+                return fallback;
+        }
+    }
+    
+    /**
+     * Reads a nested map from a parsed map.
+     *
+     * @param map The map
+     * @param key The key
+     * @return The nested map, or an empty map if the key is missing or not a map
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> getSection(Map<String, Object> map, String key) {
+        Object value = map.get(key);
+        return value instanceof Map ? (Map<String, Object>) value : Collections.<String, Object>emptyMap();
+    }
+    
+    /**
+     * Reads a list of strings from a parsed map.
+     *
+     * @param map The map
+     * @param key The key
+     * @return The strings, or an empty list if the key is missing or not a list
+     */
+    static List<String> getStringList(Map<String, Object> map, String key) {
+        Object value = map.get(key);
+        List<String> strings = new ArrayList<>();
+        if (value instanceof List) {
+            for (Object element : (List<?>) value) {
+                if (element instanceof String) {
+                    strings.add((String) element);
+                }
+            }
+        }
+        return strings;
+    }
+}
@@ -3,6 +3,7 @@ package com.minecraft.clanplugin.utils;
 import com.minecraft.clanplugin.ClanPlugin;
 import com.minecraft.clanplugin.models.Clan;
 import com.minecraft.clanplugin.models.Territory;
+import com.minecraft.clanplugin.storage.TerritoryManager;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Color;
@@ -13,7 +14,6 @@ import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitTask;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -29,7 +29,9 @@ public class TerritoryEffectUtils {
     private static ClanPlugin plugin;
     private static final Map<UUID, Set<BukkitTask>> playerEffectTasks = new HashMap<>();
     private static final Map<String, Long> territoryLastVisualized = new HashMap<>();
+    private static final Map<String, TerritoryOutline> outlineCache = new HashMap<>();
     private static final long VISUALIZATION_COOLDOWN = 5000; // 5 seconds cooldown
+    private static final int BORDER_VIEW_RANGE = 80; // Borders are drawn within 5 chunks of the viewer
     
     /**
      * Initializes territory effect utilities with plugin instance.
@@ -41,7 +43,9 @@ public class TerritoryEffectUtils {
     }
     
     /**
-     * Shows a border effect around a territory chunk for a player.
+     * Shows a border effect for a player around the territory of the clan
+     * that owns a chunk, with a flag marker in the chunk itself. Only the outer
+     * border of the clan's claims is drawn, not the edges between its chunks.
      * 
      * @param player The player to show the effect to
      * @param territory The territory to visualize
@@ -62,8 +66,6 @@ public class TerritoryEffectUtils {
         // Convert to world coordinates
         int startX = chunkX << 4; // multiply by 16
         int startZ = chunkZ << 4; // multiply by 16
-        int endX = startX + 16;
-        int endZ = startZ + 16;
         
         // Get territory ID for cooldown tracking
         String territoryId = territory.getWorldName() + ":" + chunkX + ":" + chunkZ;
@@ -91,7 +93,7 @@ public class TerritoryEffectUtils {
         // Cancel existing tasks for this player
         cancelEffects(playerUuid);
         
-        // Create a task that runs every 5 ticks (0.25 seconds)
+        // Create a task that draws the clan's border every 5 ticks (0.25 seconds)
         BukkitTask borderTask = Bukkit.getScheduler().runTaskTimer(plugin, () -> {
             // Check if player is still online and in the same world
             if (!player.isOnline() || !player.getWorld().equals(world)) {
@@ -99,41 +101,7 @@ public class TerritoryEffectUtils {
                 return;
             }
             
-            // If player is too far, don't show particles
-            Location playerLoc = player.getLocation();
-            int playerChunkX = playerLoc.getBlockX() >> 4;
-            int playerChunkZ = playerLoc.getBlockZ() >> 4;
-            
-            // Only show if player is within 5 chunks
-            if (Math.abs(playerChunkX - chunkX) > 5 || Math.abs(playerChunkZ - chunkZ) > 5) {
-                return;
-            }
-            
-            // Draw boundary particles at y level near player
-            int y = Math.max(0, Math.min(255, playerLoc.getBlockY()));
-            
-            // Draw animated border - north and south edges
-            for (int x = startX; x <= endX; x += 2) {
-                showBoundaryParticle(player, world, x, y, startZ, dustOptions);
-                showBoundaryParticle(player, world, x, y, endZ, dustOptions);
-            }
-            
-            // Draw animated border - east and west edges
-            for (int z = startZ + 2; z < endZ; z += 2) {
-                showBoundaryParticle(player, world, startX, y, z, dustOptions);
-                showBoundaryParticle(player, world, endX, y, z, dustOptions);
-            }
-            
-            // Add corner pillars for a more 3D effect
-            for (int yOffset = -2; yOffset <= 2; yOffset++) {
-                int displayY = y + yOffset;
-                if (displayY < 0 || displayY > 255) continue;
-                
-                showBoundaryParticle(player, world, startX, displayY, startZ, dustOptions);
-                showBoundaryParticle(player, world, endX, displayY, startZ, dustOptions);
-                showBoundaryParticle(player, world, startX, displayY, endZ, dustOptions);
-                showBoundaryParticle(player, world, endX, displayY, endZ, dustOptions);
-            }
+            drawClanBorder(player, world, clan.getName(), dustOptions);
         }, 0L, 5L);
         
         tasks.add(borderTask);
@@ -203,41 +171,110 @@ public class TerritoryEffectUtils {
             return;
         }
         
-        // Schedule territory visualization with delays to spread out effects
-        List<BukkitTask> tasks = new ArrayList<>();
         UUID playerUuid = player.getUniqueId();
         
         // Cancel existing effects
         cancelEffects(playerUuid);
         
         // Show message
-        player.sendMessage(ChatColor.GREEN + "Visualizing " + territories.size() + 
+        player.sendMessage(ChatColor.GREEN + "Visualizing the border of " + territories.size() + 
                 " territory chunks for clan " + clan.getName() + "...");
         
-        // Create a set for tasks
-        Set<BukkitTask> effectTasks = new HashSet<>();
+        DustOptions dustOptions = new DustOptions(parseColor(clan.getColor()), 1.0f);
         
-        // Visualize each territory with a small delay between them
-        for (int i = 0; i < territories.size(); i++) {
-            Territory territory = territories.get(i);
-            int delay = i * 2; // 2 ticks delay between each territory
-            
-            BukkitTask task = Bukkit.getScheduler().runTaskLater(plugin, () -> {
-                if (player.isOnline()) {
-                    showTerritoryBorder(player, territory, duration);
-                }
-            }, delay);
+        // One task draws the whole border near the player, in whatever world they are in
+        BukkitTask borderTask = Bukkit.getScheduler().runTaskTimer(plugin, () -> {
+            if (!player.isOnline()) {
+                cancelEffects(playerUuid);
+                return;
+            }
             
-            effectTasks.add(task);
-        }
+            drawClanBorder(player, player.getWorld(), clan.getName(), dustOptions);
+        }, 0L, 5L);
         
         // Store tasks for this player
+        Set<BukkitTask> effectTasks = new HashSet<>();
+        effectTasks.add(borderTask);
         playerEffectTasks.put(playerUuid, effectTasks);
         
         // Schedule automatic cleanup
         Bukkit.getScheduler().runTaskLater(plugin, () -> {
             cancelEffects(playerUuid);
-        }, duration * 20L + territories.size() * 2); // Account for spawn delays
+        }, duration * 20L);
+    }
+    
+    /**
+     * Gets the outline of a clan's territory, computing it again only after
+     * the clan claimed or lost chunks.
+     * 
+     * @param clanName The name of the clan
+     * @return The outline
+     */
+    public static TerritoryOutline getOutline(String clanName) {
+        TerritoryManager territoryManager = plugin.getStorageManager().getTerritoryManager();
+        TerritoryOutline outline = outlineCache.get(clanName);
+        if (outline == null || outline.getRevision() != territoryManager.getClanRevision(clanName)) {
+            outline = new TerritoryOutline(territoryManager, clanName);
+            outlineCache.put(clanName, outline);
+        }
+        return outline;
+    }
+    
+    /**
+     * Draws the parts of a clan's outer border that lie near a player, with
+     * a particle every two blocks and short pillars at the segment ends.
+     * 
+     * @param player The player to show the border to
+     * @param world The world the player is in
+     * @param clanName The name of the clan
+     * @param dustOptions The particle dust options
+     */
+    private static void drawClanBorder(Player player, World world, String clanName, DustOptions dustOptions) {
+        Location playerLoc = player.getLocation();
+        int minX = playerLoc.getBlockX() - BORDER_VIEW_RANGE;
+        int maxX = playerLoc.getBlockX() + BORDER_VIEW_RANGE;
+        int minZ = playerLoc.getBlockZ() - BORDER_VIEW_RANGE;
+        int maxZ = playerLoc.getBlockZ() + BORDER_VIEW_RANGE;
+        
+        // Draw boundary particles at y level near player
+        int y = Math.max(0, Math.min(255, playerLoc.getBlockY()));
+        
+        int[] segments = getOutline(clanName).getSegments(world.getName());
+        for (int i = 0; i < segments.length; i += 4) {
+            int x1 = segments[i];
+            int z1 = segments[i + 1];
+            int x2 = segments[i + 2];
+            int z2 = segments[i + 3];
+            if (x2 < minX || x1 > maxX || z2 < minZ || z1 > maxZ) {
+                continue;
+            }
+            
+            // Clip the segment to the viewer's range, keeping the particles on even steps from its start
+            if (z1 == z2) {
+                int fromX = x1 < minX ? x1 + ((minX - x1 + 1) & ~1) : x1;
+                for (int x = fromX; x <= Math.min(x2, maxX); x += 2) {
+                    showBoundaryParticle(player, world, x, y, z1, dustOptions);
+                }
+            } else {
+                int fromZ = z1 < minZ ? z1 + ((minZ - z1 + 1) & ~1) : z1;
+                for (int z = fromZ; z <= Math.min(z2, maxZ); z += 2) {
+                    showBoundaryParticle(player, world, x1, y, z, dustOptions);
+                }
+            }
+            
+            // Add corner pillars for a more 3D effect
+            for (int yOffset = -2; yOffset <= 2; yOffset++) {
+                int displayY = y + yOffset;
+                if (displayY < 0 || displayY > 255) continue;
+                
+                if (x1 >= minX && z1 >= minZ) {
+                    showBoundaryParticle(player, world, x1, displayY, z1, dustOptions);
+                }
+                if (x2 <= maxX && z2 <= maxZ) {
+                    showBoundaryParticle(player, world, x2, displayY, z2, dustOptions);
+                }
+            }
+        }
     }
     
     /**
@@ -268,6 +305,23 @@ public class TerritoryEffectUtils {
         }
     }
     
+    /**
+     * Drops the cached outline of a clan. Called when the clan is removed.
+     * 
+     * @param clanName The name of the clan
+     */
+    public static void forgetClan(String clanName) {
+        outlineCache.remove(clanName);
+    }
+    
+    /**
+     * Drops every cached outline. Called when the plugin is disabled.
+     */
+    public static void clearCache() {
+        outlineCache.clear();
+        territoryLastVisualized.clear();
+    }
+    
     /**
      * Parses a ChatColor string into a Bukkit Color for particles.
      * 
@@ -0,0 +1,153 @@
+package com.minecraft.clanplugin.utils;
+
+import com.minecraft.clanplugin.models.Territory;
+import com.minecraft.clanplugin.storage.TerritoryManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outer border of a clan's claimed chunks, as straight block-aligned
+ * segments. Chunk edges shared by two of the clan's chunks are left out and
+ * neighbouring edges on the same line are merged, so a large base is outlined
+ * by a few long segments instead of four edges per chunk.
+ */
+public final class TerritoryOutline {
+    
+    private final long revision;
+    private final Map<String, int[]> segmentsByWorld;
+    
+    /**
+     * Computes the outline of a clan's territory.
+     *
+     * @param territoryManager The territory manager
+     * @param clanName The name of the clan
+     */
+    public TerritoryOutline(TerritoryManager territoryManager, String clanName) {
+        this.revision = territoryManager.getClanRevision(clanName);
+        this.segmentsByWorld = new HashMap<>();
+        
+        Map<String, List<Territory>> byWorld = new HashMap<>();
+        for (Territory territory : territoryManager.getClanTerritories(clanName)) {
+            byWorld.computeIfAbsent(territory.getWorldName(), world -> new ArrayList<>()).add(territory);
+        }
+        
+        for (Map.Entry<String, List<Territory>> entry : byWorld.entrySet()) {
+            String worldName = entry.getKey();
+            List<Territory> territories = entry.getValue();
+            
+            // Outer edges as (line, start chunk) keys: lines of constant Z, then lines of constant X
+            long[] horizontal = new long[territories.size() * 2];
+            long[] vertical = new long[territories.size() * 2];
+            int horizontalCount = 0;
+            int verticalCount = 0;
+            for (Territory territory : territories) {
+                int x = territory.getChunkX();
+                int z = territory.getChunkZ();
+                if (!territoryManager.isClaimedBy(worldName, x, z - 1, clanName)) {
+                    horizontal[horizontalCount++] = edgeKey(z, x);
+                }
+                if (!territoryManager.isClaimedBy(worldName, x, z + 1, clanName)) {
+                    horizontal[horizontalCount++] = edgeKey(z + 1, x);
+                }
+                if (!territoryManager.isClaimedBy(worldName, x - 1, z, clanName)) {
+                    vertical[verticalCount++] = edgeKey(x, z);
+                }
+                if (!territoryManager.isClaimedBy(worldName, x + 1, z, clanName)) {
+                    vertical[verticalCount++] = edgeKey(x + 1, z);
+                }
+            }
+            
+            List<int[]> segments = new ArrayList<>();
+            merge(horizontal, horizontalCount, false, segments);
+            merge(vertical, verticalCount, true, segments);
+            
+            int[] packed = new int[segments.size() * 4];
+            for (int i = 0; i < segments.size(); i++) {
+                System.arraycopy(segments.get(i), 0, packed, i * 4, 4);
+            }
+            segmentsByWorld.put(worldName, packed);
+        }
+    }
+    
+    /**
+     * Gets the clan revision this outline was computed at.
+     *
+     * @return The revision, see {@link TerritoryManager#getClanRevision(String)}
+     */
+    public long getRevision() {
+        return revision;
+    }
+    
+    /**
+     * Gets the outline segments in a world as block coordinates, four ints per
+     * segment: start X, start Z, end X, end Z. Every segment runs along the X
+     * or the Z axis, from the lower to the higher coordinate.
+     *
+     * @param worldName The world name
+     * @return The segments, empty if the clan has no territory in the world
+     */
+    public int[] getSegments(String worldName) {
+        int[] segments = segmentsByWorld.get(worldName);
+        return segments != null ? segments : new int[0];
+    }
+    
+    /**
+     * Gets the number of segments in all worlds.
+     *
+     * @return The segment count
+     */
+    public int getSegmentCount() {
+        int count = 0;
+        for (int[] segments : segmentsByWorld.values()) {
+            count += segments.length / 4;
+        }
+        return count;
+    }
+    
+    /**
+     * Sorts chunk edges along their lines and joins each run of touching
+     * edges into one segment.
+     *
+     * @param edges The edge keys, see {@link #edgeKey(int, int)}
+     * @param count The number of keys
+     * @param alongZ Whether the lines run along the Z axis (constant X)
+     * @param segments Receives the segments in block coordinates
+     */
+    private static void merge(long[] edges, int count, boolean alongZ, List<int[]> segments) {
+        Arrays.sort(edges, 0, count);
+        
+        int i = 0;
+        while (i < count) {
+            int line = (int) (edges[i] >> 32);
+            int start = (int) edges[i] ^ Integer.MIN_VALUE;
+            int end = start + 1;
+            i++;
+            while (i < count && edges[i] == edgeKey(line, end)) {
+                end++;
+                i++;
+            }
+            
+            if (alongZ) {
+                segments.add(new int[] { line << 4, start << 4, line << 4, end << 4 });
+            } else {
+                segments.add(new int[] { start << 4, line << 4, end << 4, line << 4 });
+            }
+        }
+    }
+    
+    /**
+     * Packs a chunk edge into a key that sorts by line and then by position
+     * along the line, negative positions included.
+     *
+     * @param line The chunk coordinate of the line
+     * @param position The chunk coordinate along the line
+     * @return The key
+     */
+    private static long edgeKey(int line, int position) {
+        return ((long) line << 32) | ((position ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,227 @@
+package com.minecraft.clanplugin.wars;
+
+import com.minecraft.clanplugin.ClanPlugin;
+import com.minecraft.clanplugin.models.Clan;
+import com.minecraft.clanplugin.storage.TerritoryManager;
+import org.bukkit.ChatColor;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Runs clan raids. Each raid is a {@link RaidSession} that weakens the
+ * territory of the clan the raiders are at war with around its center over
+ * its duration. One task runs every tick
+ * while raids are active and shares wars.raids.chunks_per_tick between them,
+ * so the work per tick stays the same however many raids run at once. The
+ * territories a raid weakened are saved once, when it ends.
+ */
+public class RaidManager {
+    
+    private final ClanPlugin plugin;
+    private final Map<String, RaidSession> raidsByClan;
+    private final Map<String, Long> targetCooldowns; // Lower-case target clan name to the time it may be raided again
+    private final ArrayDeque<RaidSession> active;
+    private final int radius;
+    private final long durationMillis;
+    private final int lossPercent;
+    private final int chunksPerTick;
+    private final long cooldownMillis;
+    private BukkitTask tickTask;
+    
+    /**
+     * Creates the raid manager from the wars.raids settings.
+     *
+     * @param plugin The plugin instance
+     */
+    public RaidManager(ClanPlugin plugin) {
+        this.plugin = plugin;
+        this.raidsByClan = new HashMap<>();
+        this.targetCooldowns = new HashMap<>();
+        this.active = new ArrayDeque<>();
+        this.radius = Math.max(0, plugin.getConfig().getInt("wars.raids.radius", 3));
+        this.durationMillis = Math.max(1, plugin.getConfig().getInt("wars.raids.duration_minutes", 10)) * 60000L;
+        this.lossPercent = Math.max(0, Math.min(100, plugin.getConfig().getInt("wars.raids.influence_loss_percent", 25)));
+        this.chunksPerTick = Math.max(1, plugin.getConfig().getInt("wars.raids.chunks_per_tick", 64));
+        this.cooldownMillis = Math.max(0, plugin.getConfig().getInt("wars.raids.target_cooldown_minutes", 60)) * 60000L;
+    }
+    
+    /**
+     * Checks whether a clan may start a raid from a player's position. A clan
+     * may only raid the clan it is at war with, never an ally, and a clan
+     * that was raided may not be raided again until its cooldown ends.
+     *
+     * @param player The player starting the raid
+     * @param raidingClanName The name of the player's clan
+     * @return The reason the raid cannot start, or null if it can
+     */
+    public String checkRaid(Player player, String raidingClanName) {
+        if (raidsByClan.containsKey(raidingClanName)) {
+            return "Your clan is already raiding!";
+        }
+        
+        ClanWar war = plugin.getWarManager().getWarForClan(raidingClanName);
+        if (war == null || war.hasEnded()) {
+            return "Your clan can only raid a clan it is at war with!";
+        }
+        
+        String targetClanName = war.getOpposingClan(raidingClanName);
+        Clan raidingClan = plugin.getStorageManager().getClanStorage().getClan(raidingClanName);
+        if (raidingClan != null && raidingClan.isAlly(targetClanName)) {
+            return "Your clan cannot raid an ally!";
+        }
+        
+        long now = System.currentTimeMillis();
+        Long cooldownEnd = targetCooldowns.get(targetClanName.toLowerCase());
+        if (cooldownEnd != null && cooldownEnd > now) {
+            return targetClanName + " was raided recently and cannot be raided again for " +
+                   plugin.getWarManager().formatTimeRemaining(cooldownEnd - now) + ".";
+        }
+        
+        Location location = player.getLocation();
+        if (plugin.getStorageManager().getTerritoryManager().getNearestTerritory(location.getWorld().getName(),
+                location.getBlockX() >> 4, location.getBlockZ() >> 4, radius,
+                territory -> territory.getClanName().equalsIgnoreCase(targetClanName)) == null) {
+            return "There is no territory of " + targetClanName + " within raid range!";
+        }
+        return null;
+    }
+    
+    /**
+     * Starts a raid on the clan the raiding clan is at war with, centered on
+     * a player's chunk, with the player as its first participant.
+     *
+     * @param player The player starting the raid
+     * @param raidingClanName The name of the player's clan
+     * @return The new raid, or null if {@link #checkRaid(Player, String)} does not allow it
+     */
+    public RaidSession startRaid(Player player, String raidingClanName) {
+        if (checkRaid(player, raidingClanName) != null) {
+            return null;
+        }
+        
+        String targetClanName = plugin.getWarManager().getWarForClan(raidingClanName).getOpposingClan(raidingClanName);
+        Location location = player.getLocation();
+        RaidSession raid = new RaidSession(raidingClanName, targetClanName, location.getWorld().getName(),
+                location.getBlockX() >> 4, location.getBlockZ() >> 4, radius, durationMillis);
+        raid.addParticipant(player.getUniqueId());
+        raidsByClan.put(raidingClanName, raid);
+        active.add(raid);
+        // Counted from the end of this raid, so a clan is never raided twice at once
+        targetCooldowns.put(targetClanName.toLowerCase(), raid.getEndTime() + cooldownMillis);
+        
+        if (tickTask == null) {
+            tickTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+        }
+        return raid;
+    }
+    
+    /**
+     * Adds a player to their clan's raid.
+     *
+     * @param playerUUID The UUID of the player
+     * @param clanName The name of the player's clan
+     * @return True if the clan is raiding and the player was not taking part yet
+     */
+    public boolean joinRaid(UUID playerUUID, String clanName) {
+        RaidSession raid = raidsByClan.get(clanName);
+        return raid != null && raid.addParticipant(playerUUID);
+    }
+    
+    /**
+     * Gets the raid a clan is running.
+     *
+     * @param clanName The name of the clan
+     * @return The raid, or null if the clan is not raiding
+     */
+    public RaidSession getRaid(String clanName) {
+        return raidsByClan.get(clanName);
+    }
+    
+    /**
+     * Gets all raids in progress.
+     *
+     * @return The raids
+     */
+    public List<RaidSession> getActiveRaids() {
+        return new ArrayList<>(active);
+    }
+    
+    /**
+     * Ends every raid and saves what they weakened. Called on shutdown.
+     */
+    public void shutdown() {
+        while (!active.isEmpty()) {
+            endRaid(active.poll());
+        }
+        if (tickTask != null) {
+            tickTask.cancel();
+            tickTask = null;
+        }
+    }
+    
+    /**
+     * Advances every raid by its share of this tick's chunks and ends the
+     * raids that are over. Each raid gets what its pace calls for, up to an
+     * even split of what is left of the budget; the raid that went first
+     * goes last on the next tick.
+     */
+    private void tick() {
+        TerritoryManager territoryManager = plugin.getStorageManager().getTerritoryManager();
+        int budget = chunksPerTick;
+        
+        for (int left = active.size(); left > 0; left--) {
+            RaidSession raid = active.poll();
+            int quota = Math.min(raid.getChunksDue(), budget / left);
+            if (quota == 0 && budget > 0) {
+                quota = Math.min(raid.getChunksDue(), 1);
+            }
+            budget -= quota;
+            
+            for (int i = 0; i < quota && raid.hasNextChunk(); i++) {
+                raid.advance(territoryManager.raidTerritory(raid.getWorldName(), raid.getNextChunkX(),
+                        raid.getNextChunkZ(), raid.getTargetClan(), lossPercent));
+            }
+            
+            // A raid whose time is up still finishes its sweep if the budget held it back
+            if (raid.isFinished() && !raid.hasNextChunk()) {
+                endRaid(raid);
+            } else {
+                active.add(raid);
+            }
+        }
+        
+        if (active.isEmpty()) {
+            tickTask.cancel();
+            tickTask = null;
+        } else {
+            active.add(active.poll());
+        }
+    }
+    
+    /**
+     * Ends a raid, saves the territories it weakened and tells its participants.
+     *
+     * @param raid The raid
+     */
+    private void endRaid(RaidSession raid) {
+        raidsByClan.remove(raid.getRaidingClan());
+        plugin.getStorageManager().getTerritoryManager().saveRaidedTerritories(raid.getWeakenedTerritories());
+        
+        int weakened = raid.getWeakenedTerritories().size();
+        for (UUID participant : raid.getParticipants()) {
+            Player player = plugin.getServer().getPlayer(participant);
+            if (player != null && player.isOnline()) {
+                player.sendMessage(ChatColor.GOLD + "The raid has ended. " + ChatColor.YELLOW + weakened +
+                                   ChatColor.GOLD + " enemy territories were weakened.");
+            }
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.minecraft.clanplugin.wars;
+
+import com.minecraft.clanplugin.models.Territory;
+import com.minecraft.clanplugin.storage.DiscMask;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A raid in progress. The raid sweeps the chunks of its disc from the center
+ * outwards, weakening each territory of the raided clan once, and paces
+ * itself so the sweep ends with the raid. The weakened territories are kept until the raid
+ * ends and are then saved together.
+ */
+public class RaidSession {
+    
+    private final String raidId;
+    private final String raidingClan;
+    private final String targetClan;
+    private final String worldName;
+    private final int centerX;
+    private final int centerZ;
+    private final DiscMask mask;
+    private final long startTime;
+    private final long endTime;
+    private final Set<UUID> participants;
+    private final Set<Territory> weakened;
+    private int cursor;
+    
+    /**
+     * Creates a raid session.
+     *
+     * @param raidingClan The name of the raiding clan
+     * @param targetClan The name of the clan being raided
+     * @param worldName The world name
+     * @param centerX The center chunk X coordinate
+     * @param centerZ The center chunk Z coordinate
+     * @param radius The raid radius in chunks
+     * @param durationMillis How long the raid lasts
+     */
+    public RaidSession(String raidingClan, String targetClan, String worldName, int centerX, int centerZ, int radius, long durationMillis) {
+        this.raidId = UUID.randomUUID().toString();
+        this.raidingClan = raidingClan;
+        this.targetClan = targetClan;
+        this.worldName = worldName;
+        this.centerX = centerX;
+        this.centerZ = centerZ;
+        this.mask = DiscMask.of(radius);
+        this.startTime = System.currentTimeMillis();
+        this.endTime = startTime + durationMillis;
+        this.participants = new HashSet<>();
+        this.weakened = new LinkedHashSet<>();
+    }
+    
+    /**
+     * Gets the unique ID of this raid.
+     *
+     * @return The raid ID
+     */
+    public String getRaidId() {
+        return raidId;
+    }
+    
+    /**
+     * Gets the name of the raiding clan.
+     *
+     * @return The clan name
+     */
+    public String getRaidingClan() {
+        return raidingClan;
+    }
+    
+    /**
+     * Gets the name of the clan being raided.
+     *
+     * @return The clan name
+     */
+    public String getTargetClan() {
+        return targetClan;
+    }
+    
+    /**
+     * Gets the world of the raid.
+     *
+     * @return The world name
+     */
+    public String getWorldName() {
+        return worldName;
+    }
+    
+    /**
+     * Gets the center chunk X coordinate.
+     *
+     * @return The chunk X coordinate
+     */
+    public int getCenterX() {
+        return centerX;
+    }
+    
+    /**
+     * Gets the center chunk Z coordinate.
+     *
+     * @return The chunk Z coordinate
+     */
+    public int getCenterZ() {
+        return centerZ;
+    }
+    
+    /**
+     * Gets the raid radius.
+     *
+     * @return The radius in chunks
+     */
+    public int getRadius() {
+        return mask.getRadius();
+    }
+    
+    /**
+     * Gets the time the raid started.
+     *
+     * @return The start time in milliseconds
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+    
+    /**
+     * Gets the time the raid ends.
+     *
+     * @return The end time in milliseconds
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+    
+    /**
+     * Gets the time left until the raid ends.
+     *
+     * @return The time remaining in milliseconds
+     */
+    public long getTimeRemaining() {
+        return Math.max(0, endTime - System.currentTimeMillis());
+    }
+    
+    /**
+     * Adds a participant to the raid.
+     *
+     * @param playerUUID The UUID of the player
+     * @return True if the player was not taking part yet
+     */
+    public boolean addParticipant(UUID playerUUID) {
+        return participants.add(playerUUID);
+    }
+    
+    /**
+     * Gets the players taking part in the raid.
+     *
+     * @return The participants' UUIDs
+     */
+    public Set<UUID> getParticipants() {
+        return Collections.unmodifiableSet(participants);
+    }
+    
+    /**
+     * Gets the territories weakened so far.
+     *
+     * @return The weakened territories
+     */
+    public Set<Territory> getWeakenedTerritories() {
+        return Collections.unmodifiableSet(weakened);
+    }
+    
+    /**
+     * Gets how far the sweep has come.
+     *
+     * @return The share of the disc swept, from 0.0 to 1.0
+     */
+    public double getProgress() {
+        return mask.size() == 0 ? 1.0 : (double) cursor / mask.size();
+    }
+    
+    /**
+     * Checks whether the raid is over. A raid lasts its full duration, the
+     * sweep being paced to reach the edge of the disc as it ends.
+     *
+     * @return True if the raid is over
+     */
+    public boolean isFinished() {
+        return System.currentTimeMillis() >= endTime;
+    }
+    
+    /**
+     * Gets the number of chunks the sweep should cover now to keep pace with
+     * the time elapsed, which is 0 on most ticks of a long raid.
+     *
+     * @return The number of chunks due
+     */
+    int getChunksDue() {
+        long duration = Math.max(1, endTime - startTime);
+        long elapsed = Math.min(duration, System.currentTimeMillis() - startTime);
+        long target = mask.size() * elapsed / duration;
+        return (int) Math.max(0, target - cursor);
+    }
+    
+    /**
+     * Checks whether the sweep has chunks left.
+     *
+     * @return True if chunks are left
+     */
+    boolean hasNextChunk() {
+        return cursor < mask.size();
+    }
+    
+    /**
+     * Gets the X coordinate of the next chunk of the sweep.
+     *
+     * @return The chunk X coordinate
+     */
+    int getNextChunkX() {
+        return centerX + mask.getOffsetX(cursor);
+    }
+    
+    /**
+     * Gets the Z coordinate of the next chunk of the sweep.
+     *
+     * @return The chunk Z coordinate
+     */
+    int getNextChunkZ() {
+        return centerZ + mask.getOffsetZ(cursor);
+    }
+    
+    /**
+     * Moves the sweep to the next chunk, recording the territory the raid
+     * weakened in the current one.
+     *
+     * @param territory The weakened territory, or null if there was none
+     */
+    void advance(Territory territory) {
+        if (territory != null) {
+            weakened.add(territory);
+        }
+        cursor++;
+    }
+}
@@ -2,6 +2,7 @@ package com.minecraft.clanplugin.wars;
 
 import com.minecraft.clanplugin.ClanPlugin;
 import com.minecraft.clanplugin.models.Clan;
+import com.minecraft.clanplugin.storage.PersistenceService;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
@@ -12,8 +13,10 @@ import org.json.simple.parser.ParseException;
 
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -27,6 +30,7 @@ public class WarManager {
     private final Map<String, ClanWar> activeWars;
     private final Map<String, List<ClanWar>> clanWarHistory;
     private final File warsFile;
+    private final PersistenceService.Registration warsRegistration;
     
     /**
      * Creates a new WarManager
@@ -38,9 +42,7 @@ public class WarManager {
         this.activeWars = new HashMap<>();
         this.clanWarHistory = new HashMap<>();
         this.warsFile = new File(plugin.getDataFolder(), "wars.json");
-        
-        // Load wars from file
-        loadWars();
+        this.warsRegistration = plugin.getPersistenceService().registerSnapshot("Wars", warsFile, this::publishWars);
     }
     
     /**
@@ -440,35 +442,54 @@ public class WarManager {
     }
     
     /**
-     * Saves wars to file
+     * Saves wars to file. The file is marked changed and written by the next
+     * persistence flush.
      */
-    @SuppressWarnings("unchecked")
     public void saveWars() {
+        warsRegistration.markDirty();
+    }
+    
+    /**
+     * Copies the active wars and the war history. Called on the main thread.
+     * 
+     * @return The snapshot to write
+     */
+    private PersistenceService.Snapshot publishWars() {
+        List<WarSnapshot> active = new ArrayList<>(activeWars.size());
+        for (ClanWar war : activeWars.values()) {
+            active.add(new WarSnapshot(war));
+        }
+        
+        Map<String, List<WarSnapshot>> history = new LinkedHashMap<>();
+        for (Map.Entry<String, List<ClanWar>> entry : clanWarHistory.entrySet()) {
+            List<WarSnapshot> clanWars = new ArrayList<>(entry.getValue().size());
+            for (ClanWar war : entry.getValue()) {
+                clanWars.add(new WarSnapshot(war));
+            }
+            history.put(entry.getKey(), clanWars);
+        }
+        
+        return out -> writeWarsJson(active, history, out);
+    }
+    
+    /**
+     * Writes wars in the wars.json format. Runs on the persistence I/O thread.
+     * 
+     * @param active The active wars
+     * @param history The war history keyed by lowercase clan name
+     * @param out The stream to write to
+     * @throws IOException If the data could not be written
+     */
+    @SuppressWarnings("unchecked")
+    private void writeWarsJson(List<WarSnapshot> active, Map<String, List<WarSnapshot>> history, 
+                               OutputStream out) throws IOException {
         JSONObject jsonObject = new JSONObject();
         
         // Save active wars
         JSONArray activeWarsArray = new JSONArray();
         
-        for (ClanWar war : activeWars.values()) {
-            JSONObject warObj = new JSONObject();
-            
-            warObj.put("initiating_clan", war.getInitiatingClan());
-            warObj.put("target_clan", war.getTargetClan());
-            warObj.put("start_time", war.getStartTime());
-            warObj.put("end_time", war.getEndTime());
-            warObj.put("status", war.getStatus().name());
-            warObj.put("initiating_score", war.getInitiatingClanScore());
-            warObj.put("target_score", war.getTargetClanScore());
-            
-            // Save kills
-            JSONObject killsObj = new JSONObject();
-            for (Map.Entry<UUID, Integer> entry : war.getKills().entrySet()) {
-                killsObj.put(entry.getKey().toString(), entry.getValue());
-            }
-            
-            warObj.put("kills", killsObj);
-            
-            activeWarsArray.add(warObj);
+        for (WarSnapshot war : active) {
+            activeWarsArray.add(toJson(war));
         }
         
         jsonObject.put("active_wars", activeWarsArray);
@@ -476,29 +497,11 @@ public class WarManager {
         // Save war history
         JSONObject historyObj = new JSONObject();
         
-        for (Map.Entry<String, List<ClanWar>> entry : clanWarHistory.entrySet()) {
+        for (Map.Entry<String, List<WarSnapshot>> entry : history.entrySet()) {
             JSONArray clanWarsArray = new JSONArray();
             
-            for (ClanWar war : entry.getValue()) {
-                JSONObject warObj = new JSONObject();
-                
-                warObj.put("initiating_clan", war.getInitiatingClan());
-                warObj.put("target_clan", war.getTargetClan());
-                warObj.put("start_time", war.getStartTime());
-                warObj.put("end_time", war.getEndTime());
-                warObj.put("status", war.getStatus().name());
-                warObj.put("initiating_score", war.getInitiatingClanScore());
-                warObj.put("target_score", war.getTargetClanScore());
-                
-                // Save kills
-                JSONObject killsObj = new JSONObject();
-                for (Map.Entry<UUID, Integer> killEntry : war.getKills().entrySet()) {
-                    killsObj.put(killEntry.getKey().toString(), killEntry.getValue());
-                }
-                
-                warObj.put("kills", killsObj);
-                
-                clanWarsArray.add(warObj);
+            for (WarSnapshot war : entry.getValue()) {
+                clanWarsArray.add(toJson(war));
             }
             
             historyObj.put(entry.getKey(), clanWarsArray);
@@ -506,11 +509,39 @@ public class WarManager {
         
         jsonObject.put("war_history", historyObj);
         
-        try (FileWriter writer = new FileWriter(warsFile)) {
-            writer.write(jsonObject.toJSONString());
-        } catch (IOException e) {
-            plugin.getLogger().warning("Failed to save wars: " + e.getMessage());
+        // Same default charset as the FileReader used when loading
+        Writer writer = new OutputStreamWriter(out);
+        writer.write(jsonObject.toJSONString());
+        writer.flush();
+    }
+    
+    /**
+     * Converts a war into its JSON form
+     * 
+     * @param war The war to convert
+     * @return The JSON object
+     */
+    @SuppressWarnings("unchecked")
+    private JSONObject toJson(WarSnapshot war) {
+        JSONObject warObj = new JSONObject();
+        
+        warObj.put("initiating_clan", war.getInitiatingClan());
+        warObj.put("target_clan", war.getTargetClan());
+        warObj.put("start_time", war.getStartTime());
+        warObj.put("end_time", war.getEndTime());
+        warObj.put("status", war.getStatus().name());
+        warObj.put("initiating_score", war.getInitiatingClanScore());
+        warObj.put("target_score", war.getTargetClanScore());
+        
+        // Save kills
+        JSONObject killsObj = new JSONObject();
+        for (Map.Entry<UUID, Integer> entry : war.getKills().entrySet()) {
+            killsObj.put(entry.getKey().toString(), entry.getValue());
         }
+        
+        warObj.put("kills", killsObj);
+        
+        return warObj;
     }
     
     /**
@@ -537,25 +568,44 @@ public class WarManager {
      * Handles when a clan is deleted
      * 
      * @param clanName The name of the clan
+     * @return An action that restores the wars, used to roll back a unit of work
      */
-    public void handleClanDeleted(String clanName) {
+    public Runnable handleClanDeleted(String clanName) {
         // End any active wars involving this clan
-        List<String> warsToEnd = new ArrayList<>();
+        List<ClanWar> warsToEnd = new ArrayList<>();
         
         for (ClanWar war : activeWars.values()) {
             if (war.involves(clanName)) {
-                warsToEnd.add(war.getWarId());
+                warsToEnd.add(war);
             }
         }
         
-        for (String warId : warsToEnd) {
-            endWar(warId, WarStatus.CANCELLED);
+        for (ClanWar war : warsToEnd) {
+            endWar(war.getWarId(), WarStatus.CANCELLED);
         }
         
         // Remove from war history
-        clanWarHistory.remove(clanName.toLowerCase());
+        String key = clanName.toLowerCase();
+        List<ClanWar> history = clanWarHistory.remove(key);
         
         // Save changes
         saveWars();
+        
+        return () -> {
+            if (history != null) {
+                clanWarHistory.put(key, history);
+            }
+            for (ClanWar war : warsToEnd) {
+                for (String side : new String[] {war.getInitiatingClan(), war.getTargetClan()}) {
+                    List<ClanWar> wars = clanWarHistory.get(side.toLowerCase());
+                    if (wars != null) {
+                        wars.remove(war);
+                    }
+                }
+                war.setStatus(WarStatus.ACTIVE);
+                activeWars.put(war.getWarId(), war);
+            }
+            saveWars();
+        };
     }
 }
\ No newline at end of file
@@ -0,0 +1,110 @@
+package com.minecraft.clanplugin.wars;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Immutable copy of a clan war, taken on the main thread so wars.json can be
+ * built and written on the persistence I/O thread.
+ */
+final class WarSnapshot {
+    
+    private final String initiatingClan;
+    private final String targetClan;
+    private final long startTime;
+    private final long endTime;
+    private final WarStatus status;
+    private final Map<UUID, Integer> kills;
+    private final int initiatingClanScore;
+    private final int targetClanScore;
+    
+    /**
+     * Copies a war
+     *
+     * @param war The war to copy
+     */
+    WarSnapshot(ClanWar war) {
+        this.initiatingClan = war.getInitiatingClan();
+        this.targetClan = war.getTargetClan();
+        this.startTime = war.getStartTime();
+        this.endTime = war.getEndTime();
+        this.status = war.getStatus();
+        // getKills already returns a copy
+        this.kills = Collections.unmodifiableMap(war.getKills());
+        this.initiatingClanScore = war.getInitiatingClanScore();
+        this.targetClanScore = war.getTargetClanScore();
+    }
+    
+    /**
+     * Gets the clan that initiated the war
+     *
+     * @return The initiating clan name
+     */
+    String getInitiatingClan() {
+        return initiatingClan;
+    }
+    
+    /**
+     * Gets the clan that war was declared on
+     *
+     * @return The target clan name
+     */
+    String getTargetClan() {
+        return targetClan;
+    }
+    
+    /**
+     * Gets the start time
+     *
+     * @return The start time in milliseconds
+     */
+    long getStartTime() {
+        return startTime;
+    }
+    
+    /**
+     * Gets the end time
+     *
+     * @return The end time in milliseconds
+     */
+    long getEndTime() {
+        return endTime;
+    }
+    
+    /**
+     * Gets the war status
+     *
+     * @return The status
+     */
+    WarStatus getStatus() {
+        return status;
+    }
+    
+    /**
+     * Gets the kill counts
+     *
+     * @return Unmodifiable map of player UUIDs to kill counts
+     */
+    Map<UUID, Integer> getKills() {
+        return kills;
+    }
+    
+    /**
+     * Gets the initiating clan's score
+     *
+     * @return The score
+     */
+    int getInitiatingClanScore() {
+        return initiatingClanScore;
+    }
+    
+    /**
+     * Gets the target clan's score
+     *
+     * @return The score
+     */
+    int getTargetClanScore() {
+        return targetClanScore;
+    }
+}
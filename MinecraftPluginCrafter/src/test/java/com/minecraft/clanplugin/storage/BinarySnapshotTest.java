@@ -0,0 +1,66 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.models.Clan;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Writes clans to a binary snapshot and reads them back.
+ */
+public class BinarySnapshotTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void clansRoundTrip() throws IOException {
+        File file = new File(folder.getRoot(), "clans.dat");
+        BinarySnapshot.writeClans(file, Arrays.asList(
+                ClanSnapshot.of(TestClans.full("Knights")), ClanSnapshot.of(TestClans.empty("Raiders"))));
+        
+        List<Clan> clans = BinarySnapshot.readClans(file);
+        assertEquals(2, clans.size());
+        TestClans.assertSameClan(TestClans.full("Knights"), clans.get(0));
+        TestClans.assertSameClan(TestClans.empty("Raiders"), clans.get(1));
+    }
+    
+    @Test
+    public void snapshotIsUsableOnlyWhenNewerThanItsSource() throws IOException {
+        File snapshot = new File(folder.getRoot(), "clans.dat");
+        File source = folder.newFile("clans.yml");
+        assertFalse(BinarySnapshot.isUsable(snapshot, source));
+        
+        BinarySnapshot.writeClans(snapshot, Arrays.asList(ClanSnapshot.of(TestClans.empty("Raiders"))));
+        assertTrue(snapshot.setLastModified(source.lastModified() + 1000));
+        assertTrue(BinarySnapshot.isUsable(snapshot, source));
+        assertTrue(snapshot.setLastModified(source.lastModified() - 1000));
+        assertFalse(BinarySnapshot.isUsable(snapshot, source));
+    }
+    
+    @Test
+    public void truncatedSnapshotIsRejected() throws IOException {
+        File file = new File(folder.getRoot(), "clans.dat");
+        BinarySnapshot.writeClans(file, Arrays.asList(ClanSnapshot.of(TestClans.full("Knights"))));
+        byte[] data = Files.readAllBytes(file.toPath());
+        Files.write(file.toPath(), Arrays.copyOf(data, data.length / 2));
+        
+        try {
+            BinarySnapshot.readClans(file);
+            fail("A truncated snapshot was read");
+        } catch (IOException expected) {
+            // The snapshot is ignored and the YAML source is loaded instead
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.ClanPlugin;
+import com.minecraft.clanplugin.models.Clan;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that the operations spanning several managers leave every clan as
+ * it was when one of their steps fails.
+ */
+public class ClanOperationsTest {
+    
+    private ClanPlugin plugin;
+    private PersistenceService persistence;
+    private StorageManager storage;
+    private TerritoryManager territories;
+    private TerritoryPermissionManager permissions;
+    private Runnable restoreRules;
+    private Clan knights;
+    private Clan ally;
+    private Clan rival;
+    
+    @Before
+    public void setUp() {
+        plugin = mock(ClanPlugin.class);
+        persistence = mock(PersistenceService.class);
+        storage = mock(StorageManager.class);
+        territories = mock(TerritoryManager.class);
+        permissions = mock(TerritoryPermissionManager.class);
+        restoreRules = mock(Runnable.class);
+        when(plugin.getPersistenceService()).thenReturn(persistence);
+        when(plugin.getStorageManager()).thenReturn(storage);
+        when(storage.getTerritoryManager()).thenReturn(territories);
+        when(territories.getPermissionManager()).thenReturn(permissions);
+        when(permissions.forgetClan(anyString())).thenReturn(restoreRules);
+        
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        when(plugin.getLogger()).thenReturn(logger);
+        
+        knights = new Clan("Knights");
+        ally = new Clan("Ally");
+        ally.addAlliance("Knights");
+        rival = new Clan("Rival");
+        rival.addEnemy("Knights");
+        when(storage.getAllClans()).thenReturn(new LinkedHashSet<>(Arrays.asList(knights, ally, rival)));
+        when(storage.removeClan("Knights")).thenReturn(true);
+    }
+    
+    @Test
+    public void deleteClanDetachesAndRemovesTheClan() {
+        when(territories.clearClanTerritories("Knights")).thenReturn(() -> { });
+        
+        assertTrue(new ClanOperations(plugin).deleteClan(knights));
+        assertFalse(ally.isAllied("Knights"));
+        assertFalse(rival.isEnemy("Knights"));
+        verify(storage).removeClan("Knights");
+        verify(persistence).flushGroup();
+    }
+    
+    @Test
+    public void deleteClanRollsBackWhenTerritoriesFail() {
+        when(territories.clearClanTerritories("Knights")).thenThrow(new IllegalStateException("territories failed"));
+        
+        assertFalse(new ClanOperations(plugin).deleteClan(knights));
+        assertTrue(ally.isAllied("Knights"));
+        assertTrue(rival.isEnemy("Knights"));
+        verify(restoreRules).run();
+        verify(storage, never()).removeClan(anyString());
+        verify(persistence, never()).flushGroup();
+    }
+    
+    @Test
+    public void deleteClanRollsBackWhenRemovalFails() {
+        Runnable restoreTerritories = mock(Runnable.class);
+        when(territories.clearClanTerritories("Knights")).thenReturn(restoreTerritories);
+        when(storage.removeClan("Knights")).thenReturn(false);
+        
+        assertFalse(new ClanOperations(plugin).deleteClan(knights));
+        verify(restoreTerritories).run();
+        verify(restoreRules).run();
+        assertTrue(ally.isAllied("Knights"));
+        assertTrue(rival.isEnemy("Knights"));
+    }
+    
+    @Test
+    public void bulkSetRollsBackEarlierClans() {
+        ally.setMaxMembers(10);
+        rival.setMaxMembers(12);
+        doThrow(new IllegalStateException("save failed")).when(storage).saveClan(rival);
+        
+        assertFalse(new ClanOperations(plugin).bulkSet(Arrays.asList(ally, rival), "maxMembers", 50));
+        assertEquals(10, ally.getMaxMembers());
+        assertEquals(12, rival.getMaxMembers());
+        verify(persistence, never()).flushGroup();
+    }
+    
+    @Test
+    public void bulkSetChangesEveryClan() {
+        assertTrue(new ClanOperations(plugin).bulkSet(Arrays.asList(ally, rival), "maxmembers", 50));
+        assertEquals(50, ally.getMaxMembers());
+        assertEquals(50, rival.getMaxMembers());
+        verify(storage).saveClan(ally);
+        verify(storage).saveClan(rival);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void bulkSetRejectsUnknownField() {
+        new ClanOperations(plugin).bulkSet(Arrays.asList(ally), "tag", 1);
+    }
+}
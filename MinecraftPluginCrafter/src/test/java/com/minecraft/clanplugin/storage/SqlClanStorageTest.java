@@ -0,0 +1,104 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.ClanPlugin;
+import com.minecraft.clanplugin.models.Clan;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Stores clans in the sqlite backend, reopens the database and checks that
+ * every clan reads back as it was stored.
+ */
+public class SqlClanStorageTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private ClanPlugin plugin;
+    private File databaseFile;
+    private SqlClanStorage storage;
+    
+    @Before
+    public void setUp() throws SQLException {
+        plugin = mock(ClanPlugin.class);
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        when(plugin.getLogger()).thenReturn(logger);
+        databaseFile = new File(folder.getRoot(), "clans.db");
+        storage = open();
+    }
+    
+    @After
+    public void tearDown() {
+        storage.close();
+    }
+    
+    @Test
+    public void clansSurviveReopening() throws SQLException {
+        storage.addClan(TestClans.full("Knights"));
+        storage.addClan(TestClans.empty("Raiders"));
+        reopen();
+        
+        assertEquals(2, storage.getAllClans().size());
+        TestClans.assertSameClan(TestClans.full("Knights"), storage.getClan("knights"));
+        TestClans.assertSameClan(TestClans.empty("Raiders"), storage.getClan("Raiders"));
+        assertSame(storage.getClan("Knights"), storage.getPlayerClan(TestClans.MEMBER));
+    }
+    
+    @Test
+    public void savedChangesReplaceTheStoredClan() throws SQLException {
+        Clan clan = TestClans.full("Knights");
+        storage.addClan(clan);
+        clan.setLevel(8);
+        clan.removeMember(TestClans.MEMBER);
+        clan.removeAlliance("yes");
+        assertTrue(storage.saveClan(clan));
+        reopen();
+        
+        TestClans.assertSameClan(clan, storage.getClan("Knights"));
+        assertNull(storage.getPlayerClan(TestClans.MEMBER));
+    }
+    
+    @Test
+    public void removedClansStayRemoved() throws SQLException {
+        storage.addClan(TestClans.full("Knights"));
+        assertTrue(storage.removeClan("KNIGHTS"));
+        assertFalse(storage.removeClan("Knights"));
+        reopen();
+        
+        assertTrue(storage.isEmpty());
+        assertNull(storage.getPlayerClan(TestClans.LEADER));
+    }
+    
+    @Test
+    public void unknownClansAreNotSaved() {
+        assertFalse(storage.saveClan(new Clan("Unknown")));
+        assertFalse(storage.saveClan(null));
+    }
+    
+    private SqlClanStorage open() throws SQLException {
+        SqlClanStorage opened = new SqlClanStorage(plugin, databaseFile);
+        opened.load();
+        return opened;
+    }
+    
+    private void reopen() throws SQLException {
+        storage.close();
+        storage = open();
+    }
+}
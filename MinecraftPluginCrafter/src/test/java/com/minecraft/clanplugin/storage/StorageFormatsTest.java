@@ -0,0 +1,289 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.storage.MigrationRecords.ClanRecord;
+import com.minecraft.clanplugin.storage.MigrationRecords.FlagRecord;
+import com.minecraft.clanplugin.storage.MigrationRecords.HomeRecord;
+import com.minecraft.clanplugin.storage.MigrationRecords.MemberRecord;
+import com.minecraft.clanplugin.storage.MigrationRecords.TerritoryRecord;
+import com.minecraft.clanplugin.storage.StorageFormats.RecordWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Writes clans and territories with each storage format and reads them back,
+ * so every backend the {@link Migrate} tool converts between keeps every field.
+ */
+public class StorageFormatsTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private final List<String> problems = new ArrayList<>();
+    
+    @Test
+    public void clansYamlRoundTrip() throws IOException {
+        File file = new File(folder.getRoot(), StorageFormats.CLANS_YAML);
+        writeClans(StorageFormats.clansYamlWriter(file));
+        
+        Map<String, ClanRecord> read = new LinkedHashMap<>();
+        StorageFormats.readClansYaml(file, clan -> read.put(clan.name, clan), problems::add);
+        assertClans(read);
+    }
+    
+    @Test
+    public void clanShardsRoundTrip() throws IOException {
+        File shards = new File(folder.getRoot(), StorageFormats.CLAN_SHARDS);
+        writeClans(StorageFormats.clanShardWriter(shards));
+        
+        Map<String, ClanRecord> read = new LinkedHashMap<>();
+        StorageFormats.readClanShards(shards, clan -> read.put(clan.name, clan), problems::add);
+        assertClans(read);
+    }
+    
+    @Test
+    public void clansSnapshotRoundTrip() throws IOException {
+        File file = new File(folder.getRoot(), StorageFormats.CLANS_SNAPSHOT);
+        writeClans(StorageFormats.clansSnapshotWriter(file));
+        
+        Map<String, ClanRecord> read = new LinkedHashMap<>();
+        StorageFormats.readClansSnapshot(file, clan -> read.put(clan.name, clan));
+        assertClans(read);
+    }
+    
+    @Test
+    public void clansSqlRoundTrip() throws IOException {
+        File file = new File(folder.getRoot(), StorageFormats.CLAN_DATABASE);
+        writeClans(StorageFormats.clansSqlWriter(file));
+        
+        Map<String, ClanRecord> read = new LinkedHashMap<>();
+        StorageFormats.readClansSql(file, clan -> read.put(clan.name, clan), problems::add);
+        assertClans(read);
+    }
+    
+    @Test
+    public void emptyClansYamlIsRead() throws IOException {
+        File file = new File(folder.getRoot(), StorageFormats.CLANS_YAML);
+        try (RecordWriter<ClanRecord> writer = StorageFormats.clansYamlWriter(file)) {
+            writer.commit();
+        }
+        
+        List<ClanRecord> read = new ArrayList<>();
+        StorageFormats.readClansYaml(file, read::add, problems::add);
+        assertTrue(read.isEmpty());
+        assertTrue(problems.isEmpty());
+    }
+    
+    @Test
+    public void uncommittedWriterLeavesTargetAlone() throws IOException {
+        File file = new File(folder.getRoot(), StorageFormats.CLANS_YAML);
+        Files.write(file.toPath(), "clans:\n  Old: {}\n".getBytes(StandardCharsets.UTF_8));
+        try (RecordWriter<ClanRecord> writer = StorageFormats.clansYamlWriter(file)) {
+            writer.write(knights());
+        }
+        
+        List<String> names = new ArrayList<>();
+        StorageFormats.readClansYaml(file, clan -> names.add(clan.name), problems::add);
+        assertEquals(Arrays.asList("Old"), names);
+    }
+    
+    @Test
+    public void shardFileNamesDoNotCollide() {
+        assertEquals("knights.yml", StorageFormats.shardFileName("Knights"));
+        assertEquals("a%2fb.yml", StorageFormats.shardFileName("a/b"));
+        assertFalse(StorageFormats.shardFileName("a.b").equals(StorageFormats.shardFileName("a_b")));
+    }
+    
+    @Test
+    public void territoriesJsonRoundTrip() throws IOException {
+        File file = new File(folder.getRoot(), StorageFormats.TERRITORIES_JSON);
+        writeTerritories(StorageFormats.territoriesJsonWriter(file));
+        
+        List<TerritoryRecord> read = new ArrayList<>();
+        StorageFormats.readTerritoriesJson(file, read::add, problems::add);
+        // territories.json never stored flag names
+        assertTerritories(read, false);
+    }
+    
+    @Test
+    public void territoriesSnapshotRoundTrip() throws IOException {
+        File file = new File(folder.getRoot(), StorageFormats.TERRITORIES_SNAPSHOT);
+        writeTerritories(StorageFormats.territoriesSnapshotWriter(file));
+        
+        List<TerritoryRecord> read = new ArrayList<>();
+        StorageFormats.readTerritoriesSnapshot(file, read::add);
+        assertTerritories(read, true);
+    }
+    
+    private static final UUID LEADER = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID MEMBER = UUID.fromString("00000000-0000-0000-0000-000000000002");
+    private static final UUID INVITED = UUID.fromString("00000000-0000-0000-0000-000000000003");
+    
+    /**
+     * Builds a clan that sets every field, with values YAML would read back
+     * as another type if they were written unquoted.
+     *
+     * @return The clan
+     */
+    private static ClanRecord knights() {
+        ClanRecord clan = new ClanRecord("Knights");
+        clan.tag = "123";
+        clan.color = "\u00A7c";
+        clan.description = "First line\nsecond line: with a colon";
+        clan.creationTime = 1600000000000L;
+        clan.level = 7;
+        clan.experience = 12345;
+        clan.coloredArmor = false;
+        clan.skillPoints = 3;
+        clan.maxMembers = 25;
+        clan.maxTerritories = 40;
+        clan.incomeBoost = 15;
+        clan.warWins = 4;
+        clan.warLosses = 2;
+        clan.stats.put("kills", 99);
+        clan.stats.put("deaths", 0);
+        clan.home = new HomeRecord("world", 10.5, 64, -20.25, 90.5f, -12.5f);
+        clan.additionalHomes.put("456", new HomeRecord("world_nether", 1, 2, 3, 0f, 45f));
+        clan.members.add(new MemberRecord(LEADER, "Arthur", "LEADER"));
+        clan.members.add(new MemberRecord(MEMBER, "Lancelot", "MEMBER"));
+        clan.allies.add("yes");
+        clan.enemies.add("Raiders");
+        clan.invites.add(INVITED);
+        return clan;
+    }
+    
+    private void writeClans(RecordWriter<ClanRecord> writer) throws IOException {
+        try {
+            writer.write(knights());
+            writer.write(new ClanRecord("Raiders"));
+            writer.commit();
+        } finally {
+            writer.close();
+        }
+    }
+    
+    private void assertClans(Map<String, ClanRecord> read) {
+        assertTrue(problems.toString(), problems.isEmpty());
+        assertEquals(2, read.size());
+        assertClan(knights(), read.get("Knights"));
+        
+        // A clan with nothing set reads back with the defaults of a new clan
+        ClanRecord expected = new ClanRecord("Raiders");
+        ClanRecord raiders = read.get("Raiders");
+        assertNotNull(raiders);
+        expected.creationTime = raiders.creationTime;
+        assertClan(expected, raiders);
+    }
+    
+    private static void assertClan(ClanRecord expected, ClanRecord actual) {
+        assertNotNull(expected.name, actual);
+        assertEquals(expected.name, actual.name);
+        assertEquals(expected.tag, actual.tag);
+        assertEquals(expected.color, actual.color);
+        assertEquals(expected.description, actual.description);
+        assertEquals(expected.creationTime, actual.creationTime);
+        assertEquals(expected.level, actual.level);
+        assertEquals(expected.experience, actual.experience);
+        assertEquals(expected.coloredArmor, actual.coloredArmor);
+        assertEquals(expected.skillPoints, actual.skillPoints);
+        assertEquals(expected.maxMembers, actual.maxMembers);
+        assertEquals(expected.maxTerritories, actual.maxTerritories);
+        assertEquals(expected.incomeBoost, actual.incomeBoost);
+        assertEquals(expected.warWins, actual.warWins);
+        assertEquals(expected.warLosses, actual.warLosses);
+        assertEquals(expected.stats, actual.stats);
+        assertHome(expected.home, actual.home);
+        assertEquals(expected.additionalHomes.keySet(), actual.additionalHomes.keySet());
+        for (Map.Entry<String, HomeRecord> home : expected.additionalHomes.entrySet()) {
+            assertHome(home.getValue(), actual.additionalHomes.get(home.getKey()));
+        }
+        assertEquals(expected.members.size(), actual.members.size());
+        for (int i = 0; i < expected.members.size(); i++) {
+            MemberRecord member = expected.members.get(i);
+            assertEquals(member.playerUUID, actual.members.get(i).playerUUID);
+            assertEquals(member.playerName, actual.members.get(i).playerName);
+            assertEquals(member.role, actual.members.get(i).role);
+        }
+        assertEquals(expected.allies, actual.allies);
+        assertEquals(expected.enemies, actual.enemies);
+        assertEquals(expected.invites, actual.invites);
+    }
+    
+    private static void assertHome(HomeRecord expected, HomeRecord actual) {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertNotNull(actual);
+        assertEquals(expected.worldName, actual.worldName);
+        assertEquals(expected.x, actual.x, 0);
+        assertEquals(expected.y, actual.y, 0);
+        assertEquals(expected.z, actual.z, 0);
+        assertEquals(expected.yaw, actual.yaw, 0);
+        assertEquals(expected.pitch, actual.pitch, 0);
+    }
+    
+    private static List<TerritoryRecord> territories() {
+        TerritoryRecord flagged = new TerritoryRecord(-3, 7, "world", "Knights", 85, 1600000000000L);
+        flagged.flags.add(new FlagRecord(-40.5, 70, 120.5, LEADER, 1600000001000L, 2, 3, "Keep"));
+        flagged.flags.add(new FlagRecord(-33, 65, 113, MEMBER, 1600000002000L, 1, 1, null));
+        return Arrays.asList(flagged, new TerritoryRecord(100000, -100000, "world_nether", "Raiders", 50, 0L));
+    }
+    
+    private static void writeTerritories(RecordWriter<TerritoryRecord> writer) throws IOException {
+        try {
+            for (TerritoryRecord territory : territories()) {
+                writer.write(territory);
+            }
+            writer.commit();
+        } finally {
+            writer.close();
+        }
+    }
+    
+    private void assertTerritories(List<TerritoryRecord> read, boolean keepsFlagNames) {
+        assertTrue(problems.toString(), problems.isEmpty());
+        List<TerritoryRecord> expected = territories();
+        assertEquals(expected.size(), read.size());
+        for (int i = 0; i < expected.size(); i++) {
+            TerritoryRecord territory = expected.get(i);
+            TerritoryRecord actual = read.get(i);
+            assertEquals(territory.chunkX, actual.chunkX);
+            assertEquals(territory.chunkZ, actual.chunkZ);
+            assertEquals(territory.worldName, actual.worldName);
+            assertEquals(territory.clanName, actual.clanName);
+            assertEquals(territory.influenceLevel, actual.influenceLevel);
+            assertEquals(territory.claimTime, actual.claimTime);
+            assertEquals(territory.flags.size(), actual.flags.size());
+            for (int j = 0; j < territory.flags.size(); j++) {
+                FlagRecord flag = territory.flags.get(j);
+                FlagRecord actualFlag = actual.flags.get(j);
+                assertEquals(flag.x, actualFlag.x, 0);
+                assertEquals(flag.y, actualFlag.y, 0);
+                assertEquals(flag.z, actualFlag.z, 0);
+                assertEquals(flag.placedBy, actualFlag.placedBy);
+                assertEquals(flag.placedTime, actualFlag.placedTime);
+                assertEquals(flag.tier, actualFlag.tier);
+                assertEquals(flag.influenceRadius, actualFlag.influenceRadius);
+                assertEquals(keepsFlagNames ? flag.name : null, actualFlag.name);
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.models.Territory;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks which unclaims {@link TerritoryConnectivity} reports as splitting a
+ * clan's territory; claims touching at a corner are connected. Maps are drawn
+ * with '#' for the clan's claims, 'o' for another clan's and 'x' for the
+ * claims being unclaimed.
+ */
+public class TerritoryConnectivityTest {
+    
+    private static final String WORLD = "world";
+    private static final String CLAN = "Knights";
+    
+    @Test
+    public void cuttingALineDisconnects() {
+        assertTrue(wouldDisconnect(
+                "#x#"));
+        assertFalse(wouldDisconnect(
+                "##x"));
+    }
+    
+    @Test
+    public void aRingStaysConnected() {
+        assertFalse(wouldDisconnect(
+                "#x#",
+                "#.#",
+                "###"));
+    }
+    
+    @Test
+    public void diagonalNeighboursDoNotConnect() {
+        assertTrue(wouldDisconnect(
+                "#..",
+                ".x.",
+                "..#"));
+    }
+    
+    @Test
+    public void otherClansDoNotConnect() {
+        assertTrue(wouldDisconnect(
+                "#x#",
+                "ooo"));
+    }
+    
+    @Test
+    public void cuttingABandDisconnects() {
+        assertTrue(wouldDisconnect(
+                "##x##",
+                "##x##",
+                "##x##"));
+        assertFalse(wouldDisconnect(
+                "##x##",
+                "##x##",
+                "#####"));
+    }
+    
+    @Test
+    public void unclaimingAnEdgeKeepsTheRest() {
+        assertFalse(wouldDisconnect(
+                "xx###",
+                "xx###",
+                "#####"));
+    }
+    
+    @Test
+    public void piecesThatWereApartAreNotCompared() {
+        assertFalse(wouldDisconnect(
+                "##.##",
+                "x#.##"));
+        assertTrue(wouldDisconnect(
+                "#x#.##",
+                "#x#.##",
+                "#x#.##"));
+    }
+    
+    @Test
+    public void cuttingARingTwiceDisconnects() {
+        assertFalse(wouldDisconnect(
+                "##x##",
+                "#...#",
+                "#####"));
+        assertTrue(wouldDisconnect(
+                "##x##",
+                "#...#",
+                "##x##"));
+    }
+    
+    /**
+     * Indexes a map and checks whether unclaiming its 'x' chunks would split
+     * the clan. Single chunks are also checked on their own.
+     *
+     * @param rows The map, one string per row of chunks
+     * @return The result of the bulk check
+     */
+    private static boolean wouldDisconnect(String... rows) {
+        TerritoryIndex index = new TerritoryIndex();
+        int count = 0;
+        for (String row : rows) {
+            count += row.length() - row.replace("x", "").length();
+        }
+        long[] removed = new long[count];
+        int next = 0;
+        
+        for (int z = 0; z < rows.length; z++) {
+            for (int x = 0; x < rows[z].length(); x++) {
+                char c = rows[z].charAt(x);
+                if (c == '#' || c == 'x') {
+                    index.put(new Territory(x, z, WORLD, CLAN, 100, null, 0L));
+                } else if (c == 'o') {
+                    index.put(new Territory(x, z, WORLD, "Raiders", 100, null, 0L));
+                }
+                if (c == 'x') {
+                    removed[next++] = TerritoryIndex.pack(x, z);
+                }
+            }
+        }
+        
+        boolean split = TerritoryConnectivity.wouldDisconnect(index, WORLD, removed, CLAN);
+        if (removed.length == 1) {
+            int chunkX = (int) (removed[0] >> 32);
+            int chunkZ = (int) removed[0];
+            assertTrue(split == TerritoryConnectivity.wouldDisconnect(index, WORLD, chunkX, chunkZ, CLAN));
+        }
+        return split;
+    }
+}
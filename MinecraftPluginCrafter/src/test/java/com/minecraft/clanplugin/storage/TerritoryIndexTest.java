@@ -0,0 +1,136 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.models.Territory;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks the open-addressing chunk tables of {@link TerritoryIndex} and the
+ * bookkeeping word kept next to each territory.
+ */
+public class TerritoryIndexTest {
+    
+    @Test
+    public void putGetAndRemoveByWorld() {
+        TerritoryIndex index = new TerritoryIndex();
+        Territory overworld = territory("world", 3, -4);
+        Territory nether = territory("world_nether", 3, -4);
+        assertNull(index.put(overworld));
+        assertNull(index.put(nether));
+        
+        assertEquals(2, index.size());
+        assertSame(overworld, index.get("world", 3, -4));
+        assertSame(nether, index.get("world_nether", 3, -4));
+        assertNull(index.get("world", -4, 3));
+        assertNull(index.get("world_the_end", 3, -4));
+        
+        Territory replacement = territory("world", 3, -4);
+        assertSame(overworld, index.put(replacement));
+        assertEquals(2, index.size());
+        
+        assertSame(replacement, index.remove("world", 3, -4));
+        assertNull(index.remove("world", 3, -4));
+        assertNull(index.get("world", 3, -4));
+        assertEquals(1, index.size());
+    }
+    
+    @Test
+    public void remainingChunksAreFoundAfterRemovals() {
+        // Enough chunks to grow the table several times, removed in an
+        // order that leaves gaps in the middle of probe runs
+        TerritoryIndex index = new TerritoryIndex();
+        List<Territory> territories = new ArrayList<>();
+        for (int x = -40; x < 40; x++) {
+            for (int z = -40; z < 40; z++) {
+                Territory territory = territory("world", x * 16, z);
+                territories.add(territory);
+                index.put(territory);
+            }
+        }
+        for (int i = 0; i < territories.size(); i += 3) {
+            Territory territory = territories.get(i);
+            assertSame(territory, index.remove("world", territory.getChunkX(), territory.getChunkZ()));
+        }
+        
+        for (int i = 0; i < territories.size(); i++) {
+            Territory territory = territories.get(i);
+            Territory found = index.get("world", territory.getChunkX(), territory.getChunkZ());
+            if (i % 3 == 0) {
+                assertNull(found);
+            } else {
+                assertSame(territory, found);
+            }
+        }
+        assertEquals(territories.size() - (territories.size() + 2) / 3, index.size());
+    }
+    
+    @Test
+    public void areaQueriesOnlyReturnClaimsInside() {
+        TerritoryIndex index = new TerritoryIndex();
+        for (int x = -50; x <= 50; x += 5) {
+            index.put(territory("world", x, x));
+        }
+        
+        assertEquals(5, index.getInArea("world", -10, -10, 10, 10).size());
+        assertEquals(1, index.getInRadius("world", 31, 31, 2).size());
+        assertEquals(0, index.getInArea("world_nether", -10, -10, 10, 10).size());
+        Territory nearest = index.findNearest("world", 12, 12, 10, territory -> true);
+        assertEquals(10, nearest.getChunkX());
+    }
+    
+    @Test
+    public void bookkeepingFieldsAreIndependent() {
+        TerritoryIndex index = new TerritoryIndex();
+        Territory territory = territory("world", 1, 1);
+        index.put(territory);
+        
+        index.addFieldInfluence(territory, -30);
+        index.setInfluenceLoss(territory, 250);
+        assertEquals(-30, index.getFieldInfluence(territory));
+        assertEquals(100, index.getInfluenceLoss(territory));
+        
+        int stamp = index.getStamp(territory);
+        index.touch(territory);
+        assertNotEquals(stamp, index.getStamp(territory));
+        assertEquals(-30, index.getFieldInfluence(territory));
+        assertEquals(100, index.getInfluenceLoss(territory));
+        
+        index.addFieldInfluence(territory, 45);
+        index.setInfluenceLoss(territory, -5);
+        assertEquals(15, index.getFieldInfluence(territory));
+        assertEquals(0, index.getInfluenceLoss(territory));
+    }
+    
+    @Test
+    public void bookkeepingBelongsToTheIndexedTerritory() {
+        TerritoryIndex index = new TerritoryIndex();
+        Territory territory = territory("world", 1, 1);
+        index.put(territory);
+        index.setInfluenceLoss(territory, 40);
+        
+        // A copy at the same chunk is not the indexed territory
+        Territory copy = territory("world", 1, 1);
+        assertEquals(0, index.getInfluenceLoss(copy));
+        index.setInfluenceLoss(copy, 10);
+        assertEquals(40, index.getInfluenceLoss(territory));
+        
+        // Indexing the copy starts it with a clean word
+        index.put(copy);
+        assertEquals(0, index.getInfluenceLoss(copy));
+        assertEquals(0, index.getInfluenceLoss(territory));
+        
+        index.remove("world", 1, 1);
+        assertEquals(0, index.getStamp(copy));
+    }
+    
+    private static Territory territory(String worldName, int chunkX, int chunkZ) {
+        return new Territory(chunkX, chunkZ, worldName, "Knights", 100, null, 0L);
+    }
+}
@@ -0,0 +1,147 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.ClanPlugin;
+import com.minecraft.clanplugin.models.ClanRelation;
+import com.minecraft.clanplugin.models.Territory;
+import com.minecraft.clanplugin.models.TerritoryPermission;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks how the allow and deny masks of {@link TerritoryPermissionManager}
+ * combine with the protection tier, per role and per chunk.
+ */
+public class TerritoryPermissionManagerTest {
+    
+    private static final UUID PLAYER = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final int ALLY = ClanRelation.ALLY.ordinal();
+    private static final int ENEMY = ClanRelation.ENEMY.ordinal();
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private TerritoryPermissionManager permissions;
+    private Territory home;
+    private Territory outpost;
+    
+    @Before
+    public void setUp() {
+        ClanPlugin plugin = mock(ClanPlugin.class);
+        PersistenceService persistence = mock(PersistenceService.class);
+        when(plugin.getDataFolder()).thenReturn(folder.getRoot());
+        when(plugin.getPersistenceService()).thenReturn(persistence);
+        when(persistence.register(anyString(), any(), any())).thenReturn(mock(PersistenceService.Registration.class));
+        
+        permissions = new TerritoryPermissionManager(plugin);
+        home = new Territory(0, 0, "world", "Knights", 100, null, 0L);
+        outpost = new Territory(5, 5, "world", "Knights", 100, null, 0L);
+    }
+    
+    @Test
+    public void withoutRulesTheTierDecides() {
+        assertTrue(allows(home, ClanRelation.ALLY, true, TerritoryPermission.DOORS));
+        assertFalse(allows(home, ClanRelation.ALLY, false, TerritoryPermission.DOORS));
+        assertArrayEquals(new int[TerritoryPermissionManager.ROLE_NAMES.length * 2], permissions.getMasks(home));
+    }
+    
+    @Test
+    public void allowAndDenyOverrideTheTier() {
+        permissions.setRule("Knights", null, ALLY, TerritoryPermission.DOORS.getBit(), true);
+        permissions.setRule("Knights", null, ENEMY, TerritoryPermission.DOORS.getBit(), false);
+        
+        assertTrue(allows(home, ClanRelation.ALLY, false, TerritoryPermission.DOORS));
+        assertFalse(allows(home, ClanRelation.ENEMY, true, TerritoryPermission.DOORS));
+        // Other permissions and roles are left to the tier
+        assertFalse(allows(home, ClanRelation.ALLY, false, TerritoryPermission.CONTAINERS));
+        assertTrue(allows(home, ClanRelation.NEUTRAL, true, TerritoryPermission.DOORS));
+        
+        permissions.setRule("Knights", null, ALLY, TerritoryPermission.DOORS.getBit(), null);
+        assertFalse(allows(home, ClanRelation.ALLY, false, TerritoryPermission.DOORS));
+    }
+    
+    @Test
+    public void chunkRulesStartAsACopyOfTheClanRules() {
+        permissions.setRule("Knights", null, ALLY, TerritoryPermission.DOORS.getBit(), true);
+        permissions.setRule("Knights", outpost, ALLY, TerritoryPermission.CONTAINERS.getBit(), true);
+        
+        assertTrue(permissions.hasOwnRules(outpost));
+        assertFalse(permissions.hasOwnRules(home));
+        assertTrue(allows(outpost, ClanRelation.ALLY, false, TerritoryPermission.DOORS));
+        assertTrue(allows(outpost, ClanRelation.ALLY, false, TerritoryPermission.CONTAINERS));
+        assertFalse(allows(home, ClanRelation.ALLY, false, TerritoryPermission.CONTAINERS));
+        
+        // Later clan rules no longer reach the chunk
+        permissions.setRule("Knights", null, ALLY, TerritoryPermission.BUCKETS.getBit(), true);
+        assertFalse(allows(outpost, ClanRelation.ALLY, false, TerritoryPermission.BUCKETS));
+        
+        assertTrue(permissions.clearOwnRules(outpost));
+        assertTrue(allows(outpost, ClanRelation.ALLY, false, TerritoryPermission.BUCKETS));
+        assertFalse(permissions.clearOwnRules(outpost));
+    }
+    
+    @Test
+    public void trustedPlayersMayUseWhatIsNotDenied() {
+        assertTrue(permissions.trust("Knights", PLAYER));
+        assertFalse(permissions.trust("Knights", PLAYER));
+        assertTrue(allows(home, ClanRelation.NEUTRAL, false, TerritoryPermission.CONTAINERS));
+        assertFalse(permissions.allows(home, ClanRelation.NEUTRAL, false, UUID.randomUUID(),
+                TerritoryPermission.CONTAINERS));
+        
+        permissions.setRule("Knights", null, TerritoryPermissionManager.TRUSTED,
+                TerritoryPermission.CONTAINERS.getBit(), false);
+        assertFalse(allows(home, ClanRelation.NEUTRAL, false, TerritoryPermission.CONTAINERS));
+        assertTrue(allows(home, ClanRelation.NEUTRAL, false, TerritoryPermission.DOORS));
+        
+        assertTrue(permissions.untrust("Knights", PLAYER));
+        assertFalse(allows(home, ClanRelation.NEUTRAL, false, TerritoryPermission.DOORS));
+    }
+    
+    @Test
+    public void forgottenRulesCanBeRestored() {
+        permissions.setRule("Knights", outpost, ALLY, TerritoryPermission.DOORS.getBit(), true);
+        permissions.trust("Knights", PLAYER);
+        
+        Runnable restore = permissions.forgetClan("Knights");
+        assertFalse(permissions.hasOwnRules(outpost));
+        assertTrue(permissions.getTrusted("Knights").isEmpty());
+        
+        restore.run();
+        assertTrue(allows(outpost, ClanRelation.ALLY, false, TerritoryPermission.DOORS));
+        assertTrue(permissions.getTrusted("Knights").contains(PLAYER));
+    }
+    
+    @Test
+    public void forgottenChunkRulesCanBeRestored() {
+        permissions.setRule("Knights", outpost, ALLY, TerritoryPermission.DOORS.getBit(), true);
+        
+        int[] masks = permissions.forgetTerritory(outpost);
+        assertFalse(permissions.hasOwnRules(outpost));
+        permissions.restoreTerritory(outpost, masks);
+        assertTrue(allows(outpost, ClanRelation.ALLY, false, TerritoryPermission.DOORS));
+    }
+    
+    @Test
+    public void masksNameTheirPermissions() {
+        int mask = TerritoryPermission.DOORS.getBit() | TerritoryPermission.ITEM_FRAMES.getBit();
+        assertEquals(Arrays.asList("doors", "item_frames"), TerritoryPermissionManager.namesOf(mask));
+    }
+    
+    private boolean allows(Territory territory, ClanRelation relation, boolean tierAllows,
+                           TerritoryPermission permission) {
+        return permissions.allows(territory, relation, tierAllows, PLAYER, permission);
+    }
+}
@@ -0,0 +1,108 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.models.Clan;
+import com.minecraft.clanplugin.models.ClanMember;
+import com.minecraft.clanplugin.models.ClanRole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Clans for the backend round-trip tests. Homes are left out, as reading them
+ * back resolves worlds through a running server.
+ */
+final class TestClans {
+    
+    static final UUID LEADER = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    static final UUID MEMBER = UUID.fromString("00000000-0000-0000-0000-000000000002");
+    static final UUID INVITED = UUID.fromString("00000000-0000-0000-0000-000000000003");
+    
+    private TestClans() {
+    }
+    
+    /**
+     * Builds a clan with every stored field set.
+     *
+     * @param name The clan name
+     * @return The clan
+     */
+    static Clan full(String name) {
+        Clan clan = new Clan(name);
+        clan.setTag("123");
+        clan.setColor("\u00A7c");
+        clan.setDescription("First line\nsecond line: with a colon");
+        clan.setCreationTime(1600000000000L);
+        clan.setLevel(7);
+        clan.setExperience(12345);
+        clan.setColoredArmor(false);
+        clan.setSkillPoints(3);
+        clan.setMaxMembers(25);
+        clan.setMaxTerritories(40);
+        clan.setIncomeBoost(15);
+        clan.setWarWins(4);
+        clan.setWarLosses(2);
+        clan.setStat("kills", 99);
+        clan.addMember(new ClanMember(LEADER, "Arthur", ClanRole.LEADER));
+        clan.addMember(new ClanMember(MEMBER, "Lancelot", ClanRole.MEMBER));
+        clan.addAlliance("yes");
+        clan.addEnemy("Raiders");
+        clan.addInvite(INVITED);
+        return clan;
+    }
+    
+    /**
+     * Builds a clan with only the defaults of a new clan.
+     *
+     * @param name The clan name
+     * @return The clan
+     */
+    static Clan empty(String name) {
+        Clan clan = new Clan(name);
+        clan.setCreationTime(1600000000000L);
+        return clan;
+    }
+    
+    /**
+     * Checks that a clan read back from storage holds what was stored.
+     *
+     * @param expected The stored clan
+     * @param actual The clan read back
+     */
+    static void assertSameClan(Clan expected, Clan actual) {
+        assertNotNull(expected.getName(), actual);
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getTag(), actual.getTag());
+        assertEquals(expected.getColor(), actual.getColor());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.getCreationTime(), actual.getCreationTime());
+        assertEquals(expected.getLevel(), actual.getLevel());
+        assertEquals(expected.getExperience(), actual.getExperience());
+        assertEquals(expected.hasColoredArmor(), actual.hasColoredArmor());
+        assertEquals(expected.getSkillPoints(), actual.getSkillPoints());
+        assertEquals(expected.getMaxMembers(), actual.getMaxMembers());
+        assertEquals(expected.getMaxTerritories(), actual.getMaxTerritories());
+        assertEquals(expected.getIncomeBoost(), actual.getIncomeBoost());
+        assertEquals(expected.getWarWins(), actual.getWarWins());
+        assertEquals(expected.getWarLosses(), actual.getWarLosses());
+        assertEquals(expected.getAllStats(), actual.getAllStats());
+        assertEquals(roles(expected), roles(actual));
+        for (ClanMember member : expected.getMembers()) {
+            assertEquals(member.getPlayerName(), actual.getMember(member.getPlayerUUID()).getPlayerName());
+        }
+        assertEquals(expected.getAlliances(), actual.getAlliances());
+        assertEquals(expected.getEnemies(), actual.getEnemies());
+        assertEquals(expected.getInvitedPlayers(), actual.getInvitedPlayers());
+    }
+    
+    private static Map<UUID, ClanRole> roles(Clan clan) {
+        Map<UUID, ClanRole> roles = new HashMap<>();
+        for (ClanMember member : clan.getMembers()) {
+            roles.put(member.getPlayerUUID(), member.getRole());
+        }
+        return roles;
+    }
+}
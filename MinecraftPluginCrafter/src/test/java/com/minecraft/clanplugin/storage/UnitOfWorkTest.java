@@ -0,0 +1,130 @@
+package com.minecraft.clanplugin.storage;
+
+import com.minecraft.clanplugin.ClanPlugin;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that a {@link UnitOfWork} saves once when every step applies and
+ * undoes the applied steps, newest first, when one fails.
+ */
+public class UnitOfWorkTest {
+    
+    private ClanPlugin plugin;
+    private PersistenceService persistence;
+    private StorageManager storage;
+    private final List<String> log = new ArrayList<>();
+    
+    @Before
+    public void setUp() {
+        plugin = mock(ClanPlugin.class);
+        persistence = mock(PersistenceService.class);
+        storage = mock(StorageManager.class);
+        when(plugin.getPersistenceService()).thenReturn(persistence);
+        when(plugin.getStorageManager()).thenReturn(storage);
+        
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        when(plugin.getLogger()).thenReturn(logger);
+    }
+    
+    @Test
+    public void commitAppliesStepsInOrderAndSavesOnce() {
+        boolean committed = new UnitOfWork(plugin, "test")
+                .step("a", step("a"))
+                .step("b", step("b"))
+                .commit();
+        
+        assertTrue(committed);
+        assertEquals(Arrays.asList("apply a", "apply b"), log);
+        InOrder order = inOrder(persistence, storage);
+        order.verify(persistence).hold();
+        order.verify(persistence).release();
+        order.verify(persistence).flushGroup();
+        order.verify(storage).flushClans();
+    }
+    
+    @Test
+    public void failingStepUndoesAppliedStepsNewestFirst() {
+        boolean committed = new UnitOfWork(plugin, "test")
+                .step("a", step("a"))
+                .step("b", step("b"))
+                .step("c", () -> {
+                    throw new IllegalStateException("c failed");
+                })
+                .step("d", step("d"))
+                .commit();
+        
+        assertFalse(committed);
+        assertEquals(Arrays.asList("apply a", "apply b", "undo b", "undo a"), log);
+        verify(persistence).release();
+        verify(persistence, never()).flushGroup();
+        verify(storage, never()).flushClans();
+    }
+    
+    @Test
+    public void stepWithoutUndoActionRollsBack() {
+        boolean committed = new UnitOfWork(plugin, "test")
+                .step("a", step("a"))
+                .step("b", () -> {
+                    log.add("apply b");
+                    return null;
+                })
+                .commit();
+        
+        assertFalse(committed);
+        assertEquals(Arrays.asList("apply a", "apply b", "undo a"), log);
+        verify(persistence, never()).flushGroup();
+    }
+    
+    @Test
+    public void failingUndoDoesNotStopRollback() {
+        boolean committed = new UnitOfWork(plugin, "test")
+                .step("a", step("a"))
+                .step("b", () -> () -> {
+                    throw new IllegalStateException("undo b failed");
+                })
+                .step("c", () -> {
+                    throw new IllegalStateException("c failed");
+                })
+                .commit();
+        
+        assertFalse(committed);
+        assertEquals(Arrays.asList("apply a", "undo a"), log);
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void commitTwiceFails() {
+        UnitOfWork work = new UnitOfWork(plugin, "test").step("a", step("a"));
+        work.commit();
+        work.commit();
+    }
+    
+    /**
+     * Creates a step that records when it is applied and undone.
+     *
+     * @param name The step name
+     * @return The step
+     */
+    private UnitOfWork.Step step(String name) {
+        return () -> {
+            log.add("apply " + name);
+            return () -> log.add("undo " + name);
+        };
+    }
+}